@@ -0,0 +1,318 @@
+package analysis;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jackson.JacksonUtil;
+import session.DeckHeader;
+import session.Session;
+import session.Tag;
+import util.CardUtil;
+import util.FileUtil;
+
+/**
+ * Runs {@link LandSimulation} for many decks at once without a UI, for
+ * re-tuning a whole collection. Decks are run on the simulation pool next to
+ * their own candidates, so the pool's work stealing keeps every core busy
+ * whether there are few big decks or many small ones.
+ * <p>
+ * Each deck's results are written as one line of JSON to the results file
+ * as soon as it finishes. Running again with the same file skips every deck
+ * already in it, so an interrupted batch picks up where it stopped. Each
+ * deck's seed comes from the batch seed and its id, so a deck gets the same
+ * results whichever order the decks finish in.
+ * <p>
+ * A deck that fails is written with its error, and skipped on later runs
+ * unless they retry failed decks, which appends a new line for it. The last
+ * line for a deck is the one that counts.
+ */
+public class BatchSimulation {
+
+	public static final class ResultJson {
+
+		public Map<String, Integer> countsByLand = new LinkedHashMap<String, Integer>();
+		public double score;
+		public double standardError;
+		public int games;
+
+	}
+
+	public static final class DeckResultJson {
+
+		public int deckId;
+		public String name;
+		public long seed;
+		public long millis;
+		public String error;
+		public String errorClass;
+		public String stackTrace;
+		public List<ResultJson> generic;
+		public List<ResultJson> basic;
+		public List<ResultJson> dual;
+		public ResultJson best;
+
+	}
+
+	private final List<Integer> deckIds;
+	private final File resultsFile;
+	private final long seed;
+	private final int targetSize;
+	private boolean retryFailed = false;
+	private final ObjectMapper mapper = JacksonUtil.createReader();
+
+	private final AtomicInteger finished = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private Writer writer;
+
+	public BatchSimulation(Collection<Integer> deckIds, File resultsFile, long seed) {
+		this(deckIds, resultsFile, seed, LandSimulation.DEFAULT_TARGET_SIZE);
+	}
+
+	public BatchSimulation(Collection<Integer> deckIds, File resultsFile, long seed, int targetSize) {
+		this.deckIds = new ArrayList<Integer>(deckIds);
+		this.resultsFile = resultsFile;
+		this.seed = seed;
+		this.targetSize = targetSize;
+	}
+
+	/**
+	 * Runs the decks whose last result in the file is an error again, for
+	 * errors that may not happen twice, like running out of memory.
+	 */
+	public void setRetryFailed(boolean retryFailed) {
+		this.retryFailed = retryFailed;
+	}
+
+	/**
+	 * @return The ids of the decks with the tag, or of every deck if the tag
+	 *         is null.
+	 */
+	public static List<Integer> getDeckIds(Tag tag) {
+		if(tag == null) {
+			return Session.getInstance().getDeckIds();
+		}
+		return Session.getInstance().getDeckHeaderIdsWithTag(tag);
+	}
+
+	/**
+	 * @return The ids of the decks already in the results file, less those
+	 *         that failed if they are to be retried. A last line cut off by an
+	 *         interruption is ignored, so that deck runs again.
+	 */
+	public Set<Integer> getFinishedDeckIds() {
+		Set<Integer> ids = new HashSet<Integer>();
+		if(!resultsFile.exists()) {
+			return ids;
+		}
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(resultsFile), StandardCharsets.UTF_8))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				if(line.trim().isEmpty()) {
+					continue;
+				}
+				try {
+					DeckResultJson json = mapper.readValue(line, DeckResultJson.class);
+					if(retryFailed && json.error != null) {
+						ids.remove(json.deckId);
+					} else {
+						ids.add(json.deckId);
+					}
+				} catch (IOException e) {
+					System.err.println("Skipping unreadable line in " + resultsFile.getName());
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return ids;
+	}
+
+	/**
+	 * Simulates every deck not already in the results file and waits for
+	 * them to finish.
+	 *
+	 * @return How many decks were simulated.
+	 */
+	public int run() throws IOException {
+		Set<Integer> done = getFinishedDeckIds();
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+		boolean torn = endsMidLine();
+		writer = new OutputStreamWriter(new FileOutputStream(resultsFile, true), StandardCharsets.UTF_8);
+		try {
+			if(torn) {
+				// Keep the cut off line apart from the next result
+				writer.write("\n");
+			}
+			for(final int deckId : deckIds) {
+				if(done.contains(deckId)) {
+					continue;
+				}
+				tasks.add(LandSimulation.getPool().submit(new Runnable() {
+
+					@Override
+					public void run() {
+						simulate(deckId);
+					}
+
+				}));
+			}
+			System.out.println("Simulating " + tasks.size() + " decks, " + done.size() + " already done");
+
+			for(ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		} finally {
+			synchronized(this) {
+				writer.close();
+				writer = null;
+			}
+		}
+		return tasks.size();
+	}
+
+	private boolean endsMidLine() throws IOException {
+		if(!resultsFile.exists() || resultsFile.length() == 0) {
+			return false;
+		}
+		try(RandomAccessFile file = new RandomAccessFile(resultsFile, "r")) {
+			file.seek(file.length() - 1);
+			return file.read() != '\n';
+		}
+	}
+
+	private void simulate(int deckId) {
+		DeckResultJson json = new DeckResultJson();
+		json.deckId = deckId;
+		json.seed = seed ^ (deckId * 0x9E3779B97F4A7C15L);
+		DeckHeader header = Session.getInstance().getDeckHeader(deckId);
+		json.name = header == null ? null : header.getName();
+
+		long start = System.currentTimeMillis();
+		try {
+			LandSimulation sim = new LandSimulation(deckId, targetSize, json.seed);
+			sim.run();
+			json.generic = toJson(sim.getGenericLandResults());
+			json.basic = toJson(sim.getBasicLandResults());
+			json.dual = toJson(sim.getDualLandResults());
+			SimResultList bestList = sim.getDualLandResults() != null ? sim.getDualLandResults() : sim.getBasicLandResults() != null ? sim.getBasicLandResults() : sim.getGenericLandResults();
+			json.best = bestList == null ? null : toJson(bestList.getBestResult());
+		} catch (RuntimeException | Error e) {
+			// Written anyway, so a deck that can't be simulated is only run again when asked
+			StringWriter trace = new StringWriter();
+			e.printStackTrace(new PrintWriter(trace));
+			json.error = String.valueOf(e);
+			json.errorClass = e.getClass().getName();
+			json.stackTrace = trace.toString();
+			failed.incrementAndGet();
+		}
+		json.millis = System.currentTimeMillis() - start;
+		write(json);
+	}
+
+	private synchronized void write(DeckResultJson json) {
+		if(writer == null) {
+			// The batch stopped early
+			return;
+		}
+		try {
+			writer.write(mapper.writeValueAsString(json));
+			writer.write("\n");
+			writer.flush();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write results for deck " + json.deckId, e);
+		}
+		int count = finished.incrementAndGet();
+		System.out.println(count + ": " + json.name + (json.error == null ? "" : " failed, " + json.error) + " (" + json.millis + "ms)");
+	}
+
+	private static List<ResultJson> toJson(SimResultList results) {
+		if(results == null) {
+			return null;
+		}
+		List<ResultJson> json = new ArrayList<ResultJson>();
+		for(SimResult result : results) {
+			json.add(toJson(result));
+		}
+		return json;
+	}
+
+	private static ResultJson toJson(SimResult result) {
+		if(result == null) {
+			return null;
+		}
+		ResultJson json = new ResultJson();
+		json.countsByLand.putAll(result.getCountsByLand());
+		json.score = result.getRawScore();
+		json.standardError = result.getStandardError();
+		json.games = result.getGames();
+		return json;
+	}
+
+	public int getFinishedCount() {
+		return finished.get();
+	}
+
+	public int getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * Usage: BatchSimulation [--retry-failed] results-file [tag name] [seed]
+	 * <p>
+	 * Runs every deck with the tag, or every deck, appending to the results
+	 * file. Run it again with the same file and seed to resume. Only the files
+	 * and the session are set up, not the UI or any of the online services.
+	 */
+	public static void main(String[] args) throws IOException {
+		List<String> params = new ArrayList<String>(Arrays.asList(args));
+		boolean retryFailed = params.remove("--retry-failed");
+		if(params.size() < 1) {
+			System.err.println("Usage: BatchSimulation [--retry-failed] results-file [tag name] [seed]");
+			System.exit(1);
+		}
+		FileUtil.init(null);
+		CardUtil.init();
+		Session.init();
+
+		File resultsFile = new File(params.get(0));
+		Tag tag = null;
+		if(params.size() > 1 && !params.get(1).isEmpty()) {
+			tag = Session.getInstance().getTag(params.get(1));
+			if(tag == null) {
+				System.err.println("No tag named \"" + params.get(1) + "\"");
+				System.exit(1);
+			}
+		}
+		long seed = params.size() > 2 ? Long.parseLong(params.get(2)) : 0;
+
+		long start = System.currentTimeMillis();
+		BatchSimulation batch = new BatchSimulation(getDeckIds(tag), resultsFile, seed);
+		batch.setRetryFailed(retryFailed);
+		int count = batch.run();
+		System.out.println("Simulated " + count + " decks (" + batch.getFailedCount() + " failed) with seed " + seed + " in " + (System.currentTimeMillis() - start) + "ms");
+		System.exit(0);
+	}
+
+}
@@ -0,0 +1,265 @@
+package analysis;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import deck.Card;
+import session.DeckSnapshot;
+
+/**
+ * The exact odds of a randomly shuffled deck hitting its land drops, holding
+ * something castable and having each color by a given turn, worked out from
+ * the hypergeometric distribution rather than played out like
+ * {@link SimEngine}. Only how many lands, spells of each converted mana cost
+ * and sources of each color a deck has matter, so odds are cached by that and
+ * decks that only differ in which spells they play share them.
+ *
+ * Turns start at 1 and count the cards seen by the start of that turn: the
+ * opening hand, plus a draw a turn, less the first one on the play.
+ */
+public class DrawOdds {
+
+	public static final int HAND_SIZE = 7;
+	public static final int MAX_TURN = 10;
+	public static final int MAX_CMC = 16;
+
+	private static final int CACHE_SIZE = 64;
+
+	private static volatile double[] logFactorials = new double[] { 0 };
+
+	private static final Map<Composition, DrawOdds> cache = new LinkedHashMap<Composition, DrawOdds>(CACHE_SIZE, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Composition, DrawOdds> eldest) {
+			return size() > CACHE_SIZE;
+		}
+
+	};
+
+	private static final class Composition {
+
+		private int size = 0;
+		private int lands = 0;
+		private final boolean onThePlay;
+		private final int[] spellsByCmc = new int[MAX_CMC + 1];
+		private final int[] sourcesByColor = new int[SimEngine.COLORS.length()];
+
+		public Composition(List<Card> deck, boolean onThePlay) {
+			this.onThePlay = onThePlay;
+			for(Card card : deck) {
+				add(card, 1);
+			}
+		}
+
+		/**
+		 * Looks each card up once however many copies the deck has.
+		 */
+		public Composition(DeckSnapshot snapshot, boolean onThePlay) {
+			this.onThePlay = onThePlay;
+			for(Map.Entry<String, Integer> entry : snapshot.getCountsByName().entrySet()) {
+				add(new Card(entry.getKey()), entry.getValue());
+			}
+		}
+
+		private void add(Card card, int count) {
+			size += count;
+			if(card.isLand()) {
+				lands += count;
+				int mask = SimEngine.toColorMask(SimEngine.getColorIdentity(card));
+				for(int c = 0; c < sourcesByColor.length; c++) {
+					if((mask & (1 << c)) != 0) {
+						sourcesByColor[c] += count;
+					}
+				}
+			} else {
+				spellsByCmc[Math.max(0, Math.min(MAX_CMC, card.getConvertedManaCost()))] += count;
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return ((size * 31 + lands) * 31 + (onThePlay ? 1 : 0)) * 31 + Arrays.hashCode(spellsByCmc) * 31 + Arrays.hashCode(sourcesByColor);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Composition)) {
+				return false;
+			}
+			Composition c = (Composition) obj;
+			return size == c.size && lands == c.lands && onThePlay == c.onThePlay && Arrays.equals(spellsByCmc, c.spellsByCmc) && Arrays.equals(sourcesByColor, c.sourcesByColor);
+		}
+
+	}
+
+	/**
+	 * @return The odds for the deck, worked out the first time a deck like it
+	 *         is asked for.
+	 */
+	public static DrawOdds get(List<Card> deck, boolean onThePlay) {
+		return get(new Composition(deck, onThePlay));
+	}
+
+	/**
+	 * Like {@link #get(List, boolean)} for a saved deck, read straight from
+	 * its shared snapshot rather than a copy of it.
+	 */
+	public static DrawOdds get(DeckSnapshot snapshot, boolean onThePlay) {
+		return get(new Composition(snapshot, onThePlay));
+	}
+
+	private static DrawOdds get(Composition composition) {
+		synchronized(cache) {
+			DrawOdds odds = cache.get(composition);
+			if(odds == null) {
+				odds = new DrawOdds(composition);
+				cache.put(composition, odds);
+			}
+			return odds;
+		}
+	}
+
+	private final int size;
+	private final int lands;
+	private final int[] spellsByCmc;
+	private final int[] sourcesByColor;
+
+	// Indexed by turn, then by cmc or color
+	private final double[] landDrops = new double[MAX_TURN + 1];
+	private final double[][] castable = new double[MAX_TURN + 1][MAX_CMC + 1];
+	private final double[][] colors = new double[MAX_TURN + 1][SimEngine.COLORS.length()];
+
+	private DrawOdds(Composition composition) {
+		this.size = composition.size;
+		this.lands = composition.lands;
+		this.spellsByCmc = composition.spellsByCmc.clone();
+		this.sourcesByColor = composition.sourcesByColor.clone();
+		ensureLogFactorials(size);
+
+		int nonLands = size - lands;
+		for(int turn = 1; turn <= MAX_TURN; turn++) {
+			int seen = Math.min(size, HAND_SIZE + turn - (composition.onThePlay ? 1 : 0));
+
+			landDrops[turn] = atLeast(size, lands, seen, turn);
+
+			// Castable means as many lands as the cmc and a spell of it in hand
+			for(int cmc = 0; cmc <= MAX_CMC; cmc++) {
+				int spells = spellsByCmc[cmc];
+				if(spells == 0) {
+					continue;
+				}
+				double p = 0;
+				for(int l = Math.max(cmc, seen - nonLands); l <= Math.min(lands, seen); l++) {
+					double noSpell = pmf(nonLands, spells, seen - l, 0);
+					p += pmf(size, lands, seen, l) * (1 - noSpell);
+				}
+				castable[turn][cmc] = p;
+			}
+
+			for(int c = 0; c < sourcesByColor.length; c++) {
+				colors[turn][c] = sourcesByColor[c] == 0 ? 0 : 1 - pmf(size, sourcesByColor[c], seen, 0);
+			}
+		}
+	}
+
+	private static synchronized void ensureLogFactorials(int n) {
+		if(n < logFactorials.length) {
+			return;
+		}
+		double[] table = Arrays.copyOf(logFactorials, Math.max(n + 1, logFactorials.length * 2));
+		for(int i = logFactorials.length; i < table.length; i++) {
+			table[i] = table[i - 1] + Math.log(i);
+		}
+		logFactorials = table;
+	}
+
+	private static double logChoose(int n, int k) {
+		double[] table = logFactorials;
+		return table[n] - table[k] - table[n - k];
+	}
+
+	/**
+	 * @return The chance of drawing exactly k of the successes in n draws from
+	 *         a population with that many successes.
+	 */
+	private static double pmf(int population, int successes, int draws, int k) {
+		if(k < 0 || k > successes || k > draws || draws - k > population - successes || draws > population) {
+			return 0;
+		}
+		return Math.exp(logChoose(successes, k) + logChoose(population - successes, draws - k) - logChoose(population, draws));
+	}
+
+	private static double atLeast(int population, int successes, int draws, int k) {
+		double p = 0;
+		for(int i = Math.max(0, k); i <= Math.min(successes, draws); i++) {
+			p += pmf(population, successes, draws, i);
+		}
+		return Math.min(1, p);
+	}
+
+	private static int clampTurn(int turn) {
+		return Math.max(1, Math.min(MAX_TURN, turn));
+	}
+
+	/**
+	 * @return The chance of having drawn at least as many lands as the turn,
+	 *         so a land can be played every turn up to it.
+	 */
+	public double getLandDropOdds(int turn) {
+		return landDrops[clampTurn(turn)];
+	}
+
+	/**
+	 * @return The chance of holding a spell of the cmc and the lands to cast
+	 *         it on the turn, or 0 if the deck has no such spell.
+	 */
+	public double getCastableOdds(int cmc, int turn) {
+		if(cmc < 0 || cmc > MAX_CMC) {
+			return 0;
+		}
+		return castable[clampTurn(turn)][cmc];
+	}
+
+	/**
+	 * @return The chance of casting a spell of the cmc on the turn it first can
+	 *         be, its cmc, or turn 1 for 0 cost spells.
+	 */
+	public double getCastableOnCurveOdds(int cmc) {
+		return getCastableOdds(cmc, cmc);
+	}
+
+	/**
+	 * @param color One of W, U, B, R or G.
+	 * @return The chance of having drawn a land that makes the color.
+	 */
+	public double getColorOdds(char color, int turn) {
+		int c = SimEngine.COLORS.indexOf(Character.toUpperCase(color));
+		return c < 0 ? 0 : colors[clampTurn(turn)][c];
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getLandCount() {
+		return lands;
+	}
+
+	public int getSpellCount(int cmc) {
+		return cmc < 0 || cmc > MAX_CMC ? 0 : spellsByCmc[cmc];
+	}
+
+	public int getSourceCount(char color) {
+		int c = SimEngine.COLORS.indexOf(Character.toUpperCase(color));
+		return c < 0 ? 0 : sourcesByColor[c];
+	}
+
+	public static String formatPercent(double p) {
+		return Math.round(100 * p) + "%";
+	}
+
+}
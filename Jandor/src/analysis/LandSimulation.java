@@ -7,15 +7,15 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import run.Jandor;
 import session.DeckHeader;
 import session.Session;
 import ui.ProgressBar.ProgressTask;
-import util.ManaUtil;
-import util.ShuffleType;
-import util.ShuffleUtil;
 import deck.Card;
 import deck.Deck;
 
@@ -25,9 +25,14 @@ public class LandSimulation {
 	public static final int MIN_LANDS = 16; // 25%
 	public static final double MAX_LANDS = 26; //27; // 45%
 	public static final int MAX_ITERATIONS = 10000;
+	public static final int MIN_ITERATIONS = 250;
+	public static final double PRUNE_Z = 3.0;
 	public static final String ALL_COLORED_LAND = "City of Brass";
 	
-	private Random random = new Random(System.currentTimeMillis());
+	private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	
+	private final long seed;
+	private final SplittableRandom random;
 	private int deckId;
 	private boolean generic = true;
 	private int targetSize;
@@ -42,8 +47,31 @@ public class LandSimulation {
 	}
 	
 	public LandSimulation(int deckId, int targetSize) {
+		this(deckId, targetSize, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Two simulations of the same deck with the same seed give the same
+	 * results, as long as the stages are run in the same order.
+	 */
+	public LandSimulation(int deckId, int targetSize, long seed) {
 		this.deckId = deckId;
 		this.targetSize = targetSize;
+		this.seed = seed;
+		this.random = new SplittableRandom(seed);
+	}
+	
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * @return The pool candidates are scored on, shared with
+	 *         {@link BatchSimulation} so decks and candidates steal work from
+	 *         each other.
+	 */
+	static ForkJoinPool getPool() {
+		return pool;
 	}
 	
 
@@ -72,10 +100,6 @@ public class LandSimulation {
 		return dualLandResults;
 	}
 	
-	private void setProgress(double baseProgress, double perc) {
-		setProgress(baseProgress, perc, 0.33);
-	}
-	
 	private void setProgress(double baseProgress, double perc, double range) {
 		if(worker == null) {
 			return;
@@ -112,12 +136,13 @@ public class LandSimulation {
 			
 		};
 		
-		double range = (double) MAX_LANDS - MIN_LANDS + 1;
+		List<List<Card>> candidates = new ArrayList<List<Card>>();
 		for(int landCount = MIN_LANDS; landCount <= MAX_LANDS; landCount++) {
-			List<Card> lands = getLands(landCount);
-			double score = score(deck, lands);
-			results.add(new SimResult(targetSize, lands, score));
-			setProgress(0, (landCount-MIN_LANDS) / range, singleColor ? 1.0 : 0.33);
+			candidates.add(getLands(landCount));
+		}
+		SimEngine[] engines = score(deck, candidates, 0, singleColor ? 1.0 : 0.33);
+		for(int i = 0; i < candidates.size(); i++) {
+			results.add(toResult(candidates.get(i), engines[i]));
 		}
 		return results;
 	}
@@ -160,25 +185,20 @@ public class LandSimulation {
 		
 		colors = colors.replace("C", "").replace("X", "");
 		
+		List<List<Card>> candidates = new ArrayList<List<Card>>();
 		if(colors.length() == 2) {
 		
 			String typeA = colors.charAt(0) + "";
 			String typeB = colors.charAt(1) + "";
 			
-			double range = landTotal - 1 - 1;
 			for(int landACount = 1; landACount < landTotal - 1; landACount++) {
 				int landBCount = landTotal - landACount;
 				List<Card> lands = getLands(typeA, landACount);
 				lands.addAll(getLands(typeB, landBCount));
-				double score = score(deck, lands);
-				results.add(new SimResult(targetSize, lands, score));
-				setProgress(0.33, (landACount - 1) / range);
+				candidates.add(lands);
 			}
 			
-			return results;
-		}
-		
-		if(colors.length() == 3) {
+		} else if(colors.length() == 3) {
 			
 			String typeA = colors.charAt(0) + "";
 			String typeB = colors.charAt(1) + "";
@@ -190,16 +210,12 @@ public class LandSimulation {
 					List<Card> lands = getLands(typeA, landACount);
 					lands.addAll(getLands(typeB, landBCount));
 					lands.addAll(getLands(typeC, landCCount));
-					double score = score(deck, lands);
-					results.add(new SimResult(targetSize, lands, score));
+					candidates.add(lands);
 				}
 				
 			}
 			
-			return results;
-		}
-		
-		if(colors.length() == 4) {
+		} else if(colors.length() == 4) {
 			
 			String typeA = colors.charAt(0) + "";
 			String typeB = colors.charAt(1) + "";
@@ -214,16 +230,12 @@ public class LandSimulation {
 						lands.addAll(getLands(typeB, landBCount));
 						lands.addAll(getLands(typeC, landCCount));
 						lands.addAll(getLands(typeD, landDCount));
-						double score = score(deck, lands);
-						results.add(new SimResult(targetSize, lands, score));
+						candidates.add(lands);
 					}
 				}
 			}
 			
-			return results;
-		}
-			
-		if(colors.length() == 5) {
+		} else if(colors.length() == 5) {
 			
 			String typeA = colors.charAt(0) + "";
 			String typeB = colors.charAt(1) + "";
@@ -241,17 +253,21 @@ public class LandSimulation {
 							lands.addAll(getLands(typeC, landCCount));
 							lands.addAll(getLands(typeD, landDCount));
 							lands.addAll(getLands(typeE, landECount));
-							double score = score(deck, lands);
-							results.add(new SimResult(targetSize, lands, score));
+							candidates.add(lands);
 						}
 					}
 				}
 			}
 			
-			return results;
+		} else {
+			return null;
 		}
 		
-		return null;
+		SimEngine[] engines = score(deck, candidates, 0.33, 0.33);
+		for(int i = 0; i < candidates.size(); i++) {
+			results.add(toResult(candidates.get(i), engines[i]));
+		}
+		return results;
 	}
 	
 	/**
@@ -288,7 +304,7 @@ public class LandSimulation {
 		
 		// At best let up to half the cards be replaced by multi-mana cards;
 		int colorCount = countsByLand.size();
-		double range = (double) (landCount / 2) / colorCount;
+		List<List<Card>> candidates = new ArrayList<List<Card>>();
 		for(int i = 0; i < landCount / 2; i += colorCount) {
 			List<Card> lands = new ArrayList<Card>();
 			for(String land : countsByLand.keySet()) {
@@ -304,14 +320,16 @@ public class LandSimulation {
 			while(lands.size() < landCount) {
 				lands.add(new Card(ALL_COLORED_LAND));
 			}
-			
-			double score = score(deck, lands);
-			SimResult result = new SimResult(targetSize, lands, score);
+			candidates.add(lands);
+		}
+		
+		SimEngine[] engines = score(deck, candidates, 0.66, 0.33);
+		for(int i = 0; i < candidates.size(); i++) {
+			SimResult result = toResult(candidates.get(i), engines[i]);
 			if(i == 0) {
 				result.add(ALL_COLORED_LAND, 0);
 			}
 			results.add(result);
-			setProgress(0.66, (i/colorCount) / range);
 		}
 		
 		return results;
@@ -330,7 +348,8 @@ public class LandSimulation {
 	}
 	
 	private Deck getDeckCopy() {
-		return Session.getInstance().getDeck(deckId).copyRenderable();
+		// Already a new deck of new cards
+		return Session.getInstance().getDeck(deckId);
 	}
 	
 	private int getRandomCardIndex(Deck deck) {
@@ -380,264 +399,92 @@ public class LandSimulation {
 		return scoreLandCount;
 	}
 	
-	protected double score(Deck deck, List<Card> lands) {
-		deck = deck.copyRenderable();
-		deck.addAll(lands);
-		
-		int maxTurns = Math.min(deck.getMaxConvertedManaCost(), deck.size() - 1);
-		List<Double> scores = new ArrayList<Double>();
-		for(int i = 0; i < MAX_ITERATIONS; i++) {
-			double manaDifference = 0; // This is the amount of mana needed for the cheapest card, or mana wasted by having cards not expensive enough
-			ShuffleUtil.shuffle(ShuffleType.PLAYER, deck);
-			List<Card> hand = new ArrayList<Card>();
-			List<Card> landsInPlay = new ArrayList<Card>();
-			// Add six cards to hand so on turn one, we start with 7
-			
-			for(int j = 0; j < 6; j++) {
-				if(j >= deck.size()) {
-					return 0;
-				}
-				hand.add(deck.get(j));
-			}
-			for(int j = 7; j <= maxTurns + 7; j++) {
-				// Get how much mana you should have by this turn
-				int onCurveMana = j - 6;
-				
-				if(j >= deck.size()) {
-					return 0;
-				}
-				
-				// Draw card
-				hand.add(deck.get(j));
-				
-				// Play land if you can
-				Iterator<Card> it = hand.iterator();
-				boolean playedLand = false;
-				while(it.hasNext()) {
-					Card card = it.next();
-					if(card.isLand()) {
-						landsInPlay.add(card);
-						it.remove();
-						playedLand = true;
-						break;
-					}
-				}
-				int availableMana = landsInPlay.size();
-				
-				// add a small penalty for missing land drops
-				if(!playedLand) {
-					manaDifference += 1;
-				}
-				
-				// Check cards in hand for greediest play
-				List<Card> bestPlay = findBestPlay(hand, landsInPlay);
-				
-				// Find if there's a card that falls between these two
-				int curveDiff = 0;
-				boolean offCurve = false;
-				for(Card card : hand) {
-					int cc = card.getConvertedManaCost();
-					if(cc > availableMana && cc <= onCurveMana) {
-						offCurve = true;
-						curveDiff = cc- availableMana; //(cc - availableMana) * 2;
-					} else if(cc >= onCurveMana && cc <= availableMana) {
-						
-						boolean usingEqualValueCard = false;
-						for(Card playCard : bestPlay) {
-							if(playCard.equals(card) || playCard.getConvertedManaCost() >= cc) {
-								usingEqualValueCard = true;
-								break;
-							}
-						}
-						
-						// Heavy penalty likely due to mana screw
-						if(!usingEqualValueCard) {
-							offCurve = true;
-							curveDiff = cc;
-						}
+	/**
+	 * Scores every candidate set of lands, running the candidates in parallel.
+	 * Each candidate starts with {@link #MIN_ITERATIONS} games and every round
+	 * doubles the games for the candidates that are left, up to
+	 * {@link #MAX_ITERATIONS}. A candidate whose score is clearly worse than
+	 * the best one is dropped early, so its score is only an estimate.
+	 *
+	 * Every candidate gets its own random split off this simulation's in
+	 * order, so the scores don't depend on how the rounds get scheduled.
+	 */
+	protected SimEngine[] score(Deck deck, List<List<Card>> candidates, double baseProgress, double range) {
+		final SimEngine[] engines = new SimEngine[candidates.size()];
+		List<Integer> active = new ArrayList<Integer>();
+		for(int i = 0; i < engines.length; i++) {
+			engines[i] = new SimEngine(deck, candidates.get(i), generic, random.split());
+			active.add(i);
+		}
+		
+		int iterations = 0;
+		int roundIterations = MIN_ITERATIONS;
+		while(iterations < MAX_ITERATIONS && !active.isEmpty()) {
+			final int games = Math.min(roundIterations, MAX_ITERATIONS) - iterations;
+			final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+			for(final int i : active) {
+				tasks.add(new RecursiveAction() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void compute() {
+						engines[i].play(games);
 					}
-				}
-				
-				// Consider missing your curve as twice as bad as wasting mana 
-				if(offCurve) {
-					manaDifference += curveDiff;
-					continue;
-				}
-				
-				it = hand.iterator();
-				int manaCost = 0;
-				for(Card card : bestPlay) {
-					manaCost += card.getConvertedManaCost();
-					hand.remove(card);
-				}
-				int mDiff = Math.abs(availableMana - manaCost);
-				
-				if(offCurve) {
-					mDiff = mDiff + curveDiff;
-				} 
-				
-				manaDifference += mDiff;
+					
+				});
 			}
 			
-			scores.add(manaDifference);
-		}
-		
-		Collections.sort(scores, new Comparator<Double>() {
+			RecursiveAction round = new RecursiveAction() {
 
-			@Override
-			public int compare(Double arg0, Double arg1) {
-				return arg0.compareTo(arg1);
-			}
+				private static final long serialVersionUID = 1L;
 
-		});
-		
-		int size = scores.size();
-		int startIdx = (int) Math.round(0.1 * size);
-		int endIdx = size - startIdx;
-		int newSize = endIdx - startIdx;
-		double totalScore = 0;
-		for(int i = startIdx; i < endIdx; i++) {
-			totalScore += scores.get(i);
-		}
-		
-		return totalScore / (double) newSize;
-	}
-	
-	/**
-	 * Removes the used lands from this list to play the card and returns true, or returns false if it can't 
-	 */
-	private boolean removeLandsAndPlay(Card card, List<Card> landsInPlay) {
-		int removeCount = -1;
-		if(generic) {
-			int cc = card.getConvertedManaCost();
-			if(cc <= landsInPlay.size()) {
-				for(int i = 0; i < cc; i++) {
-					//landsInPlay.remove(0);
-				}
-				removeCount = cc;
-			}
-			//return true;
-		}
-		
-		List<String> manaCost = card.getManaCost();
-		List<String> realManaCost = new ArrayList<String>();
-		for(String mana : manaCost) {
-			if(ManaUtil.isColorless(mana)) {
-				if(mana.equals("X")) {
-					realManaCost.add("1");
-				} else {
-					Integer cost = Integer.valueOf(mana);
-					for(int i = 0; i < cost; i++) {
-						realManaCost.add("1");
-					}
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
 				}
+				
+			};
+			if(ForkJoinTask.getPool() == pool) {
+				// Already on the pool, as in a batch, so fork the candidates onto this worker's own queue
+				round.invoke();
 			} else {
-				realManaCost.add(mana);
-			}
-		}
-		manaCost = realManaCost;
-		
-		Collections.sort(manaCost, new Comparator<String>() {
-
-			@Override
-			public int compare(String manaA, String manaB) {
-				return ManaUtil.indexOfColorCharacter(manaA) - ManaUtil.indexOfColorCharacter(manaB);
+				pool.invoke(round);
 			}
 			
-		});
-		final String all = "[\"W\",\"U\",\"B\",\"R\",\"G\"]";
-		Collections.sort(landsInPlay, new Comparator<Card>() {
-
-			@Override
-			public int compare(Card cardA, Card cardB) {
-				String colorIdentityA = cardA.getName().equals(ALL_COLORED_LAND) ? all : cardA.getColorIdentity().toString();
-				String colorIdentityB = cardB.getName().equals(ALL_COLORED_LAND) ? all : cardB.getColorIdentity().toString();
-				return colorIdentityA.length() - colorIdentityB.length();
-			}
-	
-		});
-		List<Card> landsToUse = new ArrayList<Card>();
-		main: for(String mana : manaCost) {
-			Iterator<Card> it = landsInPlay.iterator();
-			while(it.hasNext()) {
-				Card land = it.next();
-				if(landsToUse.contains(land)) {
-					continue;
-				}
-				String colorIdentity = land.getName().equals(ALL_COLORED_LAND) ? all : land.getColorIdentity().toString();
-				for(int i = 0; i < mana.length(); i++) {
-					String m = mana.charAt(i) + "";
-					if(generic || ManaUtil.isColorless(m) || colorIdentity.contains(m)) {
-						landsToUse.add(land);
-						continue main;
-					}
-				}
+			iterations += games;
+			roundIterations *= 2;
+			setProgress(baseProgress, iterations / (double) MAX_ITERATIONS, range);
+			
+			if(iterations < MAX_ITERATIONS) {
+				prune(engines, active);
 			}
 		}
 		
-		if(removeCount != -1 && removeCount != landsToUse.size()) {
-			System.err.println("Algorithms not the same!");
-		}
-		
-		boolean match = landsToUse.size() == card.getConvertedManaCost();
-		if(!match) {
-			return false;
-		}
-		
-		for(Card land : landsToUse) {
-			landsInPlay.remove(land);
-		}
-		
-		return true;
+		return engines;
 	}
 	
-	private List<Card> findBestPlay(List<Card> hand, List<Card> landsInPlay) {
-		landsInPlay = new ArrayList<Card>(landsInPlay);
-		int manaCount = landsInPlay.size();
-		List<Card> maxBestPlay = null;
-		if(landsInPlay.size() == 0) {
-			return new ArrayList<Card>();
+	private SimResult toResult(List<Card> lands, SimEngine engine) {
+		return new SimResult(targetSize, lands, engine.getScore(), engine.getStandardError(), engine.getGames());
+	}
+	
+	/**
+	 * Drops the candidates whose score is more than {@link #PRUNE_Z} standard
+	 * errors worse than the upper bound of the best candidate.
+	 */
+	private void prune(SimEngine[] engines, List<Integer> active) {
+		double bestUpperBound = Double.MAX_VALUE;
+		for(int i : active) {
+			bestUpperBound = Math.min(bestUpperBound, engines[i].getScore() + PRUNE_Z * engines[i].getStandardError());
 		}
 		
-		Collections.sort(hand, new Comparator<Card>() {
-
-			@Override
-			public int compare(Card cardA, Card cardB) {
-				return cardB.getConvertedManaCost() - cardA.getConvertedManaCost();
-			}
-		
-		});
-		
-		int maxManaDifference = Integer.MAX_VALUE;
-		for(int i = 0; i < hand.size(); i++) {
-			List<Card> bestPlay = new ArrayList<Card>();
-			Card card = hand.get(i);
-			if(card.isLand() || card.getConvertedManaCost() > manaCount) {
-				continue;
-			}
-			
-			if(removeLandsAndPlay(card, landsInPlay)) {
-				bestPlay.add(card);
-				if(landsInPlay.size() > 0) {
-					List<Card> newHand = new ArrayList<Card>(hand);
-					newHand.remove(card);
-					bestPlay.addAll(findBestPlay(newHand, landsInPlay));
-				}
-			}
-			
-			int manaDifference = landsInPlay.size();
-			if(manaDifference <= maxManaDifference || (manaDifference == maxManaDifference && (maxBestPlay == null || bestPlay.size() <= maxBestPlay.size()))) {
-				maxBestPlay = bestPlay;
-				maxManaDifference = manaDifference;
-				break;
+		Iterator<Integer> it = active.iterator();
+		while(it.hasNext()) {
+			SimEngine engine = engines[it.next()];
+			if(engine.getScore() - PRUNE_Z * engine.getStandardError() > bestUpperBound) {
+				it.remove();
 			}
 		}
-		
-		if(maxBestPlay == null) {
-			return new ArrayList<Card>();
-		}
-		
-		return maxBestPlay;
 	}
 
 	private List<Card> getLands(int landCount) {
@@ -697,8 +544,14 @@ public class LandSimulation {
 		return null;
 	}
 	
+	/**
+	 * Runs every deck in the session. Pass a seed to get the same results on
+	 * every run, e.g. to compare timings between versions.
+	 */
 	public static void main(String[] args) {
 		Jandor.init();
+		long seed = args.length > 0 ? Long.parseLong(args[0]) : System.currentTimeMillis();
+		long start = System.currentTimeMillis();
 		List<Integer> ids = new ArrayList<Integer>();
 		//ids.add(43741); // Mefolk 95354 // Divinity 43741
 		for(DeckHeader header : Session.getInstance().getDeckHeaders()) {
@@ -707,7 +560,7 @@ public class LandSimulation {
 		
 		for(int deckId : ids) {
 			Deck deck = Session.getInstance().getDeck(deckId);
-			LandSimulation sim = new LandSimulation(deckId);
+			LandSimulation sim = new LandSimulation(deckId, DEFAULT_TARGET_SIZE, seed);
 			SimResultList genericResults = sim.runGenericLands();
 			SimResult bestGenericResult = genericResults.getBestResult();
 			
@@ -740,7 +593,7 @@ public class LandSimulation {
 				if(dualResults != null) {
 					System.out.println("Dual Land Recommendation:");
 					for(SimResult result : dualResults) {
-						System.out.println("City of Brass " + result.getCountsByLand().get(ALL_COLORED_LAND) + ": " + result.getScore());
+						System.out.println("City of Brass " + result.getCountsByLand().get(ALL_COLORED_LAND) + ": " + result.getRawScore() + " +/- " + result.getStandardError());
 					}
 					
 					System.out.println("Best Choice: ");
@@ -752,6 +605,7 @@ public class LandSimulation {
 			}
 			
 		}
+		System.out.println("Simulated " + ids.size() + " decks with seed " + seed + " in " + (System.currentTimeMillis() - start) + "ms");
 	}
 	
 }
@@ -0,0 +1,570 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import util.ManaUtil;
+import deck.Card;
+
+/**
+ * Plays out the opening turns of a deck for {@link LandSimulation}. The deck
+ * is encoded once into primitive arrays (converted mana cost, the order in
+ * which mana symbols get paid and which colors each land makes) and every
+ * iteration only shuffles and moves ints around, so scoring doesn't allocate.
+ *
+ * An engine keeps its own random and scratch buffers, so it must only be used
+ * by one thread at a time.
+ */
+public class SimEngine {
+
+	/** The share of best and worst games left out of the score. */
+	public static final double TRIM = 0.1;
+
+	/** A mana symbol that any land can pay for. */
+	private static final int ANY = -1;
+
+	public static final String COLORS = "WUBRG";
+	private static final String ALL_COLORS = "[\"W\",\"U\",\"B\",\"R\",\"G\"]";
+
+	private final boolean generic;
+	private final int size;
+	private final int maxTurns;
+
+	// Per card, indexed by the card's position in the original deck
+	private final int[] cmc;
+	private final boolean[] land;
+	private final int[] landColors;
+	private final int[] landOrder;
+	private final int[] symbolStart;
+	private final int[] symbolCount;
+	private final int[] symbols;
+
+	private SplittableRandom random;
+
+	// Scratch buffers reused for every iteration
+	private final int[] deck;
+	private final int[] nonLandBuffer;
+	private final int[] landBuffer;
+	private final int[] chunkBuffer;
+	private final int[] hand;
+	private final boolean[] played;
+	private final int[] landsInPlay;
+	private final int[] availableLands;
+	private final boolean[] usedLands;
+
+	// How many games ended with each score
+	private int[] histogram = new int[32];
+	private int games = 0;
+
+	public SimEngine(List<Card> deck, List<Card> lands, boolean generic) {
+		this(deck, lands, generic, new SplittableRandom());
+	}
+
+	public SimEngine(List<Card> deck, List<Card> lands, boolean generic, SplittableRandom random) {
+		List<Card> cards = new ArrayList<Card>(deck);
+		cards.addAll(lands);
+
+		this.generic = generic;
+		this.random = random;
+		this.size = cards.size();
+		this.cmc = new int[size];
+		this.land = new boolean[size];
+		this.landColors = new int[size];
+		this.landOrder = new int[size];
+		this.symbolStart = new int[size];
+		this.symbolCount = new int[size];
+
+		int maxCmc = 0;
+		List<Integer> allSymbols = new ArrayList<Integer>();
+		for(int i = 0; i < size; i++) {
+			Card card = cards.get(i);
+			cmc[i] = card.getConvertedManaCost();
+			land[i] = card.isLand();
+			maxCmc = Math.max(maxCmc, cmc[i]);
+			if(land[i]) {
+				String colorIdentity = getColorIdentity(card);
+				landColors[i] = toColorMask(colorIdentity);
+				landOrder[i] = colorIdentity.length();
+			}
+			symbolStart[i] = allSymbols.size();
+			List<Integer> cardSymbols = toSymbols(card.getManaCost());
+			symbolCount[i] = cardSymbols.size();
+			allSymbols.addAll(cardSymbols);
+		}
+		this.symbols = new int[allSymbols.size()];
+		for(int i = 0; i < symbols.length; i++) {
+			symbols[i] = allSymbols.get(i);
+		}
+		this.maxTurns = Math.min(maxCmc, size - 1);
+
+		this.deck = new int[size];
+		for(int i = 0; i < size; i++) {
+			this.deck[i] = i;
+		}
+		this.nonLandBuffer = new int[size];
+		this.landBuffer = new int[size];
+		this.chunkBuffer = new int[size];
+		this.hand = new int[size];
+		this.played = new boolean[size];
+		this.landsInPlay = new int[size];
+		this.availableLands = new int[size];
+		this.usedLands = new boolean[size];
+	}
+
+	static String getColorIdentity(Card card) {
+		if(card.getName().equals(LandSimulation.ALL_COLORED_LAND)) {
+			return ALL_COLORS;
+		}
+		List<String> colorIdentity = card.getColorIdentity();
+		return colorIdentity == null ? "" : colorIdentity.toString();
+	}
+
+	static int toColorMask(String s) {
+		int mask = 0;
+		for(int i = 0; i < COLORS.length(); i++) {
+			if(s.indexOf(COLORS.charAt(i)) >= 0) {
+				mask |= 1 << i;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Expands a mana cost into the symbols that each need a land, in the
+	 * order they get paid: single colors first, then generic and hybrid mana
+	 * in their printed order. Generic mana and symbols such as {C} or {X}
+	 * count as one land that can be of any color.
+	 */
+	private static List<Integer> toSymbols(List<String> manaCost) {
+		List<String> expanded = new ArrayList<String>();
+		if(manaCost != null) {
+			for(String mana : manaCost) {
+				if(!ManaUtil.isColorless(mana)) {
+					expanded.add(mana);
+					continue;
+				}
+				int count = 1;
+				try {
+					count = Integer.valueOf(mana);
+				} catch (NumberFormatException e) {
+					// X, C, S and friends take one land
+				}
+				for(int i = 0; i < count; i++) {
+					expanded.add("1");
+				}
+			}
+		}
+
+		Collections.sort(expanded, new Comparator<String>() {
+
+			@Override
+			public int compare(String manaA, String manaB) {
+				return Integer.compare(ManaUtil.indexOfColorCharacter(manaA), ManaUtil.indexOfColorCharacter(manaB));
+			}
+
+		});
+
+		List<Integer> symbols = new ArrayList<Integer>();
+		for(String mana : expanded) {
+			int mask = 0;
+			for(int i = 0; i < mana.length(); i++) {
+				int color = COLORS.indexOf(mana.charAt(i));
+				if(color < 0) {
+					mask = ANY;
+					break;
+				}
+				mask |= 1 << color;
+			}
+			symbols.add(mask);
+		}
+		return symbols;
+	}
+
+	/**
+	 * Whether the deck has enough cards to play out every turn. A deck that
+	 * doesn't always scores 0.
+	 */
+	public boolean isPlayable() {
+		return maxTurns + 7 < size;
+	}
+
+	/**
+	 * Plays the deck iterations more times and adds the results to the tally.
+	 */
+	public void play(int iterations) {
+		if(!isPlayable()) {
+			return;
+		}
+		for(int i = 0; i < iterations; i++) {
+			int score = playGame();
+			if(score >= histogram.length) {
+				histogram = Arrays.copyOf(histogram, Math.max(score + 1, histogram.length * 2));
+			}
+			histogram[score]++;
+		}
+		games += iterations;
+	}
+
+	public void reset() {
+		Arrays.fill(histogram, 0);
+		games = 0;
+	}
+
+	public int getGames() {
+		return games;
+	}
+
+	/**
+	 * Plays the deck iterations times and returns the score, see {@link #getScore()}.
+	 */
+	public double score(int iterations) {
+		reset();
+		play(iterations);
+		return getScore();
+	}
+
+	/**
+	 * @return The average mana difference of the games played so far, with
+	 *         the best and worst tenth of the games left out. Lower is better.
+	 */
+	public double getScore() {
+		if(!isPlayable() || games == 0) {
+			return 0;
+		}
+		int startIdx = (int) Math.round(TRIM * games);
+		int endIdx = games - startIdx;
+		double totalScore = 0;
+		int rank = 0;
+		for(int score = 0; score < histogram.length && rank < endIdx; score++) {
+			int from = Math.max(rank, startIdx);
+			int to = Math.min(rank + histogram[score], endIdx);
+			if(to > from) {
+				totalScore += score * (double) (to - from);
+			}
+			rank += histogram[score];
+		}
+		return totalScore / (double) (endIdx - startIdx);
+	}
+
+	/**
+	 * @return The standard error of {@link #getScore()}, estimated from the
+	 *         winsorized variance of the games played so far.
+	 */
+	public double getStandardError() {
+		if(!isPlayable()) {
+			return 0;
+		}
+		if(games < 2) {
+			return Double.POSITIVE_INFINITY;
+		}
+		int startIdx = (int) Math.round(TRIM * games);
+		int endIdx = games - startIdx;
+		int low = getScoreAt(startIdx);
+		int high = getScoreAt(endIdx - 1);
+
+		double sum = 0;
+		double sumOfSquares = 0;
+		for(int score = 0; score < histogram.length; score++) {
+			double value = Math.min(Math.max(score, low), high);
+			sum += value * histogram[score];
+			sumOfSquares += value * value * histogram[score];
+		}
+		double mean = sum / games;
+		double variance = Math.max(0, (sumOfSquares - games * mean * mean) / (games - 1));
+		double keptFraction = (endIdx - startIdx) / (double) games;
+		return Math.sqrt(variance) / (keptFraction * Math.sqrt(games));
+	}
+
+	private int getScoreAt(int rank) {
+		for(int score = 0; score < histogram.length; score++) {
+			rank -= histogram[score];
+			if(rank < 0) {
+				return score;
+			}
+		}
+		return histogram.length - 1;
+	}
+
+	/**
+	 * @return The amount of mana needed for the cheapest card, or mana wasted by having cards not expensive enough
+	 */
+	public int playGame() {
+		shuffle();
+		return playTurns();
+	}
+
+	private int playTurns() {
+		int manaDifference = 0;
+		int handSize = 0;
+		int landCount = 0;
+
+		// Add six cards to hand so on turn one, we start with 7
+		for(int j = 0; j < 6; j++) {
+			hand[handSize++] = deck[j];
+		}
+		for(int j = 7; j <= maxTurns + 7; j++) {
+			// Get how much mana you should have by this turn
+			int onCurveMana = j - 6;
+
+			// Draw card
+			hand[handSize++] = deck[j];
+
+			// Play land if you can
+			boolean playedLand = false;
+			for(int h = 0; h < handSize; h++) {
+				if(land[hand[h]]) {
+					landsInPlay[landCount++] = hand[h];
+					System.arraycopy(hand, h + 1, hand, h, handSize - h - 1);
+					handSize--;
+					playedLand = true;
+					break;
+				}
+			}
+			int availableMana = landCount;
+
+			// add a small penalty for missing land drops
+			if(!playedLand) {
+				manaDifference += 1;
+			}
+
+			// Check cards in hand for greediest play
+			int maxPlayCmc = findBestPlay(handSize, landCount);
+
+			// Find if there's a card that falls between these two
+			int curveDiff = 0;
+			boolean offCurve = false;
+			for(int h = 0; h < handSize; h++) {
+				int cc = cmc[hand[h]];
+				if(cc > availableMana && cc <= onCurveMana) {
+					offCurve = true;
+					curveDiff = cc - availableMana;
+				} else if(cc >= onCurveMana && cc <= availableMana) {
+					// Heavy penalty likely due to mana screw
+					if(!played[h] && maxPlayCmc < cc) {
+						offCurve = true;
+						curveDiff = cc;
+					}
+				}
+			}
+
+			if(offCurve) {
+				manaDifference += curveDiff;
+				clearPlayed(handSize);
+				continue;
+			}
+
+			int manaCost = 0;
+			int kept = 0;
+			for(int h = 0; h < handSize; h++) {
+				if(played[h]) {
+					manaCost += cmc[hand[h]];
+					played[h] = false;
+				} else {
+					hand[kept++] = hand[h];
+				}
+			}
+			handSize = kept;
+
+			manaDifference += Math.abs(availableMana - manaCost);
+		}
+		return manaDifference;
+	}
+
+	private void clearPlayed(int handSize) {
+		for(int h = 0; h < handSize; h++) {
+			played[h] = false;
+		}
+	}
+
+	/**
+	 * Greedily plays the most expensive card that the lands can pay for, then
+	 * the next with what's left, until a card can't be paid for. Marks the
+	 * cards in {@link #played} and returns the highest cost played, or -1 if
+	 * nothing was.
+	 */
+	private int findBestPlay(int handSize, int landCount) {
+		if(landCount == 0) {
+			return -1;
+		}
+		sortHand(handSize);
+
+		int available = landCount;
+		System.arraycopy(landsInPlay, 0, availableLands, 0, landCount);
+		sortLands(available);
+
+		int maxPlayCmc = -1;
+		while(available > 0) {
+			int h = 0;
+			while(h < handSize && (played[h] || land[hand[h]] || cmc[hand[h]] > available)) {
+				h++;
+			}
+			if(h == handSize) {
+				break;
+			}
+
+			int card = hand[h];
+			int paid = payFor(card, available);
+			if(paid != cmc[card]) {
+				clearUsedLands(available);
+				break;
+			}
+
+			int kept = 0;
+			for(int k = 0; k < available; k++) {
+				if(!usedLands[k]) {
+					availableLands[kept++] = availableLands[k];
+				}
+				usedLands[k] = false;
+			}
+			available = kept;
+
+			played[h] = true;
+			maxPlayCmc = Math.max(maxPlayCmc, cmc[card]);
+		}
+		return maxPlayCmc;
+	}
+
+	/**
+	 * Marks the lands used to pay for each mana symbol in
+	 * {@link #usedLands} and returns how many symbols got paid for.
+	 */
+	private int payFor(int card, int available) {
+		int paid = 0;
+		int end = symbolStart[card] + symbolCount[card];
+		for(int s = symbolStart[card]; s < end; s++) {
+			int symbol = symbols[s];
+			for(int k = 0; k < available; k++) {
+				if(usedLands[k]) {
+					continue;
+				}
+				if(generic || symbol == ANY || (landColors[availableLands[k]] & symbol) != 0) {
+					usedLands[k] = true;
+					paid++;
+					break;
+				}
+			}
+		}
+		return paid;
+	}
+
+	private void clearUsedLands(int available) {
+		for(int k = 0; k < available; k++) {
+			usedLands[k] = false;
+		}
+	}
+
+	/**
+	 * Stable sort from most to least expensive.
+	 */
+	private void sortHand(int handSize) {
+		for(int i = 1; i < handSize; i++) {
+			int card = hand[i];
+			int j = i - 1;
+			while(j >= 0 && cmc[hand[j]] < cmc[card]) {
+				hand[j + 1] = hand[j];
+				j--;
+			}
+			hand[j + 1] = card;
+		}
+	}
+
+	/**
+	 * Stable sort so lands that make fewer colors get used first.
+	 */
+	private void sortLands(int count) {
+		for(int i = 1; i < count; i++) {
+			int card = availableLands[i];
+			int j = i - 1;
+			while(j >= 0 && landOrder[availableLands[j]] > landOrder[card]) {
+				availableLands[j + 1] = availableLands[j];
+				j--;
+			}
+			availableLands[j + 1] = card;
+		}
+	}
+
+	/**
+	 * Same as the guided shuffle in {@link util.ShuffleUtil}: lands are spread
+	 * evenly through the deck, then a few random chunks get moved around.
+	 */
+	private void shuffle() {
+		int nonLandCount = 0;
+		int landCount = 0;
+		for(int i = 0; i < size; i++) {
+			if(land[deck[i]]) {
+				landBuffer[landCount++] = deck[i];
+			} else {
+				nonLandBuffer[nonLandCount++] = deck[i];
+			}
+		}
+		shuffle(nonLandBuffer, nonLandCount);
+		shuffle(landBuffer, landCount);
+
+		if(landCount == 0) {
+			shuffle(deck, size);
+			return;
+		}
+
+		int landRatio = (int) Math.round(nonLandCount / (double) landCount);
+		if(landRatio == 0) {
+			shuffle(deck, size);
+			return;
+		}
+
+		// Insert lands evenly
+		int j = 0;
+		int count = 0;
+		for(int i = 0; i < nonLandCount; i++) {
+			if(i % landRatio == 0 && j < landCount) {
+				deck[count++] = landBuffer[j++];
+			}
+			deck[count++] = nonLandBuffer[i];
+		}
+
+		// Insert extra lands randomly
+		while(j < landCount) {
+			int index = randIndex(count);
+			System.arraycopy(deck, index, deck, index + 1, count - index);
+			deck[index] = landBuffer[j++];
+			count++;
+		}
+
+		// Shuffle random chunks
+		int numShuffles = 3;
+		int minChunkSize = 6;
+		int maxChunkSize = 10;
+		for(int i = 0; i < numShuffles; i++) {
+			int index = randIndex(count);
+			int chunkSize = Math.max(0, (Math.abs(random.nextInt()) + minChunkSize) % (maxChunkSize + 1));
+			if(index + chunkSize > count) {
+				chunkSize = count - index;
+			}
+			System.arraycopy(deck, index, chunkBuffer, 0, chunkSize);
+			System.arraycopy(deck, index + chunkSize, deck, index, count - index - chunkSize);
+			int newIndex = randIndex(count - chunkSize);
+			System.arraycopy(deck, newIndex, deck, newIndex + chunkSize, count - chunkSize - newIndex);
+			System.arraycopy(chunkBuffer, 0, deck, newIndex, chunkSize);
+		}
+	}
+
+	private void shuffle(int[] cards, int count) {
+		for(int i = count; i > 1; i--) {
+			int j = random.nextInt(i);
+			int temp = cards[i - 1];
+			cards[i - 1] = cards[j];
+			cards[j] = temp;
+		}
+	}
+
+	private int randIndex(int count) {
+		if(count < 2) {
+			return 0;
+		}
+		return random.nextInt(count);
+	}
+
+}
@@ -8,12 +8,17 @@ import deck.Card;
 
 public class SimResult {
 
+	/** Two scores closer than this many standard errors aren't told apart. */
+	public static final double SIGNIFICANCE_Z = 1.96;
+	
 	public static double modifyScore(double score) {
 		return Math.round(score);
 	}
 	
 	private Map<String, Integer> countsByLand;
 	private double score;
+	private double standardError;
+	private int games;
 	private int targetDeckSize;
 	
 	public SimResult(int targetDeckSize) {
@@ -25,9 +30,15 @@ public class SimResult {
 	}
 	
 	public SimResult(int targetDeckSize, List<Card> lands, double score) {
+		this(targetDeckSize, lands, score, 0, 0);
+	}
+	
+	public SimResult(int targetDeckSize, List<Card> lands, double score, double standardError, int games) {
 		this.targetDeckSize = targetDeckSize;
 		this.countsByLand = new HashMap<String, Integer>();
 		this.score = score;
+		this.standardError = standardError;
+		this.games = games;
 		if(lands != null) {
 			add(lands);
 		}
@@ -60,6 +71,45 @@ public class SimResult {
 		this.score = score;
 	}
 	
+	/**
+	 * @return The standard error of the raw score, or 0 if the score isn't an estimate.
+	 */
+	public double getStandardError() {
+		return standardError;
+	}
+	
+	public double getVariance() {
+		return standardError * standardError;
+	}
+	
+	/**
+	 * @return How many games the score was estimated from.
+	 */
+	public int getGames() {
+		return games;
+	}
+	
+	public double getLowerBound() {
+		return score - SIGNIFICANCE_Z * standardError;
+	}
+	
+	public double getUpperBound() {
+		return score + SIGNIFICANCE_Z * standardError;
+	}
+	
+	/**
+	 * @return True if this result's score is lower than the other's by more
+	 *         than chance would explain. Results without a standard error
+	 *         fall back to comparing rounded scores.
+	 */
+	public boolean isSignificantlyBetterThan(SimResult other) {
+		double variance = getVariance() + other.getVariance();
+		if(variance == 0) {
+			return getScore() < other.getScore();
+		}
+		return other.getRawScore() - getRawScore() > SIGNIFICANCE_Z * Math.sqrt(variance);
+	}
+	
 	public Map<String, Integer> getCountsByLand() {
 		return countsByLand;
 	}
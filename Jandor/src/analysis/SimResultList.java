@@ -8,16 +8,22 @@ public abstract class SimResultList extends ArrayList<SimResult> {
 
 	public SimResultList() {}
 	
+	/**
+	 * @return The result with the lowest score, or if other results aren't
+	 *         significantly worse than it, the one {@link #breakTie(List)}
+	 *         picks from all of them.
+	 */
 	public SimResult getBestResult() {
-		double minScore = Double.MAX_VALUE;
+		SimResult bestResult = null;
+		for(SimResult result : this) {
+			if(bestResult == null || result.getRawScore() < bestResult.getRawScore()) {
+				bestResult = result;
+			}
+		}
+		
 		List<SimResult> tiedResults = new ArrayList<SimResult>(); 
 		for(SimResult result : this) {
-			double score = result.getScore();
-			if(score < minScore) {
-				minScore = score;
-				tiedResults.clear();
-				tiedResults.add(result);
-			} else if(score == minScore) {
+			if(!bestResult.isSignificantlyBetterThan(result)) {
 				tiedResults.add(result);
 			}
 		}
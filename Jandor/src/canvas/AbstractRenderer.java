@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import util.ImageUtil;
+import util.RotatedImageCache;
 import util.ShapeUtil;
 import zone.ZoneType;
 
@@ -16,6 +17,11 @@ public abstract class AbstractRenderer<T> implements IRenderer<T> {
 	private static final long serialVersionUID = 1L;
 
 	public static final int TAP_ANGLE = 45;
+	
+	/** Room around the bounds for the selection outline. */
+	public static final int PAINT_MARGIN = 4;
+	
+	private static volatile int zoneChangeCount = 0;
 	public static final int FULL_SCALE = -1;
 	
 	protected Location location = new Location(0, 0);
@@ -38,6 +44,8 @@ public abstract class AbstractRenderer<T> implements IRenderer<T> {
 	protected boolean visible = true;
 	protected Location zoneChangeLocation = new Location(0, 0);
 	protected boolean transformedProjection = false;
+	protected transient SpatialIndex spatialIndex = null;
+	protected transient Rectangle lastPaintedBounds = null;
 	
 	protected IRenderer parent;
 	protected List<IRenderer> children = new ArrayList<IRenderer>();
@@ -123,6 +131,27 @@ public abstract class AbstractRenderer<T> implements IRenderer<T> {
 	@Override
 	public void flagRecomputeBounds() {
 		needsRecomputeBounds = true;
+		if(spatialIndex != null) {
+			spatialIndex.markDirty(this);
+		}
+	}
+
+	/**
+	 * Lets the index know this will look different even though its bounds
+	 * haven't moved.
+	 */
+	protected void flagChange() {
+		if(spatialIndex != null) {
+			spatialIndex.markChanged(this);
+		}
+	}
+
+	public SpatialIndex getSpatialIndex() {
+		return spatialIndex;
+	}
+
+	public void setSpatialIndex(SpatialIndex spatialIndex) {
+		this.spatialIndex = spatialIndex;
 	}
 	
 	@Override
@@ -134,6 +163,9 @@ public abstract class AbstractRenderer<T> implements IRenderer<T> {
 		if(needsRecomputeBounds || force) {
 			bounds = computeBounds();
 			needsRecomputeBounds = false;
+			if(spatialIndex != null) {
+				spatialIndex.markDirty(this);
+			}
 		}
 	}
 	
@@ -253,7 +285,10 @@ public abstract class AbstractRenderer<T> implements IRenderer<T> {
 	
 	@Override
 	public void setFaceUp(boolean faceUp) {
-		this.faceUp = faceUp;
+		if(this.faceUp != faceUp) {
+			this.faceUp = faceUp;
+			flagChange();
+		}
 	}
 	
 	@Override
@@ -267,9 +302,17 @@ public abstract class AbstractRenderer<T> implements IRenderer<T> {
 			rememberLastPendingZoneType();
 			this.zoneType = zoneType;
 			flagPendingZoneChange();
+			zoneChangeCount++;
 		}
 	}
 	
+	/**
+	 * @return A count that goes up whenever any renderer changes zones.
+	 */
+	public static int getZoneChangeCount() {
+		return zoneChangeCount;
+	}
+	
 	@Override
 	public void setZoneChangeLocation(Location location) {
 		this.zoneChangeLocation = location;
@@ -356,7 +399,10 @@ public abstract class AbstractRenderer<T> implements IRenderer<T> {
 	
 	@Override
 	public void setHovered(boolean hovered) {
-		this.hovered = hovered;
+		if(this.hovered != hovered) {
+			this.hovered = hovered;
+			flagChange();
+		}
 	}
 	
 	@Override
@@ -392,10 +438,7 @@ public abstract class AbstractRenderer<T> implements IRenderer<T> {
 		}
 		origImageW = img.getWidth();
 		origImageH = img.getHeight();
-		if(getAngle() != 0) {
-			img = ImageUtil.rotate(img, getAngle());
-		}
-		return img;
+		return RotatedImageCache.getRotated(img, getAngle());
 	}
 	
 	protected BufferedImage loadImage(boolean faceUp, double scale) {
@@ -468,7 +511,10 @@ public abstract class AbstractRenderer<T> implements IRenderer<T> {
 	
 	@Override
 	public void setVisible(boolean visible) {
-		this.visible = visible;
+		if(this.visible != visible) {
+			this.visible = visible;
+			flagChange();
+		}
 	}
 
 	@Override
@@ -479,12 +525,30 @@ public abstract class AbstractRenderer<T> implements IRenderer<T> {
 	@Override
 	public void paintComponent(CardLayer layer, Graphics2D g, int width, int height) {
 		recomputeBounds();
-		if(visible) {
+		Rectangle paintBounds = getPaintBounds();
+		if(visible && (paintBounds == null || g.hitClip(paintBounds.x, paintBounds.y, paintBounds.width, paintBounds.height))) {
 			render(layer, g, getObject(), getLocation());
+			lastPaintedBounds = paintBounds == null ? null : g.getTransform().createTransformedShape(paintBounds).getBounds();
 		}
 		zIndex = layer.nextZIndex();
 	}
 	
+	@Override
+	public Rectangle getPaintBounds() {
+		Shape bounds = getBounds();
+		if(bounds == null) {
+			return null;
+		}
+		Rectangle r = bounds.getBounds();
+		r.grow(PAINT_MARGIN, PAINT_MARGIN);
+		return r;
+	}
+	
+	@Override
+	public Rectangle getLastPaintedBounds() {
+		return lastPaintedBounds;
+	}
+	
 	@Override
 	public abstract void render(CardLayer layer, Graphics2D g, T object, Location location);
 	
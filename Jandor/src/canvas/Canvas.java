@@ -3,13 +3,16 @@ package canvas;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.swing.JPanel;
@@ -101,6 +104,66 @@ public class Canvas extends JPanel implements Serializable {
 		zoomAndPanListener.revert(g2);
 	}
 	
+	/**
+	 * Repaints just where the objects were last drawn and where they are now,
+	 * or the whole canvas if one of them hasn't been drawn yet.
+	 */
+	public void repaint(Collection<? extends IRenderable> objects) {
+		AffineTransform base = zoomAndPanListener.getBaseTransform();
+		if(base == null) {
+			repaint();
+			return;
+		}
+		
+		Rectangle damage = null;
+		for(IRenderable object : objects) {
+			Rectangle r = getDamage(object.getRenderer(), base);
+			if(r == null) {
+				repaint();
+				return;
+			}
+			damage = damage == null ? r : damage.union(r);
+		}
+		if(damage == null) {
+			return;
+		}
+		
+		try {
+			Rectangle local = base.createInverse().createTransformedShape(damage).getBounds();
+			local.grow(1, 1);
+			repaint(local);
+		} catch (NoninvertibleTransformException e) {
+			repaint();
+		}
+	}
+	
+	/**
+	 * @return The device area the renderer and its children cover now and
+	 *         covered when last drawn, or null if it isn't known.
+	 */
+	private Rectangle getDamage(IRenderer renderer, AffineTransform base) {
+		if(renderer == null) {
+			return null;
+		}
+		Rectangle painted = renderer.getLastPaintedBounds();
+		Rectangle bounds = renderer.getPaintBounds();
+		if(painted == null || bounds == null) {
+			return null;
+		}
+		AffineTransform transform = renderer.isTransformedProjection() ? zoomAndPanListener.getCoordTransform() : base;
+		Rectangle damage = painted.union(transform.createTransformedShape(bounds).getBounds());
+		if(renderer.hasChildren()) {
+			for(Object child : renderer.getChildren()) {
+				Rectangle r = getDamage((IRenderer) child, base);
+				if(r == null) {
+					return null;
+				}
+				damage = damage.union(r);
+			}
+		}
+		return damage;
+	}
+	
 	public void addLayer(ICanvasLayer layer) {
 		if(!layers.contains(layer)) {
 			layers.add(layer);
@@ -9,6 +9,7 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.Stroke;
 import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
@@ -29,6 +30,7 @@ import canvas.gesture.Gesture;
 import canvas.gesture.ShakeGesture;
 import canvas.handler.MouseHandlerManager;
 import canvas.handler.RenderableHandler;
+import canvas.zoom.ZoomAndPanListener;
 import deck.Card;
 import deck.CardList;
 import deck.IRenderableList;
@@ -50,7 +52,7 @@ import ui.pwidget.JandorTabFrame;
 import ui.pwidget.PPanel;
 import util.ImageUtil;
 import util.LoginUtil;
-import util.SerializationUtil;
+import util.MessageUtil;
 import util.ShapeUtil;
 import util.ShuffleType;
 import util.ShuffleUtil;
@@ -116,10 +118,6 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 		return activeCardLayer;
 	}
 
-	public static void clearActiveCardLayer() {
-		activeCardLayer = null;
-	}
-
 	private static List<CardLayer> allCardLayers = new ArrayList<CardLayer>();
 
 	public static void register(CardLayer layer) {
@@ -179,6 +177,11 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 	private transient DieList battlefieldDice = new DieList();
 	private transient DieList normalDice = new DieList();
 	private transient DieList draggedDice = new DieList();
+	private transient Object[] drawOrderKey = null;
+
+	private transient BufferedImage staticBuffer = null;
+	private transient Object[] staticBufferKey = null;
+	private transient int staticBufferZIndex = 0;
 
 	private transient List<Card> pendingCards;
 
@@ -189,6 +192,10 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 
 	private transient List<CardLayer> syncedLayers = new ArrayList<CardLayer>();
 
+	private transient SpatialIndex spatialIndex = null;
+	private transient RenderableList<?>[] indexedLists = null;
+	private transient int[] indexedModCounts = null;
+
 	private transient MultiplayerMessage opponentMessage = null;
 
 	private transient boolean initialized;
@@ -452,37 +459,34 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 		}
 		final boolean needsLoadingCard = needsLoading;
 
-		Animator cardLoader = new Animator<Card>(canvas, newCards) {
+		if(needsLoadingCard) {
+			showLoadingCard();
+		}
 
-			@Override
-			public boolean update(Card card, int step) {
-				card.getSetCardInfo();
-				String name = card.getName() + ":" + card.getSet();
-				if(!loadedCardNames.contains(name)) {
-					card.getImage(true, 0.7);
-					loadedCardNames.add(name);
-				}
-				card.setLocation(new Location(0, 0));
-				card.setZoneType(ZoneType.BATTLEFIELD);
-				card.rememberLastZoneType();
-				if(card.isCommander()) {
-					card.setZoneType(ZoneType.COMMANDER);
-				} else {
-					card.setZoneType(ZoneType.DECK);
-				}
-				flagChange();
-				return true;
-			}
+		// Loading reads images, so it gets its own thread rather than holding
+		// up the animation clock, which keeps the loading card spinning
+		Thread cardLoader = new Thread(new Runnable() {
 
 			@Override
-			public void startUpdate() {
-				if(needsLoadingCard) {
-					showLoadingCard();
+			public void run() {
+				for(Card card : newCards) {
+					card.getSetCardInfo();
+					String name = card.getName() + ":" + card.getSet();
+					if(!loadedCardNames.contains(name)) {
+						card.getImage(true, 0.7);
+						loadedCardNames.add(name);
+					}
+					card.setLocation(new Location(0, 0));
+					card.setZoneType(ZoneType.BATTLEFIELD);
+					card.rememberLastZoneType();
+					if(card.isCommander()) {
+						card.setZoneType(ZoneType.COMMANDER);
+					} else {
+						card.setZoneType(ZoneType.DECK);
+					}
+					flagChange();
 				}
-			}
 
-			@Override
-			public void stopUpdate() {
 				setPendingCards(newCards);
 				if(needsLoadingCard) {
 					hideLoadingCard();
@@ -491,8 +495,8 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 				canvas.repaint();
 			}
 
-		};
-		cardLoader.setMaxSteps(1);
+		}, "Card Loader");
+		cardLoader.setDaemon(true);
 		cardLoader.start();
 
 	}
@@ -595,7 +599,23 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 
 		determineCardsAndDiceDrawOrder(g, width, height);
 
+		boolean drawOppFirst = isDrawOpponentFirst();
+
 		clearZIndex();
+		if(!paintStaticFromBuffer(g, width, height, drawOppFirst)) {
+			paintStatic(g, width, height, drawOppFirst);
+		}
+		paintDynamic(g, width, height, drawOppFirst);
+
+		/*else if(opponentLayer != null) {
+			opponentLayer.paintComponent(g, width, height);
+		}*/
+	}
+
+	/**
+	 * Everything that stays put while cards are being dragged.
+	 */
+	private void paintStatic(Graphics2D g, int width, int height, boolean drawOppFirst) {
 		getCanvas().getZoom().revert(g);
 		if(!opponentView) {
 			paintBackground(g, screenW, screenH);
@@ -607,8 +627,6 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 		int fixedWidth = 1915;
 		int fixedHeight = 900;
 
-		boolean drawOppFirst = isDrawOpponentFirst();
-
 		if(drawOppFirst) {
 			paintOpponentCardsAndDice(g, width, height);
 		}
@@ -619,6 +637,11 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 		getCanvas().getZoom().transform(g);
 		paintOpponentBounds(g, width, height);
 		paintNormalCardsAndDice(g, fixedWidth, fixedWidth);
+	}
+
+	private void paintDynamic(Graphics2D g, int width, int height, boolean drawOppFirst) {
+		int fixedWidth = 1915;
+
 		paintDraggedCardsAndDice(g, fixedWidth, fixedWidth);
 
 		if(!drawOppFirst) {
@@ -633,10 +656,106 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 		if(opponentView) {// && height > screenH) {
 			paintOpponentViewBanner(g, width, height);
 		}
+	}
+
+	/**
+	 * While cards are dragged nothing under them changes, so the static part
+	 * of the board is painted once into a buffer the size of the device and
+	 * copied on every other frame. The buffer is painted with the same device
+	 * transforms as the canvas, so it lines up pixel for pixel.
+	 *
+	 * @return False if the static part still needs to be painted.
+	 */
+	private boolean paintStaticFromBuffer(Graphics2D g, int width, int height, boolean drawOppFirst) {
+		if(opponentView || !handler.isDragging() || !handler.isDraggingObject()) {
+			staticBuffer = null;
+			staticBufferKey = null;
+			return false;
+		}
 
-		/*else if(opponentLayer != null) {
-			opponentLayer.paintComponent(g, width, height);
-		}*/
+		ZoomAndPanListener zoom = getCanvas().getZoom();
+		AffineTransform base = zoom.getBaseTransform();
+		if(base == null) {
+			return false;
+		}
+		Rectangle device = base.createTransformedShape(new Rectangle(0, 0, width, height)).getBounds();
+		if(device.x < 0 || device.y < 0 || device.isEmpty()) {
+			return false;
+		}
+
+		int bufferW = device.x + device.width;
+		int bufferH = device.y + device.height;
+		Object[] key = getStaticBufferKey(base, width, height, drawOppFirst);
+		if(staticBuffer == null || staticBuffer.getWidth() != bufferW || staticBuffer.getHeight() != bufferH || !isSameKey(key, staticBufferKey)) {
+			if(staticBuffer == null || staticBuffer.getWidth() != bufferW || staticBuffer.getHeight() != bufferH) {
+				staticBuffer = g.getDeviceConfiguration().createCompatibleImage(bufferW, bufferH);
+			}
+
+			Graphics2D bg = staticBuffer.createGraphics();
+			bg.setRenderingHints(g.getRenderingHints());
+			bg.setFont(g.getFont());
+			bg.setColor(getCanvas().getBackground());
+			bg.fill(device);
+			bg.setTransform(base);
+			zoom.transform(bg);
+			paintStatic(bg, width, height, drawOppFirst);
+			zoom.revert(bg);
+			bg.dispose();
+
+			staticBufferZIndex = zIndex;
+			// Painting may have settled bounds, so take the key again
+			staticBufferKey = getStaticBufferKey(base, width, height, drawOppFirst);
+		}
+
+		AffineTransform transform = g.getTransform();
+		g.setTransform(new AffineTransform());
+		g.drawImage(staticBuffer, 0, 0, null);
+		g.setTransform(transform);
+		zIndex = staticBufferZIndex;
+		return true;
+	}
+
+	private Object[] getStaticBufferKey(AffineTransform base, int width, int height, boolean drawOppFirst) {
+		SpatialIndex index = getSpatialIndex();
+		List<Object> key = new ArrayList<Object>();
+		key.add(new AffineTransform(base));
+		key.add(new AffineTransform(getCanvas().getZoom().getCoordTransform()));
+		key.add(width);
+		key.add(height);
+		key.add(drawOrderKey);
+		key.add(index);
+		key.add(index.getStaticChangeCount());
+		key.add(drawOppFirst ? opponentMessage : null);
+		key.add(getPlayerButtonPanel().isOpponentBoxViewable());
+		key.add(isShowCardCounts());
+		key.add(isLightView());
+		key.add(isLoading());
+		for(Zone zone : cardZoneManager.getZones()) {
+			key.add(zone.size());
+		}
+		for(Zone zone : dieZoneManager.getZones()) {
+			key.add(zone.size());
+		}
+		return key.toArray();
+	}
+
+	/**
+	 * Values are compared with equals, everything else by identity.
+	 */
+	private static boolean isSameKey(Object[] a, Object[] b) {
+		if(a == null || b == null || a.length != b.length) {
+			return false;
+		}
+		for(int i = 0; i < a.length; i++) {
+			if(a[i] == b[i]) {
+				continue;
+			}
+			boolean value = a[i] instanceof Number || a[i] instanceof Boolean || a[i] instanceof AffineTransform;
+			if(!value || !a[i].equals(b[i])) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	private void paintOpponentViewBanner(Graphics g, int width, int height) {
@@ -693,7 +812,29 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 
 	}
 
+	/**
+	 * The draw order only changes when the lists do, something changes zones
+	 * or dragging starts or stops, so it is kept between frames otherwise.
+	 */
+	private Object[] getDrawOrderKey() {
+		return new Object[] {
+			allCards, allCards.getModCount(),
+			tokens, tokens.getModCount(),
+			d10s, d10s.getModCount(),
+			counters, counters.getModCount(),
+			AbstractRenderer.getZoneChangeCount(),
+			handler.isDraggingObject() ? handler.getDragObject() : null,
+			handler.isDraggingObjectSelection() ? handler.getSelected().size() : -1
+		};
+	}
+
 	private void determineCardsAndDiceDrawOrder(Graphics2D g, int width, int height) {
+		Object[] key = getDrawOrderKey();
+		if(isSameKey(key, drawOrderKey)) {
+			return;
+		}
+		drawOrderKey = key;
+
 		battlefieldCards.clear();
 		normalCards.clear();
 		draggedCards.clear();
@@ -756,6 +897,9 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 			}
 		}
 
+		List<IRenderable> moving = new ArrayList<IRenderable>(draggedCards);
+		moving.addAll(draggedDice);
+		getSpatialIndex().setMoving(moving);
 	}
 
 	private boolean isDrawOpponentFirst() {
@@ -1195,6 +1339,7 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 		/*if(!isDragging && objects.size() > 0) {
 			flagChange();
 		}*/
+		markDirty();
 
 		canvas.repaint();
 	}
@@ -1339,9 +1484,17 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 		changed = true;
 		//view.recordChange();
 		//refreshTitle();
+		markDirty();
+	}
+
+	/**
+	 * Tells the multiplayer stream that what the opponent sees has changed.
+	 */
+	public void markDirty() {
 		if(!isOpponentView()) {
 			//System.out.println("Active layer change detected. " + System.currentTimeMillis());
 			CardLayer.activeCardLayer = this;
+			MessageUtil.markDirty(this);
 		}
 	}
 
@@ -1413,7 +1566,21 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 			return;
 		}
 
-		Animator ca = new SpinAnimator(canvas, cards, targetAngle, clockwise, deltaAngle, 0);
+		Animator ca = new SpinAnimator<Card>(canvas, cards, targetAngle, clockwise, deltaAngle, 0) {
+
+			@Override
+			public boolean update(Card card, int step) {
+				boolean done = super.update(card, step);
+				markDirty();
+				return done;
+			}
+
+			@Override
+			public void stopUpdate() {
+				markDirty();
+			}
+
+		};
 		ca.start();
 	}
 
@@ -2017,6 +2184,47 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 		return allObjects;
 	}
 
+	private RenderableList<?>[] getViewOrderedLists() {
+		return new RenderableList<?>[] { counters, d10s, tokens, allCards, getExtraRenderables() };
+	}
+
+	/**
+	 * Everything the mouse can hit, top first.
+	 */
+	public List<IRenderable> getViewOrderedObjects() {
+		List<IRenderable> objects = new ArrayList<IRenderable>();
+		for(RenderableList<?> list : getViewOrderedLists()) {
+			objects.addAll(list);
+		}
+		return objects;
+	}
+
+	/**
+	 * An index over {@link #getViewOrderedObjects()}, rebuilt when one of its
+	 * lists gains, loses, replaces or reorders objects, shuffles included, so
+	 * the ranks follow the draw order. Objects moving about keep it up to date
+	 * themselves.
+	 */
+	public synchronized SpatialIndex getSpatialIndex() {
+		RenderableList<?>[] lists = getViewOrderedLists();
+		int[] modCounts = new int[lists.length];
+		boolean changed = spatialIndex == null || indexedLists == null;
+		for(int i = 0; i < lists.length; i++) {
+			modCounts[i] = lists[i].getModCount();
+			changed = changed || lists[i] != indexedLists[i] || modCounts[i] != indexedModCounts[i];
+		}
+
+		if(changed) {
+			if(spatialIndex == null) {
+				spatialIndex = new SpatialIndex();
+			}
+			spatialIndex.rebuild(getViewOrderedObjects());
+			indexedLists = lists;
+			indexedModCounts = modCounts;
+		}
+		return spatialIndex;
+	}
+
 	@Override
 	public List getListeners() {
 		List listeners = new ArrayList();
@@ -2097,12 +2305,12 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 		zIndex = 0;
 	}
 
-	public byte[] getSerializedRenderablesBytes() {
+	public MultiplayerMessage getMultiplayerMessage() {
 		RenderableList<IRenderable> renderableList = allObjects.getShallowCopySortedByZIndex();
 
 		renderableList.screenW = screenW;
 		renderableList.screenH = screenH;
-		return SerializationUtil.toBytes(new MultiplayerMessage()
+		return new MultiplayerMessage()
 											.setAllObjects(renderableList)
 											.setViewable(ZoneType.HAND, getPlayerButtonPanel().isHandViewable())
 											.setViewable(ZoneType.DECK, getPlayerButtonPanel().isDeckViewable())
@@ -2113,7 +2321,7 @@ public class CardLayer implements ICanvasLayer, CloseListener, Serializable {
 											.setViewable(ZoneType.REVEAL, true)
 											.setLifeTotal(getPlayerButtonPanel().getLifeTotal())
 											.setCommanderDamageByGUID(getPlayerButtonPanel().getCommanderDamageByGUID())
-											.setBounds(getCanvas().getZoom().inverseTransform(new Rectangle(0, 0, screenW, screenH)).getBounds()));
+											.setBounds(getCanvas().getZoom().inverseTransform(new Rectangle(0, 0, screenW, screenH)).getBounds());
 	}
 
 	private static final RenderableList<IRenderable> empty = new RenderableList<IRenderable>();
@@ -9,6 +9,7 @@ import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
 
 import util.ImageUtil;
+import util.MipMaps;
 import util.ShapeUtil;
 import zone.ZoneType;
 import deck.Card;
@@ -63,6 +64,20 @@ public class CardRenderer extends AbstractRenderer<Card> {
 		return s;
 	}
 	
+	@Override
+	public Rectangle getPaintBounds() {
+		Rectangle r = super.getPaintBounds();
+		if(r != null && isHovered() && getZoneType() == ZoneType.HAND) {
+			// Hovered cards in hand are drawn raised
+			int rise = getHeight() - 75;
+			if(rise > 0) {
+				r.y -= rise;
+				r.height += rise;
+			}
+		}
+		return r;
+	}
+	
 	@Override
 	public void render(CardLayer layer, Graphics2D g, Card card, Location location) {
 		lastCardLayer = layer;
@@ -76,7 +91,7 @@ public class CardRenderer extends AbstractRenderer<Card> {
 		if(isHovered() && card.getZoneType() == ZoneType.HAND) {
 			yOffset = 75 - card.getHeight();;
 		}
-		g.drawImage(img, (int) bounds.getX(), (int) bounds.getY() + yOffset, null);
+		MipMaps.draw(g, img, (int) bounds.getX(), (int) bounds.getY() + yOffset);
 		
 		if((isHovered() && card.getZoneType() != ZoneType.HAND) || RENDER_BOUNDS) {
 			g.setColor(new Color(255,255,255,20));
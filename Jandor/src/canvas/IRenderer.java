@@ -1,6 +1,7 @@
 package canvas;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
@@ -158,4 +159,16 @@ public interface IRenderer<T> extends Serializable {
 	public void setVisible(boolean visible);
 	
 	public boolean isTransformedProjection();
+	
+	/**
+	 * @return The bounds plus whatever is drawn just outside them, in the same
+	 *         space as {@link #getBounds()}.
+	 */
+	public Rectangle getPaintBounds();
+	
+	/**
+	 * @return Where this was last drawn, in device space, or null if it
+	 *         hasn't been drawn.
+	 */
+	public Rectangle getLastPaintedBounds();
 }
@@ -0,0 +1,299 @@
+package canvas;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid over the bounds of renderables, so finding what is under
+ * the mouse only looks at what is near it. Objects are given a rank when the
+ * index is rebuilt, 0 on top, and every query answers in rank order.
+ * Renderers tell the index when their bounds change, see
+ * {@link AbstractRenderer#flagRecomputeBounds()}, and are re-read on the next
+ * query.
+ * <p>
+ * The index also counts changes to anything that isn't moving, so a painter
+ * can tell when what it drew of the still objects is out of date.
+ */
+public class SpatialIndex {
+
+	public static final int CELL_SIZE = 128;
+	private static final int MAX_CELLS_PER_SIDE = 64;
+
+	private static class Entry {
+
+		private final IRenderable object;
+		private final int rank;
+		private Rectangle rect = null;
+		private List<Long> cells = new ArrayList<Long>();
+		private boolean oversized = false;
+
+		public Entry(IRenderable object, int rank) {
+			this.object = object;
+			this.rank = rank;
+		}
+
+	}
+
+	private static final Comparator<Entry> byRank = new Comparator<Entry>() {
+
+		@Override
+		public int compare(Entry a, Entry b) {
+			return Integer.compare(a.rank, b.rank);
+		}
+
+	};
+
+	private final Map<IRenderer, Entry> entries = new IdentityHashMap<IRenderer, Entry>();
+	private final Map<Long, List<Entry>> cells = new HashMap<Long, List<Entry>>();
+	private final List<Entry> oversized = new ArrayList<Entry>();
+	private final Map<IRenderer, Boolean> dirty = new IdentityHashMap<IRenderer, Boolean>();
+	private final Map<IRenderer, Boolean> moving = new IdentityHashMap<IRenderer, Boolean>();
+	private int staticChangeCount = 0;
+
+	/**
+	 * Replaces everything in the index.
+	 *
+	 * @param viewOrdered The objects, top first.
+	 */
+	public synchronized void rebuild(List<? extends IRenderable> viewOrdered) {
+		for(IRenderer renderer : entries.keySet()) {
+			if(renderer instanceof AbstractRenderer && ((AbstractRenderer<?>) renderer).getSpatialIndex() == this) {
+				((AbstractRenderer<?>) renderer).setSpatialIndex(null);
+			}
+		}
+		entries.clear();
+		cells.clear();
+		oversized.clear();
+		dirty.clear();
+		staticChangeCount++;
+
+		int rank = 0;
+		for(IRenderable object : viewOrdered) {
+			IRenderer renderer = object.getRenderer();
+			if(renderer == null || entries.containsKey(renderer)) {
+				continue;
+			}
+			Entry entry = new Entry(object, rank++);
+			entries.put(renderer, entry);
+			if(renderer instanceof AbstractRenderer) {
+				((AbstractRenderer<?>) renderer).setSpatialIndex(this);
+			}
+			insert(entry, renderer);
+		}
+	}
+
+	public synchronized void markDirty(IRenderer renderer) {
+		dirty.put(renderer, Boolean.TRUE);
+	}
+
+	/**
+	 * Marks a change in how the renderer looks that doesn't touch its bounds.
+	 */
+	public synchronized void markChanged(IRenderer renderer) {
+		if(entries.containsKey(renderer) && !moving.containsKey(renderer)) {
+			staticChangeCount++;
+		}
+	}
+
+	/**
+	 * Sets what is expected to change on every frame, like what is being
+	 * dragged, so it doesn't count towards {@link #getStaticChangeCount()}.
+	 */
+	public synchronized void setMoving(Collection<? extends IRenderable> objects) {
+		moving.clear();
+		for(IRenderable object : objects) {
+			if(object.getRenderer() != null) {
+				moving.put(object.getRenderer(), Boolean.TRUE);
+			}
+		}
+	}
+
+	/**
+	 * @return A count that goes up whenever anything indexed that isn't moving
+	 *         moves or changes how it looks. Bounds waiting to be recomputed
+	 *         are recomputed first.
+	 */
+	public synchronized int getStaticChangeCount() {
+		for(IRenderer renderer : new ArrayList<IRenderer>(dirty.keySet())) {
+			renderer.recomputeBounds();
+		}
+		flush();
+		return staticChangeCount;
+	}
+
+	/**
+	 * @return The rank the object was given, or -1 if it isn't indexed.
+	 */
+	public synchronized int getRank(IRenderable object) {
+		Entry entry = entries.get(object.getRenderer());
+		return entry == null ? -1 : entry.rank;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Everything whose bounding box contains any of the points, top
+	 *         first. Callers still test the exact shape.
+	 */
+	public synchronized List<IRenderable> query(Point... points) {
+		flush();
+		Map<Entry, Boolean> found = new IdentityHashMap<Entry, Boolean>();
+		for(Point p : points) {
+			if(p == null) {
+				continue;
+			}
+			List<Entry> cell = cells.get(toCell(Math.floorDiv(p.x, CELL_SIZE), Math.floorDiv(p.y, CELL_SIZE)));
+			if(cell != null) {
+				for(Entry entry : cell) {
+					if(entry.rect.contains(p)) {
+						found.put(entry, Boolean.TRUE);
+					}
+				}
+			}
+			for(Entry entry : oversized) {
+				if(entry.rect.contains(p)) {
+					found.put(entry, Boolean.TRUE);
+				}
+			}
+		}
+		return toRankedList(found);
+	}
+
+	/**
+	 * @return Everything whose bounding box intersects any of the rectangles,
+	 *         top first. Callers still test the exact shape.
+	 */
+	public synchronized List<IRenderable> query(Rectangle... rects) {
+		flush();
+		Map<Entry, Boolean> found = new IdentityHashMap<Entry, Boolean>();
+		for(Rectangle rect : rects) {
+			if(rect == null) {
+				continue;
+			}
+			int x0 = Math.floorDiv(rect.x, CELL_SIZE);
+			int y0 = Math.floorDiv(rect.y, CELL_SIZE);
+			int x1 = Math.floorDiv(rect.x + rect.width, CELL_SIZE);
+			int y1 = Math.floorDiv(rect.y + rect.height, CELL_SIZE);
+			if((long) (x1 - x0 + 1) * (y1 - y0 + 1) > cells.size()) {
+				// Cheaper to look at every entry
+				for(Entry entry : entries.values()) {
+					if(entry.rect != null && entry.rect.intersects(rect)) {
+						found.put(entry, Boolean.TRUE);
+					}
+				}
+				continue;
+			}
+			for(int cx = x0; cx <= x1; cx++) {
+				for(int cy = y0; cy <= y1; cy++) {
+					List<Entry> cell = cells.get(toCell(cx, cy));
+					if(cell == null) {
+						continue;
+					}
+					for(Entry entry : cell) {
+						if(entry.rect.intersects(rect)) {
+							found.put(entry, Boolean.TRUE);
+						}
+					}
+				}
+			}
+			for(Entry entry : oversized) {
+				if(entry.rect.intersects(rect)) {
+					found.put(entry, Boolean.TRUE);
+				}
+			}
+		}
+		return toRankedList(found);
+	}
+
+	private static List<IRenderable> toRankedList(Map<Entry, Boolean> found) {
+		List<Entry> sorted = new ArrayList<Entry>(found.keySet());
+		Collections.sort(sorted, byRank);
+		List<IRenderable> objects = new ArrayList<IRenderable>(sorted.size());
+		for(Entry entry : sorted) {
+			objects.add(entry.object);
+		}
+		return objects;
+	}
+
+	private void flush() {
+		if(dirty.isEmpty()) {
+			return;
+		}
+		for(IRenderer renderer : dirty.keySet()) {
+			Entry entry = entries.get(renderer);
+			if(entry != null) {
+				Rectangle before = entry.rect;
+				remove(entry);
+				insert(entry, renderer);
+				boolean changed = before == null ? entry.rect != null : !before.equals(entry.rect);
+				if(changed && !moving.containsKey(renderer)) {
+					staticChangeCount++;
+				}
+			}
+		}
+		dirty.clear();
+	}
+
+	private void insert(Entry entry, IRenderer renderer) {
+		entry.rect = renderer.getBounds() == null ? null : renderer.getBounds().getBounds();
+		if(entry.rect == null) {
+			return;
+		}
+
+		int x0 = Math.floorDiv(entry.rect.x, CELL_SIZE);
+		int y0 = Math.floorDiv(entry.rect.y, CELL_SIZE);
+		int x1 = Math.floorDiv(entry.rect.x + entry.rect.width, CELL_SIZE);
+		int y1 = Math.floorDiv(entry.rect.y + entry.rect.height, CELL_SIZE);
+		if(x1 - x0 >= MAX_CELLS_PER_SIDE || y1 - y0 >= MAX_CELLS_PER_SIDE) {
+			entry.oversized = true;
+			oversized.add(entry);
+			return;
+		}
+
+		for(int cx = x0; cx <= x1; cx++) {
+			for(int cy = y0; cy <= y1; cy++) {
+				long key = toCell(cx, cy);
+				List<Entry> cell = cells.get(key);
+				if(cell == null) {
+					cell = new ArrayList<Entry>(4);
+					cells.put(key, cell);
+				}
+				cell.add(entry);
+				entry.cells.add(key);
+			}
+		}
+	}
+
+	private void remove(Entry entry) {
+		if(entry.oversized) {
+			oversized.remove(entry);
+			entry.oversized = false;
+		}
+		for(long key : entry.cells) {
+			List<Entry> cell = cells.get(key);
+			if(cell != null) {
+				cell.remove(entry);
+				if(cell.isEmpty()) {
+					cells.remove(key);
+				}
+			}
+		}
+		entry.cells.clear();
+		entry.rect = null;
+	}
+
+	private static long toCell(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+
+}
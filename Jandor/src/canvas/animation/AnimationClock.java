@@ -0,0 +1,133 @@
+package canvas.animation;
+
+import java.awt.Component;
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import canvas.Canvas;
+import canvas.IRenderable;
+
+/**
+ * One thread that steps every running {@link Animator} once per display
+ * frame. Each animator takes as many steps as its delay fits into the time
+ * since its last step, so animations keep their speed whatever the refresh
+ * rate, and each canvas is repainted once per frame for all of them. The
+ * thread stops as soon as nothing is animating.
+ */
+public class AnimationClock {
+
+	private static final int DEFAULT_REFRESH_RATE = 60;
+
+	private static final List<Animator<?>> animators = new ArrayList<Animator<?>>();
+	private static Thread thread = null;
+
+	private AnimationClock() {}
+
+	static void add(Animator<?> animator) {
+		synchronized(animators) {
+			if(!animators.contains(animator)) {
+				animators.add(animator);
+			}
+			if(thread == null) {
+				thread = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+						runFrames();
+					}
+
+				}, "Animation Clock");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+	}
+
+	static void remove(Animator<?> animator) {
+		synchronized(animators) {
+			animators.remove(animator);
+		}
+	}
+
+	public static int getRunningCount() {
+		synchronized(animators) {
+			return animators.size();
+		}
+	}
+
+	private static void runFrames() {
+		long frameNanos = 1000000000L / getRefreshRate();
+		while(true) {
+			long frameStart = System.nanoTime();
+			List<Animator<?>> running;
+			synchronized(animators) {
+				if(animators.isEmpty()) {
+					thread = null;
+					return;
+				}
+				running = new ArrayList<Animator<?>>(animators);
+			}
+
+			Map<Component, List<IRenderable>> damage = new IdentityHashMap<Component, List<IRenderable>>();
+			for(Animator<?> animator : running) {
+				List<IRenderable> updated = new ArrayList<IRenderable>();
+				try {
+					animator.tick(frameStart, updated);
+				} catch (Throwable t) {
+					t.printStackTrace();
+					remove(animator);
+				}
+				if(animator.canvas != null && !updated.isEmpty()) {
+					List<IRenderable> objects = damage.get(animator.canvas);
+					if(objects == null) {
+						damage.put(animator.canvas, updated);
+					} else {
+						objects.addAll(updated);
+					}
+				}
+			}
+			repaint(damage);
+
+			long sleepNanos = frameStart + frameNanos - System.nanoTime();
+			if(sleepNanos > 0) {
+				try {
+					Thread.sleep(sleepNanos / 1000000L, (int) (sleepNanos % 1000000L));
+				} catch (InterruptedException e) {
+					// Carry on with the next frame
+				}
+			}
+		}
+	}
+
+	private static void repaint(Map<Component, List<IRenderable>> damage) {
+		for(Map.Entry<Component, List<IRenderable>> entry : damage.entrySet()) {
+			if(entry.getKey() instanceof Canvas) {
+				((Canvas) entry.getKey()).repaint(entry.getValue());
+			} else {
+				entry.getKey().repaint();
+			}
+		}
+	}
+
+	/**
+	 * @return The refresh rate of the main display, or 60 if it can't be told.
+	 */
+	private static int getRefreshRate() {
+		try {
+			if(!GraphicsEnvironment.isHeadless()) {
+				int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+				if(rate != DisplayMode.REFRESH_RATE_UNKNOWN && rate > 0) {
+					return rate;
+				}
+			}
+		} catch (Exception e) {
+			// Fall back to the default
+		}
+		return DEFAULT_REFRESH_RATE;
+	}
+
+}
@@ -5,17 +5,20 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import canvas.Canvas;
 import canvas.IRenderable;
 
-public abstract class Animator<T extends IRenderable> extends TimerTask {
+/**
+ * Steps through an animation of some objects, one step every delay ms. The
+ * steps are driven by the shared {@link AnimationClock}, which repaints the
+ * canvas once per frame.
+ */
+public abstract class Animator<T extends IRenderable> {
 	
 	private static final int DEFAULT_TIME = 5;
+	private static final int MAX_STEPS_PER_FRAME = 50;
 	
-	protected Timer timer;
 	protected Component canvas;
 	protected List<T> objects;
 	protected List<T> animateObjects;
@@ -23,6 +26,8 @@ public abstract class Animator<T extends IRenderable> extends TimerTask {
 	protected int maxSteps = -1;
 	protected boolean multiUse = false;
 	int delay = DEFAULT_TIME;
+	private boolean running = false;
+	private long lastStepNanos;
 	
 	public Animator(Canvas canvas, T obj) {
 		this(canvas, obj, -1);
@@ -40,14 +45,13 @@ public abstract class Animator<T extends IRenderable> extends TimerTask {
 		this.canvas = canvas;
 		this.objects = objects;
 		this.maxSteps = maxSteps;
-		timer = new Timer(true);
 	}
 	
 	public void setDelay(int timeMS) {
 		this.delay = timeMS;
 	}
 	
-	public void start() {
+	public synchronized void start() {
 		step = 0;
 		animateObjects = new ArrayList<T>(objects);
 		startUpdate();
@@ -57,11 +61,15 @@ public abstract class Animator<T extends IRenderable> extends TimerTask {
 		if(canvas != null) {
 			canvas.repaint();
 		}
-		timer.schedule(this, 0, delay);
+		running = true;
+		// The first step is due straight away
+		lastStepNanos = System.nanoTime() - getDelayNanos();
+		AnimationClock.add(this);
 	}
 	
-	public void stop() {
-		cancel();
+	public synchronized void stop() {
+		running = false;
+		AnimationClock.remove(this);
 		animateObjects.clear();
 		for(T obj : objects) {
 			stopUpdate(obj, step - 1);
@@ -71,9 +79,14 @@ public abstract class Animator<T extends IRenderable> extends TimerTask {
 			canvas.repaint();
 		}
 		step = 0;
-		if(!multiUse) {
-			timer.cancel();
-		}
+	}
+	
+	public boolean isRunning() {
+		return running;
+	}
+	
+	private long getDelayNanos() {
+		return Math.max(1, delay) * 1000000L;
 	}
 	
 	public int getMaxSteps() {
@@ -126,8 +139,33 @@ public abstract class Animator<T extends IRenderable> extends TimerTask {
 	
 	public void stopUpdate() {}
 	
-	@Override
-	public void run() {
+	/**
+	 * Takes every step that has come due since the last frame.
+	 *
+	 * @param now The time of the frame, from {@link System#nanoTime()}.
+	 * @param updated Gets the objects that were stepped.
+	 */
+	synchronized void tick(long now, List<IRenderable> updated) {
+		long delayNanos = getDelayNanos();
+		long due = (now - lastStepNanos) / delayNanos;
+		if(due > MAX_STEPS_PER_FRAME) {
+			// Don't try to catch up on a long stall
+			due = MAX_STEPS_PER_FRAME;
+			lastStepNanos = now - due * delayNanos;
+		}
+		if(due > 0 && running) {
+			updated.addAll(animateObjects);
+		}
+		for(int i = 0; i < due && running; i++) {
+			run();
+			lastStepNanos += delayNanos;
+		}
+	}
+	
+	/**
+	 * Takes one step.
+	 */
+	public synchronized void run() {
 		Iterator<T> it = animateObjects.iterator();
 		while(it.hasNext()) {
 			T obj = it.next();
@@ -140,9 +178,5 @@ public abstract class Animator<T extends IRenderable> extends TimerTask {
 		if(animateObjects.size() == 0 || (hasMaxSteps() && step == maxSteps)) {
 			stop();
 		}
-		
-		if(canvas != null) {
-			canvas.repaint();
-		}
 	}
 }
\ No newline at end of file
@@ -87,6 +87,21 @@ public abstract class MouseHandler<L extends ICanvasLayer, T extends IRenderable
 		return getObjects();
 	}
 
+	/**
+	 * The objects that might be at either location, top first. Handlers with
+	 * a spatial index only return what is near them.
+	 */
+	protected List<T> findCandidates(Location location, Location inverseLocation) {
+		return getViewOrderedObjects();
+	}
+
+	/**
+	 * The objects that might be in either box, in any order.
+	 */
+	protected List<T> findCandidates(Rectangle selectBox, Rectangle tSelectBox) {
+		return getObjects();
+	}
+
 	public abstract void mouseClickedLeft(MouseEvent e, T obj);
 	
 	public abstract void mouseClickedRight(MouseEvent e, T obj);
@@ -344,11 +359,7 @@ public abstract class MouseHandler<L extends ICanvasLayer, T extends IRenderable
 		Location location = new Location(e);
 		Location inverseLocation = inverse(location);
 		
-		Class klass = null;
-		for(T obj : getViewOrderedObjects()) {
-			if(klass == null) {
-				klass = obj.getClass();
-			}
+		for(T obj : findCandidates(location, inverseLocation)) {
 			if(obj.getRenderer().getZoneType().isTransformedProjection() && obj.getRenderer().overlaps(inverseLocation)) {
 				return obj;
 			} else if(!obj.getRenderer().getZoneType().isTransformedProjection() && obj.getRenderer().overlaps(location)) {
@@ -462,7 +473,7 @@ public abstract class MouseHandler<L extends ICanvasLayer, T extends IRenderable
 		
 		Rectangle selectBox = new Rectangle(x0, y0, x1 - x0, y1 - y0);
 		Rectangle tSelectBox = getCanvas().getZoom().inverseTransform(selectBox).getBounds();
-		for(T obj : getObjects()) {
+		for(T obj : findCandidates(selectBox, tSelectBox)) {
 			IRenderer r = obj.getRenderer();
 			
 			if(r instanceof Card && r.getZoneType() == ZoneType.HAND && selectBox.intersects(r.getBounds().getBounds())) {
@@ -560,6 +571,10 @@ public abstract class MouseHandler<L extends ICanvasLayer, T extends IRenderable
 		}
 	}
 	
+	public T getDragObject() {
+		return dragObject;
+	}
+	
 	public boolean isDraggingObject() {
 		return dragMode == DRAG_MODE_CARD && dragObject != null;
 	}
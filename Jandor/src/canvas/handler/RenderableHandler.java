@@ -2,6 +2,7 @@ package canvas.handler;
 
 import java.awt.MouseInfo;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
@@ -37,13 +38,17 @@ public class RenderableHandler extends MouseHandler<CardLayer, IRenderable> {
 	
 	@Override
 	public List<IRenderable> getViewOrderedObjects() {
-		List<IRenderable> objects = new ArrayList<IRenderable>();
-		objects.addAll(layer.getCounters());
-		objects.addAll(layer.getD10s());
-		objects.addAll(layer.getTokens());
-		objects.addAll(layer.getAllCards());
-		objects.addAll(layer.getExtraRenderables());
-		return objects;
+		return layer.getViewOrderedObjects();
+	}
+
+	@Override
+	protected List<IRenderable> findCandidates(Location location, Location inverseLocation) {
+		return layer.getSpatialIndex().query(location.toPoint(), inverseLocation.toPoint());
+	}
+
+	@Override
+	protected List<IRenderable> findCandidates(Rectangle selectBox, Rectangle tSelectBox) {
+		return layer.getSpatialIndex().query(selectBox, tSelectBox);
 	}
 	
 	@Override
@@ -261,16 +266,17 @@ public class RenderableHandler extends MouseHandler<CardLayer, IRenderable> {
 					die.getRenderer().removeFromParent();
 				}
 				
-				for(Die token : layer.getTokens()) {
-					if(token.getRenderer().getZoneType() == ZoneType.BATTLEFIELD && token.getRenderer().overlaps(die.getRenderer().getLocation())) {
-						token.getRenderer().addChild(die.getRenderer());
+				List<IRenderable> under = layer.getSpatialIndex().query(die.getRenderer().getLocation().toPoint());
+				for(IRenderable r : under) {
+					if(r instanceof Token && r.getRenderer().getZoneType() == ZoneType.BATTLEFIELD && r.getRenderer().overlaps(die.getRenderer().getLocation())) {
+						r.getRenderer().addChild(die.getRenderer());
 						break;
 					}
 				}
 				
-				for(Card card : layer.getAllCards()) {
-					if(card.getZoneType() == ZoneType.BATTLEFIELD && card.getRenderer().overlaps(die.getRenderer().getLocation())) {
-						card.addChild(die.getRenderer());
+				for(IRenderable r : under) {
+					if(r instanceof Card && r.getRenderer().getZoneType() == ZoneType.BATTLEFIELD && r.getRenderer().overlaps(die.getRenderer().getLocation())) {
+						((Card) r).addChild(die.getRenderer());
 						break;
 					}
 				}
@@ -284,24 +290,17 @@ public class RenderableHandler extends MouseHandler<CardLayer, IRenderable> {
 					}
 					
 					int index = getIndex(c);
-					for(Die die : layer.getD10s()) {
-						if((!die.getRenderer().hasParent() || getIndex((IRenderable) die.getRenderer().getParent().getObject()) > index) && c.getRenderer().overlaps(die.getRenderer().getLocation())) {
-							c.getRenderer().addChild(die.getRenderer());
-							break;
-						}
-					}
-					
-					for(Die die : layer.getCounters()) {
-						if((!die.getRenderer().hasParent() || getIndex((IRenderable) die.getRenderer().getParent().getObject()) > index) && c.getRenderer().overlaps(die.getRenderer().getLocation())) {
-							c.getRenderer().addChild(die.getRenderer());
-							break;
-						}
-					}
-					
-					for(Die die : layer.getTokens()) {
-						if((!die.getRenderer().hasParent() || getIndex((IRenderable) die.getRenderer().getParent().getObject()) > index) && c.getRenderer().overlaps(die.getRenderer().getLocation())) {
-							c.getRenderer().addChild(die.getRenderer());
-							break;
+					List<IRenderable> over = layer.getSpatialIndex().query(c.getRenderer().getBounds().getBounds());
+					for(Class<?> kind : new Class<?>[] { D10.class, Counter.class, Token.class }) {
+						for(IRenderable r : over) {
+							if(!kind.isInstance(r)) {
+								continue;
+							}
+							IRenderer die = r.getRenderer();
+							if((!die.hasParent() || getIndex((IRenderable) die.getParent().getObject()) > index) && c.getRenderer().overlaps(die.getLocation())) {
+								c.getRenderer().addChild(die);
+								break;
+							}
 						}
 					}
 				}
@@ -314,11 +313,9 @@ public class RenderableHandler extends MouseHandler<CardLayer, IRenderable> {
 	}
 	
 	private int getIndex(IRenderable obj) {
-		int diceSize = layer.getD10s().size() + layer.getCounters().size();
-		if(obj instanceof Card) {
-			return layer.getAllCards().indexOf(obj) + diceSize + layer.getTokens().size();
-		} else if(obj instanceof Token) {
-			return layer.getTokens().indexOf(obj) + diceSize;
+		// Counters, d10s, tokens then cards, the same as the view order
+		if(obj instanceof Card || obj instanceof Token) {
+			return layer.getSpatialIndex().getRank(obj);
 		}
 		return -1;
 	}
@@ -342,13 +339,25 @@ public class RenderableHandler extends MouseHandler<CardLayer, IRenderable> {
 	@Override
 	public void mouseEntered(MouseEvent e, IRenderable obj) {
 		obj.getRenderer().setHovered(true);
-		repaint();
+		repaintHovered(obj);
 	}
 
 	@Override
 	public void mouseExited(MouseEvent e, IRenderable obj) {
 		obj.getRenderer().setHovered(false);
-		repaint();
+		repaintHovered(obj);
+	}
+	
+	/**
+	 * Hovering only changes how the one object looks. Opponent objects aren't
+	 * in the layer's index and get the whole canvas repainted.
+	 */
+	private void repaintHovered(IRenderable obj) {
+		if(getLayer().getSpatialIndex().getRank(obj) < 0) {
+			repaint();
+			return;
+		}
+		getCanvas().repaint(Arrays.asList(obj));
 	}
 
 	@Override
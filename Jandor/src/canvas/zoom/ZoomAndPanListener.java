@@ -300,6 +300,14 @@ public class ZoomAndPanListener implements MouseListener, MouseMotionListener, M
 		}
 	}
 	
+	/**
+	 * @return The transform the canvas was painted with before zooming, or
+	 *         null if it hasn't been painted yet.
+	 */
+	public AffineTransform getBaseTransform() {
+		return lastTransform;
+	}
+	
 	public void handleInit() {
 		
 	}
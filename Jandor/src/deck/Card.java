@@ -1,8 +1,8 @@
 package deck;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.JLabel;
 
@@ -21,7 +21,7 @@ public class Card extends CardRenderer implements IRenderable<Card> {
 
 	private static final long serialVersionUID = 1L;
 
-	private static Map<String, String> setsByCardName = new HashMap<String, String>();
+	private static Map<String, String> setsByCardName = new ConcurrentHashMap<String, String>();
 
 	private String name;
 	private String set;
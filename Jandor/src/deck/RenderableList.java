@@ -5,6 +5,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 import canvas.IRenderable;
 
@@ -15,6 +16,8 @@ public class RenderableList<T extends IRenderable<?>> extends ArrayList<T> imple
 	public int screenW = 0;
 	public int screenH = 0;
 	
+	private transient int version = 0;
+	
 	public RenderableList() {
 		this(null);
 	}
@@ -25,6 +28,34 @@ public class RenderableList<T extends IRenderable<?>> extends ArrayList<T> imple
 		}
 	}
 	
+	/**
+	 * Changes whenever objects are added, removed, replaced or reordered, so a
+	 * cache built from the list can tell when it is out of date. ArrayList's
+	 * own count misses {@link #set(int, IRenderable)}, which swaps and so
+	 * shuffles go through, so replacements and sorts are counted here too.
+	 */
+	public int getModCount() {
+		return modCount + version;
+	}
+	
+	@Override
+	public T set(int index, T obj) {
+		version++;
+		return super.set(index, obj);
+	}
+	
+	@Override
+	public void sort(Comparator<? super T> c) {
+		version++;
+		super.sort(c);
+	}
+	
+	@Override
+	public void replaceAll(UnaryOperator<T> operator) {
+		version++;
+		super.replaceAll(operator);
+	}
+
 	public void add(T obj, int numberOfCopies) {
 		if(obj == null || numberOfCopies < 1) {
 			return;
@@ -11,6 +11,7 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 
 import util.ImageUtil;
+import util.MipMaps;
 import util.ShapeUtil;
 import canvas.AbstractRenderer;
 import canvas.CardLayer;
@@ -81,7 +82,7 @@ public class CounterRenderer extends AbstractRenderer<Die> {
 	@Override
 	public void render(CardLayer layer, Graphics2D g, Die counter, Location location) {
 		BufferedImage img = getImage();
-		g.drawImage(img, getScreenX(), getScreenY(), img.getWidth(), img.getHeight(), null);
+		MipMaps.draw(g, img, getScreenX(), getScreenY());
 		
 		if(isHovered()) {
 			g.setColor(new Color(255,255,255,20));
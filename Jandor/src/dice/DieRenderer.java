@@ -11,6 +11,7 @@ import canvas.AbstractRenderer;
 import canvas.CardLayer;
 import canvas.Location;
 import util.ImageUtil;
+import util.MipMaps;
 import util.ShapeUtil;
 
 public class DieRenderer extends AbstractRenderer<Die> {
@@ -94,7 +95,7 @@ public class DieRenderer extends AbstractRenderer<Die> {
 	@Override
 	public void render(CardLayer layer, Graphics2D g, Die die, Location location) {
 		BufferedImage img = getImage();
-		g.drawImage(img, getScreenX(), getScreenY(), img.getWidth(), img.getHeight(), null);
+		MipMaps.draw(g, img, getScreenX(), getScreenY());
 		
 		if(isHovered()) {
 			g.setColor(new Color(255,255,255,20));
@@ -13,6 +13,7 @@ import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
 
 import util.ImageUtil;
+import util.MipMaps;
 import util.ShapeUtil;
 import canvas.AbstractRenderer;
 import canvas.CardLayer;
@@ -87,7 +88,7 @@ public class TokenRenderer extends AbstractRenderer<Die> {
 	public void render(CardLayer layer, Graphics2D g, Die counter, Location location) {
 		BufferedImage img = getImage();
 		Rectangle rect = getBounds().getBounds();
-		g.drawImage(img, (int) rect.getX(), (int) rect.getY(), null);
+		MipMaps.draw(g, img, (int) rect.getX(), (int) rect.getY());
 		
 		if(isHovered()) {
 			g.setColor(new Color(255,255,255,45));
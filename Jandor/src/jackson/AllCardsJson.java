@@ -4,6 +4,7 @@ import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
@@ -56,6 +57,10 @@ public class AllCardsJson extends HashMap<String, CardJson>  {
 		}
 
 		public Object get(String fieldName) {
+			Function<CardJson, Object> accessor = getAccessor(fieldName);
+			if(accessor != null) {
+				return accessor.apply(this);
+			}
 			try {
 				Field field = CardJson.class.getDeclaredField(fieldName);
 				if(field == null) {
@@ -68,6 +73,38 @@ public class AllCardsJson extends HashMap<String, CardJson>  {
 			return null;
 		}
 
+		/**
+		 * Returns a direct accessor for a field so callers don't need reflection,
+		 * or null if the field isn't one of the known card fields.
+		 */
+		public static Function<CardJson, Object> getAccessor(String fieldName) {
+			return ACCESSORS.get(fieldName);
+		}
+
+		private static final Map<String, Function<CardJson, Object>> ACCESSORS = new HashMap<>();
+		static {
+			ACCESSORS.put("colorIdentity", (CardJson c) -> c.colorIdentity);
+			ACCESSORS.put("colors", (CardJson c) -> c.colors);
+			ACCESSORS.put("convertedManaCost", (CardJson c) -> c.convertedManaCost);
+			ACCESSORS.put("layout", (CardJson c) -> c.layout);
+			ACCESSORS.put("loyalty", (CardJson c) -> c.loyalty);
+			ACCESSORS.put("manaCost", (CardJson c) -> c.manaCost);
+			ACCESSORS.put("name", (CardJson c) -> c.name);
+			ACCESSORS.put("names", (CardJson c) -> c.names);
+			ACCESSORS.put("power", (CardJson c) -> c.power);
+			ACCESSORS.put("printings", (CardJson c) -> c.printings);
+			ACCESSORS.put("rarity", (CardJson c) -> c.rarity);
+			ACCESSORS.put("subtypes", (CardJson c) -> c.subtypes);
+			ACCESSORS.put("supertypes", (CardJson c) -> c.supertypes);
+			ACCESSORS.put("text", (CardJson c) -> c.text);
+			ACCESSORS.put("toughness", (CardJson c) -> c.toughness);
+			ACCESSORS.put("type", (CardJson c) -> c.type);
+			ACCESSORS.put("types", (CardJson c) -> c.types);
+			ACCESSORS.put("tcgplayerProductId", (CardJson c) -> c.tcgplayerProductId);
+			ACCESSORS.put("tcgplayerPurchaseUrl", (CardJson c) -> c.tcgplayerPurchaseUrl);
+			ACCESSORS.put("uuid", (CardJson c) -> c.uuid);
+		}
+
 	}
 
 	@JsonIgnore
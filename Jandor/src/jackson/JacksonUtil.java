@@ -20,6 +20,19 @@ import util.FileUtil;
 
 public class JacksonUtil {
 
+	/**
+	 * A mapper set up the same way the read methods are, for callers that
+	 * parse a stream themselves.
+	 */
+	public static ObjectMapper createReader() {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		SimpleModule module = new SimpleModule();
+		module.addDeserializer(String.class, new StringCleanerDeserializer());
+		mapper.registerModule(module);
+		return mapper;
+	}
+
 	public static <T> T readExternal(Class<T> klass, String filename) {
 		return read(klass, FileUtil.getExternalResourcesFile(filename));
 	}
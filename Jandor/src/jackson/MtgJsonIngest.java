@@ -0,0 +1,132 @@
+package jackson;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jackson.AllCardsJson.CardJson;
+import jackson.AllSetsJson.SetJson;
+import util.ZipUtil;
+
+/**
+ * Turns the MTGJSON downloads into the "-less" files Jandor loads, one set or
+ * card at a time. Each top level entry is read into a {@link SetJson} or
+ * {@link CardJson}, which skips the fields those don't have without building
+ * them, and is written out before the next entry is read. The whole document
+ * is never held in memory, and zips are read without being unzipped.
+ */
+public class MtgJsonIngest {
+
+	private static interface EntryFilter<T> {
+
+		/**
+		 * @return False to leave the entry out.
+		 */
+		public boolean accept(String key, T value);
+
+	}
+
+	private MtgJsonIngest() {}
+
+	/**
+	 * Writes every set, keeping only the cards that have a multiverse id, as
+	 * {@link AllSetsJson#init()} would.
+	 *
+	 * @return The number of sets written.
+	 */
+	public static int deriveSets(File source, String entryName, File target) throws IOException {
+		return derive(source, entryName, target, SetJson.class, new EntryFilter<SetJson>() {
+
+			@Override
+			public boolean accept(String key, SetJson set) {
+				if(set.cards == null) {
+					return false;
+				}
+				set.cache();
+				return true;
+			}
+
+		});
+	}
+
+	/**
+	 * @return The number of cards written.
+	 */
+	public static int deriveCards(File source, String entryName, File target) throws IOException {
+		return derive(source, entryName, target, CardJson.class, new EntryFilter<CardJson>() {
+
+			@Override
+			public boolean accept(String key, CardJson card) {
+				return true;
+			}
+
+		});
+	}
+
+	private static <T> int derive(File source, String entryName, File target, Class<T> klass, EntryFilter<T> filter) throws IOException {
+		ObjectMapper mapper = JacksonUtil.createReader();
+		File tmp = new File(target.getParentFile(), target.getName() + ".tmp");
+		int count = 0;
+
+		try(InputStream in = open(source, entryName);
+			JsonParser parser = mapper.getFactory().createParser(in);
+			JsonGenerator generator = mapper.getFactory().createGenerator(tmp, JsonEncoding.UTF8)) {
+
+			generator.setPrettyPrinter(new DefaultPrettyPrinter());
+			if(parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException(source + " does not hold a JSON object.");
+			}
+
+			generator.writeStartObject();
+			while(parser.nextToken() == JsonToken.FIELD_NAME) {
+				String key = parser.getCurrentName();
+				parser.nextToken();
+				T value = mapper.readValue(parser, klass);
+				if(value == null || !filter.accept(key, value)) {
+					continue;
+				}
+				generator.writeFieldName(key);
+				mapper.writeValue(generator, value);
+				count++;
+			}
+			generator.writeEndObject();
+		} catch (IOException e) {
+			tmp.delete();
+			throw e;
+		}
+
+		// Only replace the old file once the new one is whole
+		target.delete();
+		if(!tmp.renameTo(target)) {
+			throw new IOException("Could not replace " + target);
+		}
+		return count;
+	}
+
+	private static InputStream open(File source, String entryName) throws IOException {
+		if(!source.exists()) {
+			throw new FileNotFoundException(source.getAbsolutePath());
+		}
+		InputStream in;
+		if(source.getName().endsWith(".zip")) {
+			in = ZipUtil.openEntry(source, entryName);
+			if(in == null) {
+				throw new FileNotFoundException(entryName + " in " + source.getAbsolutePath());
+			}
+		} else {
+			in = new FileInputStream(source);
+		}
+		return new BufferedInputStream(in, 1 << 16);
+	}
+
+}
@@ -6,6 +6,7 @@ public class MultiplayerConnection {
 
 	private MultiplayerMessage message;
 	private User user;
+	private final StreamDecoder decoder = new StreamDecoder();
 	
 	public MultiplayerConnection(User user) {
 		this.user = user;
@@ -27,4 +28,8 @@ public class MultiplayerConnection {
 		this.message = message;
 	}
 	
+	public StreamDecoder getDecoder() {
+		return decoder;
+	}
+	
 }
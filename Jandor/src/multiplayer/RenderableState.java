@@ -0,0 +1,318 @@
+package multiplayer;
+
+import java.awt.Color;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import canvas.IRenderable;
+import canvas.IRenderer;
+import deck.Card;
+import dice.Counter;
+import dice.D10;
+import dice.Die;
+import dice.Token;
+import zone.ZoneType;
+
+/**
+ * The part of a card or die that the opponent needs to draw it, copied into
+ * plain fields so two snapshots can be compared field by field.
+ */
+public class RenderableState {
+
+	public static final byte KIND_CARD = 0;
+	public static final byte KIND_D10 = 1;
+	public static final byte KIND_COUNTER = 2;
+	public static final byte KIND_TOKEN = 3;
+	public static final byte KIND_DIE = 4;
+
+	public static final int FIELD_IDENTITY = 1;
+	public static final int FIELD_ZONE = 1 << 1;
+	public static final int FIELD_LOCATION = 1 << 2;
+	public static final int FIELD_ANGLE = 1 << 3;
+	public static final int FIELD_FLAGS = 1 << 4;
+	public static final int FIELD_SCALE = 1 << 5;
+	public static final int FIELD_VALUE = 1 << 6;
+	public static final int ALL_FIELDS = (1 << 7) - 1;
+
+	private static final int FLAG_FACE_UP = 1;
+	private static final int FLAG_TRANSFORMED_PROJECTION = 1 << 1;
+	private static final int FLAG_VISIBLE = 1 << 2;
+
+	private static final int IDENTITY_TRANSFORMED = 1;
+	private static final int IDENTITY_COMMANDER = 1 << 1;
+
+	// Identity
+	private byte kind;
+	private String name;
+	private String set;
+	private int identityFlags;
+	private int color;
+	private int minValue;
+	private int maxValue;
+
+	private byte zone;
+	private int x;
+	private int y;
+	private int angle;
+	private int flags;
+	private double scale;
+
+	// Dice only
+	private int value;
+	private int secondValue;
+	private boolean hideValue;
+
+	public RenderableState() {}
+
+	public RenderableState copy() {
+		RenderableState state = new RenderableState();
+		state.kind = kind;
+		state.name = name;
+		state.set = set;
+		state.identityFlags = identityFlags;
+		state.color = color;
+		state.minValue = minValue;
+		state.maxValue = maxValue;
+		state.zone = zone;
+		state.x = x;
+		state.y = y;
+		state.angle = angle;
+		state.flags = flags;
+		state.scale = scale;
+		state.value = value;
+		state.secondValue = secondValue;
+		state.hideValue = hideValue;
+		return state;
+	}
+
+	public static RenderableState of(IRenderable<?> renderable) {
+		RenderableState state = new RenderableState();
+		IRenderer<?> renderer = renderable.getRenderer();
+		if(renderable instanceof Card) {
+			Card card = (Card) renderable;
+			state.kind = KIND_CARD;
+			state.name = card.getName();
+			state.set = card.getSet();
+			state.identityFlags = (card.isTransformed() ? IDENTITY_TRANSFORMED : 0) | (card.isCommander() ? IDENTITY_COMMANDER : 0);
+		} else if(renderable instanceof Die) {
+			Die die = (Die) renderable;
+			if(die instanceof Token) {
+				state.kind = KIND_TOKEN;
+				state.secondValue = ((Token) die).getSecondValue();
+			} else if(die instanceof Counter) {
+				state.kind = KIND_COUNTER;
+			} else if(die instanceof D10) {
+				state.kind = KIND_D10;
+			} else {
+				state.kind = KIND_DIE;
+				state.minValue = die.getMinValue();
+				state.maxValue = die.getMaxValue();
+			}
+			state.color = die.getColor() == null ? 0 : die.getColor().getRGB();
+			state.value = die.getValue();
+			state.hideValue = die.isHideValue();
+		} else {
+			return null;
+		}
+
+		state.zone = (byte) renderer.getZoneType().ordinal();
+		state.x = renderer.getScreenX();
+		state.y = renderer.getScreenY();
+		state.angle = renderer.getAngle();
+		state.flags = (renderer.isFaceUp() ? FLAG_FACE_UP : 0)
+				| (renderer.isTransformedProjection() ? FLAG_TRANSFORMED_PROJECTION : 0)
+				| (renderer.isVisible() ? FLAG_VISIBLE : 0);
+		state.scale = renderer.getScale();
+		return state;
+	}
+
+	/**
+	 * @return The fields that differ from the other state, all of them if
+	 *         there is no other state.
+	 */
+	public int diff(RenderableState other) {
+		if(other == null) {
+			return ALL_FIELDS;
+		}
+		int mask = 0;
+		if(kind != other.kind || !equals(name, other.name) || !equals(set, other.set) || identityFlags != other.identityFlags
+				|| color != other.color || minValue != other.minValue || maxValue != other.maxValue) {
+			mask |= FIELD_IDENTITY;
+		}
+		if(zone != other.zone) {
+			mask |= FIELD_ZONE;
+		}
+		if(x != other.x || y != other.y) {
+			mask |= FIELD_LOCATION;
+		}
+		if(angle != other.angle) {
+			mask |= FIELD_ANGLE;
+		}
+		if(flags != other.flags) {
+			mask |= FIELD_FLAGS;
+		}
+		if(scale != other.scale) {
+			mask |= FIELD_SCALE;
+		}
+		if(value != other.value || secondValue != other.secondValue || hideValue != other.hideValue) {
+			mask |= FIELD_VALUE;
+		}
+		return mask;
+	}
+
+	private static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	public void write(DataOutputStream out, int mask) throws IOException {
+		if((mask & FIELD_IDENTITY) != 0) {
+			out.writeByte(kind);
+			if(kind == KIND_CARD) {
+				out.writeUTF(name == null ? "" : name);
+				out.writeUTF(set == null ? "" : set);
+				out.writeByte(identityFlags);
+			} else {
+				out.writeInt(color);
+				if(kind == KIND_DIE) {
+					out.writeInt(minValue);
+					out.writeInt(maxValue);
+				}
+			}
+		}
+		if((mask & FIELD_ZONE) != 0) {
+			out.writeByte(zone);
+		}
+		if((mask & FIELD_LOCATION) != 0) {
+			StreamProtocol.writeSignedVarInt(out, x);
+			StreamProtocol.writeSignedVarInt(out, y);
+		}
+		if((mask & FIELD_ANGLE) != 0) {
+			StreamProtocol.writeSignedVarInt(out, angle);
+		}
+		if((mask & FIELD_FLAGS) != 0) {
+			out.writeByte(flags);
+		}
+		if((mask & FIELD_SCALE) != 0) {
+			out.writeDouble(scale);
+		}
+		if((mask & FIELD_VALUE) != 0) {
+			StreamProtocol.writeSignedVarInt(out, value);
+			StreamProtocol.writeSignedVarInt(out, secondValue);
+			out.writeBoolean(hideValue);
+		}
+	}
+
+	public void read(DataInputStream in, int mask) throws IOException {
+		if((mask & FIELD_IDENTITY) != 0) {
+			kind = in.readByte();
+			if(kind == KIND_CARD) {
+				name = in.readUTF();
+				set = in.readUTF();
+				set = set.isEmpty() ? null : set;
+				identityFlags = in.readByte();
+			} else {
+				color = in.readInt();
+				if(kind == KIND_DIE) {
+					minValue = in.readInt();
+					maxValue = in.readInt();
+				}
+			}
+		}
+		if((mask & FIELD_ZONE) != 0) {
+			zone = in.readByte();
+		}
+		if((mask & FIELD_LOCATION) != 0) {
+			x = StreamProtocol.readSignedVarInt(in);
+			y = StreamProtocol.readSignedVarInt(in);
+		}
+		if((mask & FIELD_ANGLE) != 0) {
+			angle = StreamProtocol.readSignedVarInt(in);
+		}
+		if((mask & FIELD_FLAGS) != 0) {
+			flags = in.readByte();
+		}
+		if((mask & FIELD_SCALE) != 0) {
+			scale = in.readDouble();
+		}
+		if((mask & FIELD_VALUE) != 0) {
+			value = StreamProtocol.readSignedVarInt(in);
+			secondValue = StreamProtocol.readSignedVarInt(in);
+			hideValue = in.readBoolean();
+		}
+	}
+
+	/**
+	 * Whether an object built for the other state can be updated to this one,
+	 * rather than being built again.
+	 */
+	public boolean isSameObject(RenderableState other) {
+		return other != null && kind == other.kind && equals(name, other.name)
+				&& minValue == other.minValue && maxValue == other.maxValue;
+	}
+
+	public IRenderable<?> create() {
+		Color c = new Color(color, true);
+		switch(kind) {
+			case KIND_CARD:
+				return new Card(name);
+			case KIND_D10:
+				return new D10(c, value);
+			case KIND_COUNTER:
+				return new Counter(c, value);
+			case KIND_TOKEN:
+				return new Token(c, value);
+			default:
+				return new Die(minValue, maxValue, c, value);
+		}
+	}
+
+	/**
+	 * Copies the fields in mask onto an object made by {@link #create()}.
+	 */
+	public void apply(IRenderable<?> renderable, int mask) {
+		IRenderer<?> renderer = renderable.getRenderer();
+		if((mask & FIELD_IDENTITY) != 0) {
+			if(renderable instanceof Card) {
+				Card card = (Card) renderable;
+				card.setSet(set);
+				card.setTransformed((identityFlags & IDENTITY_TRANSFORMED) != 0);
+				card.setCommander((identityFlags & IDENTITY_COMMANDER) != 0);
+			} else if(renderable instanceof Die) {
+				((Die) renderable).setColor(new Color(color, true));
+			}
+			renderer.flagRecomputeBounds();
+		}
+		if((mask & FIELD_ZONE) != 0) {
+			renderer.setZoneType(ZoneType.values()[zone]);
+		}
+		if((mask & FIELD_LOCATION) != 0) {
+			renderer.setLocation(x, y);
+		}
+		if((mask & FIELD_ANGLE) != 0) {
+			renderer.setAngle(angle);
+		}
+		if((mask & FIELD_FLAGS) != 0) {
+			renderer.setFaceUp((flags & FLAG_FACE_UP) != 0);
+			renderer.setTransformedProjection((flags & FLAG_TRANSFORMED_PROJECTION) != 0);
+			renderer.setVisible((flags & FLAG_VISIBLE) != 0);
+			renderer.flagRecomputeBounds();
+		}
+		if((mask & FIELD_SCALE) != 0) {
+			renderer.setScale(scale);
+		}
+		if((mask & FIELD_VALUE) != 0 && renderable instanceof Die) {
+			Die die = (Die) renderable;
+			die.setValue(value);
+			if(die instanceof Token) {
+				((Token) die).setSecondValue(secondValue);
+			}
+			if(hideValue) {
+				die.hideValue();
+			} else {
+				die.showValue();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,161 @@
+package multiplayer;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import canvas.IRenderable;
+import deck.RenderableList;
+import zone.ZoneType;
+
+/**
+ * Rebuilds the messages of one player from {@link StreamProtocol} frames.
+ * Objects are kept between frames and only the changed fields are applied to
+ * them, so cards don't have to look up their images again on every frame.
+ */
+public class StreamDecoder {
+
+	private final Map<Integer, IRenderable<?>> objects = new HashMap<Integer, IRenderable<?>>();
+	private final Map<Integer, RenderableState> states = new HashMap<Integer, RenderableState>();
+	private int[] order = new int[0];
+
+	private int viewable = 0;
+	private int lifeTotal = 20;
+	private Map<String, Integer> commanderDamageByGUID = new HashMap<String, Integer>();
+	private Rectangle bounds = null;
+	private int screenW = 0;
+	private int screenH = 0;
+
+	private int lastSequence = 0;
+	private boolean synced = false;
+
+	/**
+	 * Must be called on the thread that paints the objects it returns.
+	 *
+	 * @return The message after applying the frame, or null if a frame was
+	 *         missed and nothing can be shown until the next keyframe.
+	 */
+	public MultiplayerMessage decode(byte[] frame) {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+		try {
+			if(in.readInt() != StreamProtocol.MAGIC || in.readByte() != StreamProtocol.VERSION) {
+				return null;
+			}
+			boolean keyframe = in.readByte() == StreamProtocol.KEYFRAME;
+			int sequence = in.readInt();
+			if(!keyframe && (!synced || sequence != lastSequence + 1)) {
+				synced = false;
+				return null;
+			}
+			lastSequence = sequence;
+			synced = true;
+
+			int sections = in.readByte();
+			if((sections & StreamProtocol.SECTION_BOARD) != 0) {
+				byte[] board = new byte[in.readInt()];
+				in.readFully(board);
+				readBoard(board);
+			}
+
+			boolean orderChanged = (sections & StreamProtocol.SECTION_ORDER) != 0;
+			if(orderChanged) {
+				order = new int[StreamProtocol.readVarInt(in)];
+				for(int i = 0; i < order.length; i++) {
+					order[i] = StreamProtocol.readVarInt(in);
+				}
+			}
+
+			int removed = StreamProtocol.readVarInt(in);
+			for(int i = 0; i < removed; i++) {
+				int id = StreamProtocol.readVarInt(in);
+				objects.remove(id);
+				states.remove(id);
+			}
+
+			int changed = StreamProtocol.readVarInt(in);
+			for(int i = 0; i < changed; i++) {
+				int id = StreamProtocol.readVarInt(in);
+				int mask = in.readByte() & 0xFF;
+				RenderableState previous = states.get(id);
+				RenderableState state = previous == null ? new RenderableState() : previous.copy();
+				state.read(in, mask);
+
+				IRenderable<?> object = objects.get(id);
+				if(object == null || !state.isSameObject(previous)) {
+					object = state.create();
+					state.apply(object, RenderableState.ALL_FIELDS);
+					objects.put(id, object);
+				} else {
+					state.apply(object, mask);
+				}
+				states.put(id, state);
+			}
+
+			if(keyframe) {
+				// Anything not in a keyframe is gone
+				objects.keySet().retainAll(toSet(order));
+				states.keySet().retainAll(objects.keySet());
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			synced = false;
+			return null;
+		}
+
+		return toMessage();
+	}
+
+	private static Set<Integer> toSet(int[] ids) {
+		Set<Integer> set = new HashSet<Integer>();
+		for(int id : ids) {
+			set.add(id);
+		}
+		return set;
+	}
+
+	private void readBoard(byte[] board) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(board));
+		viewable = in.readInt();
+		lifeTotal = in.readInt();
+
+		Map<String, Integer> damage = new HashMap<String, Integer>();
+		int count = StreamProtocol.readVarInt(in);
+		for(int i = 0; i < count; i++) {
+			String guid = in.readUTF();
+			damage.put(guid, in.readInt());
+		}
+		commanderDamageByGUID = damage;
+
+		bounds = in.readBoolean() ? new Rectangle(in.readInt(), in.readInt(), in.readInt(), in.readInt()) : null;
+		screenW = in.readInt();
+		screenH = in.readInt();
+	}
+
+	private MultiplayerMessage toMessage() {
+		RenderableList renderables = new RenderableList();
+		for(int id : order) {
+			IRenderable<?> object = objects.get(id);
+			if(object != null) {
+				renderables.add(object);
+			}
+		}
+		renderables.screenW = screenW;
+		renderables.screenH = screenH;
+
+		MultiplayerMessage message = new MultiplayerMessage()
+										.setAllObjects(renderables)
+										.setLifeTotal(lifeTotal)
+										.setCommanderDamageByGUID(new HashMap<String, Integer>(commanderDamageByGUID))
+										.setBounds(bounds == null ? null : new Rectangle(bounds));
+		for(ZoneType zone : ZoneType.values()) {
+			message.setViewable(zone, (viewable & (1 << zone.ordinal())) != 0);
+		}
+		return message;
+	}
+
+}
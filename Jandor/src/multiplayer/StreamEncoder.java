@@ -0,0 +1,205 @@
+package multiplayer;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import canvas.IRenderable;
+import zone.ZoneType;
+
+/**
+ * Turns the messages of one player into {@link StreamProtocol} frames. Each
+ * renderable gets a small id the first time it is seen and keeps it for as
+ * long as it stays on the board, so a delta only has to name what moved.
+ */
+public class StreamEncoder {
+
+	public static final long KEYFRAME_INTERVAL = 2000;
+
+	private final Map<IRenderable<?>, Integer> ids = new IdentityHashMap<IRenderable<?>, Integer>();
+	private final Map<Integer, RenderableState> sent = new HashMap<Integer, RenderableState>();
+	private int[] sentOrder = new int[0];
+	private byte[] sentBoard = null;
+	private int nextId = 0;
+	private int sequence = 0;
+	private long lastKeyframe = 0;
+	private volatile boolean keyframeRequested = true;
+
+	public boolean isKeyframeDue() {
+		return keyframeRequested || System.currentTimeMillis() - lastKeyframe >= KEYFRAME_INTERVAL;
+	}
+
+	/**
+	 * Makes the next frame a keyframe, e.g. when a new friend starts watching.
+	 */
+	public void requestKeyframe() {
+		keyframeRequested = true;
+	}
+
+	/**
+	 * @return The next frame, or null if nothing changed since the last one.
+	 */
+	public byte[] encode(MultiplayerMessage message) {
+		boolean keyframe = isKeyframeDue();
+
+		List<IRenderable<?>> objects = new ArrayList<IRenderable<?>>();
+		for(IRenderable<?> r : message.getAllObjects()) {
+			if(r != null) {
+				objects.add(r);
+			}
+		}
+
+		Map<Integer, RenderableState> states = new HashMap<Integer, RenderableState>();
+		List<Integer> orderList = new ArrayList<Integer>();
+		Map<IRenderable<?>, Integer> seen = new IdentityHashMap<IRenderable<?>, Integer>();
+		for(IRenderable<?> r : objects) {
+			RenderableState state = RenderableState.of(r);
+			if(state == null || seen.containsKey(r)) {
+				continue;
+			}
+			Integer id = ids.get(r);
+			if(id == null) {
+				id = nextId++;
+				ids.put(r, id);
+			}
+			seen.put(r, id);
+			states.put(id, state);
+			orderList.add(id);
+		}
+
+		int[] order = new int[orderList.size()];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = orderList.get(i);
+		}
+
+		List<Integer> removed = new ArrayList<Integer>();
+		Iterator<Entry<IRenderable<?>, Integer>> it = ids.entrySet().iterator();
+		while(it.hasNext()) {
+			Entry<IRenderable<?>, Integer> entry = it.next();
+			if(!seen.containsKey(entry.getKey())) {
+				removed.add(entry.getValue());
+				it.remove();
+			}
+		}
+
+		byte[] board = toBoardBytes(message, message.getAllObjects().screenW, message.getAllObjects().screenH);
+		boolean boardChanged = keyframe || !Arrays.equals(board, sentBoard);
+		boolean orderChanged = keyframe || !Arrays.equals(order, sentOrder);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		int changed = 0;
+		try {
+			out.writeInt(StreamProtocol.MAGIC);
+			out.writeByte(StreamProtocol.VERSION);
+			out.writeByte(keyframe ? StreamProtocol.KEYFRAME : StreamProtocol.DELTA);
+			out.writeInt(sequence + 1);
+			out.writeByte((boardChanged ? StreamProtocol.SECTION_BOARD : 0) | (orderChanged ? StreamProtocol.SECTION_ORDER : 0));
+			if(boardChanged) {
+				out.writeInt(board.length);
+				out.write(board);
+			}
+			if(orderChanged) {
+				StreamProtocol.writeVarInt(out, order.length);
+				for(int id : order) {
+					StreamProtocol.writeVarInt(out, id);
+				}
+			}
+
+			List<Integer> removedIds = keyframe ? new ArrayList<Integer>() : removed;
+			StreamProtocol.writeVarInt(out, removedIds.size());
+			for(int id : removedIds) {
+				StreamProtocol.writeVarInt(out, id);
+			}
+
+			ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+			DataOutputStream records = new DataOutputStream(recordBytes);
+			for(int id : order) {
+				RenderableState state = states.get(id);
+				int mask = keyframe ? RenderableState.ALL_FIELDS : state.diff(sent.get(id));
+				if(mask == 0) {
+					continue;
+				}
+				StreamProtocol.writeVarInt(records, id);
+				records.writeByte(mask);
+				state.write(records, mask);
+				changed++;
+			}
+			records.flush();
+			StreamProtocol.writeVarInt(out, changed);
+			recordBytes.writeTo(out);
+			out.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		sent.clear();
+		sent.putAll(states);
+		sentOrder = order;
+		sentBoard = board;
+
+		if(!keyframe && !boardChanged && !orderChanged && removed.isEmpty() && changed == 0) {
+			return null;
+		}
+
+		sequence++;
+		if(keyframe) {
+			lastKeyframe = System.currentTimeMillis();
+			keyframeRequested = false;
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] toBoardBytes(MultiplayerMessage message, int screenW, int screenH) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			int viewable = 0;
+			for(ZoneType zone : ZoneType.values()) {
+				if(message.isViewable(zone)) {
+					viewable |= 1 << zone.ordinal();
+				}
+			}
+			out.writeInt(viewable);
+			out.writeInt(message.getLifeTotal());
+
+			Map<String, Integer> damage = new TreeMap<String, Integer>();
+			if(message.getCommanderDamageByGUID() != null) {
+				damage.putAll(message.getCommanderDamageByGUID());
+			}
+			StreamProtocol.writeVarInt(out, damage.size());
+			for(String guid : damage.keySet()) {
+				out.writeUTF(guid);
+				Integer d = damage.get(guid);
+				out.writeInt(d == null ? 0 : d);
+			}
+
+			Rectangle bounds = message.getBounds();
+			out.writeBoolean(bounds != null);
+			if(bounds != null) {
+				out.writeInt(bounds.x);
+				out.writeInt(bounds.y);
+				out.writeInt(bounds.width);
+				out.writeInt(bounds.height);
+			}
+			out.writeInt(screenW);
+			out.writeInt(screenH);
+			out.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,84 @@
+package multiplayer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Wire format of the board stream sent to connected friends. Every frame
+ * starts with a header:
+ *
+ * <pre>
+ * int  MAGIC
+ * byte VERSION
+ * byte KEYFRAME or DELTA
+ * int  sequence, one more than the frame before
+ * byte which of SECTION_BOARD and SECTION_ORDER follow
+ * [board]  int length, then life, commander damage, viewable zones and bounds
+ * [order]  varint count, then the id of every renderable from bottom to top
+ * varint   count, then the ids of renderables that were removed
+ * varint   count, then for each changed renderable its id, a byte of
+ *          {@link RenderableState} field flags and the flagged fields
+ * </pre>
+ *
+ * A keyframe carries everything and replaces whatever the receiver had. A
+ * delta only carries what changed since the frame before it, so a receiver
+ * that misses a frame waits for the next keyframe.
+ *
+ * Other messages on the stream channel, like {@link DisconnectMessage}, are
+ * still Java serialized. Those start with 0xACED, which never matches MAGIC.
+ */
+public final class StreamProtocol {
+
+	public static final int MAGIC = 0x4A425354; // JBST
+	public static final byte VERSION = 1;
+
+	public static final byte KEYFRAME = 0;
+	public static final byte DELTA = 1;
+
+	public static final int SECTION_BOARD = 1;
+	public static final int SECTION_ORDER = 2;
+
+	private StreamProtocol() {}
+
+	public static boolean isStreamFrame(byte[] bytes) {
+		if(bytes == null || bytes.length < 4) {
+			return false;
+		}
+		int magic = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+		return magic == MAGIC;
+	}
+
+	public static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	public static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Writes a signed value so that small negative numbers stay small.
+	 */
+	public static void writeSignedVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	public static int readSignedVarInt(DataInputStream in) throws IOException {
+		int value = readVarInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+}
@@ -0,0 +1,69 @@
+package multiplayer;
+
+import canvas.CardLayer;
+
+/**
+ * Decides when the board stream sends a frame. Layers mark themselves dirty
+ * when something the opponent can see changes, and the streaming thread
+ * sleeps until that happens. Changes that come in faster than
+ * {@link #MAX_FRAMES_PER_SECOND}, like a drag, are folded into one frame.
+ */
+public class StreamScheduler {
+
+	public static final int MAX_FRAMES_PER_SECOND = 30;
+
+	private final long frameInterval;
+	private CardLayer dirtyLayer = null;
+	private boolean woken = false;
+	private long lastFrame = 0;
+
+	public StreamScheduler() {
+		this(MAX_FRAMES_PER_SECOND);
+	}
+
+	public StreamScheduler(int maxFramesPerSecond) {
+		frameInterval = 1000 / Math.max(1, maxFramesPerSecond);
+	}
+
+	public synchronized void markDirty(CardLayer layer) {
+		dirtyLayer = layer;
+		notifyAll();
+	}
+
+	/**
+	 * Lets the streaming thread run once without a change, e.g. to send a
+	 * keyframe or to notice it should stop.
+	 */
+	public synchronized void wake() {
+		woken = true;
+		notifyAll();
+	}
+
+	/**
+	 * Blocks until a layer is marked dirty or {@link #wake()} is called, then
+	 * waits out the rest of the frame interval.
+	 *
+	 * @return The last layer marked dirty, or null if only woken.
+	 */
+	public CardLayer awaitFrame() throws InterruptedException {
+		synchronized(this) {
+			while(dirtyLayer == null && !woken) {
+				wait();
+			}
+		}
+
+		long wait = lastFrame + frameInterval - System.currentTimeMillis();
+		if(wait > 0) {
+			Thread.sleep(wait);
+		}
+
+		synchronized(this) {
+			CardLayer layer = dirtyLayer;
+			dirtyLayer = null;
+			woken = false;
+			lastFrame = System.currentTimeMillis();
+			return layer;
+		}
+	}
+
+}
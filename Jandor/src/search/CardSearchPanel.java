@@ -6,12 +6,13 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
 
 import javax.swing.BorderFactory;
 import javax.swing.JComboBox;
@@ -28,6 +29,8 @@ import ui.JandorCombo;
 import ui.ProgressBar.ProgressTask;
 import ui.pwidget.PSimpleCombo;
 import ui.pwidget.PTextField;
+import util.CardIndex;
+import util.CardTextIndex;
 import util.CardUtil;
 import util.MtgJsonUtil;
 
@@ -91,10 +94,6 @@ public abstract class CardSearchPanel extends SearchPanel<CardJson, Deck> {
 		DEFAULT_FIELD_NAMES.add("Layout");
 	}
 
-	private static Pattern caseInsensitivePattern(String regex) {
-		return Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-	}
-
 	protected List<Card> cardsToSearch;
 
 	public CardSearchPanel() {
@@ -111,224 +110,332 @@ public abstract class CardSearchPanel extends SearchPanel<CardJson, Deck> {
 
 	@Override
 	protected boolean match(CardJson info, String att, JComponent editor) throws Exception {
-		att = DEFAULT_FIELDS.get(DEFAULT_FIELD_NAMES.indexOf(att));
+		return compile(att, editor).matches(info);
+	}
+
+	@Override
+	protected SearchPredicate<CardJson> compile(String attName, JComponent editor) {
+		String att = DEFAULT_FIELDS.get(DEFAULT_FIELD_NAMES.indexOf(attName));
 
 		if(att.equals("")) {
-			return true;
+			return SearchPredicate.always(true);
 		}
 
 		if(att.equals("set")) {
 			att = "printings";
 		}
 
-		if(info.types != null) {
-			List<String> types = info.types;
-			if(types.size() == 0) {
-				return false;
-			}
-			Set<String> allTypes = CardUtil.getValues("types");
-			for(String type : types) {
-				if(!allTypes.contains(type)) {
-					return false;
-				}
-			}
-		} else {
-			return false;
-		}
-
+		CardIndex index = CardUtil.getCardIndex();
+		List<SearchPredicate<CardJson>> predicates = new ArrayList<SearchPredicate<CardJson>>();
+		predicates.add(compileKnownTypes(index));
 		if(!att.equals("printings")) {
-			List<String> sets = info.printings;
-			boolean isSilly = false;
-			boolean isAlsoNotSilly = false;
-			for(String set : sets) {
-				if(set.equals("UNG") || set.equals("UNH") || set.equals("UGL") || set.equals("UST")) {
-					isSilly = true;
-				} else {
-					isAlsoNotSilly = true;
-				}
-			}
-
-			if(isSilly && !isAlsoNotSilly) {
-				return false;
-			}
+			predicates.add(compileNotOnlySilly(index));
 		}
+		predicates.add(compileAttribute(att, editor, index));
+		return SearchPredicate.and(predicates);
+	}
 
+	private SearchPredicate<CardJson> compileAttribute(String att, JComponent editor, CardIndex index) {
 		if(att.equals("power") || att.equals("toughness") || att.equals(MtgJsonUtil.cmc)) {
-			return matchInt(info, att, editor);
+			return compileInt(att, editor, index);
 		} else if(att.equals("name") || att.equals("subtype") || att.equals("text") || att.equals(MtgJsonUtil.flavorText)) {
-			return matchString(info, att, editor);
+			return compileString(att, editor, CardUtil.getCardTextIndex());
 		} else if(att.equals("types") || att.equals("supertypes") || att.equals("subtypes") || att.equals("rarity") || att.equals("set") || att.equals("printings") || att.equals("layout")) {
-			return matchSet(info, att, editor);
+			return compileSet(att, editor, index);
 		} else if(att.equals("colors") || att.equals("colorIdentity")) {
-			return matchColor(info, att, editor);
+			return compileColor(att, editor, index);
 		} else if(att.equals("X or *")) {
-			return matchXOrStar(info, att, editor);
+			return compileXOrStar(att, editor);
 		} else if(att.equals("general")) {
-			return matchStringGeneral(info, att, editor);
+			return compileStringGeneral(att, editor, index, CardUtil.getCardTextIndex());
 		}
 
-		return true;
+		return SearchPredicate.always(true);
 	}
 
-	private boolean matchStringGeneral(CardJson info, String att, JComponent editor) {
-		//String jsonValue = info.toString().toLowerCase();
-		//String formattedValue = new Card(info.getString("name")).getToolTipText(0, false).toLowerCase();
-		String formattedValue = new Card(info.name).getSearchableString();
-		List<String> editorText = getMatchableTokens((PTextField) editor);
-		for(String s : editorText) {
-			if(!matchToken(s, formattedValue)) {
-				return false;
+	/**
+	 * A condition that can be answered from the {@link CardIndex} when there
+	 * is one, and falls back to checking each card when there isn't.
+	 */
+	private static abstract class IndexedPredicate extends SearchPredicate<CardJson> {
+
+		protected final CardIndex index;
+
+		public IndexedPredicate(CardIndex index) {
+			this.index = index;
+		}
+
+		@Override
+		public BitSet select(BitSet universe) {
+			if(index == null) {
+				return super.select(universe);
 			}
+			BitSet bits = lookup();
+			bits.and(universe);
+			return bits;
 		}
-		return true;
-	}
 
-	private boolean matchToken(String tok, String... fullText) {
-		if(tok.startsWith("'") && tok.endsWith("'")) {
-			tok = tok.substring(1, tok.length() - 1);
-			Pattern p = caseInsensitivePattern(tok);
-			return matchToken(tok, p, fullText);
-		} else {
-			return matchToken(tok, null, fullText);
+		@Override
+		public boolean isExact() {
+			return index != null;
 		}
-	}
 
-	private boolean matchToken(String tok, Pattern pattern, String... fullText) {
-		if(tok != null) {
-			tok = tok.toLowerCase();
+		@Override
+		public int getCost() {
+			return SearchPredicate.COST_LOOKUP;
 		}
-		if(pattern != null) {
-			if(fullText.length == 0) {
-				return false;
+
+		/**
+		 * Returns a new set of the ordinals that match.
+		 */
+		protected abstract BitSet lookup();
+
+	}
+
+	private SearchPredicate<CardJson> compileNotOnlySilly(CardIndex index) {
+		return new IndexedPredicate(index) {
+
+			@Override
+			public boolean matches(CardJson info) {
+				return info.printings == null || !CardUtil.isOnlySilly(info);
 			}
-			for(String v : fullText) {
-				Matcher m = pattern.matcher(v);
-				if(m.find()) {
-					return true;
-				}
+
+			@Override
+			protected BitSet lookup() {
+				return (BitSet) index.getNotOnlySilly().clone();
 			}
-			return false;
-		} else if(tok.startsWith("!")) {
-			tok = tok.substring(1, tok.length());
-			if(fullText.length == 0) {
-				return true;
+
+		};
+	}
+
+	private SearchPredicate<CardJson> compileKnownTypes(CardIndex index) {
+		return new IndexedPredicate(index) {
+
+			@Override
+			public boolean matches(CardJson info) {
+				return CardUtil.hasKnownTypes(info);
 			}
 
-			for(String v : fullText) {
-				if(v.contains(tok)) {
-					return false;
-				}
+			@Override
+			protected BitSet lookup() {
+				return (BitSet) index.getKnownTypes().clone();
 			}
-			return true;
-		} else {
-			if(fullText.length == 0) {
-				return false;
+
+		};
+	}
+
+	/**
+	 * A text condition that narrows candidates with the {@link CardTextIndex}
+	 * before each remaining card is checked.
+	 */
+	private static abstract class TextPredicate extends SearchPredicate<CardJson> {
+
+		protected final List<SearchToken> tokens;
+		protected final CardTextIndex textIndex;
+		private final boolean general;
+
+		public TextPredicate(List<SearchToken> tokens, CardTextIndex textIndex, boolean general) {
+			this.tokens = tokens;
+			this.textIndex = textIndex;
+			this.general = general;
+		}
+
+		@Override
+		public BitSet select(BitSet universe) {
+			BitSet bits = (BitSet) universe.clone();
+			if(textIndex == null) {
+				return bits;
 			}
-			for(String v : fullText) {
-				if(v.contains(tok)) {
-					return true;
+			for(SearchToken token : tokens) {
+				for(String literal : token.getRequiredLiterals()) {
+					BitSet containing = textIndex.containing(literal);
+					if(containing == null) {
+						continue;
+					}
+					if(general) {
+						containing.or(textIndex.getVolatileDocuments());
+					}
+					bits.and(containing);
 				}
 			}
-			return false;
+			return bits;
 		}
-	}
 
-	private List<String> getMatchableTokens(PTextField textField) {
-		return getMatchableTokens(textField.getText().toLowerCase());
 	}
 
-	private List<String> getMatchableTokens(String rawText) {
-		List<String> list = new ArrayList<String>();
-		Matcher m = caseInsensitivePattern("('.+?'|\".+?\"|[^\"]\\S*)\\s*").matcher(rawText);
-		while (m.find()) {
-			String s = m.group(1);
-			if(s.startsWith("\"") && s.endsWith("\"")) {
-				s = s.substring(1, s.length() - 1);
-			} else if(s.startsWith("'") && s.endsWith("'")) {
-				s = s.substring(0, s.length());
-			}
-			list.add(s);
+	private SearchPredicate<CardJson> compileStringGeneral(String att, JComponent editor, final CardIndex index, CardTextIndex textIndex) {
+		final List<SearchToken> tokens = getMatchableTokens((PTextField) editor);
+		if(tokens.isEmpty()) {
+			return SearchPredicate.always(true);
 		}
-		return list;
+		final int cost = SearchPredicate.COST_EXPENSIVE + SearchToken.getCost(tokens);
+		return new TextPredicate(tokens, textIndex, true) {
+
+			@Override
+			public boolean matches(CardJson info) {
+				String formattedValue = null;
+				if(index != null && textIndex != null) {
+					formattedValue = textIndex.getDocument(index.getOrdinal(info.name));
+				}
+				if(formattedValue == null) {
+					formattedValue = new Card(info.name).getSearchableString();
+				}
+				return SearchToken.matchesAll(tokens, formattedValue);
+			}
+
+			@Override
+			public int getCost() {
+				return cost;
+			}
+
+		};
 	}
 
-	private boolean matchXOrStar(CardJson info, String att, JComponent editor) {
-		String value = info.getString(att);
-		if(value == null) {
-			return ((XOrStarPanel) editor).match("");
-		}
-		return ((XOrStarPanel) editor).match(value); // XXX This method was really weird before.
+	private List<SearchToken> getMatchableTokens(PTextField textField) {
+		return SearchToken.parse(textField.getText());
+	}
+
+	private SearchPredicate<CardJson> compileXOrStar(String att, JComponent editor) {
+		// CardJson has no "X or *" field, so this has always been checked against an empty cost
+		return SearchPredicate.always(((XOrStarPanel) editor).getSelection().match(""));
 	}
 
-	private boolean matchColor(CardJson info, String att, JComponent editor) {
-		String colors = info.colors == null ? "" : StringUtils.join(info.colors, ",");
-		String manaCost = info.manaCost == null ? "" : info.manaCost;
-		return ((ManaPanel) editor).match(colors, manaCost);
+	private SearchPredicate<CardJson> compileColor(String att, JComponent editor, CardIndex index) {
+		final ManaPanel.Selection selection = ((ManaPanel) editor).getSelection();
+		return new IndexedPredicate(index) {
+
+			@Override
+			public boolean matches(CardJson info) {
+				String colors = info.colors == null ? "" : StringUtils.join(info.colors, ",");
+				String manaCost = info.manaCost == null ? "" : info.manaCost;
+				return selection.match(colors, manaCost);
+			}
+
+			@Override
+			protected BitSet lookup() {
+				BitSet bits = new BitSet();
+				for(CardIndex.ColorGroup group : index.getColorGroups()) {
+					if(selection.match(group.colors, group.manaCost)) {
+						bits.or(group.ordinals);
+					}
+				}
+				return bits;
+			}
+
+		};
 	}
 
-	private boolean matchSet(CardJson info, String att, JComponent editor) {
+	private SearchPredicate<CardJson> compileSet(final String att, JComponent editor, CardIndex index) {
 		Object selectedItem = ((JComboBox) editor).getSelectedItem();
 		if(selectedItem == null || selectedItem.equals("")) {
-			return true;
+			return SearchPredicate.always(true);
 		}
 
-		Object obj = info.get(att);
-		List set = null;
-		if(obj == null) {
-			set = new ArrayList<>();
-		} else if(obj instanceof String) {
-			set = new ArrayList<>();
-			set.add(obj);
-		} else if(obj instanceof List) {
-			set = (List) obj;
-		} else {
-			return false;
+		String unfiltered = unfilter(att, selectedItem.toString());
+		if(unfiltered == null) {
+			return SearchPredicate.always(false);
 		}
 
-		String value = unfilter(att, ((JComboBox) editor).getSelectedItem().toString()).toLowerCase();
+		final String value = unfiltered.toLowerCase();
 		if(value.equals("")) {
-			return true;
+			return SearchPredicate.always(true);
 		}
 
-		for(Object o : set) {
-			if(String.valueOf(o).toLowerCase().equals(value)) {
-				return true;
+		final Function<CardJson, Object> accessor = CardJson.getAccessor(att);
+		return new IndexedPredicate(index) {
+
+			@Override
+			public boolean matches(CardJson info) {
+				Object obj = accessor.apply(info);
+				if(obj == null) {
+					return false;
+				} else if(obj instanceof String) {
+					return ((String) obj).toLowerCase().equals(value);
+				} else if(obj instanceof List) {
+					for(Object o : (List) obj) {
+						if(String.valueOf(o).toLowerCase().equals(value)) {
+							return true;
+						}
+					}
+				}
+				return false;
 			}
-		}
-		return false;
+
+			@Override
+			protected BitSet lookup() {
+				return (BitSet) index.getValue(att, value).clone();
+			}
+
+		};
 	}
 
-	private boolean matchString(CardJson info, String att, JComponent editor) {
-		String value = info.getString(att);
-		if(value == null) {
-			value = "";
-		} else {
-			value = value.toLowerCase();
+	private SearchPredicate<CardJson> compileString(String att, JComponent editor, CardTextIndex textIndex) {
+		final List<SearchToken> tokens = getMatchableTokens((PTextField) editor);
+		if(tokens.isEmpty()) {
+			return SearchPredicate.always(true);
 		}
-		List<String> editorText = getMatchableTokens((PTextField) editor);
-		for(String s : editorText) {
-			if(!matchToken(s, value)) {
-				return false;
-			}
+		final Function<CardJson, Object> accessor = CardJson.getAccessor(att);
+		final int cost = SearchToken.getCost(tokens);
+		// Only name and rules text are in the text index
+		if(!att.equals("name") && !att.equals("text")) {
+			textIndex = null;
 		}
-		return true;
+		return new TextPredicate(tokens, textIndex, false) {
+
+			@Override
+			public boolean matches(CardJson info) {
+				Object value = accessor == null ? null : accessor.apply(info);
+				String text = value == null ? "" : String.valueOf(value).toLowerCase();
+				return SearchToken.matchesAll(tokens, text);
+			}
+
+			@Override
+			public int getCost() {
+				return cost;
+			}
+
+		};
 	}
 
-	private boolean matchInt(CardJson info, String att, JComponent editor) {
-		String value = info.getString(att);
-		if(value == null) {
-			return ((NumberPanel) editor).match(0);
-		}
+	private SearchPredicate<CardJson> compileInt(final String att, JComponent editor, CardIndex index) {
+		final NumberPanel.Comparison comparison = ((NumberPanel) editor).getComparison();
+		final Function<CardJson, Object> accessor = CardJson.getAccessor(att);
+		return new IndexedPredicate(index) {
 
-		// Special case for split cards and converted manacost
-		if(att.equals(MtgJsonUtil.cmc) && CardUtil.isSplit(info)) {
-			return matchSplitCmc(info, editor);
-		}
+			@Override
+			public boolean matches(CardJson info) {
+				// Special case for split cards and converted manacost
+				if(att.equals(MtgJsonUtil.cmc) && CardUtil.isSplit(info)) {
+					return matchSplitCmc(info, comparison);
+				}
+				Object value = accessor.apply(info);
+				if(value == null) {
+					return comparison.match(0);
+				}
+				return comparison.match(CardUtil.toInt(value));
+			}
+
+			@Override
+			protected BitSet lookup() {
+				BitSet bits = new BitSet();
+				for(Map.Entry<Integer, BitSet> entry : index.getNumberBuckets(att).entrySet()) {
+					if(comparison.match(entry.getKey())) {
+						bits.or(entry.getValue());
+					}
+				}
+				bits.or(index.getUnbucketed(att));
+				return bits;
+			}
+
+			@Override
+			public boolean isExact() {
+				return index != null && index.getUnbucketed(att).isEmpty();
+			}
 
-		return ((NumberPanel) editor).match(toInt(value));
+		};
 	}
 
-	private boolean matchSplitCmc(CardJson info, JComponent editor) {
+	private static boolean matchSplitCmc(CardJson info, NumberPanel.Comparison comparison) {
 		List<String> names = info.names;
 		int allCmc = 0;
 		for(String name : names) {
@@ -337,46 +444,20 @@ public abstract class CardSearchPanel extends SearchPanel<CardJson, Deck> {
 
 			// Allow ourselves to match on either individual cards in
 			// the split card, in addition to the some of the two cards
-			if(((NumberPanel) editor).match(cmc)) {
+			if(comparison.match(cmc)) {
 				return true;
 			}
 
 			allCmc += cmc;
 		}
-		return ((NumberPanel) editor).match(allCmc);
-	}
-
-	private int toInt(Object val) {
-		if(val == null) {
-			return 0;
-		}
-		if(val instanceof String) {
-			if(val.equals("*")) {
-				val = 0;
-			} else {
-
-				if(((String) val).contains("-")) {
-					val = ((String) val).replace("-", "");
-				}
-
-				if(((String) val).contains("+")) {
-					val = ((String) val).replace("+", "");
-				}
-
-				if(((String) val).contains("*")) {
-					val = ((String) val).replace("*", "");
-				}
-
-			}
-		}
-		int intVal = (int) Double.valueOf(val.toString()).doubleValue();
-		return intVal;
+		return comparison.match(allCmc);
 	}
 
 	@Override
-	protected Deck search(SearchNode<CardJson> rootNode, ProgressTask task) {
+	protected Deck search(SearchNode<CardJson> rootNode, ProgressTask task, SearchExecutor.Ticket ticket) {
 		Deck deck = new Deck();
 		try {
+			SearchPlan<CardJson> plan = SearchPlan.compile(rootNode);
 			List<String> cardNames;
 			if(cardsToSearch != null) {
 				cardNames = new ArrayList<String>();
@@ -387,14 +468,50 @@ public abstract class CardSearchPanel extends SearchPanel<CardJson, Deck> {
 				cardNames = CardUtil.getAllCardNames();
 			}
 			int total = cardNames.size();
-			int i = 0;
-			for(String cardName : cardNames) {
-				CardJson info = CardUtil.getCardInfo(cardName);
-				if(rootNode.evaluate(info)) {
-					deck.add(new Card(cardName));
+
+			// Narrow things down with the index first, then only check the
+			// survivors (and any cards the index doesn't know) in parallel.
+			CardIndex index = CardUtil.getCardIndex();
+			int[] ordinals = new int[total];
+			BitSet universe = new BitSet();
+			for(int i = 0; i < total; i++) {
+				ordinals[i] = index == null ? -1 : index.getOrdinal(cardNames.get(i));
+				if(ordinals[i] >= 0) {
+					universe.set(ordinals[i]);
 				}
-				task.setWorkerProgress(i++, total);
 			}
+			BitSet candidates = plan.getRoot().select(universe);
+			boolean exact = plan.getRoot().isExact();
+
+			BitSet matches = new BitSet(total);
+			List<CardJson> infosToCheck = new ArrayList<CardJson>();
+			List<Integer> positionsToCheck = new ArrayList<Integer>();
+			for(int i = 0; i < total; i++) {
+				int ordinal = ordinals[i];
+				if(ordinal >= 0 && !candidates.get(ordinal)) {
+					continue;
+				} else if(ordinal >= 0 && exact) {
+					matches.set(i);
+				} else {
+					CardJson info = CardUtil.getCardInfo(cardNames.get(i));
+					if(info != null) {
+						infosToCheck.add(info);
+						positionsToCheck.add(i);
+					}
+				}
+			}
+
+			BitSet checked = SearchExecutor.search(infosToCheck, plan.getRoot(), ticket, task);
+			for(int j = checked.nextSetBit(0); j >= 0; j = checked.nextSetBit(j + 1)) {
+				matches.set(positionsToCheck.get(j));
+			}
+
+			ticket.checkCancelled();
+			for(int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+				deck.add(new Card(cardNames.get(i)));
+			}
+		} catch (CancellationException e) {
+			return null;
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
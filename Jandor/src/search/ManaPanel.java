@@ -295,108 +295,143 @@ public class ManaPanel extends PPanel {
 	}
 	
 	public boolean match(String colors, String manaCost) {
-		boolean exact = !exactlyButton.isSelected();
-		boolean any = !anyButton.isSelected();
-		
-		// Handle case where colors may not reflect manacost
-		if(colors.isEmpty() && !manaCost.isEmpty()) {
-			colors = ManaUtil.manaToColors(manaCost).toString();
-		}
-		
-		int matchCount = 0;
-		int falseMatchCount = 0;
-		int targetMatchCount = 0;
-		
-		if(whiteCheck.isSelected()) {
-			targetMatchCount++;
-			if(ManaUtil.hasWhite(colors)) {
-				matchCount++;
-			}
-		} else {
-			if(ManaUtil.hasWhite(colors)) {
-				falseMatchCount++;
-			}
-		}
+		return getSelection().match(colors, manaCost);
+	}
 
-		if(blueCheck.isSelected()) {
-			targetMatchCount++;
-			if(ManaUtil.hasBlue(colors)) {
-				matchCount++;
-			}
-		} else {
-			if(ManaUtil.hasBlue(colors)) {
-				falseMatchCount++;
-			}
+	public Selection getSelection() {
+		return new Selection(whiteCheck.isSelected(), blueCheck.isSelected(), blackCheck.isSelected(), redCheck.isSelected(),
+				greenCheck.isSelected(), colorlessCheck.isSelected(), xCheck.isSelected(),
+				!anyButton.isSelected(), !exactlyButton.isSelected());
+	}
+
+	/**
+	 * Snapshot of the checks and toggles currently selected in the panel.
+	 */
+	public static final class Selection {
+
+		private final boolean white;
+		private final boolean blue;
+		private final boolean black;
+		private final boolean red;
+		private final boolean green;
+		private final boolean colorless;
+		private final boolean x;
+		private final boolean any;
+		private final boolean exact;
+
+		public Selection(boolean white, boolean blue, boolean black, boolean red, boolean green, boolean colorless, boolean x, boolean any, boolean exact) {
+			this.white = white;
+			this.blue = blue;
+			this.black = black;
+			this.red = red;
+			this.green = green;
+			this.colorless = colorless;
+			this.x = x;
+			this.any = any;
+			this.exact = exact;
 		}
-		
-		if(blackCheck.isSelected()) {
-			targetMatchCount++;
-			if(ManaUtil.hasBlack(colors)) {
-				matchCount++;
-			}
-		} else {
-			if(ManaUtil.hasBlack(colors)) {
-				falseMatchCount++;
+
+		public boolean match(String colors, String manaCost) {
+			// Handle case where colors may not reflect manacost
+			if(colors.isEmpty() && !manaCost.isEmpty()) {
+				colors = ManaUtil.manaToColors(manaCost).toString();
 			}
-		}
-		
-		if(redCheck.isSelected()) {
-			targetMatchCount++;
-			if(ManaUtil.hasRed(colors)) {
-				matchCount++;
+			
+			int matchCount = 0;
+			int falseMatchCount = 0;
+			int targetMatchCount = 0;
+			
+			if(white) {
+				targetMatchCount++;
+				if(ManaUtil.hasWhite(colors)) {
+					matchCount++;
+				}
+			} else {
+				if(ManaUtil.hasWhite(colors)) {
+					falseMatchCount++;
+				}
 			}
-		} else {
-			if(ManaUtil.hasRed(colors)) {
-				falseMatchCount++;
+
+			if(blue) {
+				targetMatchCount++;
+				if(ManaUtil.hasBlue(colors)) {
+					matchCount++;
+				}
+			} else {
+				if(ManaUtil.hasBlue(colors)) {
+					falseMatchCount++;
+				}
 			}
-		}
-		
-		if(greenCheck.isSelected()) {
-			targetMatchCount++;
-			if(ManaUtil.hasGreen(colors)) {
-				matchCount++;
+			
+			if(black) {
+				targetMatchCount++;
+				if(ManaUtil.hasBlack(colors)) {
+					matchCount++;
+				}
+			} else {
+				if(ManaUtil.hasBlack(colors)) {
+					falseMatchCount++;
+				}
 			}
-		} else {
-			if(ManaUtil.hasGreen(colors)) {
-				falseMatchCount++;
+			
+			if(red) {
+				targetMatchCount++;
+				if(ManaUtil.hasRed(colors)) {
+					matchCount++;
+				}
+			} else {
+				if(ManaUtil.hasRed(colors)) {
+					falseMatchCount++;
+				}
 			}
-		}
-		
-		boolean colorless = matchCount == 0 && falseMatchCount == 0;
-		if(colorless) {
-			return colorlessCheck.isSelected();
-		}
-		
-		if(xCheck.isSelected()) {
-			targetMatchCount++;
-			if(ManaUtil.hasManaSymbol(manaCost, "X")) {
-				matchCount++;
+			
+			if(green) {
+				targetMatchCount++;
+				if(ManaUtil.hasGreen(colors)) {
+					matchCount++;
+				}
+			} else {
+				if(ManaUtil.hasGreen(colors)) {
+					falseMatchCount++;
+				}
 			}
-		} else {
-			if(ManaUtil.hasManaSymbol(manaCost, "X")) {
-				//falseMatchCount++;
+			
+			if(matchCount == 0 && falseMatchCount == 0) {
+				return colorless;
 			}
-		}
-		
-		boolean returnValue;
-		if(any) {
-			if(exact) {
-				returnValue = (matchCount > 0 || targetMatchCount == 0) && falseMatchCount == 0; 
+			
+			if(x) {
+				targetMatchCount++;
+				if(ManaUtil.hasManaSymbol(manaCost, "X")) {
+					matchCount++;
+				}
 			} else {
-				returnValue = (matchCount >= 0 || targetMatchCount == 0);
+				if(ManaUtil.hasManaSymbol(manaCost, "X")) {
+					//falseMatchCount++;
+				}
 			}
-		} else {
-			if(exact) {
-				returnValue = matchCount == targetMatchCount && falseMatchCount == 0;
+			
+			boolean returnValue;
+			if(any) {
+				if(exact) {
+					returnValue = (matchCount > 0 || targetMatchCount == 0) && falseMatchCount == 0; 
+				} else {
+					returnValue = (matchCount >= 0 || targetMatchCount == 0);
+				}
 			} else {
-				returnValue = matchCount >= targetMatchCount;
+				if(exact) {
+					returnValue = matchCount == targetMatchCount && falseMatchCount == 0;
+				} else {
+					returnValue = matchCount >= targetMatchCount;
+				}
 			}
+			
+			if(returnValue) {
+				return true;
+			}
+			return false;
 		}
-		
-		if(returnValue) {
-			return true;
-		}
-		return false;
-	};
+
+	}
 
 }
@@ -65,20 +65,49 @@ public class NumberPanel extends PPanel {
 	}
 
 	public boolean match(int value) {
-		int valueB = ((Integer) spinner.getValue()).intValue();
-		String op = combo.getSelectedItem().toString();
-		if(op.equals("=")) {
-			return value == valueB;
-		} else if(op.equals("<")) {
-			return value < valueB;
-		} else if(op.equals("<=")) {
-			return value <= valueB;
-		} else if(op.equals(">")) {
-			return value > valueB;
-		} else if(op.equals(">=")) {
-			return value >= valueB;
+		return getComparison().match(value);
+	}
+
+	public Comparison getComparison() {
+		return new Comparison(combo.getSelectedItem().toString(), ((Integer) spinner.getValue()).intValue());
+	}
+
+	/**
+	 * Snapshot of the operator and value currently selected in the panel.
+	 */
+	public static final class Comparison {
+
+		private final String op;
+		private final int valueB;
+
+		public Comparison(String op, int valueB) {
+			this.op = op;
+			this.valueB = valueB;
+		}
+
+		public String getOp() {
+			return op;
+		}
+
+		public int getValue() {
+			return valueB;
 		}
-		return false;
+
+		public boolean match(int value) {
+			if(op.equals("=")) {
+				return value == valueB;
+			} else if(op.equals("<")) {
+				return value < valueB;
+			} else if(op.equals("<=")) {
+				return value <= valueB;
+			} else if(op.equals(">")) {
+				return value > valueB;
+			} else if(op.equals(">=")) {
+				return value >= valueB;
+			}
+			return false;
+		}
+
 	}
 
 }
@@ -0,0 +1,175 @@
+package search;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ui.ProgressBar.ProgressTask;
+
+/**
+ * Runs a compiled {@link SearchPredicate} over a list of items on a shared
+ * fork-join pool. The list is split into chunks, each chunk is checked on its
+ * own worker and the matches come back as positions in the original list, so
+ * callers keep the original order.
+ *
+ * Progress is reported at most every {@link #PROGRESS_INTERVAL_MS} and only
+ * when the percentage changes, so the EDT doesn't get flooded.
+ */
+public class SearchExecutor {
+
+	public static final int MIN_CHUNK_SIZE = 256;
+	public static final long PROGRESS_INTERVAL_MS = 50;
+
+	private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	private SearchExecutor() {}
+
+	/**
+	 * A handle on a running search. Cancelling it makes the search stop at the
+	 * next item it looks at.
+	 */
+	public static class Ticket {
+
+		private volatile boolean cancelled = false;
+
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		public void checkCancelled() {
+			if(cancelled) {
+				throw new CancellationException();
+			}
+		}
+
+	}
+
+	/**
+	 * Returns the positions in items that match the predicate.
+	 *
+	 * @throws CancellationException if the ticket was cancelled
+	 */
+	public static <T> BitSet search(List<T> items, SearchPredicate<T> predicate, Ticket ticket, ProgressTask task) throws Exception {
+		Progress progress = new Progress(task, items.size());
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, items.size() / (pool.getParallelism() * 4));
+		try {
+			return pool.invoke(new Chunk<T>(items, 0, items.size(), chunkSize, predicate, ticket, progress));
+		} catch (SearchFailure e) {
+			throw e.getCause();
+		}
+	}
+
+	private static class Chunk<T> extends RecursiveTask<BitSet> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<T> items;
+		private final int from;
+		private final int to;
+		private final int chunkSize;
+		private final SearchPredicate<T> predicate;
+		private final Ticket ticket;
+		private final Progress progress;
+
+		public Chunk(List<T> items, int from, int to, int chunkSize, SearchPredicate<T> predicate, Ticket ticket, Progress progress) {
+			this.items = items;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+			this.predicate = predicate;
+			this.ticket = ticket;
+			this.progress = progress;
+		}
+
+		@Override
+		protected BitSet compute() {
+			if(to - from > chunkSize) {
+				int mid = (from + to) >>> 1;
+				Chunk<T> left = new Chunk<T>(items, from, mid, chunkSize, predicate, ticket, progress);
+				Chunk<T> right = new Chunk<T>(items, mid, to, chunkSize, predicate, ticket, progress);
+				left.fork();
+				BitSet bits = right.compute();
+				bits.or(left.join());
+				return bits;
+			}
+
+			BitSet bits = new BitSet();
+			int done = 0;
+			for(int i = from; i < to; i++) {
+				ticket.checkCancelled();
+				try {
+					if(predicate.matches(items.get(i))) {
+						bits.set(i);
+					}
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new SearchFailure(e);
+				}
+				if(++done == MIN_CHUNK_SIZE) {
+					progress.advance(done);
+					done = 0;
+				}
+			}
+			progress.advance(done);
+			return bits;
+		}
+
+	}
+
+	private static class SearchFailure extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public SearchFailure(Exception cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized Exception getCause() {
+			return (Exception) super.getCause();
+		}
+
+	}
+
+	private static class Progress {
+
+		private final ProgressTask task;
+		private final int total;
+		private final AtomicInteger done = new AtomicInteger();
+		private final AtomicInteger lastPercent = new AtomicInteger(-1);
+		private final AtomicLong lastReport = new AtomicLong();
+
+		public Progress(ProgressTask task, int total) {
+			this.task = task;
+			this.total = total;
+		}
+
+		public void advance(int count) {
+			if(task == null || total == 0) {
+				return;
+			}
+			int percent = (int) Math.floor((done.addAndGet(count) / (double) total) * 100);
+			int last = lastPercent.get();
+			long now = System.currentTimeMillis();
+			long lastTime = lastReport.get();
+			if(percent <= last || (percent < 100 && now - lastTime < PROGRESS_INTERVAL_MS)) {
+				return;
+			}
+			if(lastPercent.compareAndSet(last, percent)) {
+				lastReport.set(now);
+				task.setWorkerProgress(percent);
+			}
+		}
+
+	}
+
+}
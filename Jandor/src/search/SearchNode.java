@@ -479,6 +479,28 @@ public class SearchNode<T> extends PPanel {
 		return children.get(0).isAnd; // Being clever here
 	}
 	
+	/**
+	 * Compiles this node and its children into a predicate that no longer
+	 * reads the editors. Mirrors {@link #evaluate(Object)}.
+	 */
+	public SearchPredicate<T> compile() {
+		if(!hasChildren()) {
+			SearchPredicate<T> predicate = searchPanel.compile(attributeCombo.getSelectedItem().toString(), editor);
+			if(notButton.isSelected()) {
+				return SearchPredicate.not(predicate);
+			}
+			return predicate;
+		}
+		List<SearchPredicate<T>> predicates = new ArrayList<SearchPredicate<T>>();
+		boolean[] ands = new boolean[children.size()];
+		for(int i = 0; i < children.size(); i++) {
+			SearchNode<T> child = children.get(i);
+			predicates.add(child.compile());
+			ands[i] = child.isAnd;
+		}
+		return SearchPredicate.group(predicates, ands);
+	}
+
 	public boolean isMatch(T obj) throws Exception {
 		return searchPanel.match(obj, attributeCombo.getSelectedItem().toString(), editor);
 	}
@@ -13,6 +13,7 @@ import javax.swing.JButton;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JToggleButton;
+import javax.swing.SwingUtilities;
 
 import deck.Deck;
 import ui.GlassPane;
@@ -38,6 +39,7 @@ public abstract class SearchPanel<T, R> extends PPanel {
 	protected JButton singleButton;
 	protected JToggleButton hideButton;
 	protected boolean fullHideText = false;
+	protected volatile SearchExecutor.Ticket currentSearch;
 
 	public SearchPanel() {
 		super();
@@ -58,9 +60,19 @@ public abstract class SearchPanel<T, R> extends PPanel {
 
 		progressBar = new ProgressBar(evalButton) {
 
+			@Override
+			public void actionPerformed(ActionEvent evt) {
+				search();
+			}
+
+			@Override
+			protected ProgressTask createTask() {
+				return new SearchTask(this, currentSearch);
+			}
+
 			@Override
 			public void run(ProgressTask task) {
-				search(task);
+				search((SearchTask) task);
 			}
 
 			@Override
@@ -148,6 +160,7 @@ public abstract class SearchPanel<T, R> extends PPanel {
 	}
 
 	public void update() {
+		cancelSearch();
 		rebuild();
 		revalidate();
 		repaint();
@@ -259,21 +272,64 @@ public abstract class SearchPanel<T, R> extends PPanel {
 		return gp;
 	}
 
+	/**
+	 * Starts a new search, cancelling the one running. Must be called on the
+	 * EDT, where the results are handed over unless another search has
+	 * started since.
+	 */
 	public void search() {
-		progressBar.trigger();
+		cancelSearch();
+		currentSearch = new SearchExecutor.Ticket();
+		progressBar.start();
 	}
 
-	private void search(ProgressTask task) {
-		R results = search(rootNode, task);
-		if(results instanceof Collection) {
-			evalLabel.setText("Found " + ((Collection) results).size() + " Results");
-		} else {
-			evalLabel.setText("");
+	/**
+	 * Stops the search that is running, if any. Its results are dropped.
+	 */
+	public void cancelSearch() {
+		SearchExecutor.Ticket ticket = currentSearch;
+		if(ticket != null) {
+			ticket.cancel();
+		}
+	}
+
+	private class SearchTask extends ProgressTask {
+
+		private final SearchExecutor.Ticket ticket;
+
+		public SearchTask(ProgressBar progressBar, SearchExecutor.Ticket ticket) {
+			progressBar.super(progressBar);
+			this.ticket = ticket;
+		}
+
+	}
+
+	private void search(SearchTask task) {
+		final SearchExecutor.Ticket ticket = task.ticket;
+		if(ticket == null || ticket.isCancelled()) {
+			return;
 		}
-		handleResults(results);
+		final R results = search(rootNode, task, ticket);
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				if(ticket != currentSearch || ticket.isCancelled()) {
+					return;
+				}
+				if(results instanceof Collection) {
+					evalLabel.setText("Found " + ((Collection) results).size() + " Results");
+				} else {
+					evalLabel.setText("");
+				}
+				handleResults(results);
+			}
+
+		});
 	}
 
 	public void clearSearch() {
+		cancelSearch();
 		evalLabel.setText("");
 		handleResults(null);
 	}
@@ -286,7 +342,26 @@ public abstract class SearchPanel<T, R> extends PPanel {
 
 	protected abstract boolean match(T obj, String att, JComponent editor) throws Exception;
 
-	protected abstract R search(SearchNode<T> rootNode, ProgressTask task);
+	/**
+	 * Captures the editor state for one condition. Subclasses should override
+	 * this so searches don't go back to the widgets for every object.
+	 */
+	protected SearchPredicate<T> compile(final String att, final JComponent editor) {
+		return new SearchPredicate<T>() {
+
+			@Override
+			public boolean matches(T obj) throws Exception {
+				return match(obj, att, editor);
+			}
+
+		};
+	}
+
+	/**
+	 * Runs the search. Implementations should stop early and may return null
+	 * once the ticket is cancelled.
+	 */
+	protected abstract R search(SearchNode<T> rootNode, ProgressTask task, SearchExecutor.Ticket ticket);
 
 	protected abstract void handleResults(R results);
 
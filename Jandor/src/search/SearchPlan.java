@@ -0,0 +1,27 @@
+package search;
+
+/**
+ * An immutable snapshot of a {@link SearchNode} tree. The tree is compiled
+ * once per search so the per-object work only touches the data being searched.
+ */
+public final class SearchPlan<T> {
+
+	private final SearchPredicate<T> root;
+
+	private SearchPlan(SearchPredicate<T> root) {
+		this.root = root;
+	}
+
+	public static <T> SearchPlan<T> compile(SearchNode<T> rootNode) {
+		return new SearchPlan<T>(rootNode.compile());
+	}
+
+	public SearchPredicate<T> getRoot() {
+		return root;
+	}
+
+	public boolean matches(T obj) throws Exception {
+		return root.matches(obj);
+	}
+
+}
@@ -0,0 +1,239 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A single compiled condition of a {@link SearchPlan}. Predicates hold
+ * everything they need to test an object and never touch the editor widgets
+ * they were built from.
+ */
+public abstract class SearchPredicate<T> {
+
+	public static final int COST_TRIVIAL = 0;
+	public static final int COST_CHEAP = 1;
+	public static final int COST_LOOKUP = 2;
+	public static final int COST_TEXT = 5;
+	public static final int COST_REGEX = 8;
+	public static final int COST_EXPENSIVE = 20;
+
+	public abstract boolean matches(T obj) throws Exception;
+
+	/**
+	 * Rough relative cost of calling {@link #matches(Object)}, used to
+	 * evaluate cheap conditions before expensive ones.
+	 */
+	public int getCost() {
+		return COST_CHEAP;
+	}
+
+	/**
+	 * Returns the ordinals in universe that might match. Predicates backed by
+	 * an index narrow this down, everything else returns the whole universe.
+	 * The returned set is always a new set that the caller may modify.
+	 */
+	public BitSet select(BitSet universe) {
+		return (BitSet) universe.clone();
+	}
+
+	/**
+	 * Whether {@link #select(BitSet)} returns exactly the matching ordinals,
+	 * so they don't need to be checked with {@link #matches(Object)}.
+	 */
+	public boolean isExact() {
+		return false;
+	}
+
+	public static <T> SearchPredicate<T> always(final boolean value) {
+		return new SearchPredicate<T>() {
+
+			@Override
+			public boolean matches(T obj) {
+				return value;
+			}
+
+			@Override
+			public int getCost() {
+				return COST_TRIVIAL;
+			}
+
+			@Override
+			public BitSet select(BitSet universe) {
+				return value ? (BitSet) universe.clone() : new BitSet();
+			}
+
+			@Override
+			public boolean isExact() {
+				return true;
+			}
+
+		};
+	}
+
+	public static <T> SearchPredicate<T> not(SearchPredicate<T> predicate) {
+		return new Not<T>(predicate);
+	}
+
+	public static <T> SearchPredicate<T> and(List<SearchPredicate<T>> predicates) {
+		boolean[] ands = new boolean[predicates.size()];
+		for(int i = 0; i < ands.length; i++) {
+			ands[i] = true;
+		}
+		return group(predicates, ands);
+	}
+
+	/**
+	 * Builds a group evaluated the same way as {@link SearchNode#evaluate(Object)}.
+	 * Each child carries its own and/or flag. When every child shares the same
+	 * flag the children are reordered cheapest first, otherwise the original
+	 * order is kept.
+	 */
+	public static <T> SearchPredicate<T> group(List<SearchPredicate<T>> predicates, boolean[] ands) {
+		if(predicates.size() == 1 && ands[0]) {
+			return predicates.get(0);
+		}
+		return new Group<T>(predicates, ands);
+	}
+
+	public static class Not<T> extends SearchPredicate<T> {
+
+		private final SearchPredicate<T> predicate;
+
+		public Not(SearchPredicate<T> predicate) {
+			this.predicate = predicate;
+		}
+
+		public SearchPredicate<T> getPredicate() {
+			return predicate;
+		}
+
+		@Override
+		public boolean matches(T obj) throws Exception {
+			return !predicate.matches(obj);
+		}
+
+		@Override
+		public int getCost() {
+			return predicate.getCost();
+		}
+
+		@Override
+		public BitSet select(BitSet universe) {
+			if(!predicate.isExact()) {
+				return super.select(universe);
+			}
+			BitSet bits = (BitSet) universe.clone();
+			bits.andNot(predicate.select(universe));
+			return bits;
+		}
+
+		@Override
+		public boolean isExact() {
+			return predicate.isExact();
+		}
+
+	}
+
+	public static class Group<T> extends SearchPredicate<T> {
+
+		private final List<SearchPredicate<T>> predicates;
+		private final boolean[] ands;
+		private final boolean uniform;
+		private final int cost;
+
+		public Group(List<SearchPredicate<T>> predicates, boolean[] ands) {
+			boolean uniform = true;
+			for(boolean and : ands) {
+				if(and != ands[0]) {
+					uniform = false;
+					break;
+				}
+			}
+
+			List<SearchPredicate<T>> ordered = new ArrayList<SearchPredicate<T>>(predicates);
+			if(uniform) {
+				Collections.sort(ordered, new Comparator<SearchPredicate<T>>() {
+
+					@Override
+					public int compare(SearchPredicate<T> a, SearchPredicate<T> b) {
+						return Integer.compare(a.getCost(), b.getCost());
+					}
+
+				});
+			}
+
+			int cost = 0;
+			for(SearchPredicate<T> predicate : ordered) {
+				cost += predicate.getCost();
+			}
+
+			this.predicates = Collections.unmodifiableList(ordered);
+			this.ands = ands.clone();
+			this.uniform = uniform;
+			this.cost = cost;
+		}
+
+		public List<SearchPredicate<T>> getPredicates() {
+			return predicates;
+		}
+
+		public boolean isAnd(int i) {
+			return ands[uniform ? 0 : i];
+		}
+
+		public boolean isUniform() {
+			return uniform;
+		}
+
+		@Override
+		public boolean matches(T obj) throws Exception {
+			for(int i = 0; i < predicates.size(); i++) {
+				boolean match = predicates.get(i).matches(obj);
+				boolean and = isAnd(i);
+				if(and && !match) {
+					return false;
+				} else if(!and && match) {
+					return true;
+				}
+			}
+			return ands[0];
+		}
+
+		@Override
+		public int getCost() {
+			return cost;
+		}
+
+		@Override
+		public BitSet select(BitSet universe) {
+			// Fold from the back, same as matches: an "and" child must match
+			// along with the rest, an "or" child matching is enough on its own.
+			BitSet bits = ands[0] ? (BitSet) universe.clone() : new BitSet();
+			for(int i = predicates.size() - 1; i >= 0; i--) {
+				BitSet childBits = predicates.get(i).select(universe);
+				if(isAnd(i)) {
+					childBits.and(bits);
+				} else {
+					childBits.or(bits);
+				}
+				bits = childBits;
+			}
+			return bits;
+		}
+
+		@Override
+		public boolean isExact() {
+			for(SearchPredicate<T> predicate : predicates) {
+				if(!predicate.isExact()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+}
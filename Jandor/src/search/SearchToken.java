@@ -0,0 +1,199 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A pre-parsed piece of search text. Plain words and "quoted phrases" are
+ * matched as substrings, '...' is a case insensitive regular expression and a
+ * leading ! negates a plain token.
+ */
+public final class SearchToken {
+
+	private static final Pattern TOKEN_PATTERN = Pattern.compile("('.+?'|\".+?\"|[^\"]\\S*)\\s*", Pattern.CASE_INSENSITIVE);
+
+	private final String text;
+	private final Pattern pattern;
+	private final boolean negated;
+
+	private SearchToken(String text, Pattern pattern, boolean negated) {
+		this.text = text;
+		this.pattern = pattern;
+		this.negated = negated;
+	}
+
+	public static List<SearchToken> parse(String rawText) {
+		if(rawText == null) {
+			return Collections.emptyList();
+		}
+
+		List<SearchToken> list = new ArrayList<SearchToken>();
+		Matcher m = TOKEN_PATTERN.matcher(rawText.toLowerCase());
+		while (m.find()) {
+			String s = m.group(1);
+			if(s.startsWith("\"") && s.endsWith("\"")) {
+				s = s.substring(1, s.length() - 1);
+			}
+			list.add(toToken(s));
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	private static SearchToken toToken(String tok) {
+		if(tok.length() > 1 && tok.startsWith("'") && tok.endsWith("'")) {
+			String regex = tok.substring(1, tok.length() - 1);
+			return new SearchToken(regex, Pattern.compile(regex, Pattern.CASE_INSENSITIVE), false);
+		}
+		tok = tok.toLowerCase();
+		if(tok.startsWith("!")) {
+			return new SearchToken(tok.substring(1), null, true);
+		}
+		return new SearchToken(tok, null, false);
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public boolean isRegex() {
+		return pattern != null;
+	}
+
+	public boolean isNegated() {
+		return negated;
+	}
+
+	/**
+	 * Returns text that every match of this token must contain, which an
+	 * index can use to narrow down candidates. Negated tokens require nothing.
+	 */
+	public List<String> getRequiredLiterals() {
+		if(negated) {
+			return Collections.emptyList();
+		}
+		if(pattern == null) {
+			return Collections.singletonList(text);
+		}
+		return getRequiredLiterals(text);
+	}
+
+	/**
+	 * Pulls the plain runs of characters out of a regular expression. Anything
+	 * inside a group or character class, and any character made optional by a
+	 * quantifier, is skipped. Alternation makes nothing required.
+	 */
+	private static List<String> getRequiredLiterals(String regex) {
+		List<String> literals = new ArrayList<String>();
+		if(regex.indexOf('|') >= 0) {
+			return literals;
+		}
+
+		StringBuilder run = new StringBuilder();
+		int i = 0;
+		while(i < regex.length()) {
+			char c = regex.charAt(i);
+			boolean literal = false;
+			if(c == '\\') {
+				if(i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+					c = regex.charAt(i + 1);
+					literal = true;
+				}
+				i += 2;
+			} else if(c == '(' || c == '[') {
+				i = skipGroup(regex, i);
+			} else if(".^$)]}".indexOf(c) >= 0) {
+				i++;
+			} else if("*?+{".indexOf(c) >= 0) {
+				if(c != '+' && run.length() > 0) {
+					run.setLength(run.length() - 1);
+				}
+				if(c == '{') {
+					int close = regex.indexOf('}', i);
+					i = close < 0 ? regex.length() : close + 1;
+				} else {
+					i++;
+				}
+			} else {
+				literal = true;
+				i++;
+			}
+
+			if(literal) {
+				run.append(c);
+			} else {
+				addLiteral(literals, run);
+			}
+		}
+		addLiteral(literals, run);
+		return literals;
+	}
+
+	private static void addLiteral(List<String> literals, StringBuilder run) {
+		if(run.length() > 0) {
+			literals.add(run.toString());
+			run.setLength(0);
+		}
+	}
+
+	private static int skipGroup(String regex, int i) {
+		char open = regex.charAt(i);
+		char close = open == '(' ? ')' : ']';
+		int depth = 0;
+		while(i < regex.length()) {
+			char c = regex.charAt(i);
+			if(c == '\\') {
+				i += 2;
+				continue;
+			}
+			if(c == open) {
+				depth++;
+			} else if(c == close) {
+				depth--;
+				if(depth == 0) {
+					return i + 1;
+				}
+			}
+			i++;
+		}
+		return i;
+	}
+
+	public boolean matches(String... fullText) {
+		if(pattern != null) {
+			for(String v : fullText) {
+				if(pattern.matcher(v).find()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		for(String v : fullText) {
+			if(v.contains(text)) {
+				return negated ? false : true;
+			}
+		}
+		return negated;
+	}
+
+	public static boolean matchesAll(List<SearchToken> tokens, String... fullText) {
+		for(SearchToken token : tokens) {
+			if(!token.matches(fullText)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static int getCost(List<SearchToken> tokens) {
+		int cost = 0;
+		for(SearchToken token : tokens) {
+			cost += token.isRegex() ? SearchPredicate.COST_REGEX : SearchPredicate.COST_TEXT;
+		}
+		return cost;
+	}
+
+}
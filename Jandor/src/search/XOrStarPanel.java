@@ -29,11 +29,34 @@ public class XOrStarPanel extends PPanel {
 	}
 
 	public boolean match(String manaCost) {
-		if(manaCost == null) {
-			return false;
+		return getSelection().match(manaCost);
+	}
+
+	public Selection getSelection() {
+		return new Selection(starCheck.isSelected(), xCheck.isSelected());
+	}
+
+	/**
+	 * Snapshot of the checks currently selected in the panel.
+	 */
+	public static final class Selection {
+
+		private final boolean star;
+		private final boolean x;
+
+		public Selection(boolean star, boolean x) {
+			this.star = star;
+			this.x = x;
+		}
+
+		public boolean match(String manaCost) {
+			if(manaCost == null) {
+				return false;
+			}
+			return ((star && manaCost.contains("*")) || !star) &&
+					((x && manaCost.contains("X")) || !x);
 		}
-		return ((starCheck.isSelected() && manaCost.contains("*")) || !starCheck.isSelected()) &&
-				((xCheck.isSelected() && manaCost.contains("X")) || !xCheck.isSelected());
+
 	}
 
 }
@@ -1,6 +1,9 @@
 package session;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 
 import javax.xml.bind.annotation.XmlRootElement;
 
@@ -86,6 +89,30 @@ public class BoosterHeader extends SessionData {
 		this.authorUsername = authorUsername;
 	}
 	
+	@Override
+	protected void writeFields(DataOutputStream out) throws IOException {
+		super.writeFields(out);
+		out.writeLong(timeFirstCreated);
+		SessionStore.writeString(out, author);
+		SessionStore.writeString(out, authorGUID);
+		SessionStore.writeString(out, authorUsername);
+		out.writeInt(draftId);
+		out.writeInt(round);
+		out.writeInt(turn);
+	}
+	
+	@Override
+	protected void readFields(DataInputStream in, int version) throws IOException {
+		super.readFields(in, version);
+		timeFirstCreated = in.readLong();
+		author = SessionStore.readString(in);
+		authorGUID = SessionStore.readString(in);
+		authorUsername = SessionStore.readString(in);
+		draftId = in.readInt();
+		round = in.readInt();
+		turn = in.readInt();
+	}
+	
 	@Override
 	public File getFolder() {
 		return FileUtil.getBoosterHeaderFolder();
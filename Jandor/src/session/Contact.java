@@ -1,6 +1,9 @@
 package session;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 
 import javax.xml.bind.annotation.XmlRootElement;
 
@@ -69,6 +72,30 @@ public class Contact extends SessionData {
 		this.defaulUser = defaulUser;
 	}
 
+	@Override
+	protected void writeFields(DataOutputStream out) throws IOException {
+		super.writeFields(out);
+		SessionStore.writeString(out, nickname);
+		SessionStore.writeString(out, jandorEmailPassword);
+		SessionStore.writeString(out, firstName);
+		SessionStore.writeString(out, lastName);
+		SessionStore.writeString(out, notificationEmail);
+		SessionStore.writeString(out, jandorEmail);
+		out.writeBoolean(defaulUser);
+	}
+	
+	@Override
+	protected void readFields(DataInputStream in, int version) throws IOException {
+		super.readFields(in, version);
+		nickname = SessionStore.readString(in);
+		jandorEmailPassword = SessionStore.readString(in);
+		firstName = SessionStore.readString(in);
+		lastName = SessionStore.readString(in);
+		notificationEmail = SessionStore.readString(in);
+		jandorEmail = SessionStore.readString(in);
+		defaulUser = in.readBoolean();
+	}
+	
 	@Override
 	public File getFolder() {
 		return FileUtil.getContactFolder();
@@ -1,6 +1,9 @@
 package session;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -44,6 +47,7 @@ public class DeckContent extends SessionData {
 	}
 	
 	public void setFromDeck(Deck deck) {
+		flagDirty();
 		cards.clear();
 		Map<Card, Integer> countsByCard = deck.getCountsByCard();
 		for(Card card : countsByCard.keySet()) {
@@ -100,17 +104,42 @@ public class DeckContent extends SessionData {
 	}
 	
 	public void setCards(List<CardContent> cards) {
+		flagDirty();
 		this.cards = new ArrayList<CardContent>(cards);
 	}
 	
 	public void addCard(CardContent card) {
+		flagDirty();
 		cards.add(card);
 	}
 	
 	public void clearCards() {
+		flagDirty();
 		cards.clear();
 	}
 	
+	@Override
+	protected void writeFields(DataOutputStream out) throws IOException {
+		super.writeFields(out);
+		out.writeInt(cards.size());
+		for(CardContent card : cards) {
+			SessionStore.writeString(out, card.getName());
+			out.writeInt(card.getCount());
+			out.writeBoolean(card.isSideboard());
+			out.writeBoolean(card.isCommander());
+		}
+	}
+	
+	@Override
+	protected void readFields(DataInputStream in, int version) throws IOException {
+		super.readFields(in, version);
+		int count = in.readInt();
+		cards = new ArrayList<CardContent>(count);
+		for(int i = 0; i < count; i++) {
+			cards.add(new CardContent(SessionStore.readString(in), in.readInt(), in.readBoolean(), in.readBoolean()));
+		}
+	}
+	
 	@Override
 	public File getFolder() {
 		return FileUtil.getContentFolder();
@@ -0,0 +1,167 @@
+package session;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The deck contents {@link Session} has read, and the snapshots built from
+ * them, holding at most a budget of card entries. When a new content goes
+ * over the budget, the least recently used ones that have no unsaved changes
+ * are dropped and read again from the store when next asked for.
+ */
+class DeckContentCache {
+
+	public static final int DEFAULT_BUDGET = 50000;
+
+	private static final class Entry {
+
+		private final DeckContent content;
+		private DeckSnapshot snapshot = null;
+		private int weight;
+
+		public Entry(DeckContent content) {
+			this.content = content;
+			this.weight = getWeight(content);
+		}
+
+	}
+
+	private final int budget;
+	private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<Integer, Entry>(64, 0.75f, true);
+
+	private long weight = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public DeckContentCache() {
+		this(DEFAULT_BUDGET);
+	}
+
+	public DeckContentCache(int budget) {
+		this.budget = budget;
+	}
+
+	private static int getWeight(DeckContent content) {
+		return 1 + content.getCards().size();
+	}
+
+	public synchronized boolean contains(int id) {
+		return entries.containsKey(id);
+	}
+
+	public synchronized DeckContent get(int id) {
+		Entry entry = entries.get(id);
+		if(entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.content;
+	}
+
+	/**
+	 * Replaces whatever was cached for the content's id.
+	 */
+	public synchronized void put(DeckContent content) {
+		remove(content.getId());
+		add(content);
+	}
+
+	/**
+	 * @return The content already cached for the id, or the given one if
+	 *         there was none.
+	 */
+	public synchronized DeckContent putIfAbsent(DeckContent content) {
+		Entry entry = entries.get(content.getId());
+		if(entry != null) {
+			return entry.content;
+		}
+		add(content);
+		return content;
+	}
+
+	private void add(DeckContent content) {
+		Entry entry = new Entry(content);
+		entries.put(content.getId(), entry);
+		weight += entry.weight;
+		if(weight > budget) {
+			evict(content.getId());
+		}
+	}
+
+	public synchronized void remove(int id) {
+		Entry entry = entries.remove(id);
+		if(entry != null) {
+			weight -= entry.weight;
+		}
+	}
+
+	/**
+	 * @return The snapshot built for the cached content, or null if there is
+	 *         none yet.
+	 */
+	public synchronized DeckSnapshot getSnapshot(int id) {
+		Entry entry = entries.get(id);
+		return entry == null ? null : entry.snapshot;
+	}
+
+	/**
+	 * Keeps the snapshot with the content it was built from. Does nothing if
+	 * that content has since been replaced or dropped.
+	 */
+	public synchronized DeckSnapshot putSnapshot(DeckContent content, DeckSnapshot snapshot) {
+		Entry entry = entries.get(content.getId());
+		if(entry == null || entry.content != content) {
+			return snapshot;
+		}
+		if(entry.snapshot != null) {
+			return entry.snapshot;
+		}
+		entry.snapshot = snapshot;
+		weight += snapshot.getWeight();
+		entry.weight += snapshot.getWeight();
+		return snapshot;
+	}
+
+	public synchronized void removeSnapshot(int id) {
+		Entry entry = entries.get(id);
+		if(entry != null && entry.snapshot != null) {
+			weight -= entry.snapshot.getWeight();
+			entry.weight -= entry.snapshot.getWeight();
+			entry.snapshot = null;
+		}
+	}
+
+	private void evict(int newId) {
+		Iterator<Map.Entry<Integer, Entry>> it = entries.entrySet().iterator();
+		while(weight > budget && it.hasNext()) {
+			Map.Entry<Integer, Entry> entry = it.next();
+			if(entry.getKey() == newId || entry.getValue().content.isDirty()) {
+				continue;
+			}
+			weight -= entry.getValue().weight;
+			evictions++;
+			it.remove();
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public int getBudget() {
+		return budget;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return entries.size() + " contents, " + weight + "/" + budget + " entries, " + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+	}
+
+}
@@ -1,6 +1,9 @@
 package session;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -240,6 +243,40 @@ public class DeckHeader extends SessionData {
 		this.inbox = inbox;
 	}
 
+	@Override
+	protected void writeFields(DataOutputStream out) throws IOException {
+		super.writeFields(out);
+		SessionStore.writeString(out, name);
+		out.writeLong(timeLastModified);
+		out.writeLong(timeFirstCreated);
+		SessionStore.writeString(out, colors);
+		SessionStore.writeString(out, author);
+		SessionStore.writeString(out, authorGUID);
+		SessionStore.writeString(out, authorUsername);
+		SessionStore.writeString(out, note);
+		out.writeBoolean(isNew);
+		out.writeInt(revision);
+		SessionStore.writeInts(out, tagIds);
+		out.writeBoolean(inbox);
+	}
+
+	@Override
+	protected void readFields(DataInputStream in, int version) throws IOException {
+		super.readFields(in, version);
+		name = SessionStore.readString(in);
+		timeLastModified = in.readLong();
+		timeFirstCreated = in.readLong();
+		colors = SessionStore.readString(in);
+		author = SessionStore.readString(in);
+		authorGUID = SessionStore.readString(in);
+		authorUsername = SessionStore.readString(in);
+		note = SessionStore.readString(in);
+		isNew = in.readBoolean();
+		revision = in.readInt();
+		tagIds = SessionStore.readInts(in);
+		inbox = in.readBoolean();
+	}
+
 	@Override
 	public File getFolder() {
 		return FileUtil.getHeaderFolder();
@@ -0,0 +1,209 @@
+package session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lookups over the deck headers and tags that {@link Session} keeps up to
+ * date as they are saved and deleted, so finding the decks with a tag, in
+ * the inbox or by an author doesn't scan every header.
+ * <p>
+ * Headers are changed in place and then saved, so what each one was indexed
+ * under is remembered and taken out again when it is re-indexed. Lookups see
+ * headers as they were when last saved. Authors are resolved through the
+ * users sheet, so {@link #reindexAuthors(Collection)} is needed when that
+ * changes. Not thread safe, {@link Session} guards it with its lock.
+ */
+class DeckHeaderIndex {
+
+	private static final class Indexed {
+
+		private final String name;
+		private final String author;
+		private final boolean inbox;
+		private final List<Integer> tagIds;
+
+		public Indexed(DeckHeader header) {
+			this.name = header.getName();
+			this.author = header.getAuthorFormatted();
+			this.inbox = header.isInbox();
+			this.tagIds = new ArrayList<Integer>(header.getTagIds());
+		}
+
+	}
+
+	private final Map<Integer, Indexed> indexed = new HashMap<Integer, Indexed>();
+	private final Map<Integer, Set<Integer>> idsByTagId = new HashMap<Integer, Set<Integer>>();
+	private final Map<String, Set<Integer>> idsByAuthor = new HashMap<String, Set<Integer>>();
+	private final Map<String, String> authorNames = new HashMap<String, String>();
+	private final Map<String, Set<Integer>> idsByName = new HashMap<String, Set<Integer>>();
+	private final Set<Integer> inboxIds = new HashSet<Integer>();
+
+	private final Map<Integer, String> tagNames = new HashMap<Integer, String>();
+	private final Map<String, Set<Tag>> tagsByName = new HashMap<String, Set<Tag>>();
+
+	public void clear() {
+		indexed.clear();
+		idsByTagId.clear();
+		idsByAuthor.clear();
+		authorNames.clear();
+		idsByName.clear();
+		inboxIds.clear();
+		tagNames.clear();
+		tagsByName.clear();
+	}
+
+	public void put(DeckHeader header) {
+		remove(header.getId());
+		Indexed entry = new Indexed(header);
+		indexed.put(header.getId(), entry);
+		for(int tagId : entry.tagIds) {
+			add(idsByTagId, tagId, header.getId());
+		}
+		add(idsByAuthor, key(entry.author), header.getId());
+		if(!authorNames.containsKey(key(entry.author))) {
+			authorNames.put(key(entry.author), entry.author);
+		}
+		add(idsByName, entry.name, header.getId());
+		if(entry.inbox) {
+			inboxIds.add(header.getId());
+		}
+	}
+
+	public void remove(int id) {
+		Indexed entry = indexed.remove(id);
+		if(entry == null) {
+			return;
+		}
+		for(int tagId : entry.tagIds) {
+			remove(idsByTagId, tagId, id);
+		}
+		remove(idsByAuthor, key(entry.author), id);
+		if(!idsByAuthor.containsKey(key(entry.author))) {
+			authorNames.remove(key(entry.author));
+		}
+		remove(idsByName, entry.name, id);
+		inboxIds.remove(id);
+	}
+
+	/**
+	 * Indexes the headers again if their authors now resolve to other names.
+	 */
+	public void reindexAuthors(Collection<DeckHeader> headers) {
+		for(DeckHeader header : headers) {
+			Indexed entry = indexed.get(header.getId());
+			if(entry == null || !String.valueOf(entry.author).equals(header.getAuthorFormatted())) {
+				put(header);
+			}
+		}
+	}
+
+	public void putTag(Tag tag) {
+		removeTag(tag.getId());
+		tagNames.put(tag.getId(), tag.getName());
+		Set<Tag> named = tagsByName.get(key(tag.getName()));
+		if(named == null) {
+			named = new LinkedHashSet<Tag>();
+			tagsByName.put(key(tag.getName()), named);
+		}
+		named.add(tag);
+	}
+
+	public void removeTag(int tagId) {
+		String name = tagNames.remove(tagId);
+		if(name == null) {
+			return;
+		}
+		Set<Tag> named = tagsByName.get(key(name));
+		if(named == null) {
+			return;
+		}
+		for(Tag tag : new ArrayList<Tag>(named)) {
+			if(tag.getId() == tagId) {
+				named.remove(tag);
+			}
+		}
+		if(named.isEmpty()) {
+			tagsByName.remove(key(name));
+		}
+	}
+
+	/**
+	 * @return The tags with the name, ignoring case.
+	 */
+	public Collection<Tag> getTags(String name) {
+		Set<Tag> named = name == null ? null : tagsByName.get(key(name));
+		return named == null ? new ArrayList<Tag>() : named;
+	}
+
+	/**
+	 * @param tag The tag, or null.
+	 * @param authorTag True if the tag is the one {@link Session#getTag(String)}
+	 *        finds for its name, so its decks include those by that author.
+	 * @return The ids of the decks {@link DeckHeader#hasTagId(int)} is true
+	 *         for, with the tag's id.
+	 */
+	public Set<Integer> getIds(int tagId, Tag tag, boolean authorTag, Collection<Integer> allIds) {
+		if(tagId == Tag.ALL_ID) {
+			return new HashSet<Integer>(allIds);
+		}
+		if(tagId == Tag.INBOX_ID) {
+			return new HashSet<Integer>(inboxIds);
+		}
+		Set<Integer> ids = new HashSet<Integer>();
+		Set<Integer> tagged = idsByTagId.get(tagId);
+		if(tagged != null) {
+			ids.addAll(tagged);
+		}
+		if(tag != null && authorTag && tag.getName() != null) {
+			Set<Integer> authored = idsByAuthor.get(key(tag.getName()));
+			if(authored != null) {
+				ids.addAll(authored);
+			}
+		}
+		return ids;
+	}
+
+	public Set<Integer> getInboxIds() {
+		return new HashSet<Integer>(inboxIds);
+	}
+
+	public boolean hasName(String name) {
+		return idsByName.containsKey(name);
+	}
+
+	public List<String> getAuthors() {
+		return new ArrayList<String>(authorNames.values());
+	}
+
+	private static String key(String name) {
+		return name == null ? "" : name.toLowerCase();
+	}
+
+	private static <K> void add(Map<K, Set<Integer>> map, K key, int id) {
+		Set<Integer> ids = map.get(key);
+		if(ids == null) {
+			ids = new HashSet<Integer>();
+			map.put(key, ids);
+		}
+		ids.add(id);
+	}
+
+	private static <K> void remove(Map<K, Set<Integer>> map, K key, int id) {
+		Set<Integer> ids = map.get(key);
+		if(ids == null) {
+			return;
+		}
+		ids.remove(id);
+		if(ids.isEmpty()) {
+			map.remove(key);
+		}
+	}
+
+}
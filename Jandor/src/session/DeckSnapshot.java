@@ -0,0 +1,141 @@
+package session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import deck.Card;
+import deck.Deck;
+
+/**
+ * A saved deck as card names and counts that can't be changed, so analysis
+ * can share one per deck rather than each building its own {@link Deck}.
+ * {@link Session#getDeckSnapshot(int)} hands out the same snapshot until the
+ * deck is saved again.
+ */
+public final class DeckSnapshot {
+
+	public static final class Entry {
+
+		private final String name;
+		private final int count;
+		private final boolean commander;
+
+		public Entry(String name, int count, boolean commander) {
+			this.name = name;
+			this.count = count;
+			this.commander = commander;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public boolean isCommander() {
+			return commander;
+		}
+
+	}
+
+	private final int id;
+	private final String name;
+	private final List<Entry> cards;
+	private final List<Entry> sideboard;
+	private final Map<String, Integer> countsByName;
+	private final int size;
+	private final int sideboardSize;
+
+	public DeckSnapshot(DeckHeader header, DeckContent content) {
+		this.id = header.getId();
+		this.name = header.getName();
+
+		List<Entry> cards = new ArrayList<Entry>();
+		List<Entry> sideboard = new ArrayList<Entry>();
+		Map<String, Integer> countsByName = new LinkedHashMap<String, Integer>();
+		int size = 0;
+		int sideboardSize = 0;
+		for(CardContent cardContent : content.getCards()) {
+			Entry entry = new Entry(cardContent.getName(), cardContent.getCount(), cardContent.isCommander());
+			if(cardContent.isSideboard()) {
+				sideboard.add(entry);
+				sideboardSize += entry.count;
+			} else {
+				cards.add(entry);
+				size += entry.count;
+				Integer count = countsByName.get(entry.name);
+				countsByName.put(entry.name, (count == null ? 0 : count) + entry.count);
+			}
+		}
+		this.cards = Collections.unmodifiableList(cards);
+		this.sideboard = Collections.unmodifiableList(sideboard);
+		this.countsByName = Collections.unmodifiableMap(countsByName);
+		this.size = size;
+		this.sideboardSize = sideboardSize;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<Entry> getCards() {
+		return cards;
+	}
+
+	public List<Entry> getSideboard() {
+		return sideboard;
+	}
+
+	/**
+	 * @return The number of cards in the deck, not counting the sideboard.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getSideboardSize() {
+		return sideboardSize;
+	}
+
+	public int getCount(String cardName) {
+		Integer count = countsByName.get(cardName);
+		return count == null ? 0 : count;
+	}
+
+	public Map<String, Integer> getCountsByName() {
+		return countsByName;
+	}
+
+	/**
+	 * @return A new deck of new cards, for callers that change or render it.
+	 */
+	public Deck toDeck() {
+		Deck deck = new Deck();
+		deck.setName(name);
+		deck.setSideboard(new Deck(name + " - Sideboard"));
+		for(Entry entry : cards) {
+			deck.add(new Card(entry.name), entry.count);
+		}
+		for(Entry entry : sideboard) {
+			deck.getSideboard().add(new Card(entry.name), entry.count);
+		}
+		return deck;
+	}
+
+	/**
+	 * @return The weight of the snapshot in {@link DeckContentCache}.
+	 */
+	int getWeight() {
+		return 1 + cards.size() + sideboard.size();
+	}
+
+}
@@ -1,6 +1,9 @@
 package session;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -228,6 +231,60 @@ public class DraftHeader extends SessionData {
 		return fullName ? author.getFirstName() + " " + author.getLastName() : author.getUsername();
 	}
 	
+	@Override
+	protected void writeFields(DataOutputStream out) throws IOException {
+		super.writeFields(out);
+		out.writeLong(timeFirstCreated);
+		SessionStore.writeString(out, author);
+		SessionStore.writeString(out, authorGUID);
+		SessionStore.writeString(out, authorUsername);
+		out.writeInt(packs);
+		out.writeInt(lands);
+		out.writeInt(mythics);
+		out.writeInt(rares);
+		out.writeInt(uncommons);
+		out.writeInt(commons);
+		out.writeBoolean(includeMythicsAsRares);
+		out.writeBoolean(includeLandsAsRarities);
+		out.writeBoolean(includeFoils);
+		out.writeInt(type);
+		out.writeInt(totalCards);
+		out.writeInt(deckId);
+		out.writeInt(turn);
+		out.writeInt(round);
+		out.writeBoolean(finished);
+		SessionStore.writeStrings(out, userEmails);
+		SessionStore.writeStrings(out, userGUIDs);
+		SessionStore.writeStrings(out, setPacks);
+	}
+	
+	@Override
+	protected void readFields(DataInputStream in, int version) throws IOException {
+		super.readFields(in, version);
+		timeFirstCreated = in.readLong();
+		author = SessionStore.readString(in);
+		authorGUID = SessionStore.readString(in);
+		authorUsername = SessionStore.readString(in);
+		packs = in.readInt();
+		lands = in.readInt();
+		mythics = in.readInt();
+		rares = in.readInt();
+		uncommons = in.readInt();
+		commons = in.readInt();
+		includeMythicsAsRares = in.readBoolean();
+		includeLandsAsRarities = in.readBoolean();
+		includeFoils = in.readBoolean();
+		type = in.readInt();
+		totalCards = in.readInt();
+		deckId = in.readInt();
+		turn = in.readInt();
+		round = in.readInt();
+		finished = in.readBoolean();
+		userEmails = SessionStore.readStrings(in);
+		userGUIDs = SessionStore.readStrings(in);
+		setPacks = SessionStore.readStrings(in);
+	}
+	
 	@Override
 	public File getFolder() {
 		return FileUtil.getDraftHeaderFolder();
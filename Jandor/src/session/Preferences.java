@@ -1,6 +1,9 @@
 package session;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 
 import javax.xml.bind.annotation.XmlRootElement;
 
@@ -16,6 +19,20 @@ public class Preferences extends SessionData {
 		super(00000);
 	}
 
+	@Override
+	protected void writeFields(DataOutputStream out) throws IOException {
+		super.writeFields(out);
+		out.writeBoolean(lightView);
+		out.writeBoolean(showCardCounts);
+	}
+	
+	@Override
+	protected void readFields(DataInputStream in, int version) throws IOException {
+		super.readFields(in, version);
+		lightView = in.readBoolean();
+		showCardCounts = in.readBoolean();
+	}
+	
 	@Override
 	public File getFolder() {
 		return FileUtil.getPreferencesFolder();
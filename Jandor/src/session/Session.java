@@ -1,5 +1,6 @@
 package session;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -7,6 +8,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import util.FileUtil;
 import util.IDUtil;
@@ -14,8 +18,14 @@ import util.JAXBUtil;
 import deck.Card;
 import deck.Deck;
 
-
-
+/**
+ * Everything saved in the session, cached in memory. Lookups take a read lock
+ * and can run at the same time, saving and deleting take the write lock. The
+ * decks with a tag, in the inbox or by an author are kept in a
+ * {@link DeckHeaderIndex} as headers are saved rather than found by scanning
+ * every header. Deck contents are read when first asked for and kept in a
+ * {@link DeckContentCache} of bounded size.
+ */
 public class Session {
 
 	private static Session session;
@@ -24,6 +34,7 @@ public class Session {
 		if(session == null) {
 			session = new Session();
 			session.createFolders();
+			session.openStore();
 			session.cacheData();
 		}
 		return session;
@@ -33,21 +44,6 @@ public class Session {
 		getInstance();
 	}
 
-	private static Deck buildDeck(DeckHeader header, DeckContent content) {
-		Deck deck = new Deck();
-		deck.setName(header.getName());
-		deck.setSideboard(new Deck(header.getName() + " - Sideboard"));
-		for(CardContent cardContent : content.getCards()) {
-			Card card = new Card(cardContent.getName());
-			if(cardContent.isSideboard()) {
-				deck.getSideboard().add(card, cardContent.getCount());
-			} else {
-				deck.add(card, cardContent.getCount());
-			}
-		}
-		return deck;
-	}
-
 	private static Deck buildDeck(DraftHeader header, DraftContent content) {
 		Deck deck = new Deck();
 		deck.setName("Draft");
@@ -63,48 +59,80 @@ public class Session {
 		return deck;
 	}
 
-	private static <T extends SessionData> T newReference(Class<? extends T> klass, int id) {
-		T obj = null;
-		try {
-			obj = (T) klass.newInstance();
-		} catch (InstantiationException e) {
-			e.printStackTrace();
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-		}
-		if(obj == null) {
-			return null;
-		}
-		obj.setId(id);
-		return obj;
-	}
-
 	Map<Integer, DeckHeader> headers = new HashMap<Integer, DeckHeader>();
-	Map<Integer, DeckContent> contents = new HashMap<Integer, DeckContent>();
+	DeckContentCache contents = new DeckContentCache();
 
 	Map<Integer, DraftHeader> draftHeaders = new HashMap<Integer, DraftHeader>();
-	Map<Integer, DraftContent> draftContents = new HashMap<Integer, DraftContent>();
+	Map<Integer, DraftContent> draftContents = new ConcurrentHashMap<Integer, DraftContent>();
 
 	Map<Integer, BoosterHeader> boosterHeaders = new HashMap<Integer, BoosterHeader>();
-	Map<Integer, BoosterContent> boosterContents = new HashMap<Integer, BoosterContent>();
+	Map<Integer, BoosterContent> boosterContents = new ConcurrentHashMap<Integer, BoosterContent>();
 
 	Map<Integer, Tag> tags = new HashMap<Integer, Tag>();
-	Map<Integer, List<Integer>> headerIdsByTagId = new HashMap<Integer, List<Integer>>();
+	DeckHeaderIndex index = new DeckHeaderIndex();
 	Map<Integer, Contact> contacts = new HashMap<Integer, Contact>();
 	Map<Integer, User> users = new HashMap<Integer, User>();
 
 	private Preferences preferences = null;
 
+	private SessionStore store;
+
+	// Content is read in under the read lock, hence the concurrent maps above
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
 	private Session() {}
 
-	@SuppressWarnings({ "unused", "unchecked", "rawtypes" })
-	private Object add(Map data, File file) {
-		SessionData obj = (SessionData) FileUtil.readXML(file);
-		data.put(obj.getId(), obj);
-		return obj;
+	private <T extends SessionData> void addAll(Map<Integer, T> data, Class<T> klass) {
+		for(T obj : store.readAll(klass)) {
+			data.put(obj.getId(), obj);
+		}
 	}
 
-	private synchronized void createFolders() {
+	public SessionStore getStore() {
+		return store;
+	}
+
+	private void openStore() {
+		File file = FileUtil.getSessionStoreFile();
+		boolean migrate = SessionMigrator.isMigrationNeeded(file);
+		if(migrate) {
+			SessionMigrator.markMigrationStarted(file);
+		}
+		try {
+			store = SessionStore.open(file);
+		} catch (IOException e) {
+			e.printStackTrace();
+			File bad = new File(file.getPath() + ".bad");
+			bad.delete();
+			file.renameTo(bad);
+			System.err.println("Moved unreadable session store to " + bad + ", rebuilding it from XML");
+			try {
+				store = SessionStore.open(file);
+			} catch (IOException e2) {
+				throw new IllegalStateException("Could not open session store " + file, e2);
+			}
+			migrate = true;
+		}
+
+		if(migrate) {
+			long time = System.currentTimeMillis();
+			int count = SessionMigrator.migrate(store);
+			if(count > 0) {
+				System.out.println("Migrated " + count + " XML session files in " + (System.currentTimeMillis() - time) + "ms");
+			}
+		}
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+
+			@Override
+			public void run() {
+				store.close();
+			}
+
+		});
+	}
+
+	private void createFolders() {
 		// Create folders if they don't exist
 		FileUtil.getHeaderFolder();
 		FileUtil.getContentFolder();
@@ -118,64 +146,62 @@ public class Session {
 		FileUtil.getPreferencesFolder();
 	}
 
-	private synchronized void cacheData() {
-		// Cache all headers
-		for(File file : FileUtil.getHeaderFiles()) {
-			add(headers, file);
-		}
-
-		// Cache all tags
-		for(File file : FileUtil.getTagFiles()) {
-			Tag tag = (Tag) add(tags, file);
-			getDeckHeaderIdsWithTag(tag);
-		}
+	private void cacheData() {
+		lock.writeLock().lock();
+		try {
+			// Cache all headers
+			addAll(headers, DeckHeader.class);
+			for(DeckHeader header : headers.values()) {
+				index.put(header);
+			}
 
-		if(!hasTag(Tag.ALL_ID)) {
-			Tag tag = new Tag(Tag.ALL_ID);
-			tag.setName("All");
-			tag.save();
-		}
+			// Cache all tags
+			addAll(tags, Tag.class);
+			for(Tag tag : tags.values()) {
+				index.putTag(tag);
+			}
 
-		if(!hasTag(Tag.INBOX_ID)) {
-			Tag tag = new Tag(Tag.INBOX_ID);
-			tag.setName("Inbox");
-			tag.save();
-		}
+			if(!hasTag(Tag.ALL_ID)) {
+				Tag tag = new Tag(Tag.ALL_ID);
+				tag.setName("All");
+				tag.save();
+			}
 
-		for(String author : getAuthors()) {
-			if(!hasTag(author)) {
-				Tag tag = new Tag();
-				tag.newId();
-				tag.setName(author);
+			if(!hasTag(Tag.INBOX_ID)) {
+				Tag tag = new Tag(Tag.INBOX_ID);
+				tag.setName("Inbox");
 				tag.save();
 			}
-		}
 
-		// Cache all contacts
-		for(File file : FileUtil.getContactFiles()) {
-			add(contacts, file);
-		}
+			for(String author : getAuthors()) {
+				if(!hasTag(author)) {
+					Tag tag = new Tag();
+					tag.newId();
+					tag.setName(author);
+					tag.save();
+				}
+			}
 
-		// Cache all users
-		for(File file : FileUtil.getUserFiles()) {
-			add(users, file);
-		}
+			// Cache all contacts
+			addAll(contacts, Contact.class);
 
-		// Cache all draft headers
-		for(File file : FileUtil.getDraftHeaderFiles()) {
-			add(draftHeaders, file);
-		}
+			// Cache all users
+			addAll(users, User.class);
 
-		// Cache all booster headers
-		for(File file : FileUtil.getBoosterHeaderFiles()) {
-			add(boosterHeaders, file);
-		}
+			// Cache all draft headers
+			addAll(draftHeaders, DraftHeader.class);
 
-		// Cache all booster headers
-		for(File file : FileUtil.getPreferenceFiles()) {
-			preferences = (Preferences) FileUtil.readXML(file);
-		}
+			// Cache all booster headers
+			addAll(boosterHeaders, BoosterHeader.class);
+
+			// Cache preferences
+			for(Preferences p : store.readAll(Preferences.class)) {
+				preferences = p;
+			}
 
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	public Preferences getPreferences() {
@@ -186,551 +212,894 @@ public class Session {
 		return preferences;
 	}
 
-	public synchronized boolean hasDeckHeader(int id) {
-		return headers.containsKey(id);
+	public boolean hasDeckHeader(int id) {
+		lock.readLock().lock();
+		try {
+			return headers.containsKey(id);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized boolean hasDraftHeader(int id) {
-		return draftHeaders.containsKey(id);
+	public boolean hasDraftHeader(int id) {
+		lock.readLock().lock();
+		try {
+			return draftHeaders.containsKey(id);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized boolean hasBoosterHeader(int id) {
-		return boosterHeaders.containsKey(id);
+	public boolean hasBoosterHeader(int id) {
+		lock.readLock().lock();
+		try {
+			return boosterHeaders.containsKey(id);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized boolean hasTag(int id) {
-		return tags.containsKey(id);
+	public boolean hasTag(int id) {
+		lock.readLock().lock();
+		try {
+			return tags.containsKey(id);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized boolean hasTag(String tagName) {
-		for(Tag tag : tags.values()) {
-			if(tag.getName().equals(tagName)) {
-				return true;
+	public boolean hasTag(String tagName) {
+		lock.readLock().lock();
+		try {
+			for(Tag tag : index.getTags(tagName)) {
+				if(tag.getName().equals(tagName)) {
+					return true;
+				}
 			}
+			return false;
+		} finally {
+			lock.readLock().unlock();
 		}
-		return false;
 	}
 
-	public synchronized Tag getTag(String tagName) {
-		for(Tag tag : tags.values()) {
-			if(tag.getName().equalsIgnoreCase(tagName)) {
+	public Tag getTag(String tagName) {
+		lock.readLock().lock();
+		try {
+			for(Tag tag : index.getTags(tagName)) {
 				return tag;
 			}
+			return null;
+		} finally {
+			lock.readLock().unlock();
 		}
-		return null;
 	}
 
-	public synchronized int getTagIdForAuthor(String authorFormatted) {
-		Tag tag = getTag(authorFormatted);
-		if(tag != null) {
-			return tag.getId();
+	public int getTagIdForAuthor(String authorFormatted) {
+		lock.readLock().lock();
+		try {
+			Tag tag = getTag(authorFormatted);
+			if(tag != null) {
+				return tag.getId();
+			}
+			return 0;
+		} finally {
+			lock.readLock().unlock();
 		}
-		return 0;
-	}
-
-	public synchronized void rebuildHeadersByTagIdCache() {
-		headerIdsByTagId.clear();
 	}
 
-	public synchronized boolean hasDeckContent(int id) {
-		DeckContent content = newReference(DeckContent.class, id);
-		return content.exists();
+	/**
+	 * Rebuilds the deck and tag lookups from what is cached. They are kept up
+	 * to date as headers and tags are saved, so this is only needed if they
+	 * were changed some other way.
+	 */
+	public void rebuildHeadersByTagIdCache() {
+		lock.writeLock().lock();
+		try {
+			index.clear();
+			for(DeckHeader header : headers.values()) {
+				index.put(header);
+			}
+			for(Tag tag : tags.values()) {
+				index.putTag(tag);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
-	public synchronized boolean hasDraftContent(int id) {
-		DraftContent draftContent = newReference(DraftContent.class, id);
-		return draftContent.exists();
+	public boolean hasDeckContent(int id) {
+		lock.readLock().lock();
+		try {
+			return store.contains(DeckContent.class, id);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized boolean hasBoosterContent(int id) {
-		BoosterContent boosterContent = newReference(BoosterContent.class, id);
-		return boosterContent.exists();
+	public boolean hasDraftContent(int id) {
+		lock.readLock().lock();
+		try {
+			return store.contains(DraftContent.class, id);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized DeckHeader getDeckHeader(int id) {
-		if(!hasDeckHeader(id)) {
-			return null;
+	public boolean hasBoosterContent(int id) {
+		lock.readLock().lock();
+		try {
+			return store.contains(BoosterContent.class, id);
+		} finally {
+			lock.readLock().unlock();
 		}
-		return headers.get(id);
 	}
 
-	public synchronized DraftHeader getDraftHeader(int id) {
-		if(!hasDraftHeader(id)) {
-			return null;
+	public DeckHeader getDeckHeader(int id) {
+		lock.readLock().lock();
+		try {
+			if(!hasDeckHeader(id)) {
+				return null;
+			}
+			return headers.get(id);
+		} finally {
+			lock.readLock().unlock();
 		}
-		return draftHeaders.get(id);
 	}
 
-	public synchronized BoosterHeader getBoosterHeader(int id) {
-		if(!hasBoosterHeader(id)) {
-			return null;
+	public DraftHeader getDraftHeader(int id) {
+		lock.readLock().lock();
+		try {
+			if(!hasDraftHeader(id)) {
+				return null;
+			}
+			return draftHeaders.get(id);
+		} finally {
+			lock.readLock().unlock();
 		}
-		return boosterHeaders.get(id);
 	}
 
-	public synchronized boolean hasDeckHeader(String name) {
-		for(DeckHeader header : headers.values()) {
-			if(header.getName().equals(name)) {
-				return true;
+	public BoosterHeader getBoosterHeader(int id) {
+		lock.readLock().lock();
+		try {
+			if(!hasBoosterHeader(id)) {
+				return null;
 			}
+			return boosterHeaders.get(id);
+		} finally {
+			lock.readLock().unlock();
 		}
-		return false;
 	}
 
-	public synchronized Tag getTag(int id) {
-		if(!hasTag(id)) {
-			return null;
+	public boolean hasDeckHeader(String name) {
+		lock.readLock().lock();
+		try {
+			return index.hasName(name);
+		} finally {
+			lock.readLock().unlock();
 		}
-		return tags.get(id);
 	}
 
-	public synchronized DeckContent getDeckContent(int id) {
-		if(!hasDeckContent(id)) {
-			return null;
-		}
-		if(!contents.containsKey(id)) {
-			add(contents, newReference(DeckContent.class, id).getFile());
+	public Tag getTag(int id) {
+		lock.readLock().lock();
+		try {
+			if(!hasTag(id)) {
+				return null;
+			}
+			return tags.get(id);
+		} finally {
+			lock.readLock().unlock();
 		}
-		return contents.get(id);
 	}
 
-	public synchronized DraftContent getDraftContent(int id) {
-		if(!hasDraftContent(id)) {
-			return null;
-		}
-		if(!draftContents.containsKey(id)) {
-			add(draftContents, newReference(DraftContent.class, id).getFile());
+	public DeckContent getDeckContent(int id) {
+		lock.readLock().lock();
+		try {
+			if(!hasDeckContent(id)) {
+				return null;
+			}
+			DeckContent content = contents.get(id);
+			if(content == null) {
+				content = store.read(DeckContent.class, id);
+				if(content == null) {
+					return null;
+				}
+				content = contents.putIfAbsent(content);
+			}
+			return content;
+		} finally {
+			lock.readLock().unlock();
 		}
-		return draftContents.get(id);
 	}
 
-	public synchronized BoosterContent getBoosterContent(int id) {
-		if(!hasBoosterContent(id)) {
-			return null;
-		}
-		if(!boosterContents.containsKey(id)) {
-			add(boosterContents, newReference(BoosterContent.class, id).getFile());
+	public DraftContent getDraftContent(int id) {
+		lock.readLock().lock();
+		try {
+			if(!hasDraftContent(id)) {
+				return null;
+			}
+			if(!draftContents.containsKey(id)) {
+				DraftContent content = store.read(DraftContent.class, id);
+				if(content == null) {
+					return null;
+				}
+				draftContents.putIfAbsent(id, content);
+			}
+			return draftContents.get(id);
+		} finally {
+			lock.readLock().unlock();
 		}
-		return boosterContents.get(id);
 	}
 
-	public synchronized List<DeckHeader> getDeckHeadersWithTagId(int tagId) {
-		return getDeckHeadersWithTagId(tagId, false);
+	public BoosterContent getBoosterContent(int id) {
+		lock.readLock().lock();
+		try {
+			if(!hasBoosterContent(id)) {
+				return null;
+			}
+			if(!boosterContents.containsKey(id)) {
+				BoosterContent content = store.read(BoosterContent.class, id);
+				if(content == null) {
+					return null;
+				}
+				boosterContents.putIfAbsent(id, content);
+			}
+			return boosterContents.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized List<DeckHeader> getDeckHeadersWithTagId(int tagId, boolean ignoreInbox) {
-		List<DeckHeader> tagIdHeaders = new ArrayList<DeckHeader>();
-		for(DeckHeader header : headers.values()) {
-			if(header.hasTagId(tagId) && (!ignoreInbox || (ignoreInbox && !header.isInbox()))) {
-				tagIdHeaders.add(header);
-			}
+	public List<DeckHeader> getDeckHeadersWithTagId(int tagId) {
+		lock.readLock().lock();
+		try {
+			return getDeckHeadersWithTagId(tagId, false);
+		} finally {
+			lock.readLock().unlock();
 		}
-		return tagIdHeaders;
 	}
 
-	public synchronized List<DeckHeader> getDeckHeadersInInbox() {
-		List<DeckHeader> tagIdHeaders = new ArrayList<DeckHeader>();
-		for(DeckHeader header : headers.values()) {
-			if(header.isInbox()) {
-				tagIdHeaders.add(header);
+	public List<DeckHeader> getDeckHeadersWithTagId(int tagId, boolean ignoreInbox) {
+		lock.readLock().lock();
+		try {
+			Set<Integer> ids = getIdsWithTagId(tagId);
+			if(ignoreInbox) {
+				ids.removeAll(index.getInboxIds());
 			}
+			return getDeckHeaders(ids);
+		} finally {
+			lock.readLock().unlock();
 		}
-		return tagIdHeaders;
 	}
 
-	public synchronized List<Integer> getDeckHeaderIdsWithTagId(int tagId) {
-		List<Integer> tagIdHeaders = new ArrayList<Integer>();
+	public List<DeckHeader> getDeckHeadersInInbox() {
+		lock.readLock().lock();
+		try {
+			return getDeckHeaders(index.getInboxIds());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
 
-		if(headerIdsByTagId.containsKey(tagId)) {
-			return new ArrayList<Integer>(headerIdsByTagId.get(tagId));
+	public List<Integer> getDeckHeaderIdsWithTagId(int tagId) {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<Integer>(getIdsWithTagId(tagId));
+		} finally {
+			lock.readLock().unlock();
 		}
+	}
+
+	private Set<Integer> getIdsWithTagId(int tagId) {
+		Tag tag = getTag(tagId);
+		boolean authorTag = tag != null && getTagIdForAuthor(tag.getName()) == tagId;
+		return index.getIds(tagId, tag, authorTag, headers.keySet());
+	}
 
-		for(DeckHeader header : headers.values()) {
-			if(header.hasTagId(tagId)) {
-				tagIdHeaders.add(header.getId());
+	private List<DeckHeader> getDeckHeaders(Collection<Integer> ids) {
+		List<DeckHeader> found = new ArrayList<DeckHeader>(ids.size());
+		for(int id : ids) {
+			DeckHeader header = headers.get(id);
+			if(header != null) {
+				found.add(header);
 			}
 		}
-		headerIdsByTagId.put(tagId, tagIdHeaders);
-
-		return tagIdHeaders;
+		return found;
 	}
 
-	public synchronized List<DeckHeader> getDeckHeadersWithTag(Tag tag) {
-		if(tag == null) {
-			return new ArrayList<DeckHeader>();
+	public List<DeckHeader> getDeckHeadersWithTag(Tag tag) {
+		lock.readLock().lock();
+		try {
+			if(tag == null) {
+				return new ArrayList<DeckHeader>();
+			}
+			return getDeckHeadersWithTagId(tag.getId());
+		} finally {
+			lock.readLock().unlock();
 		}
-		return getDeckHeadersWithTagId(tag.getId());
 	}
 
-	public synchronized List<Integer> getDeckHeaderIdsWithTag(Tag tag) {
-		if(tag == null) {
-			return new ArrayList<Integer>();
+	public List<Integer> getDeckHeaderIdsWithTag(Tag tag) {
+		lock.readLock().lock();
+		try {
+			if(tag == null) {
+				return new ArrayList<Integer>();
+			}
+			return getDeckHeaderIdsWithTagId(tag.getId());
+		} finally {
+			lock.readLock().unlock();
 		}
-		return getDeckHeaderIdsWithTagId(tag.getId());
 	}
 
-	public synchronized List<Integer> getDeckIds() {
-		return new ArrayList<Integer>(headers.keySet());
+	public List<Integer> getDeckIds() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<Integer>(headers.keySet());
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized boolean hasContact() {
-		return hasContact(Contact.USER_ID);
+	public boolean hasContact() {
+		lock.readLock().lock();
+		try {
+			return hasContact(Contact.USER_ID);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized boolean hasContact(int id) {
-		return contacts.containsKey(id);
+	public boolean hasContact(int id) {
+		lock.readLock().lock();
+		try {
+			return contacts.containsKey(id);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized boolean hasContactEmail() {
-		return hasContact(Contact.USER_ID) && !getContact(Contact.USER_ID).getJandorEmail().isEmpty();
+	public boolean hasContactEmail() {
+		lock.readLock().lock();
+		try {
+			return hasContact(Contact.USER_ID) && !getContact(Contact.USER_ID).getJandorEmail().isEmpty();
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized Contact getContact() {
-		return getContact(Contact.USER_ID);
+	public Contact getContact() {
+		lock.readLock().lock();
+		try {
+			return getContact(Contact.USER_ID);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized Contact getContact(int id) {
-		if(!hasContact(id)) {
-			return null;
+	public Contact getContact(int id) {
+		lock.readLock().lock();
+		try {
+			if(!hasContact(id)) {
+				return null;
+			}
+			return contacts.get(id);
+		} finally {
+			lock.readLock().unlock();
 		}
-		return contacts.get(id);
 	}
 
-	public synchronized Contact getContactByName(String name) {
-		for(Contact contact : contacts.values()) {
-			if(contact.getNickname().equalsIgnoreCase(name)) {
-				return contact;
+	public Contact getContactByName(String name) {
+		lock.readLock().lock();
+		try {
+			for(Contact contact : contacts.values()) {
+				if(contact.getNickname().equalsIgnoreCase(name)) {
+					return contact;
+				}
 			}
+			return null;
+		} finally {
+			lock.readLock().unlock();
 		}
-		return null;
 	}
 
-	public synchronized Contact getContactByEmail(String email) {
-		for(Contact contact : contacts.values()) {
-			if(contact.getJandorEmail().equals(email)) {
-				return contact;
+	public Contact getContactByEmail(String email) {
+		lock.readLock().lock();
+		try {
+			for(Contact contact : contacts.values()) {
+				if(contact.getJandorEmail().equals(email)) {
+					return contact;
+				}
 			}
+			return null;
+		} finally {
+			lock.readLock().unlock();
 		}
-		return null;
 	}
 
-	public synchronized void removeContact(Contact contact) {
-		if(contact == null) {
-			return;
+	public void removeContact(Contact contact) {
+		lock.writeLock().lock();
+		try {
+			if(contact == null) {
+				return;
+			}
+
+			int id = contact.getId();
+			if(!contacts.containsKey(id)) {
+				return;
+			}
+			contacts.remove(id);
+		} finally {
+			lock.writeLock().unlock();
 		}
+	}
 
-		int id = contact.getId();
-		if(!contacts.containsKey(id)) {
-			return;
+	public List<Contact> getContacts() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<Contact>(contacts.values());
+		} finally {
+			lock.readLock().unlock();
 		}
-		contacts.remove(id);
 	}
 
-	public synchronized List<Contact> getContacts() {
-		return new ArrayList<Contact>(contacts.values());
+	public List<Contact> getContacts(boolean ignoreUser) {
+		lock.readLock().lock();
+		try {
+			List<Contact> t = new ArrayList<Contact>(contacts.values());
+			if(ignoreUser && hasContact(Contact.USER_ID)) {
+				t.remove(getContact(Contact.USER_ID));
+			}
+			return t;
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized List<Contact> getContacts(boolean ignoreUser) {
-		List<Contact> t = new ArrayList<Contact>(contacts.values());
-		if(ignoreUser && hasContact(Contact.USER_ID)) {
-			t.remove(getContact(Contact.USER_ID));
+	public boolean hasUser() {
+		lock.readLock().lock();
+		try {
+			return hasUser(User.USER_ID);
+		} finally {
+			lock.readLock().unlock();
 		}
-		return t;
 	}
 
-	public synchronized boolean hasUser() {
-		return hasUser(User.USER_ID);
+	public boolean hasUser(int id) {
+		lock.readLock().lock();
+		try {
+			return users.containsKey(id);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized boolean hasUser(int id) {
-		return users.containsKey(id);
+	public boolean hasUserEmail() {
+		lock.readLock().lock();
+		try {
+			return hasUser(User.USER_ID) && !getUser(User.USER_ID).getEmail().isEmpty();
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized boolean hasUserEmail() {
-		return hasUser(User.USER_ID) && !getUser(User.USER_ID).getEmail().isEmpty();
+	public User getUser() {
+		lock.readLock().lock();
+		try {
+			return getUser(User.USER_ID);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized User getUser() {
-		return getUser(User.USER_ID);
+	public User getUser(int id) {
+		lock.readLock().lock();
+		try {
+			if(!hasUser(id)) {
+				return null;
+			}
+			return users.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized User getUser(int id) {
-		if(!hasUser(id)) {
+	public User getUserByName(String name) {
+		lock.readLock().lock();
+		try {
+			for(User user : users.values()) {
+				if(user.getUsername().equalsIgnoreCase(name)) {
+					return user;
+				}
+			}
 			return null;
+		} finally {
+			lock.readLock().unlock();
 		}
-		return users.get(id);
 	}
 
-	public synchronized User getUserByName(String name) {
-		for(User user : users.values()) {
-			if(user.getUsername().equalsIgnoreCase(name)) {
-				return user;
+	public User getUserByEmail(String email) {
+		lock.readLock().lock();
+		try {
+			for(User user : users.values()) {
+				if(user.getEmail().equals(email)) {
+					return user;
+				}
 			}
+			return null;
+		} finally {
+			lock.readLock().unlock();
 		}
-		return null;
 	}
 
-	public synchronized User getUserByEmail(String email) {
-		for(User user : users.values()) {
-			if(user.getEmail().equals(email)) {
-				return user;
+	public void removeUser(User user) {
+		lock.writeLock().lock();
+		try {
+			if(user == null) {
+				return;
+			}
+
+			int id = user.getId();
+			if(!users.containsKey(id)) {
+				return;
 			}
+			users.remove(id);
+		} finally {
+			lock.writeLock().unlock();
 		}
-		return null;
 	}
 
-	public synchronized void removeUser(User user) {
-		if(user == null) {
-			return;
+	public List<DeckHeader> getDeckHeaders() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<DeckHeader>(headers.values());
+		} finally {
+			lock.readLock().unlock();
 		}
+	}
 
-		int id = user.getId();
-		if(!users.containsKey(id)) {
-			return;
+	public List<DraftHeader> getDraftHeaders() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<DraftHeader>(draftHeaders.values());
+		} finally {
+			lock.readLock().unlock();
 		}
-		users.remove(id);
 	}
 
-	public synchronized List<DeckHeader> getDeckHeaders() {
-		return new ArrayList<DeckHeader>(headers.values());
+	public List<BoosterHeader> getBoosterHeaders() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<BoosterHeader>(boosterHeaders.values());
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized List<DraftHeader> getDraftHeaders() {
-		return new ArrayList<DraftHeader>(draftHeaders.values());
+	public List<Tag> getTags() {
+		lock.readLock().lock();
+		try {
+			return getTags(false);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized List<BoosterHeader> getBoosterHeaders() {
-		return new ArrayList<BoosterHeader>(boosterHeaders.values());
+	public List<Tag> getTags(boolean ignoreDefaults) {
+		lock.readLock().lock();
+		try {
+			List<Tag> t = new ArrayList<Tag>(tags.values());
+			if(ignoreDefaults) {
+				t.remove(getTag(Tag.ALL_ID));
+				t.remove(getTag(Tag.INBOX_ID));
+			}
+			return t;
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized List<Tag> getTags() {
-		return getTags(false);
+	/**
+	 * Catches the deck lookups up with the users sheet, after it changes.
+	 */
+	public void reindexAuthors() {
+		lock.writeLock().lock();
+		try {
+			index.reindexAuthors(headers.values());
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
-	public synchronized List<Tag> getTags(boolean ignoreDefaults) {
-		List<Tag> t = new ArrayList<Tag>(tags.values());
-		if(ignoreDefaults) {
-			t.remove(getTag(Tag.ALL_ID));
-			t.remove(getTag(Tag.INBOX_ID));
+	public List<String> getAuthors() {
+		lock.readLock().lock();
+		try {
+			return index.getAuthors();
+		} finally {
+			lock.readLock().unlock();
 		}
-		return t;
 	}
 
-	public synchronized List<String> getAuthors() {
-		List<String> authors = new ArrayList<>();
-		for(int id : getDeckIds()) {
+	/**
+	 * @return The saved deck, shared with every other caller until the deck is
+	 *         saved again, or null if there is no such deck.
+	 */
+	public DeckSnapshot getDeckSnapshot(int id) {
+		lock.readLock().lock();
+		try {
 			DeckHeader header = getDeckHeader(id);
-			String author = header.getAuthorFormatted();
-			if(!authors.contains(author)) {
-				authors.add(author);
+			DeckContent content = getDeckContent(id);
+			if(header == null || content == null) {
+				return null;
 			}
+			DeckSnapshot snapshot = contents.getSnapshot(id);
+			if(snapshot == null) {
+				snapshot = contents.putSnapshot(content, new DeckSnapshot(header, content));
+			}
+			return snapshot;
+		} finally {
+			lock.readLock().unlock();
 		}
-		return authors;
 	}
 
-	public synchronized Deck getDeck(int id) {
-		if(!hasDeckHeader(id) || !hasDeckContent(id)) {
-			if(!hasDraftHeader(id) || !hasDraftContent(id)) {
-				return null;
+	public Deck getDeck(int id) {
+		lock.readLock().lock();
+		try {
+			if(!hasDeckHeader(id) || !hasDeckContent(id)) {
+				if(!hasDraftHeader(id) || !hasDraftContent(id)) {
+					return null;
+				}
+				return buildDeck(getDraftHeader(id), getDraftContent(id));
 			}
-			return buildDeck(getDraftHeader(id), getDraftContent(id));
+			DeckSnapshot snapshot = getDeckSnapshot(id);
+			return snapshot == null ? null : snapshot.toDeck();
+		} finally {
+			lock.readLock().unlock();
 		}
-		return buildDeck(getDeckHeader(id), getDeckContent(id));
 	}
 
-	public synchronized void removeDeckHeader(DeckHeader header) {
-		if(header == null) {
-			return;
-		}
+	public void removeDeckHeader(DeckHeader header) {
+		lock.writeLock().lock();
+		try {
+			if(header == null) {
+				return;
+			}
 
-		int id = header.getId();
-		if(!headers.containsKey(id)) {
-			return;
-		}
-		headers.remove(id);
-		for(int tagId : header.getTagIds()) {
-			headerIdsByTagId.remove(tagId);
+			int id = header.getId();
+			if(!headers.containsKey(id)) {
+				return;
+			}
+			headers.remove(id);
+			index.remove(id);
+			contents.removeSnapshot(id);
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 
-	public synchronized void removeDraftHeader(DraftHeader header) {
-		if(header == null) {
-			return;
-		}
+	public void removeDraftHeader(DraftHeader header) {
+		lock.writeLock().lock();
+		try {
+			if(header == null) {
+				return;
+			}
 
-		int id = header.getId();
-		if(!draftHeaders.containsKey(id)) {
-			return;
+			int id = header.getId();
+			if(!draftHeaders.containsKey(id)) {
+				return;
+			}
+			draftHeaders.remove(id);
+		} finally {
+			lock.writeLock().unlock();
 		}
-		draftHeaders.remove(id);
 	}
 
-	public synchronized void removeBoosterHeader(BoosterHeader header) {
-		if(header == null) {
-			return;
-		}
+	public void removeBoosterHeader(BoosterHeader header) {
+		lock.writeLock().lock();
+		try {
+			if(header == null) {
+				return;
+			}
 
-		int id = header.getId();
-		if(!boosterHeaders.containsKey(id)) {
-			return;
+			int id = header.getId();
+			if(!boosterHeaders.containsKey(id)) {
+				return;
+			}
+			boosterHeaders.remove(id);
+		} finally {
+			lock.writeLock().unlock();
 		}
-		boosterHeaders.remove(id);
 	}
 
-	public synchronized void removeTag(Tag tag) {
-		if(tag == null) {
-			return;
-		}
+	public void removeTag(Tag tag) {
+		lock.writeLock().lock();
+		try {
+			if(tag == null) {
+				return;
+			}
 
-		int id = tag.getId();
-		if(!tags.containsKey(id)) {
-			return;
-		}
+			int id = tag.getId();
+			if(!tags.containsKey(id)) {
+				return;
+			}
 
-		tags.remove(id);
-		for(DeckHeader header : getDeckHeadersWithTagId(id)) {
-			header.removeTagId(id);
-			header.save();
+			tags.remove(id);
+			index.removeTag(id);
+			for(DeckHeader header : getDeckHeadersWithTagId(id)) {
+				header.removeTagId(id);
+				header.save();
+			}
+		} finally {
+			lock.writeLock().unlock();
 		}
-		headerIdsByTagId.remove(id);
 	}
 
-	public synchronized void removeDeckContent(DeckContent content) {
-		if(content == null) {
-			return;
-		}
+	public void removeDeckContent(DeckContent content) {
+		lock.writeLock().lock();
+		try {
+			if(content == null) {
+				return;
+			}
 
-		int id = content.getId();
-		if(contents.containsKey(id)) {
+			int id = content.getId();
 			contents.remove(id);
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 
-	public synchronized void removeDraftContent(DraftContent content) {
-		if(content == null) {
-			return;
-		}
+	public void removeDraftContent(DraftContent content) {
+		lock.writeLock().lock();
+		try {
+			if(content == null) {
+				return;
+			}
 
-		int id = content.getId();
-		if(draftContents.containsKey(id)) {
-			draftContents.remove(id);
+			int id = content.getId();
+			if(draftContents.containsKey(id)) {
+				draftContents.remove(id);
+			}
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 
-	public synchronized void removeBoosterContent(BoosterContent content) {
-		if(content == null) {
-			return;
-		}
+	public void removeBoosterContent(BoosterContent content) {
+		lock.writeLock().lock();
+		try {
+			if(content == null) {
+				return;
+			}
 
-		int id = content.getId();
-		if(boosterContents.containsKey(id)) {
-			boosterContents.remove(id);
+			int id = content.getId();
+			if(boosterContents.containsKey(id)) {
+				boosterContents.remove(id);
+			}
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 
-	public synchronized void cache(SessionData data) {
-		if(data == null) {
-			return;
-		}
+	public void cache(SessionData data) {
+		lock.writeLock().lock();
+		try {
+			if(data == null) {
+				return;
+			}
 
-		if(data instanceof DeckHeader) {
-			headers.put(data.getId(), (DeckHeader) data);
-		} else if(data instanceof DeckContent) {
-			contents.put(data.getId(), (DeckContent) data);
-		} else if(data instanceof Contact) {
-			contacts.put(data.getId(), (Contact) data);
-		} else if(data instanceof User) {
-			users.put(data.getId(), (User) data);
-		} else if(data instanceof Tag) {
-			tags.put(data.getId(), (Tag) data);
-		} else if(data instanceof DraftHeader) {
-			draftHeaders.put(data.getId(), (DraftHeader) data);
-		} else if(data instanceof DraftContent) {
-			draftContents.put(data.getId(), (DraftContent) data);
-		} else if(data instanceof BoosterHeader) {
-			boosterHeaders.put(data.getId(), (BoosterHeader) data);
-		} else if(data instanceof BoosterContent) {
-			boosterContents.put(data.getId(), (BoosterContent) data);
+			if(data instanceof DeckHeader) {
+				headers.put(data.getId(), (DeckHeader) data);
+				index.put((DeckHeader) data);
+				contents.removeSnapshot(data.getId());
+			} else if(data instanceof DeckContent) {
+				contents.put((DeckContent) data);
+			} else if(data instanceof Contact) {
+				contacts.put(data.getId(), (Contact) data);
+			} else if(data instanceof User) {
+				users.put(data.getId(), (User) data);
+			} else if(data instanceof Tag) {
+				tags.put(data.getId(), (Tag) data);
+				index.putTag((Tag) data);
+			} else if(data instanceof DraftHeader) {
+				draftHeaders.put(data.getId(), (DraftHeader) data);
+			} else if(data instanceof DraftContent) {
+				draftContents.put(data.getId(), (DraftContent) data);
+			} else if(data instanceof BoosterHeader) {
+				boosterHeaders.put(data.getId(), (BoosterHeader) data);
+			} else if(data instanceof BoosterContent) {
+				boosterContents.put(data.getId(), (BoosterContent) data);
+			}
+		} finally {
+			lock.writeLock().unlock();
 		}
-
-		rebuildHeadersByTagIdCache();
 	}
 
-	public synchronized void delete(SessionData data) {
-		if(data == null) {
-			return;
-		}
+	public void delete(SessionData data) {
+		lock.writeLock().lock();
+		try {
+			if(data == null) {
+				return;
+			}
 
-		if(data instanceof DeckHeader) {
-			removeDeckHeader((DeckHeader) data);
-		} else if(data instanceof DeckContent) {
-			removeDeckContent((DeckContent) data);
-		} else if(data instanceof Contact) {
-			removeContact((Contact) data);
-		} else if(data instanceof Tag) {
-			removeTag((Tag) data);
-		} else if(data instanceof DraftHeader) {
-			removeDraftHeader((DraftHeader) data);
-		} else if(data instanceof DraftContent) {
-			removeDraftContent((DraftContent) data);
+			if(data instanceof DeckHeader) {
+				removeDeckHeader((DeckHeader) data);
+			} else if(data instanceof DeckContent) {
+				removeDeckContent((DeckContent) data);
+			} else if(data instanceof Contact) {
+				removeContact((Contact) data);
+			} else if(data instanceof Tag) {
+				removeTag((Tag) data);
+			} else if(data instanceof DraftHeader) {
+				removeDraftHeader((DraftHeader) data);
+			} else if(data instanceof DraftContent) {
+				removeDraftContent((DraftContent) data);
+			}
+		} finally {
+			lock.writeLock().unlock();
 		}
-
-		rebuildHeadersByTagIdCache();
 	}
 
-	public synchronized SessionData find(int sessionDataId) {
-		if(sessionDataId == IDUtil.NONE) {
-			return null;
-		}
+	public SessionData find(int sessionDataId) {
+		lock.readLock().lock();
+		try {
+			if(sessionDataId == IDUtil.NONE) {
+				return null;
+			}
 
-		if(headers.containsKey(sessionDataId)) {
-			return headers.get(sessionDataId);
-		}
+			if(headers.containsKey(sessionDataId)) {
+				return headers.get(sessionDataId);
+			}
 
-		if(contents.containsKey(sessionDataId)) {
-			return contents.get(sessionDataId);
-		}
+			if(contents.contains(sessionDataId)) {
+				return contents.get(sessionDataId);
+			}
 
-		if(draftHeaders.containsKey(sessionDataId)) {
-			return draftHeaders.get(sessionDataId);
-		}
+			if(draftHeaders.containsKey(sessionDataId)) {
+				return draftHeaders.get(sessionDataId);
+			}
 
-		if(draftContents.containsKey(sessionDataId)) {
-			return draftContents.get(sessionDataId);
-		}
+			if(draftContents.containsKey(sessionDataId)) {
+				return draftContents.get(sessionDataId);
+			}
 
-		if(boosterHeaders.containsKey(sessionDataId)) {
-			return boosterHeaders.get(sessionDataId);
-		}
+			if(boosterHeaders.containsKey(sessionDataId)) {
+				return boosterHeaders.get(sessionDataId);
+			}
 
-		if(boosterContents.containsKey(sessionDataId)) {
-			return boosterContents.get(sessionDataId);
-		}
+			if(boosterContents.containsKey(sessionDataId)) {
+				return boosterContents.get(sessionDataId);
+			}
 
-		if(contacts.containsKey(sessionDataId)) {
-			return contacts.get(sessionDataId);
-		}
+			if(contacts.containsKey(sessionDataId)) {
+				return contacts.get(sessionDataId);
+			}
 
-		if(users.containsKey(sessionDataId)) {
-			return users.get(sessionDataId);
-		}
+			if(users.containsKey(sessionDataId)) {
+				return users.get(sessionDataId);
+			}
 
-		if(tags.containsKey(sessionDataId)) {
-			return tags.get(sessionDataId);
-		}
+			if(tags.containsKey(sessionDataId)) {
+				return tags.get(sessionDataId);
+			}
 
-		return null;
+			return null;
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
-	public synchronized int importDeck(Deck deck) {
-		if(deck == null) {
-			return -1;
+	public int importDeck(Deck deck) {
+		lock.writeLock().lock();
+		try {
+			if(deck == null) {
+				return -1;
+			}
+			DeckHeader header = new DeckHeader(deck);
+			DeckContent content = new DeckContent(header, deck);
+			header.save();
+			content.save();
+			return header.getId();
+		} finally {
+			lock.writeLock().unlock();
 		}
-		DeckHeader header = new DeckHeader(deck);
-		DeckContent content = new DeckContent(header, deck);
-		header.save();
-		content.save();
-		return header.getId();
 	}
 
 	public static void main(String[] args) {
@@ -1,6 +1,9 @@
 package session;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 
 import javax.xml.bind.annotation.XmlElement;
@@ -8,7 +11,6 @@ import javax.xml.bind.annotation.XmlTransient;
 
 import util.FileUtil;
 import util.IDUtil;
-import util.JAXBUtil;
 import util.VersionUtil;
 import util.event.SessionEvent;
 import util.event.SessionEventManager;
@@ -62,13 +64,34 @@ public abstract class SessionData implements Serializable {
 	
 	public abstract File getFolder();
 	
+	/**
+	 * The XML file this was saved to before the session store. Only read when
+	 * migrating.
+	 */
 	public File getFile() {
 		return FileUtil.toFile(getFolder(), getFileName());
 	}
 	
+	/**
+	 * Writes what {@link SessionStore} saves. Subclasses write their own
+	 * fields after calling super, and read them back in the same order.
+	 */
+	protected void writeFields(DataOutputStream out) throws IOException {
+		SessionStore.writeString(out, getVersion());
+	}
+	
+	/**
+	 * @param version The {@link SessionStore#FIELDS_VERSION} the fields were
+	 *        written with.
+	 */
+	protected void readFields(DataInputStream in, int version) throws IOException {
+		this.version = SessionStore.readString(in);
+	}
+	
 	public void save() {
-		JAXBUtil.marshal(this, getFile());
-		boolean create = Session.getInstance().find(getId()) == null;
+		// Asked of the store, contents can be dropped from the session's cache
+		boolean create = !exists();
+		Session.getInstance().getStore().put(this);
 		Session.getInstance().cache(this);
 		flagClean();
 	
@@ -77,13 +100,12 @@ public abstract class SessionData implements Serializable {
 	
 	public void delete() {
 		Session.getInstance().delete(this);
-		File file = getFile();
-		file.delete();
+		Session.getInstance().getStore().delete(this);
 		SessionEventManager.fireEvent(getClass(), id, SessionEvent.TYPE_DELETED);
 	}
 	
 	public boolean exists() {
-		return getFile().exists();
+		return Session.getInstance().getStore().contains(this);
 	}
 	
 	public void flagDirty() {
@@ -0,0 +1,83 @@
+package session;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import util.FileUtil;
+
+/**
+ * Copies the XML files sessions used to be saved as into a
+ * {@link SessionStore}. The XML files are left where they are. A marker file
+ * next to the store is there for as long as a migration is under way, so one
+ * that was cut off is run again on the next start.
+ */
+public class SessionMigrator {
+
+	private SessionMigrator() {}
+
+	public static List<File> getXMLFiles() {
+		List<File> files = new ArrayList<File>();
+		files.addAll(FileUtil.getHeaderFiles());
+		files.addAll(FileUtil.getContentFiles());
+		files.addAll(FileUtil.getDraftHeaderFiles());
+		files.addAll(FileUtil.getDraftContentFiles());
+		files.addAll(FileUtil.getBoosterHeaderFiles());
+		files.addAll(FileUtil.getBoosterContentFiles());
+		files.addAll(FileUtil.getTagFiles());
+		files.addAll(FileUtil.getContactFiles());
+		files.addAll(FileUtil.getUserFiles());
+		files.addAll(FileUtil.getPreferenceFiles());
+		return files;
+	}
+
+	private static File getMarkerFile(File storeFile) {
+		return new File(storeFile.getPath() + ".migrating");
+	}
+
+	/**
+	 * @return True if the store is new, or a migration into it never finished.
+	 */
+	public static boolean isMigrationNeeded(File storeFile) {
+		return !storeFile.exists() || getMarkerFile(storeFile).exists();
+	}
+
+	/**
+	 * Leaves the marker, before the store is created, so a start cut off at
+	 * any point before the migration finishes migrates again.
+	 */
+	public static void markMigrationStarted(File storeFile) {
+		try {
+			getMarkerFile(storeFile).createNewFile();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Copies every XML file into the store, then removes the marker.
+	 *
+	 * @return How many objects were copied.
+	 */
+	public static int migrate(SessionStore store) {
+		markMigrationStarted(store.getFile());
+		int count = 0;
+		for(File file : getXMLFiles()) {
+			if(!file.isFile()) {
+				continue;
+			}
+			Object obj = FileUtil.readXML(file);
+			if(obj instanceof SessionData) {
+				store.put((SessionData) obj);
+				count++;
+			} else {
+				System.err.println("Could not migrate " + file);
+			}
+		}
+		store.flush();
+		getMarkerFile(store.getFile()).delete();
+		return count;
+	}
+
+}
@@ -0,0 +1,549 @@
+package session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All session data in one append-only file. Every save appends a record and
+ * every delete appends a tombstone, so a save never rewrites anything else.
+ * The file starts with a header:
+ *
+ * <pre>
+ * int  MAGIC
+ * int  FORMAT_VERSION
+ * long offset of the latest index record, 0 if there is none
+ * </pre>
+ *
+ * followed by records:
+ *
+ * <pre>
+ * int  length of what follows
+ * byte kind, see {@link #KINDS}, 0 for an index record
+ * byte OP_PUT, OP_DELETE or OP_INDEX
+ * int  id
+ * short FIELDS_VERSION the fields were written with, puts only
+ * ...  the fields written by {@link SessionData#writeFields}, puts only
+ * </pre>
+ *
+ * An index record lists the offset of every live record. Opening the store
+ * reads the latest one and only scans the records written after it. A new
+ * one is appended every {@link #INDEX_INTERVAL} records, and the file is
+ * compacted on open when most of it is overwritten records. Records are read
+ * through maps of fixed size windows of the file, so it can grow past what
+ * one map can hold.
+ */
+public class SessionStore {
+
+	public static final int MAGIC = 0x4A534553; // JSES
+	public static final int FORMAT_VERSION = 1;
+	/**
+	 * Passed to {@link SessionData#readFields} so fields added later can be
+	 * skipped when reading older records.
+	 */
+	public static final short FIELDS_VERSION = 1;
+
+	public static final int INDEX_INTERVAL = 256;
+	public static final long COMPACT_MIN_SIZE = 1 << 20;
+
+	public static final long WINDOW_SIZE = 64 << 20;
+	public static final long WINDOW_OVERLAP = 1 << 20;
+
+	private static final int HEADER_SIZE = 16;
+	private static final int INDEX_POINTER = 8;
+	private static final int RECORD_HEADER_SIZE = 10;
+
+	private static final byte OP_PUT = 0;
+	private static final byte OP_DELETE = 1;
+	private static final byte OP_INDEX = 2;
+
+	/**
+	 * Record kinds by position. Only ever append to this.
+	 */
+	@SuppressWarnings("unchecked")
+	private static final Class<? extends SessionData>[] KINDS = new Class[] {
+		null,
+		DeckHeader.class,
+		DeckContent.class,
+		DraftHeader.class,
+		DraftContent.class,
+		BoosterHeader.class,
+		BoosterContent.class,
+		Tag.class,
+		Contact.class,
+		User.class,
+		Preferences.class
+	};
+
+	private final File file;
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private final List<MappedByteBuffer> windows = new ArrayList<MappedByteBuffer>();
+	private long size;
+
+	private final Map<Long, Long> offsets = new HashMap<Long, Long>();
+	private final Map<Long, Integer> lengths = new HashMap<Long, Integer>();
+	private long liveBytes = 0;
+	private int recordsSinceIndex = 0;
+
+	private SessionStore(File file) {
+		this.file = file;
+	}
+
+	public static SessionStore open(File file) throws IOException {
+		SessionStore store = new SessionStore(file);
+		store.openFile();
+		store.loadIndex();
+		if(store.isCompactable()) {
+			store.compact();
+		}
+		return store;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public synchronized boolean isEmpty() {
+		return offsets.isEmpty();
+	}
+
+	public synchronized boolean contains(Class<? extends SessionData> klass, int id) {
+		return offsets.containsKey(toKey(kindOf(klass), id));
+	}
+
+	public synchronized boolean contains(SessionData data) {
+		return contains(data.getClass(), data.getId());
+	}
+
+	/**
+	 * @return The saved object, or null if there is none.
+	 */
+	public synchronized <T extends SessionData> T read(Class<T> klass, int id) {
+		Long offset = offsets.get(toKey(kindOf(klass), id));
+		if(offset == null) {
+			return null;
+		}
+		try {
+			return klass.cast(readRecord(offset));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * @return Every saved object of the class, in the order they were written.
+	 */
+	public synchronized <T extends SessionData> List<T> readAll(Class<T> klass) {
+		int kind = kindOf(klass);
+		List<Long> kindOffsets = new ArrayList<Long>();
+		for(Map.Entry<Long, Long> entry : offsets.entrySet()) {
+			if(toKind(entry.getKey()) == kind) {
+				kindOffsets.add(entry.getValue());
+			}
+		}
+		Collections.sort(kindOffsets);
+
+		List<T> list = new ArrayList<T>();
+		for(long offset : kindOffsets) {
+			try {
+				list.add(klass.cast(readRecord(offset)));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return list;
+	}
+
+	public synchronized void put(SessionData data) {
+		int kind = kindOf(data.getClass());
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeShort(FIELDS_VERSION);
+			data.writeFields(out);
+			out.flush();
+			append(kind, OP_PUT, data.getId(), bytes.toByteArray());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public synchronized void delete(SessionData data) {
+		int kind = kindOf(data.getClass());
+		if(!offsets.containsKey(toKey(kind, data.getId()))) {
+			return;
+		}
+		try {
+			append(kind, OP_DELETE, data.getId(), new byte[0]);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes an index of everything written so far, so the next open doesn't
+	 * have to scan it.
+	 */
+	public synchronized void flush() {
+		try {
+			writeIndex();
+			channel.force(false);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public synchronized void close() {
+		flush();
+		try {
+			channel.close();
+			raf.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		windows.clear();
+	}
+
+	private static int kindOf(Class<?> klass) {
+		for(int i = 1; i < KINDS.length; i++) {
+			if(KINDS[i] == klass) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("No session store kind for " + klass.getName());
+	}
+
+	private static long toKey(int kind, int id) {
+		return ((long) kind << 32) | (id & 0xFFFFFFFFL);
+	}
+
+	private static int toKind(long key) {
+		return (int) (key >>> 32);
+	}
+
+	private void openFile() throws IOException {
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		size = channel.size();
+		if(size < HEADER_SIZE) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(0);
+			header.flip();
+			channel.truncate(0);
+			channel.write(header, 0);
+			size = HEADER_SIZE;
+			return;
+		}
+
+		ByteBuffer header = readFully(0, HEADER_SIZE);
+		if(header.getInt() != MAGIC) {
+			throw new IOException(file + " is not a session store");
+		}
+		int version = header.getInt();
+		if(version > FORMAT_VERSION) {
+			throw new IOException(file + " was written by a newer version (" + version + ")");
+		}
+	}
+
+	private void loadIndex() throws IOException {
+		ByteBuffer header = readFully(INDEX_POINTER, 8);
+		long indexOffset = header.getLong();
+		long position = HEADER_SIZE;
+		if(indexOffset >= HEADER_SIZE && indexOffset + RECORD_HEADER_SIZE <= size) {
+			ByteBuffer recordHeader = readFully(indexOffset, RECORD_HEADER_SIZE);
+			int length = recordHeader.getInt();
+			recordHeader.get();
+			if(recordHeader.get() == OP_INDEX && indexOffset + 4 + length <= size) {
+				readIndex(readFully(indexOffset + RECORD_HEADER_SIZE, length - (RECORD_HEADER_SIZE - 4)));
+				position = indexOffset + 4 + length;
+			}
+		}
+
+		// Replay whatever came after the index
+		while(position + RECORD_HEADER_SIZE <= size) {
+			ByteBuffer recordHeader = readFully(position, RECORD_HEADER_SIZE);
+			int length = recordHeader.getInt();
+			if(length < RECORD_HEADER_SIZE - 4 || position + 4 + length > size) {
+				break;
+			}
+			int kind = recordHeader.get();
+			byte op = recordHeader.get();
+			int id = recordHeader.getInt();
+			if(op == OP_INDEX) {
+				offsets.clear();
+				lengths.clear();
+				liveBytes = 0;
+				recordsSinceIndex = 0;
+				readIndex(readFully(position + RECORD_HEADER_SIZE, length - (RECORD_HEADER_SIZE - 4)));
+			} else if(kind > 0 && kind < KINDS.length) {
+				apply(toKey(kind, id), op, position, 4 + length);
+				recordsSinceIndex++;
+			}
+			position += 4 + length;
+		}
+
+		if(position < size) {
+			// A save was cut off part way, drop it
+			System.err.println("Dropping " + (size - position) + " unreadable bytes from " + file);
+			channel.truncate(position);
+			size = position;
+		}
+	}
+
+	private void readIndex(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		for(int i = 0; i < count; i++) {
+			long key = buffer.getLong();
+			long offset = buffer.getLong();
+			int length = buffer.getInt();
+			offsets.put(key, offset);
+			lengths.put(key, length);
+			liveBytes += length;
+		}
+	}
+
+	private void apply(long key, byte op, long offset, int length) {
+		Integer old = lengths.remove(key);
+		if(old != null) {
+			liveBytes -= old;
+		}
+		offsets.remove(key);
+		if(op == OP_PUT) {
+			offsets.put(key, offset);
+			lengths.put(key, length);
+			liveBytes += length;
+		}
+	}
+
+	private void append(int kind, byte op, int id, byte[] payload) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+		record.putInt(RECORD_HEADER_SIZE - 4 + payload.length).put((byte) kind).put(op).putInt(id).put(payload);
+		record.flip();
+
+		long offset = size;
+		writeFully(record, offset);
+		size += record.limit();
+		apply(toKey(kind, id), op, offset, record.limit());
+
+		if(++recordsSinceIndex >= INDEX_INTERVAL) {
+			writeIndex();
+		}
+	}
+
+	private void writeIndex() throws IOException {
+		if(recordsSinceIndex == 0) {
+			return;
+		}
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 4 + offsets.size() * 20);
+		record.putInt(record.capacity() - 4).put((byte) 0).put(OP_INDEX).putInt(0);
+		record.putInt(offsets.size());
+		for(Map.Entry<Long, Long> entry : offsets.entrySet()) {
+			record.putLong(entry.getKey()).putLong(entry.getValue()).putInt(lengths.get(entry.getKey()));
+		}
+		record.flip();
+
+		long offset = size;
+		writeFully(record, offset);
+		size += record.limit();
+
+		ByteBuffer pointer = ByteBuffer.allocate(8);
+		pointer.putLong(offset).flip();
+		writeFully(pointer, INDEX_POINTER);
+		recordsSinceIndex = 0;
+	}
+
+	private boolean isCompactable() {
+		return size > COMPACT_MIN_SIZE && liveBytes < (size - HEADER_SIZE) / 2;
+	}
+
+	/**
+	 * Copies only the live records to a new file and swaps it in. Only called
+	 * before the file is mapped, since a mapped file can't be replaced on
+	 * every platform.
+	 */
+	private void compact() throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		List<Long> keys = new ArrayList<Long>(offsets.keySet());
+		Collections.sort(keys, new Comparator<Long>() {
+
+			@Override
+			public int compare(Long a, Long b) {
+				return Long.compare(offsets.get(a), offsets.get(b));
+			}
+
+		});
+
+		try(RandomAccessFile out = new RandomAccessFile(tmp, "rw"); FileChannel outChannel = out.getChannel()) {
+			outChannel.truncate(0);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(0);
+			header.flip();
+			outChannel.write(header, 0);
+
+			long position = HEADER_SIZE;
+			Map<Long, Long> newOffsets = new HashMap<Long, Long>();
+			for(long key : keys) {
+				int length = lengths.get(key);
+				ByteBuffer record = readFully(offsets.get(key), length);
+				while(record.hasRemaining()) {
+					outChannel.write(record, position + record.position());
+				}
+				newOffsets.put(key, position);
+				position += length;
+			}
+			outChannel.force(false);
+			offsets.clear();
+			offsets.putAll(newOffsets);
+		}
+
+		channel.close();
+		raf.close();
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		size = channel.size();
+		recordsSinceIndex = offsets.size();
+		writeIndex();
+	}
+
+	/**
+	 * @return The bytes at the offset, from the window of the file they fall
+	 *         in. Windows are mapped when first read from and overlap the next
+	 *         so most records lie in one; a record that doesn't is mapped on
+	 *         its own.
+	 */
+	private ByteBuffer slice(long offset, int length) throws IOException {
+		int index = (int) (offset / WINDOW_SIZE);
+		long start = index * WINDOW_SIZE;
+		while(windows.size() <= index) {
+			windows.add(null);
+		}
+		MappedByteBuffer window = windows.get(index);
+		if(window == null || offset + length > start + window.capacity()) {
+			window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, WINDOW_SIZE + WINDOW_OVERLAP));
+			windows.set(index, window);
+		}
+		if(offset + length > start + window.capacity()) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+		}
+		ByteBuffer slice = window.duplicate();
+		slice.position((int) (offset - start));
+		slice.limit((int) (offset - start) + length);
+		return slice.slice();
+	}
+
+	private SessionData readRecord(long offset) throws IOException {
+		int length = slice(offset, 4).getInt();
+		ByteBuffer buffer = slice(offset + 4, length);
+		int kind = buffer.get();
+		buffer.get();
+		int id = buffer.getInt();
+		byte[] payload = new byte[length - (RECORD_HEADER_SIZE - 4)];
+		buffer.get(payload);
+
+		SessionData data;
+		try {
+			data = KINDS[kind].getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IOException(e);
+		}
+		data.setId(id);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		data.readFields(in, in.readShort());
+		return data;
+	}
+
+	private ByteBuffer readFully(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of " + file);
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+
+	// Field helpers for SessionData.writeFields and readFields
+
+	static void writeString(DataOutputStream out, String s) throws IOException {
+		if(s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if(length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static void writeStrings(DataOutputStream out, List<String> list) throws IOException {
+		out.writeInt(list == null ? 0 : list.size());
+		if(list != null) {
+			for(String s : list) {
+				writeString(out, s);
+			}
+		}
+	}
+
+	static List<String> readStrings(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<String> list = new ArrayList<String>(count);
+		for(int i = 0; i < count; i++) {
+			list.add(readString(in));
+		}
+		return list;
+	}
+
+	static void writeInts(DataOutputStream out, List<Integer> list) throws IOException {
+		out.writeInt(list == null ? 0 : list.size());
+		if(list != null) {
+			for(int i : list) {
+				out.writeInt(i);
+			}
+		}
+	}
+
+	static List<Integer> readInts(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<Integer> list = new ArrayList<Integer>(count);
+		for(int i = 0; i < count; i++) {
+			list.add(in.readInt());
+		}
+		return list;
+	}
+
+}
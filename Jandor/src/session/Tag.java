@@ -1,6 +1,9 @@
 package session;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -49,6 +52,20 @@ public class Tag extends SessionData {
 		this.show = show;
 	}
 	
+	@Override
+	protected void writeFields(DataOutputStream out) throws IOException {
+		super.writeFields(out);
+		SessionStore.writeString(out, name);
+		out.writeBoolean(show);
+	}
+	
+	@Override
+	protected void readFields(DataInputStream in, int version) throws IOException {
+		super.readFields(in, version);
+		name = SessionStore.readString(in);
+		show = in.readBoolean();
+	}
+	
 	@Override
 	public File getFolder() {
 		return FileUtil.getTagFolder();
@@ -1,6 +1,9 @@
 package session;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -112,6 +115,30 @@ public class User extends SessionData {
 		this.defaultUser = defaultUser;
 	}
 
+	@Override
+	protected void writeFields(DataOutputStream out) throws IOException {
+		super.writeFields(out);
+		SessionStore.writeString(out, guid);
+		SessionStore.writeString(out, username);
+		SessionStore.writeString(out, password);
+		SessionStore.writeString(out, firstName);
+		SessionStore.writeString(out, lastName);
+		SessionStore.writeString(out, email);
+		out.writeBoolean(defaultUser);
+	}
+	
+	@Override
+	protected void readFields(DataInputStream in, int version) throws IOException {
+		super.readFields(in, version);
+		guid = SessionStore.readString(in);
+		username = SessionStore.readString(in);
+		password = SessionStore.readString(in);
+		firstName = SessionStore.readString(in);
+		lastName = SessionStore.readString(in);
+		email = SessionStore.readString(in);
+		defaultUser = in.readBoolean();
+	}
+	
 	@Override
 	public File getFolder() {
 		return FileUtil.getUserFolder();
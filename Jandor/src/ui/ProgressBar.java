@@ -98,11 +98,19 @@ public abstract class ProgressBar extends JProgressBar implements ActionListener
 		start();
 	}
 	
+	/**
+	 * Called on the EDT for each start, so subclasses can hand the task what it
+	 * needs before it runs.
+	 */
+	protected ProgressTask createTask() {
+		return new ProgressTask(this);
+	}
+	
 	public void start() {
 		startButton.setEnabled(false);
 		setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 		startButton.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-		task = new ProgressTask(this);
+		task = createTask();
 		task.addPropertyChangeListener(this);
 		task.execute();
 	}
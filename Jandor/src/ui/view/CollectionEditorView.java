@@ -87,41 +87,26 @@ public class CollectionEditorView extends JandorView {
 		super(name, true);
 		rebuild();
 
-		SessionEventManager.addListener(DeckHeader.class, SessionEvent.TYPE_ANY, new SessionEventListener(this) {
+		// One listener, so a frame of deck, contact and tag changes rebuilds once
+		SessionEventListener listener = new SessionEventListener(this) {
 
 			@Override
-			public void handleEvent(SessionEvent event) {
-				if(!enableEvents) {
-					return;
-				}
-				rebuild();
-			}
-
-		});
-
-		SessionEventManager.addListener(Contact.class, SessionEvent.TYPE_ANY, new SessionEventListener(this) {
-
-			@Override
-			public void handleEvent(SessionEvent event) {
+			public void handleEvents(List<SessionEvent> events) {
 				if(!enableEvents) {
 					return;
 				}
 				rebuild();
 			}
 
-		});
-
-		SessionEventManager.addListener(Tag.class, SessionEvent.TYPE_ANY, new SessionEventListener(this) {
-
 			@Override
 			public void handleEvent(SessionEvent event) {
-				if(!enableEvents) {
-					return;
-				}
-				rebuild();
+				handleEvents(Collections.singletonList(event));
 			}
 
-		});
+		};
+		SessionEventManager.addListener(DeckHeader.class, SessionEvent.TYPE_ANY, listener);
+		SessionEventManager.addListener(Contact.class, SessionEvent.TYPE_ANY, listener);
+		SessionEventManager.addListener(Tag.class, SessionEvent.TYPE_ANY, listener);
 
 	}
 
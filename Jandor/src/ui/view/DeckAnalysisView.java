@@ -19,6 +19,7 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 
 import session.DeckHeader;
+import session.DeckSnapshot;
 import session.Session;
 import ui.pwidget.PPanel;
 import util.ShuffleType;
@@ -27,7 +28,9 @@ import util.event.SessionEventListener;
 import util.event.SessionEventManager;
 import accordion.PAccordion;
 import accordion.PAccordionData;
+import analysis.DrawOdds;
 import analysis.LandSimulation;
+import analysis.SimEngine;
 import analysis.SimResult;
 import analysis.SimResultList;
 import deck.Card;
@@ -134,6 +137,18 @@ public class DeckAnalysisView extends JandorView {
 		c.gridx = 0;
 		c.gridy++;
 		
+		DeckSnapshot snapshot = Session.getInstance().getDeckSnapshot(deckId);
+		JLabel oddsLabel = new JLabel(getOddsHtml(snapshot == null ? DrawOdds.get(deck, true) : DrawOdds.get(snapshot, true)));
+		oddsLabel.setForeground(Color.WHITE);
+		c.gridwidth = handSize;
+		c.anchor = GridBagConstraints.CENTER;
+		c.insets = new Insets(0, 5, 20, 5);
+		add(oddsLabel, c);
+		c.gridwidth = 1;
+		c.anchor = GridBagConstraints.WEST;
+		c.insets = new Insets(20, 5, 20, 5);
+		c.gridy++;
+		
 		int maxCmc = deck.getMaxConvertedManaCost();
 		
 		int landCount = 0;
@@ -225,6 +240,40 @@ public class DeckAnalysisView extends JandorView {
 		revalidate();
 	}
 	
+	/**
+	 * @return A table of the exact odds on the play for a random shuffle, for
+	 *         the turns a sample hand can't show.
+	 */
+	private String getOddsHtml(DrawOdds odds) {
+		int turns = 6;
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><table cellpadding='2'><tr><td><b>Random Shuffle, On the Play</b></td>");
+		for(int turn = 1; turn <= turns; turn++) {
+			sb.append("<td align='right'><b>T" + turn + "</b></td>");
+		}
+		sb.append("</tr><tr><td>Land drop</td>");
+		for(int turn = 1; turn <= turns; turn++) {
+			sb.append("<td align='right'>" + DrawOdds.formatPercent(odds.getLandDropOdds(turn)) + "</td>");
+		}
+		sb.append("</tr><tr><td>Castable on curve</td>");
+		for(int cmc = 1; cmc <= turns; cmc++) {
+			sb.append("<td align='right'>" + (odds.getSpellCount(cmc) == 0 ? "-" : DrawOdds.formatPercent(odds.getCastableOnCurveOdds(cmc))) + "</td>");
+		}
+		sb.append("</tr>");
+		for(char color : SimEngine.COLORS.toCharArray()) {
+			if(odds.getSourceCount(color) == 0) {
+				continue;
+			}
+			sb.append("<tr><td>" + color + " source</td>");
+			for(int turn = 1; turn <= turns; turn++) {
+				sb.append("<td align='right'>" + DrawOdds.formatPercent(odds.getColorOdds(color, turn)) + "</td>");
+			}
+			sb.append("</tr>");
+		}
+		sb.append("</table></html>");
+		return sb.toString();
+	}
+	
 	private void setTooltip(JComponent comp, Card card) {
 		final String html = "<html><body>" + card.getImageHtml() + "</body></html>";
 		comp.setToolTipText(html);
@@ -31,6 +31,7 @@ import javax.swing.event.DocumentListener;
 import accordion.PAccordion;
 import accordion.PAccordionData;
 import accordion.PAccordionPanel;
+import analysis.DrawOdds;
 import analysis.SimPanel;
 import deck.Card;
 import deck.Deck;
@@ -182,6 +183,7 @@ public class DeckEditorView extends JandorView {
 	protected Map<String, Map<String, JLabel>> typeLabels = new HashMap<String, Map<String, JLabel>>();
 	protected Map<String, JLabel> totalLabels = new HashMap<String, JLabel>();
 	protected JLabel priceLabel;
+	protected JLabel oddsLabel;
 	protected SortHandler sortHandler;
 	protected PPanel deckPanel;
 	protected PPanel sideboardPanel;
@@ -1268,6 +1270,12 @@ public class DeckEditorView extends JandorView {
 		p.c.gridy++;
 		p.add(priceLabel, p.c);
 		p.c.gridy++;
+		if(deck == getDeck()) {
+			oddsLabel = new JLabel(getDrawOddsText(deck));
+			oddsLabel.setFocusable(false);
+			p.add(oddsLabel, p.c);
+			p.c.gridy++;
+		}
 
 		p.c.insets(50);
 		p.c.anchor = G.WEST;
@@ -1356,6 +1364,25 @@ public class DeckEditorView extends JandorView {
 		}
 		totalLabels.get(deck.getName()).setText("Cards (" + allTotal + ")");
 		priceLabel.setText(getDeckPriceText(deck));
+		if(deck == getDeck() && oddsLabel != null) {
+			oddsLabel.setText(getDrawOddsText(deck));
+		}
+	}
+
+	/**
+	 * @return The odds of hitting land drops on turns 2 to 4, kept up to date
+	 *         as cards are added and removed.
+	 */
+	public String getDrawOddsText(Deck deck) {
+		if(deck.size() < DrawOdds.HAND_SIZE) {
+			return "";
+		}
+		DrawOdds odds = DrawOdds.get(deck, true);
+		StringBuilder sb = new StringBuilder("Land drops on the play:");
+		for(int turn = 2; turn <= 4; turn++) {
+			sb.append(" T" + turn + " " + DrawOdds.formatPercent(odds.getLandDropOdds(turn)));
+		}
+		return sb.toString();
 	}
 
 	public PPanel getPageHeader() {
@@ -22,6 +22,7 @@ import ui.pwidget.PPasswordField;
 import ui.pwidget.PTextField;
 import util.DebugUtil;
 import util.IDUtil;
+import util.UserUtil;
 
 public class CreateUserDialog extends PPanel {
 
@@ -205,6 +206,8 @@ public class CreateUserDialog extends PPanel {
 		// Save to database online
 		UserSheet data = new UserSheet();
 		data.createUser(user);
+		UserUtil.reload();
+		Session.getInstance().reindexAuthors();
 		
 		return user;
 	}
@@ -0,0 +1,229 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+import jackson.AllCardsJson;
+import jackson.AllCardsJson.CardJson;
+
+/**
+ * Inverted index over the searchable cards. Every card gets a dense ordinal in
+ * the order of {@link CardUtil#getAllCardNames()} and each attribute value maps
+ * to the set of ordinals that have it.
+ *
+ * The index is built once and never changes, so the bitsets it hands out must
+ * not be modified. Clone them first.
+ */
+public class CardIndex {
+
+	public static final List<String> VALUE_ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+			"types", "supertypes", "subtypes", "rarity", "printings", "layout", "colors", "colorIdentity"));
+
+	public static final List<String> NUMBER_ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+			MtgJsonUtil.cmc, "power", "toughness"));
+
+	/**
+	 * Cards that share the same colors and mana cost, which is everything the
+	 * color search looks at.
+	 */
+	public static final class ColorGroup {
+
+		public final String colors;
+		public final String manaCost;
+		public final BitSet ordinals = new BitSet();
+
+		private ColorGroup(String colors, String manaCost) {
+			this.colors = colors;
+			this.manaCost = manaCost;
+		}
+
+	}
+
+	private final List<String> names;
+	private final CardJson[] infos;
+	private final Map<String, Integer> ordinalsByName = new HashMap<String, Integer>();
+	private final Map<String, Map<String, BitSet>> valueIndex = new HashMap<String, Map<String, BitSet>>();
+	private final Map<String, Map<Integer, BitSet>> numberIndex = new HashMap<String, Map<Integer, BitSet>>();
+	private final Map<String, BitSet> unbucketed = new HashMap<String, BitSet>();
+	private final List<ColorGroup> colorGroups;
+	private final BitSet knownTypes = new BitSet();
+	private final BitSet notOnlySilly = new BitSet();
+	private final BitSet all = new BitSet();
+
+	private CardIndex(List<String> names) {
+		this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+		this.infos = new CardJson[names.size()];
+		this.colorGroups = new ArrayList<ColorGroup>();
+	}
+
+	public static CardIndex build(List<String> cardNames, AllCardsJson allCardsJson) {
+		long start = System.currentTimeMillis();
+		CardIndex index = new CardIndex(cardNames);
+		for(String attribute : VALUE_ATTRIBUTES) {
+			index.valueIndex.put(attribute, new HashMap<String, BitSet>());
+		}
+		for(String attribute : NUMBER_ATTRIBUTES) {
+			index.numberIndex.put(attribute, new HashMap<Integer, BitSet>());
+			index.unbucketed.put(attribute, new BitSet());
+		}
+
+		Map<String, ColorGroup> colorGroupsByKey = new LinkedHashMap<String, ColorGroup>();
+		for(int ordinal = 0; ordinal < index.names.size(); ordinal++) {
+			String name = index.names.get(ordinal);
+			CardJson info = allCardsJson.get(name);
+			if(info == null) {
+				continue;
+			}
+			index.infos[ordinal] = info;
+			index.ordinalsByName.put(name, ordinal);
+			index.all.set(ordinal);
+			index.add(ordinal, info, colorGroupsByKey);
+		}
+		index.colorGroups.addAll(colorGroupsByKey.values());
+
+		System.out.println("Indexed " + index.names.size() + " cards in " + (System.currentTimeMillis() - start) + "ms");
+		return index;
+	}
+
+	private void add(int ordinal, CardJson info, Map<String, ColorGroup> colorGroupsByKey) {
+		if(CardUtil.hasKnownTypes(info)) {
+			knownTypes.set(ordinal);
+		}
+		if(info.printings == null || !CardUtil.isOnlySilly(info)) {
+			notOnlySilly.set(ordinal);
+		}
+
+		for(String attribute : VALUE_ATTRIBUTES) {
+			Object value = CardJson.getAccessor(attribute).apply(info);
+			if(value instanceof List) {
+				for(Object item : (List) value) {
+					addValue(attribute, item, ordinal);
+				}
+			} else if(value != null) {
+				addValue(attribute, value, ordinal);
+			}
+		}
+
+		for(String attribute : NUMBER_ATTRIBUTES) {
+			if(attribute.equals(MtgJsonUtil.cmc) && CardUtil.isSplit(info)) {
+				unbucketed.get(attribute).set(ordinal);
+				continue;
+			}
+			try {
+				addNumber(attribute, CardUtil.toInt(CardJson.getAccessor(attribute).apply(info)), ordinal);
+			} catch (NumberFormatException e) {
+				unbucketed.get(attribute).set(ordinal);
+			}
+		}
+
+		String colors = info.colors == null ? "" : StringUtils.join(info.colors, ",");
+		String manaCost = info.manaCost == null ? "" : info.manaCost;
+		String key = colors + "|" + manaCost;
+		ColorGroup group = colorGroupsByKey.get(key);
+		if(group == null) {
+			group = new ColorGroup(colors, manaCost);
+			colorGroupsByKey.put(key, group);
+		}
+		group.ordinals.set(ordinal);
+	}
+
+	private void addValue(String attribute, Object value, int ordinal) {
+		String key = String.valueOf(value).toLowerCase();
+		Map<String, BitSet> bitsByValue = valueIndex.get(attribute);
+		if(!bitsByValue.containsKey(key)) {
+			bitsByValue.put(key, new BitSet());
+		}
+		bitsByValue.get(key).set(ordinal);
+	}
+
+	private void addNumber(String attribute, int value, int ordinal) {
+		Map<Integer, BitSet> bitsByValue = numberIndex.get(attribute);
+		if(!bitsByValue.containsKey(value)) {
+			bitsByValue.put(value, new BitSet());
+		}
+		bitsByValue.get(value).set(ordinal);
+	}
+
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * Returns the ordinal of a card, or -1 if the card isn't indexed.
+	 */
+	public int getOrdinal(String cardName) {
+		Integer ordinal = ordinalsByName.get(cardName);
+		if(ordinal == null) {
+			String name = CardUtil.toCardName(cardName);
+			ordinal = name == null ? null : ordinalsByName.get(name);
+		}
+		return ordinal == null ? -1 : ordinal;
+	}
+
+	public String getName(int ordinal) {
+		return names.get(ordinal);
+	}
+
+	public CardJson getCardInfo(int ordinal) {
+		return infos[ordinal];
+	}
+
+	public BitSet getAll() {
+		return all;
+	}
+
+	/**
+	 * Ordinals of cards with a lower cased value for an attribute in
+	 * {@link #VALUE_ATTRIBUTES}.
+	 */
+	public BitSet getValue(String attribute, String lowerCaseValue) {
+		Map<String, BitSet> bitsByValue = valueIndex.get(attribute);
+		if(bitsByValue == null || !bitsByValue.containsKey(lowerCaseValue)) {
+			return new BitSet();
+		}
+		return bitsByValue.get(lowerCaseValue);
+	}
+
+	/**
+	 * Buckets by whole number value for an attribute in
+	 * {@link #NUMBER_ATTRIBUTES}. Cards without a value are in bucket 0.
+	 */
+	public Map<Integer, BitSet> getNumberBuckets(String attribute) {
+		return Collections.unmodifiableMap(numberIndex.get(attribute));
+	}
+
+	/**
+	 * Cards that couldn't be put in a number bucket, such as split cards for
+	 * cmc or "?" power. These always need to be checked card by card.
+	 */
+	public BitSet getUnbucketed(String attribute) {
+		return unbucketed.get(attribute);
+	}
+
+	public List<ColorGroup> getColorGroups() {
+		return Collections.unmodifiableList(colorGroups);
+	}
+
+	/**
+	 * See {@link CardUtil#hasKnownTypes(CardJson)}.
+	 */
+	public BitSet getKnownTypes() {
+		return knownTypes;
+	}
+
+	/**
+	 * See {@link CardUtil#isOnlySilly(CardJson)}.
+	 */
+	public BitSet getNotOnlySilly() {
+		return notOnlySilly;
+	}
+
+}
@@ -0,0 +1,318 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import deck.Card;
+import jackson.AllCardsJson.CardJson;
+
+/**
+ * Trigram index over the text of every card in a {@link CardIndex}. It keeps
+ * the lower cased searchable string of each card (the same text
+ * {@link Card#getSearchableString()} builds) and, for every three character
+ * sequence, the ordinals of the cards whose name, type line, rules text or
+ * searchable string contain it.
+ *
+ * Lands pick a random printing for their set name, so their searchable
+ * string isn't stored and they are always candidates for a general search.
+ *
+ * The index is saved next to {@link FileUtil#RESOURCE_CARDS_LESS_JSONS} and
+ * reused until that file changes.
+ */
+public class CardTextIndex {
+
+	private static final int MAGIC = 0x4A544958; // JTIX
+	private static final int VERSION = 1;
+	public static final int GRAM = 3;
+
+	private final String[] documents;
+	private final BitSet volatileDocuments;
+	private final Map<Long, int[]> postings;
+
+	private CardTextIndex(String[] documents, BitSet volatileDocuments, Map<Long, int[]> postings) {
+		this.documents = documents;
+		this.volatileDocuments = volatileDocuments;
+		this.postings = postings;
+	}
+
+	public static CardTextIndex loadOrBuild(CardIndex index, File indexFile, File sourceFile) {
+		CardTextIndex textIndex = null;
+		if(indexFile.exists()) {
+			try {
+				textIndex = read(index, indexFile, sourceFile);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		if(textIndex == null) {
+			textIndex = build(index);
+			try {
+				textIndex.write(index, indexFile, sourceFile);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return textIndex;
+	}
+
+	public static CardTextIndex build(CardIndex index) {
+		long start = System.currentTimeMillis();
+		String[] documents = new String[index.size()];
+		BitSet volatileDocuments = new BitSet();
+		Map<Long, Postings> builders = new HashMap<Long, Postings>();
+
+		for(int ordinal = 0; ordinal < index.size(); ordinal++) {
+			CardJson info = index.getCardInfo(ordinal);
+			if(info == null) {
+				continue;
+			}
+			Card card = new Card(index.getName(ordinal));
+			String indexed;
+			if(card.isLand()) {
+				volatileDocuments.set(ordinal);
+				indexed = "";
+			} else {
+				documents[ordinal] = card.getSearchableString();
+				indexed = documents[ordinal];
+			}
+			indexed += "\n" + toLower(info.name) + "\n" + toLower(info.type) + "\n" + toLower(info.text) + "\n" + toLower(info.manaCost);
+			addTrigrams(builders, indexed, ordinal);
+		}
+
+		Map<Long, int[]> postings = new HashMap<Long, int[]>(builders.size() * 2);
+		for(Map.Entry<Long, Postings> entry : builders.entrySet()) {
+			postings.put(entry.getKey(), entry.getValue().toArray());
+		}
+
+		System.out.println("Built text index of " + postings.size() + " trigrams in " + (System.currentTimeMillis() - start) + "ms");
+		return new CardTextIndex(documents, volatileDocuments, postings);
+	}
+
+	private static String toLower(String s) {
+		return s == null ? "" : s.toLowerCase();
+	}
+
+	private static void addTrigrams(Map<Long, Postings> builders, String text, int ordinal) {
+		for(int i = 0; i + GRAM <= text.length(); i++) {
+			Long key = toKey(text, i);
+			Postings p = builders.get(key);
+			if(p == null) {
+				p = new Postings();
+				builders.put(key, p);
+			}
+			p.add(ordinal);
+		}
+	}
+
+	private static long toKey(String text, int i) {
+		return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+	}
+
+	/**
+	 * Returns the lower cased searchable string for a card, or null if it
+	 * isn't stored and has to be built from a {@link Card}.
+	 */
+	public String getDocument(int ordinal) {
+		if(ordinal < 0 || ordinal >= documents.length) {
+			return null;
+		}
+		return documents[ordinal];
+	}
+
+	/**
+	 * Cards whose searchable string isn't stored or fully indexed.
+	 */
+	public BitSet getVolatileDocuments() {
+		return volatileDocuments;
+	}
+
+	/**
+	 * Returns a new set of the cards that might contain the given text, or
+	 * null if the text is too short to narrow anything down. Cards in
+	 * {@link #getVolatileDocuments()} are only covered for their name, type
+	 * line and rules text.
+	 */
+	public BitSet containing(String text) {
+		if(text == null || text.length() < GRAM) {
+			return null;
+		}
+		text = text.toLowerCase();
+
+		int[][] lists = new int[text.length() - GRAM + 1][];
+		for(int i = 0; i < lists.length; i++) {
+			lists[i] = postings.get(toKey(text, i));
+			if(lists[i] == null) {
+				return new BitSet();
+			}
+		}
+
+		// Start from the rarest trigram so the intersection stays small
+		int rarest = 0;
+		for(int i = 1; i < lists.length; i++) {
+			if(lists[i].length < lists[rarest].length) {
+				rarest = i;
+			}
+		}
+
+		BitSet bits = new BitSet();
+		for(int ordinal : lists[rarest]) {
+			bits.set(ordinal);
+		}
+		for(int i = 0; i < lists.length && !bits.isEmpty(); i++) {
+			if(i == rarest) {
+				continue;
+			}
+			for(int ordinal = bits.nextSetBit(0); ordinal >= 0; ordinal = bits.nextSetBit(ordinal + 1)) {
+				if(Arrays.binarySearch(lists[i], ordinal) < 0) {
+					bits.clear(ordinal);
+				}
+			}
+		}
+		return bits;
+	}
+
+	private static CardTextIndex read(CardIndex index, File indexFile, File sourceFile) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16))) {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			if(in.readLong() != sourceFile.length() || in.readLong() != sourceFile.lastModified()) {
+				return null;
+			}
+
+			int count = in.readInt();
+			if(count != index.size()) {
+				return null;
+			}
+			String[] documents = new String[count];
+			BitSet volatileDocuments = new BitSet();
+			for(int ordinal = 0; ordinal < count; ordinal++) {
+				if(!in.readUTF().equals(index.getName(ordinal))) {
+					return null;
+				}
+				byte flags = in.readByte();
+				if(flags == 1) {
+					volatileDocuments.set(ordinal);
+				} else if(flags == 0) {
+					byte[] bytes = new byte[in.readInt()];
+					in.readFully(bytes);
+					documents[ordinal] = new String(bytes, StandardCharsets.UTF_8);
+				}
+			}
+
+			int postingsCount = in.readInt();
+			Map<Long, int[]> postings = new HashMap<Long, int[]>(postingsCount * 2);
+			for(int i = 0; i < postingsCount; i++) {
+				long key = in.readLong();
+				int[] ordinals = new int[in.readInt()];
+				int last = 0;
+				for(int j = 0; j < ordinals.length; j++) {
+					last += readVarInt(in);
+					ordinals[j] = last;
+				}
+				postings.put(key, ordinals);
+			}
+			return new CardTextIndex(documents, volatileDocuments, postings);
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	private void write(CardIndex index, File indexFile, File sourceFile) throws IOException {
+		File tmpFile = new File(indexFile.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sourceFile.length());
+			out.writeLong(sourceFile.lastModified());
+
+			out.writeInt(documents.length);
+			for(int ordinal = 0; ordinal < documents.length; ordinal++) {
+				out.writeUTF(index.getName(ordinal));
+				if(volatileDocuments.get(ordinal)) {
+					out.writeByte(1);
+				} else if(documents[ordinal] == null) {
+					out.writeByte(2);
+				} else {
+					out.writeByte(0);
+					byte[] bytes = documents[ordinal].getBytes(StandardCharsets.UTF_8);
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+			}
+
+			out.writeInt(postings.size());
+			for(Map.Entry<Long, int[]> entry : postings.entrySet()) {
+				out.writeLong(entry.getKey());
+				int[] ordinals = entry.getValue();
+				out.writeInt(ordinals.length);
+				int last = 0;
+				for(int ordinal : ordinals) {
+					writeVarInt(out, ordinal - last);
+					last = ordinal;
+				}
+			}
+		}
+		indexFile.delete();
+		if(!tmpFile.renameTo(indexFile)) {
+			throw new IOException("Could not move " + tmpFile + " to " + indexFile);
+		}
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Sorted, de-duplicated ordinals for one trigram while building.
+	 */
+	private static class Postings {
+
+		private int[] ordinals = new int[4];
+		private int size = 0;
+
+		public void add(int ordinal) {
+			if(size > 0 && ordinals[size - 1] == ordinal) {
+				return;
+			}
+			if(size == ordinals.length) {
+				ordinals = Arrays.copyOf(ordinals, size * 2);
+			}
+			ordinals[size++] = ordinal;
+		}
+
+		public int[] toArray() {
+			return Arrays.copyOf(ordinals, size);
+		}
+
+	}
+
+}
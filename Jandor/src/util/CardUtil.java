@@ -1,6 +1,7 @@
 package util;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -95,14 +96,40 @@ public class CardUtil {
 	private static Map<Integer, String> cardNamesByMultiverseId = new HashMap<Integer, String>();
 	private static List<String> cardAttributes = null;
 	private static Map<String, HashSet<String>> valuesByKey = new HashMap<String, HashSet<String>>();
+	private static CardIndex cardIndex = null;
+	private static CardTextIndex cardTextIndex = null;
 
 	public static void init() {
 		loadAllSets();
 		loadAllCards();
 		recordValues();
+		buildIndex();
 		loadImages();
 	}
 
+	private static void buildIndex() {
+		cardIndex = CardIndex.build(allCardNames, allCardsJson);
+		cardTextIndex = CardTextIndex.loadOrBuild(cardIndex,
+				FileUtil.getExternalResourcesFile(FileUtil.RESOURCE_CARDS_TEXT_INDEX),
+				FileUtil.getExternalResourcesFile(FileUtil.RESOURCE_CARDS_LESS_JSONS));
+	}
+
+	/**
+	 * Returns the attribute index over {@link #getAllCardNames()}, or null if
+	 * {@link #init()} hasn't run yet.
+	 */
+	public static CardIndex getCardIndex() {
+		return cardIndex;
+	}
+
+	/**
+	 * Returns the trigram index over card text, or null if {@link #init()}
+	 * hasn't run yet.
+	 */
+	public static CardTextIndex getCardTextIndex() {
+		return cardTextIndex;
+	}
+
 	private static Map<Class, Map<String, Field>> fieldsByKey = new HashMap<>();
 	private static Field getField(Object obj, String fieldName) {
 		Class klass = obj.getClass();
@@ -525,6 +552,9 @@ public class CardUtil {
 			CardUtil.loadAllCards();
 			List<String> att = new ArrayList<String>();
 			for(Field field : CardJson.class.getDeclaredFields()) {
+				if(Modifier.isStatic(field.getModifiers())) {
+					continue;
+				}
 				att.add(field.getName());
 			}
 			cardAttributes = att;
@@ -551,6 +581,70 @@ public class CardUtil {
 		return "<a href=\"" + GATHERER_URL + multiverseId + "\">" + linkText + "</a>";
 	}
 
+	/**
+	 * Whether the card has at least one type and every type is one we know about.
+	 */
+	public static boolean hasKnownTypes(CardJson info) {
+		List<String> types = info.types;
+		if(types == null || types.size() == 0) {
+			return false;
+		}
+		Set<String> allTypes = getValues("types");
+		for(String type : types) {
+			if(!allTypes.contains(type)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Whether the card was only ever printed in the Un-sets.
+	 */
+	public static boolean isOnlySilly(CardJson info) {
+		boolean isSilly = false;
+		boolean isAlsoNotSilly = false;
+		for(String set : info.printings) {
+			if(set.equals("UNG") || set.equals("UNH") || set.equals("UGL") || set.equals("UST")) {
+				isSilly = true;
+			} else {
+				isAlsoNotSilly = true;
+			}
+		}
+		return isSilly && !isAlsoNotSilly;
+	}
+
+	/**
+	 * Reads power, toughness and costs the way search compares them. "*" is 0
+	 * and any -, + or * is dropped, so "1+*" is 1.
+	 */
+	public static int toInt(Object val) {
+		if(val == null) {
+			return 0;
+		}
+		if(val instanceof String) {
+			if(val.equals("*")) {
+				val = 0;
+			} else {
+
+				if(((String) val).contains("-")) {
+					val = ((String) val).replace("-", "");
+				}
+
+				if(((String) val).contains("+")) {
+					val = ((String) val).replace("+", "");
+				}
+
+				if(((String) val).contains("*")) {
+					val = ((String) val).replace("*", "");
+				}
+
+			}
+		}
+		int intVal = (int) Double.valueOf(val.toString()).doubleValue();
+		return intVal;
+	}
+
 	public static boolean isDoubleFaced(CardJson info) {
 		return info.layout != null && info.layout.equals("double-faced");
 	}
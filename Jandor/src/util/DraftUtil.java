@@ -164,6 +164,12 @@ public class DraftUtil {
 		
 		SessionEventManager.addListener(BoosterHeader.class, SessionEvent.TYPE_CREATED, new SessionEventListener(this) {
 			
+			// Saves boosters and drafts, so keep it off the EDT; the alert it fires reaches the UI on its own
+			@Override
+			public int getDelivery() {
+				return DELIVER_WORKER;
+			}
+			
 			@Override
 			public void handleEvent(SessionEvent event) {
 				if(!(event instanceof MessageEvent)) {
@@ -35,8 +35,12 @@ public class FileUtil {
 	public static final String RESOURCE_SETS_JSONS = "AllPrintings.json";
 	public static final String RESOURCE_CARDS_LESS_JSONS = "AllCards-less.json";
 	public static final String RESOURCE_SETS_LESS_JSONS = "AllSets-less.json";
+	public static final String RESOURCE_CARDS_TEXT_INDEX = "AllCards-less.index";
 	public static final String RESOURCE_MTG_JSON_VERSION = "mtg-json-version.txt";
 	public static final String RESOURCE_REDIS_PROPERTIES = "redis.properties";
+	public static final String SESSION_STORE = "session.store";
+	public static final String IMAGE_ARCHIVE = "images";
+	public static final String PRICE_CACHE = "prices.json";
 
 	public static final String DEFAULT_EXT = "dec";
 	private static final String DEFAULT_EXT_DESCRIPTION = "Apprentice Deck File (*.dec)";
@@ -178,6 +182,18 @@ public class FileUtil {
 		return getFiles(getPreferencesFolder());
 	}
 
+	public static File getSessionStoreFile() {
+		return new File(createFolder(FOLDER_JANDOR_DATA), SESSION_STORE);
+	}
+
+	public static File getPriceCacheFile() {
+		return new File(createFolder(FOLDER_JANDOR_DATA), PRICE_CACHE);
+	}
+
+	public static File getImageArchiveFolder() {
+		return createFolder(FOLDER_JANDOR_DATA);
+	}
+
 	public static File getPreferenceFile() {
 		return toFile(getPreferencesFolder(), "Preferences-0");
 	}
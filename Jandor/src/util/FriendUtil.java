@@ -5,10 +5,13 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.swing.SwingUtilities;
+
 import canvas.CardLayer;
 import multiplayer.DisconnectMessage;
 import multiplayer.MultiplayerConnection;
 import multiplayer.MultiplayerMessage;
+import multiplayer.StreamProtocol;
 import redis.BinarySubscriber;
 import session.User;
 import ui.ProgressBar.ProgressTask;
@@ -139,6 +142,7 @@ public class FriendUtil {
 		}
 		
 		connectedByUserGUID.remove(userGUID);
+		MessageUtil.wakeStreaming();
 		
 		for(CardLayer layer : CardLayer.getAllCardLayers()) {
 			layer.setOpponentMessage(null);
@@ -172,11 +176,31 @@ public class FriendUtil {
 		connection.setMessage(message);
 	}
 	
-	public static void updateConnectedView(String userGUID, String currentUsername, byte[] serializedMessage) {
+	public static void updateConnectedView(final String userGUID, String currentUsername, final byte[] serializedMessage) {
 		if(!connectedByUserGUID.containsKey(userGUID)) {
 			return;
 		}
-		MultiplayerConnection connection = connectedByUserGUID.get(userGUID);
+		final MultiplayerConnection connection = connectedByUserGUID.get(userGUID);
+		
+		if(StreamProtocol.isStreamFrame(serializedMessage)) {
+			// Decoded objects are reused between frames, so only touch them on the EDT
+			SwingUtilities.invokeLater(new Runnable() {
+
+				@Override
+				public void run() {
+					if(connectedByUserGUID.get(userGUID) != connection) {
+						return;
+					}
+					MultiplayerMessage message = connection.getDecoder().decode(serializedMessage);
+					if(message != null) {
+						showMessage(userGUID, connection, message);
+					}
+				}
+				
+			});
+			return;
+		}
+		
 		Object obj = SerializationUtil.fromBytes(serializedMessage);
 		
 		if(obj instanceof DisconnectMessage) {
@@ -188,18 +212,21 @@ public class FriendUtil {
 			
 		} else if(obj instanceof MultiplayerMessage) {
 			
-			MultiplayerMessage message = (MultiplayerMessage) obj;
-			connection.setMessage(message);
+			showMessage(userGUID, connection, (MultiplayerMessage) obj);
 			
-			for(CardLayer layer : CardLayer.getAllCardLayers()) {
-				String opponentGUID = layer.getOpponentButtonPanel().getOpponentGUID();
-				if(opponentGUID != null && opponentGUID.equals(userGUID)) {
-					layer.setOpponentMessage(message);
-					layer.getOpponentButtonPanel().updateLabels();
-					layer.repaint();
-				}
+		}
+	}
+	
+	private static void showMessage(String userGUID, MultiplayerConnection connection, MultiplayerMessage message) {
+		connection.setMessage(message);
+		
+		for(CardLayer layer : CardLayer.getAllCardLayers()) {
+			String opponentGUID = layer.getOpponentButtonPanel().getOpponentGUID();
+			if(opponentGUID != null && opponentGUID.equals(userGUID)) {
+				layer.setOpponentMessage(message);
+				layer.getOpponentButtonPanel().updateLabels();
+				layer.repaint();
 			}
-			
 		}
 	}
 	
@@ -0,0 +1,643 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Card images by multiverse id in one append-only file, read through memory
+ * maps of fixed size windows of it, so the file can grow past what one map
+ * can hold. Works like the session store: a header
+ *
+ * <pre>
+ * int  MAGIC
+ * int  FORMAT_VERSION
+ * long offset of the latest index record, 0 if there is none
+ * </pre>
+ *
+ * followed by records:
+ *
+ * <pre>
+ * int  length of what follows
+ * byte OP_PUT, OP_DELETE or OP_INDEX
+ * int  multiverse id
+ * byte CODEC_JPEG or CODEC_PNG, puts only
+ * ...  the encoded image, puts only
+ * </pre>
+ *
+ * Opaque images are stored as JPEG, which decodes several times faster than
+ * PNG. Compacting copies the live records into the next generation of the
+ * file while reads go on, so a file is never replaced while it is mapped.
+ */
+public class ImageArchive {
+
+	public static final int MAGIC = 0x4A494D47; // JIMG
+	public static final int FORMAT_VERSION = 1;
+
+	public static final int INDEX_INTERVAL = 256;
+	public static final long COMPACT_MIN_SIZE = 8 << 20;
+	public static final float JPEG_QUALITY = 0.9f;
+
+	public static final byte CODEC_JPEG = 0;
+	public static final byte CODEC_PNG = 1;
+
+	public static final long WINDOW_SIZE = 256 << 20;
+	public static final long WINDOW_OVERLAP = 4 << 20;
+
+	private static final int HEADER_SIZE = 16;
+	private static final int INDEX_POINTER = 8;
+	private static final int RECORD_HEADER_SIZE = 9;
+	private static final int INDEX_ENTRY_SIZE = 16;
+
+	private static final byte OP_PUT = 0;
+	private static final byte OP_DELETE = 1;
+	private static final byte OP_INDEX = 2;
+
+	private final File folder;
+	private final String name;
+	private int generation;
+	private File file;
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private final List<MappedByteBuffer> windows = new ArrayList<MappedByteBuffer>();
+	private long size;
+	private boolean compacting = false;
+
+	private final Map<Integer, Long> offsets = new HashMap<Integer, Long>();
+	private final Map<Integer, Integer> lengths = new HashMap<Integer, Integer>();
+	private long liveBytes = 0;
+	private int recordsSinceIndex = 0;
+
+	private ImageArchive(File folder, String name) {
+		this.folder = folder;
+		this.name = name;
+	}
+
+	/**
+	 * Opens the newest generation of the archive in the folder, or creates
+	 * it, and deletes any older generations left behind.
+	 */
+	public static ImageArchive open(File folder, String name) throws IOException {
+		ImageArchive archive = new ImageArchive(folder, name);
+		List<Integer> generations = archive.getGenerations();
+		archive.generation = generations.isEmpty() ? 0 : generations.get(generations.size() - 1);
+		archive.file = archive.toFile(archive.generation);
+		archive.deleteOlderGenerations();
+		archive.openFile();
+		archive.loadIndex();
+		return archive;
+	}
+
+	/**
+	 * Renames every generation of the archive to .bad, so the next open starts
+	 * a new one.
+	 */
+	public static void moveAside(File folder, String name) {
+		ImageArchive archive = new ImageArchive(folder, name);
+		for(int g : archive.getGenerations()) {
+			File file = archive.toFile(g);
+			File bad = new File(file.getPath() + ".bad");
+			bad.delete();
+			file.renameTo(bad);
+		}
+	}
+
+	public synchronized File getFile() {
+		return file;
+	}
+
+	public synchronized int getCount() {
+		return offsets.size();
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized boolean contains(int multiverseId) {
+		return offsets.containsKey(multiverseId);
+	}
+
+	/**
+	 * @return The image, or null if there is none or it can't be decoded.
+	 */
+	public BufferedImage read(int multiverseId) {
+		ByteBuffer record;
+		synchronized(this) {
+			Long offset = offsets.get(multiverseId);
+			if(offset == null) {
+				return null;
+			}
+			try {
+				record = slice(offset, lengths.get(multiverseId));
+			} catch (IOException e) {
+				e.printStackTrace();
+				return null;
+			}
+		}
+
+		// Decode outside the lock so readers don't wait on each other
+		record.position(RECORD_HEADER_SIZE);
+		record.get();
+		try {
+			return ImageIO.read(new BufferInputStream(record));
+		} catch (IOException | IndexOutOfBoundsException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Encodes and appends the image, replacing any image saved for the id.
+	 *
+	 * @return False if it could not be written.
+	 */
+	public boolean put(int multiverseId, BufferedImage image) {
+		byte[] payload;
+		try {
+			payload = encode(image);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+
+		synchronized(this) {
+			try {
+				append(OP_PUT, multiverseId, payload);
+				return true;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return false;
+	}
+
+	public synchronized void delete(int multiverseId) {
+		if(!offsets.containsKey(multiverseId)) {
+			return;
+		}
+		try {
+			append(OP_DELETE, multiverseId, new byte[0]);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes an index of everything written so far, so the next open doesn't
+	 * have to scan it.
+	 */
+	public synchronized void flush() {
+		try {
+			writeIndex();
+			channel.force(false);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public synchronized void close() {
+		flush();
+		try {
+			channel.close();
+			raf.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		windows.clear();
+	}
+
+	public synchronized boolean isCompactable() {
+		return !compacting && size > COMPACT_MIN_SIZE && liveBytes < (size - HEADER_SIZE) / 2;
+	}
+
+	/**
+	 * Copies the live records into the next generation of the file and
+	 * switches to it. Reads and writes carry on while the bulk of the copy
+	 * runs; only records written during it are copied under the lock.
+	 */
+	public void compact() throws IOException {
+		Map<Integer, Long> snapshot;
+		Map<Integer, Integer> snapshotLengths;
+		FileChannel source;
+		File tmp;
+		synchronized(this) {
+			if(compacting) {
+				return;
+			}
+			compacting = true;
+			snapshot = new HashMap<Integer, Long>(offsets);
+			snapshotLengths = new HashMap<Integer, Integer>(lengths);
+			source = channel;
+			tmp = new File(toFile(generation + 1).getPath() + ".tmp");
+		}
+
+		try {
+			// Records never change once written, so the snapshot can be copied without the lock
+			long position = HEADER_SIZE;
+			Map<Integer, Long> newOffsets = new HashMap<Integer, Long>();
+			try(RandomAccessFile out = new RandomAccessFile(tmp, "rw"); FileChannel outChannel = out.getChannel()) {
+				outChannel.truncate(0);
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(0);
+				header.flip();
+				writeFully(outChannel, header, 0);
+
+				for(int id : sortByOffset(snapshot)) {
+					int length = snapshotLengths.get(id);
+					transferFully(source, snapshot.get(id), length, outChannel, position);
+					newOffsets.put(id, position);
+					position += length;
+				}
+			}
+
+			synchronized(this) {
+				Map<Integer, Integer> newLengths = new HashMap<Integer, Integer>();
+				try(RandomAccessFile out = new RandomAccessFile(tmp, "rw"); FileChannel outChannel = out.getChannel()) {
+					for(int id : sortByOffset(offsets)) {
+						long offset = offsets.get(id);
+						int length = lengths.get(id);
+						Long copied = snapshot.get(id);
+						if(copied == null || copied != offset) {
+							transferFully(channel, offset, length, outChannel, position);
+							newOffsets.put(id, position);
+							position += length;
+						}
+						newLengths.put(id, length);
+					}
+					newOffsets.keySet().retainAll(offsets.keySet());
+					outChannel.force(false);
+				}
+
+				File next = toFile(generation + 1);
+				if(!tmp.renameTo(next)) {
+					throw new IOException("Could not rename " + tmp + " to " + next);
+				}
+				File previous = file;
+				channel.close();
+				raf.close();
+
+				generation++;
+				file = next;
+				openFile();
+				offsets.clear();
+				offsets.putAll(newOffsets);
+				lengths.clear();
+				lengths.putAll(newLengths);
+				liveBytes = 0;
+				for(int length : newLengths.values()) {
+					liveBytes += length;
+				}
+				recordsSinceIndex = offsets.size();
+				writeIndex();
+				remap();
+
+				// Can fail while old reads still hold the map, open() tries again
+				previous.delete();
+			}
+		} finally {
+			tmp.delete();
+			synchronized(this) {
+				compacting = false;
+			}
+		}
+	}
+
+	private File toFile(int generation) {
+		return new File(folder, name + "-" + generation + ".pack");
+	}
+
+	private List<Integer> getGenerations() {
+		final Pattern pattern = Pattern.compile(Pattern.quote(name) + "-(\\d+)\\.pack");
+		List<Integer> generations = new ArrayList<Integer>();
+		String[] names = folder.list(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File dir, String fileName) {
+				return pattern.matcher(fileName).matches();
+			}
+
+		});
+		if(names != null) {
+			for(String fileName : names) {
+				Matcher m = pattern.matcher(fileName);
+				if(m.matches()) {
+					generations.add(Integer.valueOf(m.group(1)));
+				}
+			}
+		}
+		Collections.sort(generations);
+		return generations;
+	}
+
+	private void deleteOlderGenerations() {
+		for(int g : getGenerations()) {
+			if(g < generation) {
+				toFile(g).delete();
+			}
+		}
+	}
+
+	private static List<Integer> sortByOffset(final Map<Integer, Long> offsets) {
+		List<Integer> ids = new ArrayList<Integer>(offsets.keySet());
+		Collections.sort(ids, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(offsets.get(a), offsets.get(b));
+			}
+
+		});
+		return ids;
+	}
+
+	private void openFile() throws IOException {
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		size = channel.size();
+		if(size < HEADER_SIZE) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(0);
+			header.flip();
+			channel.truncate(0);
+			writeFully(channel, header, 0);
+			size = HEADER_SIZE;
+			return;
+		}
+
+		ByteBuffer header = readFully(0, HEADER_SIZE);
+		if(header.getInt() != MAGIC) {
+			throw new IOException(file + " is not an image archive");
+		}
+		int version = header.getInt();
+		if(version > FORMAT_VERSION) {
+			throw new IOException(file + " was written by a newer version (" + version + ")");
+		}
+	}
+
+	private void loadIndex() throws IOException {
+		ByteBuffer header = readFully(INDEX_POINTER, 8);
+		long indexOffset = header.getLong();
+		long position = HEADER_SIZE;
+		if(indexOffset >= HEADER_SIZE && indexOffset + RECORD_HEADER_SIZE <= size) {
+			ByteBuffer recordHeader = readFully(indexOffset, RECORD_HEADER_SIZE);
+			int length = recordHeader.getInt();
+			if(recordHeader.get() == OP_INDEX && indexOffset + 4 + length <= size) {
+				readIndex(readFully(indexOffset + RECORD_HEADER_SIZE, length - (RECORD_HEADER_SIZE - 4)));
+				position = indexOffset + 4 + length;
+			}
+		}
+
+		// Replay whatever came after the index
+		while(position + RECORD_HEADER_SIZE <= size) {
+			ByteBuffer recordHeader = readFully(position, RECORD_HEADER_SIZE);
+			int length = recordHeader.getInt();
+			if(length < RECORD_HEADER_SIZE - 4 || position + 4 + length > size) {
+				break;
+			}
+			byte op = recordHeader.get();
+			int id = recordHeader.getInt();
+			if(op == OP_INDEX) {
+				offsets.clear();
+				lengths.clear();
+				liveBytes = 0;
+				recordsSinceIndex = 0;
+				readIndex(readFully(position + RECORD_HEADER_SIZE, length - (RECORD_HEADER_SIZE - 4)));
+			} else {
+				apply(id, op, position, 4 + length);
+				recordsSinceIndex++;
+			}
+			position += 4 + length;
+		}
+
+		if(position < size) {
+			// A write was cut off part way, drop it
+			System.err.println("Dropping " + (size - position) + " unreadable bytes from " + file);
+			channel.truncate(position);
+			size = position;
+		}
+	}
+
+	private void readIndex(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		for(int i = 0; i < count; i++) {
+			int id = buffer.getInt();
+			long offset = buffer.getLong();
+			int length = buffer.getInt();
+			offsets.put(id, offset);
+			lengths.put(id, length);
+			liveBytes += length;
+		}
+	}
+
+	private void apply(int id, byte op, long offset, int length) {
+		Integer old = lengths.remove(id);
+		if(old != null) {
+			liveBytes -= old;
+		}
+		offsets.remove(id);
+		if(op == OP_PUT) {
+			offsets.put(id, offset);
+			lengths.put(id, length);
+			liveBytes += length;
+		}
+	}
+
+	private void append(byte op, int id, byte[] payload) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+		record.putInt(RECORD_HEADER_SIZE - 4 + payload.length).put(op).putInt(id).put(payload);
+		record.flip();
+
+		long offset = size;
+		writeFully(channel, record, offset);
+		size += record.limit();
+		apply(id, op, offset, record.limit());
+
+		if(++recordsSinceIndex >= INDEX_INTERVAL) {
+			writeIndex();
+		}
+	}
+
+	private void writeIndex() throws IOException {
+		if(recordsSinceIndex == 0) {
+			return;
+		}
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 4 + offsets.size() * INDEX_ENTRY_SIZE);
+		record.putInt(record.capacity() - 4).put(OP_INDEX).putInt(0);
+		record.putInt(offsets.size());
+		for(Map.Entry<Integer, Long> entry : offsets.entrySet()) {
+			record.putInt(entry.getKey()).putLong(entry.getValue()).putInt(lengths.get(entry.getKey()));
+		}
+		record.flip();
+
+		long offset = size;
+		writeFully(channel, record, offset);
+		size += record.limit();
+
+		ByteBuffer pointer = ByteBuffer.allocate(8);
+		pointer.putLong(offset).flip();
+		writeFully(channel, pointer, INDEX_POINTER);
+		recordsSinceIndex = 0;
+	}
+
+	/**
+	 * Drops the windows, which are mapped again as they are read.
+	 */
+	private void remap() {
+		windows.clear();
+	}
+
+	/**
+	 * @return The record, from the window its offset falls in. Each window
+	 *         overlaps the next so most records lie in one; a record that
+	 *         doesn't is mapped on its own.
+	 */
+	private ByteBuffer slice(long offset, int length) throws IOException {
+		int index = (int) (offset / WINDOW_SIZE);
+		long start = index * WINDOW_SIZE;
+		while(windows.size() <= index) {
+			windows.add(null);
+		}
+		MappedByteBuffer window = windows.get(index);
+		if(window == null || offset + length > start + window.capacity()) {
+			window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, WINDOW_SIZE + WINDOW_OVERLAP));
+			windows.set(index, window);
+		}
+		if(offset + length > start + window.capacity()) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+		}
+		ByteBuffer slice = window.duplicate();
+		slice.position((int) (offset - start));
+		slice.limit((int) (offset - start) + length);
+		return slice.slice();
+	}
+
+	private static void transferFully(FileChannel from, long offset, long length, FileChannel to, long position) throws IOException {
+		long done = 0;
+		while(done < length) {
+			long count = from.transferTo(offset + done, length - done, to.position(position + done));
+			if(count <= 0 && offset + done >= from.size()) {
+				throw new IOException("Unexpected end of archive while compacting");
+			}
+			done += count;
+		}
+	}
+
+	private ByteBuffer readFully(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of " + file);
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+
+	private static byte[] encode(BufferedImage image) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 * 1024);
+		if(!isOpaque(image)) {
+			bytes.write(CODEC_PNG);
+			ImageIO.write(image, "png", bytes);
+			return bytes.toByteArray();
+		}
+
+		// The JPEG writer can't take an alpha channel, even an opaque one
+		BufferedImage rgb = image;
+		if(image.getColorModel().hasAlpha()) {
+			rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+			rgb.getGraphics().drawImage(image, 0, 0, null);
+		}
+
+		bytes.write(CODEC_JPEG);
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+		try(ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(JPEG_QUALITY);
+			writer.setOutput(out);
+			writer.write(null, new IIOImage(rgb, null, null), param);
+		} finally {
+			writer.dispose();
+		}
+		return bytes.toByteArray();
+	}
+
+	private static boolean isOpaque(BufferedImage image) {
+		if(!image.getColorModel().hasAlpha()) {
+			return true;
+		}
+		int w = image.getWidth();
+		int[] row = new int[w];
+		for(int y = 0; y < image.getHeight(); y++) {
+			image.getRGB(0, y, w, 1, row, 0, w);
+			for(int argb : row) {
+				if((argb >>> 24) != 0xFF) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads a mapped record in place, without copying it to the heap first.
+	 */
+	private static class BufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		public BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if(!buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+
+	}
+
+}
@@ -0,0 +1,50 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.util.Set;
+
+/**
+ * Where {@link ImageUtil} keeps the images it has read, keyed by url and
+ * scale. Implementations decide what to throw away once they get too big.
+ */
+public interface ImageCache {
+
+	/**
+	 * Keys that must not be evicted, e.g. images of cards on the table.
+	 * Asked for once per eviction pass, not once per image, on whatever thread
+	 * is putting an image and while the cache is locked, so it must be thread
+	 * safe and quick.
+	 */
+	public interface Pins {
+
+		public Set<String> getPinnedKeys();
+
+	}
+
+	/**
+	 * @return The image, or null if it isn't cached.
+	 */
+	public BufferedImage get(String key);
+
+	/**
+	 * Like {@link #get(String)} != null, but doesn't count as a hit or miss.
+	 */
+	public boolean contains(String key);
+
+	public void put(String key, BufferedImage image);
+
+	public void clear();
+
+	public void setPins(Pins pins);
+
+	public long getBytes();
+
+	public long getBudget();
+
+	public long getHits();
+
+	public long getMisses();
+
+	public long getEvictions();
+
+}
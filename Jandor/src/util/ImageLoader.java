@@ -0,0 +1,116 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Loads images on a small pool of I/O threads. Asking for an image that is
+ * already being loaded returns the same future rather than loading it again.
+ * Once an image is loaded, the {@link ImageUtil} cache listeners for it are
+ * updated on the EDT.
+ */
+public class ImageLoader {
+
+	public static final int IO_THREADS = 6;
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+	private static final ExecutorService pool = Executors.newFixedThreadPool(IO_THREADS, new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Image Loader " + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		}
+
+	});
+
+	private static final ConcurrentHashMap<String, CompletableFuture<BufferedImage>> inFlight = new ConcurrentHashMap<String, CompletableFuture<BufferedImage>>();
+
+	private ImageLoader() {}
+
+	/**
+	 * Reads the image at the given scale, see
+	 * {@link ImageUtil#readImage(String, double, String)}.
+	 */
+	public static CompletableFuture<BufferedImage> load(final String urlString, final double scale, final String name) {
+		return load(urlString, scale, new Callable<BufferedImage>() {
+
+			@Override
+			public BufferedImage call() throws Exception {
+				return ImageUtil.readImage(urlString, scale, name);
+			}
+
+		});
+	}
+
+	/**
+	 * Runs the loader unless an image for the same url and scale is already
+	 * cached or being loaded.
+	 */
+	public static CompletableFuture<BufferedImage> load(final String urlString, final double scale, final Callable<BufferedImage> loader) {
+		final String key = urlString + ":" + (int) (scale * 100);
+		BufferedImage cached = ImageUtil.getCachedImage(urlString, scale);
+		if(cached != null) {
+			// Listeners still need to hear about it
+			return CompletableFuture.completedFuture(cached).whenComplete(new Notifier(urlString, scale));
+		}
+
+		CompletableFuture<BufferedImage> future = new CompletableFuture<BufferedImage>();
+		CompletableFuture<BufferedImage> running = inFlight.putIfAbsent(key, future);
+		if(running != null) {
+			return running;
+		}
+
+		final CompletableFuture<BufferedImage> started = future;
+		pool.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					started.complete(loader.call());
+				} catch (Throwable t) {
+					started.completeExceptionally(t);
+				} finally {
+					inFlight.remove(key, started);
+				}
+			}
+
+		});
+		return future.whenComplete(new Notifier(urlString, scale));
+	}
+
+	public static int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	private static class Notifier implements BiConsumer<BufferedImage, Throwable> {
+
+		private final String urlString;
+		private final double scale;
+
+		public Notifier(String urlString, double scale) {
+			this.urlString = urlString;
+			this.scale = scale;
+		}
+
+		@Override
+		public void accept(BufferedImage image, Throwable t) {
+			if(t != null) {
+				t.printStackTrace();
+				return;
+			}
+			ImageUtil.fireImageCacheListeners(urlString, scale, image);
+		}
+
+	}
+
+}
@@ -12,13 +12,25 @@ import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,6 +38,7 @@ import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 
 import run.Jandor;
@@ -33,20 +46,33 @@ import ui.GuiCard;
 import ui.pwidget.ColorUtil;
 import canvas.CardLayer;
 import canvas.IRenderable;
-import canvas.animation.Animator;
+import canvas.IRenderer;
 import deck.Card;
 import dice.CounterRenderer;
 import dice.Die;
 import dice.DieRenderer;
 import dice.TokenRenderer;
+import multiplayer.MultiplayerMessage;
 
 public class ImageUtil {
 
 	public static final double DEFAULT_SCALE = 1.0; //0.8; //0.675;
 
 	private static Map<String, Boolean> customImagesByName = new HashMap<String, Boolean>();
-	private static Map<File, BufferedImage> imagesToCacheToDisc = new HashMap<File, BufferedImage>();
-	private static final Map<String, BufferedImage> imageCache = new HashMap<String, BufferedImage>();
+	private static Map<Integer, BufferedImage> imagesToCacheToDisc = new ConcurrentHashMap<Integer, BufferedImage>();
+	private static ImageArchive imageArchive = null;
+	private static final ExecutorService discWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Image Archive Writer");
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	});
+	private static final ConcurrentHashMap<String, FutureTask<BufferedImage>> readsInFlight = new ConcurrentHashMap<String, FutureTask<BufferedImage>>();
+	private static ImageCache imageCache = newImageCache();
 	private static double scale = DEFAULT_SCALE;
 	private static boolean WARNED = false;
 	private static final int DEFAULT_CORNER_RADIUS = 22;
@@ -57,13 +83,133 @@ public class ImageUtil {
 	private static final int DEFAULT_CARD_HEIGHT = 311;
 
 	private static final Pattern patternMultiverse = Pattern.compile("(.*multiverseid=)(.*?)(&.*)");
+	private static final Pattern patternCachedImageFile = Pattern.compile("(\\d+)\\.png");
 
 	private static Map<String, List<JLabel>> imageCacheListeners = new HashMap<String, List<JLabel>>();
 
 	private ImageUtil() {}
 
+	private static volatile Set<String> pinnedKeys = Collections.emptySet();
+	private static final AtomicBoolean pinnedKeysRefreshQueued = new AtomicBoolean(false);
+
+	private static ImageCache newImageCache() {
+		ImageCache cache = new LruImageCache();
+		cache.setPins(new ImageCache.Pins() {
+
+			@Override
+			public Set<String> getPinnedKeys() {
+				if(SwingUtilities.isEventDispatchThread()) {
+					refreshPinnedKeys();
+				} else {
+					queuePinnedKeysRefresh();
+				}
+				return pinnedKeys;
+			}
+
+		});
+		return cache;
+	}
+
+	/**
+	 * Card layers are only looked at on the EDT, so loader threads get the
+	 * keys from the last time it did and queue a fresh look for next time.
+	 */
+	private static void queuePinnedKeysRefresh() {
+		if(!pinnedKeysRefreshQueued.compareAndSet(false, true)) {
+			return;
+		}
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				pinnedKeysRefreshQueued.set(false);
+				refreshPinnedKeys();
+			}
+
+		});
+	}
+
+	private static void refreshPinnedKeys() {
+		pinnedKeys = Collections.unmodifiableSet(getKeysOnCardLayers());
+	}
+
+	public static ImageCache getImageCache() {
+		return imageCache;
+	}
+
+	public static void setImageCache(ImageCache cache) {
+		imageCache = cache;
+	}
+
+	/**
+	 * The cache keys of every image a card layer may paint without waiting,
+	 * front and back, at their table scale and at full size.
+	 */
+	private static Set<String> getKeysOnCardLayers() {
+		Set<String> keys = new HashSet<String>();
+		for(CardLayer layer : new ArrayList<CardLayer>(CardLayer.getAllCardLayers())) {
+			List<IRenderable> renderables = new ArrayList<IRenderable>(layer.getAllObjects());
+			MultiplayerMessage message = layer.getOpponentMessage();
+			if(message != null) {
+				renderables.addAll(message.getAllObjects());
+			}
+			for(IRenderable r : renderables) {
+				IRenderer renderer = r.getRenderer();
+				for(String url : new String[] { renderer.getImageUrl(), renderer.getBackImageUrl() }) {
+					keys.add(toKey(url, renderer.getScale() * getScale()));
+					keys.add(toKey(url, 1.0));
+				}
+			}
+		}
+		return keys;
+	}
+
+	private static String toKey(String urlString, double scale) {
+		if(urlString != null && urlString.contains("-1")) {
+			urlString = ImageUtil.getResourceUrl("back-custom.png");
+		}
+		return urlString + ":" + (int) (scale * 100);
+	}
+
 	public static void init() {
-		startImageDiscCachingListener();
+		startImageArchiveImporter();
+	}
+
+	/**
+	 * The offline image cache, opened on first use.
+	 *
+	 * @return The archive, or null if it can't be opened.
+	 */
+	public static synchronized ImageArchive getImageArchive() {
+		if(imageArchive != null) {
+			return imageArchive;
+		}
+
+		File folder = FileUtil.getImageArchiveFolder();
+		try {
+			imageArchive = ImageArchive.open(folder, FileUtil.IMAGE_ARCHIVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+			ImageArchive.moveAside(folder, FileUtil.IMAGE_ARCHIVE);
+			System.err.println("Moved unreadable image archive aside, starting a new one");
+			try {
+				imageArchive = ImageArchive.open(folder, FileUtil.IMAGE_ARCHIVE);
+			} catch (IOException e2) {
+				e2.printStackTrace();
+				return null;
+			}
+		}
+
+		final ImageArchive archive = imageArchive;
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+
+			@Override
+			public void run() {
+				archive.close();
+			}
+
+		});
+		return imageArchive;
 	}
 
 	public static void setIgnoreNull(boolean ignoreNull) {
@@ -133,19 +279,18 @@ public class ImageUtil {
 		if(urlString.contains("-1")) {
 			urlString = ImageUtil.getResourceUrl("back-custom.png");
 		}
-		String key = urlString + ":" + (int) (scale * 100);
-		if(imageCache.containsKey(key)) {
-			return imageCache.get(key);
+		String key = toKey(urlString, scale);
+		BufferedImage image = imageCache.get(key);
+		if(image != null) {
+			return image;
 		}
 
-		BufferedImage image = null;
 		String fullKey = null;
 
 		try {
-			fullKey = urlString + ":" + 100;
-			if(imageCache.containsKey(fullKey)) {
-				image = imageCache.get(fullKey);
-			} else {
+			fullKey = toKey(urlString, 1.0);
+			image = scale != 1.0 ? imageCache.get(fullKey) : null;
+			if(image == null) {
 
 				URL url = null;
 				url = new URL(urlString);
@@ -195,13 +340,14 @@ public class ImageUtil {
 				image = makeRoundedCorners(image, getCardCornerRadius(1.0));
 			}
 			if(scale != 1.0) {
-				if(!imageCache.containsKey(fullKey)) {
+				if(!imageCache.contains(fullKey)) {
 					imageCache.put(fullKey, image);
 					//System.out.println("Caching image: " + fullKey);
 				}
 				image = scale(image, scale);
 			}
 			imageCache.put(key, image);
+			MipMaps.buildInBackground(image);
 			//System.out.println("Caching image: " + key);
 
 		} catch (MalformedURLException e) {
@@ -213,18 +359,38 @@ public class ImageUtil {
 		return image;
 	}
 
+	/**
+	 * @return The cached image, or null rather than reading it.
+	 */
+	public static BufferedImage getCachedImage(String urlString, double scale) {
+		return imageCache.get(toKey(urlString, scale));
+	}
+
 	public static boolean isCached(String urlString, double scale) {
-		String key = urlString + ":" + (int) (scale * 100);
-		return imageCache.containsKey(key);
+		return imageCache.contains(toKey(urlString, scale));
 	}
 
+	/**
+	 * Halves the image with bilinear filtering until one more step reaches the
+	 * size, which looks as good as getScaledInstance at a fraction of the cost.
+	 */
 	public static BufferedImage scale(BufferedImage img, int width, int height) {
-		Image scaled = img.getScaledInstance(width, height, BufferedImage.TYPE_INT_ARGB);
-		BufferedImage bimage = new BufferedImage(scaled.getWidth(null), scaled.getHeight(null), BufferedImage.TYPE_INT_ARGB);
-	    Graphics2D bGr = bimage.createGraphics();
-	    bGr.drawImage(scaled, 0, 0, null);
-	    bGr.dispose();
-	    return bimage;
+		width = Math.max(1, width);
+		height = Math.max(1, height);
+		int w = img.getWidth();
+		int h = img.getHeight();
+		BufferedImage scaled = img;
+		do {
+			w = w / 2 >= width ? w / 2 : width;
+			h = h / 2 >= height ? h / 2 : height;
+			BufferedImage step = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = step.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(scaled, 0, 0, w, h, null);
+			g.dispose();
+			scaled = step;
+		} while(w != width || h != height);
+		return scaled;
 	}
 
 	public static Image scale(Image img, int width) {
@@ -255,7 +421,7 @@ public class ImageUtil {
 		int w = img.getWidth();
 		int h = img.getHeight();
 		float ratio = h / (float) w;
-		return toBufferedImage(img.getScaledInstance(width, (int) (width*ratio), BufferedImage.TYPE_INT_ARGB));
+		return scale(img, width, (int) (width*ratio));
 	}
 
 	public static BufferedImage toBufferedImage(Image img) {
@@ -364,6 +530,7 @@ public class ImageUtil {
 	public static void setScale(double s) {
 		scale = s;
 		imageCache.clear();
+		RotatedImageCache.clear();
 	}
 
 	public static void restoreScale() {
@@ -509,55 +676,98 @@ public class ImageUtil {
     	cacheImageInBackground(renderables, scale, null);
     }
 
+    /**
+     * Loads the images on the {@link ImageLoader} pool, several at a time,
+     * and repaints the view as each one comes in.
+     */
     public static <T extends IRenderable> void cacheImageInBackground(List<T> renderables, final double scale, final Component view) {
-    	Animator<T> a = new Animator<T>(view, renderables) {
+    	for(T obj : new ArrayList<T>(renderables)) {
+    		final IRenderer renderer = obj.getRenderer();
+    		ImageLoader.load(renderer.getImageUrl(), scale, new Callable<BufferedImage>() {
 
-			@Override
-			public boolean update(T obj, int step) {
-				BufferedImage img = obj.getRenderer().getImage(scale);
-				String urlString = obj.getRenderer().getImageUrl();
-				for(JLabel label : getImageCacheListeners(obj.getRenderer().getImageUrl(), scale)) {
-			 		label.setIcon(new ImageIcon(ImageUtil.readImage(urlString, scale, urlString)));
+				@Override
+				public BufferedImage call() throws Exception {
+					return renderer.getImage(scale);
 				}
-				clearImageCacheListeners(urlString, scale);
-				if(view != null) {
-					view.repaint();
+
+    		}).thenRun(new Runnable() {
+
+				@Override
+				public void run() {
+					if(view != null) {
+						view.repaint();
+					}
 				}
-				return true;
-			}
 
-    	};
-    	a.start();
+    		});
+    	}
     }
 
     public static void addImageCacheListener(String urlString, JLabel label, double scale) {
 		String key = urlString + ":" + (int) (scale * 100);
-    	if(!imageCacheListeners.containsKey(key)) {
-    		imageCacheListeners.put(key, new ArrayList<JLabel>());
-    	}
-    	if(!imageCacheListeners.get(key).contains(label)) {
-    		imageCacheListeners.get(key).add(label);
-    	}
-    	if(isCached(urlString, scale)) {
-    		label.setIcon(new ImageIcon(ImageUtil.readImage(urlString, scale, urlString)));
+		synchronized(imageCacheListeners) {
+	    	if(!imageCacheListeners.containsKey(key)) {
+	    		imageCacheListeners.put(key, new ArrayList<JLabel>());
+	    	}
+	    	if(!imageCacheListeners.get(key).contains(label)) {
+	    		imageCacheListeners.get(key).add(label);
+	    	}
+		}
+		BufferedImage image = getCachedImage(urlString, scale);
+    	if(image != null) {
+    		label.setIcon(new ImageIcon(image));
     	}
     }
 
     public static List<JLabel> getImageCacheListeners(String urlString, double scale) {
     	String key = urlString + ":" + (int) (scale * 100);
-    	if(!imageCacheListeners.containsKey(key)) {
-    		return new ArrayList<JLabel>();
+    	synchronized(imageCacheListeners) {
+	    	if(!imageCacheListeners.containsKey(key)) {
+	    		return new ArrayList<JLabel>();
+	    	}
+	    	return new ArrayList<JLabel>(imageCacheListeners.get(key));
     	}
-    	return imageCacheListeners.get(key);
     }
 
     public static void clearImageCacheListeners(String urlString, double scale) {
     	String key = urlString + ":" + (int) (scale * 100);
-    	if(imageCacheListeners.containsKey(key)) {
+    	synchronized(imageCacheListeners) {
     		imageCacheListeners.remove(key);
     	}
     }
 
+    /**
+     * Sets the icon of every label waiting on the image and forgets them. Safe
+     * to call from any thread.
+     */
+    public static void fireImageCacheListeners(final String urlString, final double scale, final BufferedImage loaded) {
+    	final List<JLabel> labels;
+    	String key = urlString + ":" + (int) (scale * 100);
+    	synchronized(imageCacheListeners) {
+    		labels = imageCacheListeners.remove(key);
+    	}
+    	if(labels == null || labels.isEmpty()) {
+    		return;
+    	}
+
+    	BufferedImage cached = getCachedImage(urlString, scale);
+    	final BufferedImage image = cached != null ? cached : loaded;
+    	if(image == null) {
+    		return;
+    	}
+    	SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				ImageIcon icon = new ImageIcon(image);
+				for(JLabel label : labels) {
+					label.setIcon(icon);
+				}
+			}
+
+    	});
+    }
+
     public static int getMultiverseId(String urlString) {
     	Matcher m = patternMultiverse.matcher(urlString.toLowerCase());
     	if(m.find()) {
@@ -579,12 +789,70 @@ public class ImageUtil {
 		}
     	return image != null;*/
 
-    	File file = FileUtil.getCachedImageFile(getMultiverseId(urlString));
-    	return !DebugUtil.OFFLINE_MODE || (file != null && file.exists());
+    	if(!DebugUtil.OFFLINE_MODE) {
+    		return true;
+    	}
+    	int multiverseId = getMultiverseId(urlString);
+    	ImageArchive archive = multiverseId == -1 ? null : getImageArchive();
+    	if(archive != null && archive.contains(multiverseId)) {
+    		return true;
+    	}
+    	File file = FileUtil.getCachedImageFile(multiverseId);
+    	return file != null && file.exists();
     }
 
-    public static synchronized BufferedImage CustomImageIORead(URL url, String name) throws IOException {
+    /**
+     * Reads from the disc cache or the web. Reads of different urls run side
+     * by side; a read of a url that is already being read waits for that one.
+     */
+    public static BufferedImage CustomImageIORead(final URL url, final String name) throws IOException {
+    	String key = url.toString();
+    	FutureTask<BufferedImage> task = new FutureTask<BufferedImage>(new Callable<BufferedImage>() {
+
+			@Override
+			public BufferedImage call() throws Exception {
+				return readFromDiscOrWeb(url, name);
+			}
+
+    	});
+    	FutureTask<BufferedImage> running = readsInFlight.putIfAbsent(key, task);
+    	if(running == null) {
+    		running = task;
+    		try {
+    			task.run();
+    		} finally {
+    			readsInFlight.remove(key, task);
+    		}
+    	}
+
+    	try {
+    		return running.get();
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    		throw new InterruptedIOException("Interrupted reading " + url);
+    	} catch (ExecutionException e) {
+    		Throwable cause = e.getCause();
+    		if(cause instanceof IOException) {
+    			throw (IOException) cause;
+    		}
+    		if(cause instanceof RuntimeException) {
+    			throw (RuntimeException) cause;
+    		}
+    		throw new IOException(cause);
+    	}
+    }
+
+    private static BufferedImage readFromDiscOrWeb(URL url, String name) throws IOException {
     	int multiverseId = getMultiverseId(url.toString());
+    	ImageArchive archive = multiverseId == -1 ? null : getImageArchive();
+    	if(archive != null) {
+    		BufferedImage archivedImage = archive.read(multiverseId);
+    		if(archivedImage != null) {
+    			return archivedImage;
+    		}
+    	}
+
+    	// Cached before the archive and not imported yet
     	final File cachedImageFile = FileUtil.getCachedImageFile(multiverseId);
     	if(cachedImageFile != null && cachedImageFile.exists()) {
     		BufferedImage cachedImage = null;
@@ -595,15 +863,9 @@ public class ImageUtil {
     			cachedImage = null;
     		}
     		if(cachedImage != null) {
-
-    			// Fix the cache's image size if possible
-    			BufferedImage resizedImage = maybeFixCardSize(cachedImage, true);
-    			if(resizedImage != null) {
-    				addImageToCacheToDisc(cachedImageFile, resizedImage);
-    				return resizedImage;
-    			}
-
-    			return cachedImage;
+    			BufferedImage resizedImage = maybeFixCardSize(cachedImage);
+    			addImageToCacheToDisc(multiverseId, resizedImage);
+    			return resizedImage;
     		}
     	}
 
@@ -626,8 +888,8 @@ public class ImageUtil {
     	}
 
     	// Cache our image, we can add a check for a user preference flag here.
-    	if(DebugUtil.CACHE_IMAGES_FOR_OFFLINE && cachedImageFile != null && !cachedImageFile.exists() && !CardUtil.isBasicLandName(name)) {
-    		addImageToCacheToDisc(cachedImageFile, image);
+    	if(DebugUtil.CACHE_IMAGES_FOR_OFFLINE && archive != null && !archive.contains(multiverseId) && !CardUtil.isBasicLandName(name)) {
+    		addImageToCacheToDisc(multiverseId, image);
     	}
 
     	return image;
@@ -646,33 +908,82 @@ public class ImageUtil {
     	return "<img src=\"" + urlString + "\"/><img src=\"" + transformUrlString + "\"/>";
     }
 
-    private static void addImageToCacheToDisc(final File file, final BufferedImage image) {
-    	imagesToCacheToDisc.put(file, image);
+    /**
+     * Queues the image to be written to the archive on its own thread.
+     */
+    private static void addImageToCacheToDisc(final int multiverseId, final BufferedImage image) {
+    	if(image == null || multiverseId == -1) {
+    		return;
+    	}
+    	if(imagesToCacheToDisc.put(multiverseId, image) == null) {
+    		discWriter.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					cacheImageToDisc(multiverseId);
+				}
+
+    		});
+    	}
     }
 
-    private static void cacheImagesToDisc() {
-    	Map<File, BufferedImage> copyCachedImagesToDisc = new HashMap<File, BufferedImage>(imagesToCacheToDisc);
-    	if(copyCachedImagesToDisc.size() > 0) {
-    		System.out.println("Found " + copyCachedImagesToDisc.size() + " images to cache to disc.");
+    private static void cacheImageToDisc(int multiverseId) {
+    	BufferedImage image = imagesToCacheToDisc.remove(multiverseId);
+    	ImageArchive archive = getImageArchive();
+    	if(image == null || archive == null) {
+    		return;
     	}
-    	for(File file : copyCachedImagesToDisc.keySet()) {
-    		try {
-    			BufferedImage img = copyCachedImagesToDisc.get(file);
-    			if(img != null) {
-    				ImageIO.write(img, "png", file);
-    			}
-				imagesToCacheToDisc.remove(file);
-    		} catch (IOException e) {
-				e.printStackTrace();
-			}
+    	archive.put(multiverseId, image);
+    	maybeCompact(archive);
+    }
+
+    private static void maybeCompact(ImageArchive archive) {
+    	if(!archive.isCompactable()) {
+    		return;
+    	}
+    	long time = System.currentTimeMillis();
+    	long size = archive.getSize();
+    	try {
+    		archive.compact();
+    		System.out.println("Compacted image archive from " + size + " to " + archive.getSize() + " bytes in " + (System.currentTimeMillis() - time) + "ms");
+    	} catch (IOException e) {
+    		e.printStackTrace();
     	}
     }
 
-    private static BufferedImage maybeFixCardSize(BufferedImage image) {
-    	return maybeFixCardSize(image, false);
+    /**
+     * Copies images cached one file per printing into the archive and forces
+     * it to disc. The files are left where they are, since the archive may
+     * have stored them as JPEG.
+     *
+     * @return The number of images imported.
+     */
+    public static int importCachedImageFiles(ImageArchive archive) {
+    	int count = 0;
+    	for(File file : FileUtil.getCachedImageFiles()) {
+    		Matcher m = patternCachedImageFile.matcher(file.getName());
+    		if(!m.matches()) {
+    			continue;
+    		}
+    		int multiverseId = Integer.valueOf(m.group(1));
+    		if(!archive.contains(multiverseId)) {
+    			BufferedImage image = null;
+    			try {
+    				image = ImageIO.read(file);
+    			} catch (IOException | IndexOutOfBoundsException e) {
+    				e.printStackTrace();
+    			}
+    			if(image == null || !archive.put(multiverseId, maybeFixCardSize(image))) {
+    				continue;
+    			}
+    			count++;
+    		}
+    	}
+    	archive.flush();
+    	return count;
     }
 
-    private static BufferedImage maybeFixCardSize(BufferedImage image, boolean nullIfNoChange) {
+    private static BufferedImage maybeFixCardSize(BufferedImage image) {
     	if(image == null) {
     		return null;
     	}
@@ -682,30 +993,31 @@ public class ImageUtil {
     	if(Math.abs(w - DEFAULT_CARD_WIDTH) > allowance || Math.abs(h - DEFAULT_CARD_HEIGHT) > allowance) {
     		return scale(image, DEFAULT_CARD_WIDTH, DEFAULT_CARD_HEIGHT);
     	}
-    	return nullIfNoChange ? null : image;
+    	return image;
     }
 
-    private static void startImageDiscCachingListener() {
-    	new Thread() {
+    private static void startImageArchiveImporter() {
+    	Thread thread = new Thread("Image Archive Importer") {
 
 			@Override
 			public void run() {
-				if(DebugUtil.OFFLINE_MODE || !DebugUtil.CACHE_IMAGES_FOR_OFFLINE) {
+				ImageArchive archive = getImageArchive();
+				if(archive == null) {
 					return;
 				}
 
-				System.out.println("Listening for images cache to disc");
-				while(!DebugUtil.OFFLINE_MODE && DebugUtil.CACHE_IMAGES_FOR_OFFLINE) {
-					cacheImagesToDisc();
-					try {
-						Thread.sleep(5000);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
+				long time = System.currentTimeMillis();
+				int count = importCachedImageFiles(archive);
+				if(count > 0) {
+					System.out.println("Imported " + count + " cached images into the image archive in " + (System.currentTimeMillis() - time) + "ms");
 				}
+				maybeCompact(archive);
 			}
 
-		}.start();
+		};
+    	thread.setDaemon(true);
+    	thread.setPriority(Thread.MIN_PRIORITY);
+    	thread.start();
     }
 
 }
@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -14,6 +16,18 @@ public class JAXBUtil {
 	
 	private JAXBUtil() {}
 	
+	// Creating a context is far slower than using one, and they are thread safe
+	private static final Map<Class<?>, JAXBContext> contextsByClass = new ConcurrentHashMap<Class<?>, JAXBContext>();
+	
+	private static JAXBContext getContext(Class<?> klass) throws JAXBException {
+		JAXBContext context = contextsByClass.get(klass);
+		if(context == null) {
+			context = JAXBContext.newInstance(klass);
+			contextsByClass.put(klass, context);
+		}
+		return context;
+	}
+	
 	public static void print(Object obj) {
 		marshal(obj, System.out);
 	}
@@ -22,8 +36,7 @@ public class JAXBUtil {
 		
 		try {
 			
-			JAXBContext jaxbContext;
-			jaxbContext = JAXBContext.newInstance(obj.getClass());
+			JAXBContext jaxbContext = getContext(obj.getClass());
 			Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
 			jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
 			jaxbMarshaller.marshal(obj, file);
@@ -38,8 +51,7 @@ public class JAXBUtil {
 		
 		try {
 			
-			JAXBContext jaxbContext;
-			jaxbContext = JAXBContext.newInstance(obj.getClass());
+			JAXBContext jaxbContext = getContext(obj.getClass());
 			Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
 			jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
 			jaxbMarshaller.marshal(obj, out);
@@ -54,8 +66,7 @@ public class JAXBUtil {
 		
 		try {
 			
-			JAXBContext jaxbContext;
-			jaxbContext = JAXBContext.newInstance(obj.getClass());
+			JAXBContext jaxbContext = getContext(obj.getClass());
 			Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
 			jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
 			jaxbMarshaller.marshal(obj, writer);
@@ -82,7 +93,7 @@ public class JAXBUtil {
 		
 		try {
 			
-			JAXBContext jaxbContext = JAXBContext.newInstance(klass);
+			JAXBContext jaxbContext = getContext(klass);
 			Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
 			Object obj = jaxbUnmarshaller.unmarshal(file);
 			return obj;
@@ -103,7 +114,7 @@ public class JAXBUtil {
 		
 		try {
 			
-			JAXBContext jaxbContext = JAXBContext.newInstance(klass);
+			JAXBContext jaxbContext = getContext(klass);
 			Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
 			Object obj = jaxbUnmarshaller.unmarshal(reader);
 			reader.close();
@@ -46,6 +46,7 @@ public class LoginUtil {
 			MessageUtil.unsubscribeFromStream(user.getGUID());
 		}
 		user = null;
+		MessageUtil.wakeStreaming();
 		if(inboxListener != null) {
 			//DriveUtil.removeFileListener(inboxListener);
 			inboxListener = null;
@@ -0,0 +1,132 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An {@link ImageCache} that holds at most a budget of bytes, counting every
+ * image as width * height * 4. When a new image goes over the budget, the
+ * least recently used images that aren't pinned are dropped.
+ */
+public class LruImageCache implements ImageCache {
+
+	public static final long DEFAULT_BUDGET = Math.min(Runtime.getRuntime().maxMemory() / 4, 512L << 20);
+
+	private final long budget;
+	private final LinkedHashMap<String, BufferedImage> images = new LinkedHashMap<String, BufferedImage>(256, 0.75f, true);
+	private Pins pins = null;
+
+	private long bytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public LruImageCache() {
+		this(DEFAULT_BUDGET);
+	}
+
+	public LruImageCache(long budget) {
+		this.budget = budget;
+	}
+
+	public static long getBytes(BufferedImage image) {
+		return image == null ? 0 : (long) image.getWidth() * image.getHeight() * 4;
+	}
+
+	@Override
+	public synchronized BufferedImage get(String key) {
+		BufferedImage image = images.get(key);
+		if(image == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return image;
+	}
+
+	@Override
+	public synchronized boolean contains(String key) {
+		return images.containsKey(key);
+	}
+
+	@Override
+	public synchronized void put(String key, BufferedImage image) {
+		if(image == null) {
+			return;
+		}
+		BufferedImage old = images.put(key, image);
+		bytes += getBytes(image) - getBytes(old);
+		if(bytes > budget) {
+			evict(key);
+		}
+	}
+
+	private void evict(String newKey) {
+		Set<String> pinned = Collections.emptySet();
+		if(pins != null) {
+			try {
+				pinned = pins.getPinnedKeys();
+			} catch (RuntimeException e) {
+				// Better to drop a pinned image than to let the cache grow without bound
+				e.printStackTrace();
+			}
+		}
+
+		Iterator<Map.Entry<String, BufferedImage>> it = images.entrySet().iterator();
+		while(bytes > budget && it.hasNext()) {
+			Map.Entry<String, BufferedImage> entry = it.next();
+			if(entry.getKey().equals(newKey) || pinned.contains(entry.getKey())) {
+				continue;
+			}
+			bytes -= getBytes(entry.getValue());
+			evictions++;
+			it.remove();
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		images.clear();
+		bytes = 0;
+	}
+
+	@Override
+	public synchronized void setPins(Pins pins) {
+		this.pins = pins;
+	}
+
+	@Override
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public long getBudget() {
+		return budget;
+	}
+
+	@Override
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	@Override
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return images.size() + " images, " + (bytes >> 20) + "/" + (budget >> 20) + " MB, " + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+	}
+
+}
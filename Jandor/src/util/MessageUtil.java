@@ -1,20 +1,24 @@
 package util;
 
 import canvas.CardLayer;
+import multiplayer.StreamEncoder;
+import multiplayer.StreamScheduler;
 import redis.Subscriber;
 import session.User;
 import ui.pwidget.JUtil;
 
 public class MessageUtil {
 	
-	private static final long STREAMING_RATE = 15;
-	
 	public static final String MESSAGE_DRAFT = "Draft";
 	public static final String MESSAGE_BOOSTER = "Booster";
 	public static final String MESSAGE_CARDLAYER = "CardLayer";
 	public static final String MESSAGE_INVITE = "Invite";
 	public static final String MESSAGE_INVITE_RESPONSE = "ResponseInvite";
 
+	private static final StreamEncoder streamEncoder = new StreamEncoder();
+	private static final StreamScheduler streamScheduler = new StreamScheduler();
+	private static boolean streaming = false;
+
 	private MessageUtil() {}
 	
 	public static void subscribeToMessages(final String userGUID) {
@@ -90,38 +94,80 @@ public class MessageUtil {
 		}
 	}
 	
-	public static void startStreaming() {
+	/**
+	 * Starts publishing the active board, or makes the running stream send a
+	 * keyframe so a newly connected friend catches up.
+	 */
+	public static synchronized void startStreaming() {
 		if(DebugUtil.OFFLINE_MODE) {
 			return;
 		}
+		streamEncoder.requestKeyframe();
+		streamScheduler.wake();
+		if(streaming) {
+			return;
+		}
+		streaming = true;
 	
 		new Thread() {
 	    		
     		@Override
 			public void run() {
-    			System.out.println("Started streaming user: " + LoginUtil.getUser().getUsername());
+    			final String username = LoginUtil.getUser().getUsername();
+    			System.out.println("Started streaming user: " + username);
     			try {
     				String loginUserGUID = LoginUtil.getUser().getGUID();
     				byte[] channel = JedisUtil.toBytes(JedisUtil.toStreamChannel(loginUserGUID));
-					while(FriendUtil.isConnected() && LoginUtil.isLoggedIn()) {
-						long time = System.currentTimeMillis();
-						CardLayer layer = CardLayer.getActiveCardLayer();
+    				CardLayer lastLayer = CardLayer.getActiveCardLayer();
+					while(isStreaming()) {
+						CardLayer layer = streamScheduler.awaitFrame();
 						if(layer != null) {
-							CardLayer.clearActiveCardLayer();
-							JedisUtil.publish(channel, layer.getSerializedRenderablesBytes());
+							lastLayer = layer;
+						} else if(streamEncoder.isKeyframeDue()) {
+							layer = lastLayer != null ? lastLayer : CardLayer.getActiveCardLayer();
 						}
-						long diff = STREAMING_RATE - (System.currentTimeMillis() - time);
-						if(diff > 0) {
-							Thread.sleep(diff);
+						if(layer != null && isStreaming()) {
+							byte[] frame = streamEncoder.encode(layer.getMultiplayerMessage());
+							if(frame != null) {
+								JedisUtil.publish(channel, frame);
+							}
 						}
 					}
     			} catch (InterruptedException e) {
     				e.printStackTrace();
+    				synchronized(MessageUtil.class) {
+    					streaming = false;
+    				}
     			}
-    			System.out.println("Finished streaming user: " + LoginUtil.getUser().getUsername());
+    			System.out.println("Finished streaming user: " + username);
     		}
     		
 	    }.start();
 	}
 	
+	/**
+	 * Checked by the streaming thread, which stops once nobody is connected.
+	 */
+	private static synchronized boolean isStreaming() {
+		if(!FriendUtil.isConnected() || !LoginUtil.isLoggedIn()) {
+			streaming = false;
+		}
+		return streaming;
+	}
+	
+	/**
+	 * Tells the stream that something on the layer changed. Nothing is sent
+	 * while the board stays the same.
+	 */
+	public static void markDirty(CardLayer layer) {
+		streamScheduler.markDirty(layer);
+	}
+	
+	/**
+	 * Wakes the streaming thread so it notices a disconnect or logout.
+	 */
+	public static void wakeStreaming() {
+		streamScheduler.wake();
+	}
+	
 }
@@ -0,0 +1,161 @@
+package util;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Images at 100, 50, 25 and 12.5% of their size, so a zoomed out canvas
+ * draws a small image rather than scaling a big one on every paint. The
+ * smaller levels are kept weakly by their source image and don't refer back
+ * to it, so they go once the source is dropped from the image cache. Chains
+ * are only ever built off the EDT; until one is ready the full image is
+ * drawn.
+ */
+public class MipMaps {
+
+	public static final int LEVELS = 4;
+
+	// Levels 1 and up, level 0 is the source image itself
+	private static final Map<BufferedImage, CompletableFuture<BufferedImage[]>> chains = Collections.synchronizedMap(new WeakHashMap<BufferedImage, CompletableFuture<BufferedImage[]>>());
+	private static final ExecutorService builder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Mip Map Builder");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		}
+
+	});
+
+	private MipMaps() {}
+
+	/**
+	 * @return The level to draw at for the transform: 0 at full size or
+	 *         zoomed in, one more for every halving of the size on screen.
+	 */
+	public static int getLevel(AffineTransform transform) {
+		double scale = Math.sqrt(Math.abs(transform.getDeterminant()));
+		if(scale <= 0) {
+			return LEVELS - 1;
+		}
+		int level = (int) Math.floor(Math.log(1 / scale) / Math.log(2));
+		return Math.max(0, Math.min(LEVELS - 1, level));
+	}
+
+	/**
+	 * Draws the image at its full size in user space, using the smallest level
+	 * that isn't smaller than it appears on screen.
+	 */
+	public static void draw(Graphics2D g, BufferedImage image, int x, int y) {
+		if(image == null) {
+			return;
+		}
+		BufferedImage mip = get(image, getLevel(g.getTransform()));
+		if(mip == null || mip == image) {
+			g.drawImage(image, x, y, null);
+			return;
+		}
+		g.drawImage(mip, x, y, image.getWidth(), image.getHeight(), null);
+	}
+
+	/**
+	 * @return The level, or null if it isn't built yet. On the EDT this never
+	 *         builds or waits, it only asks for the chain to be built. Off it,
+	 *         a chain being built by another thread is waited for.
+	 */
+	public static BufferedImage get(BufferedImage image, int level) {
+		if(level <= 0) {
+			return image;
+		}
+		CompletableFuture<BufferedImage[]> chain = chains.get(image);
+		if(chain == null || !chain.isDone()) {
+			if(SwingUtilities.isEventDispatchThread()) {
+				buildInBackground(image);
+				return null;
+			}
+			chain = build(image);
+		}
+		BufferedImage[] levels = chain.join();
+		return levels.length == 0 ? image : levels[Math.min(level, levels.length) - 1];
+	}
+
+	public static void buildInBackground(final BufferedImage image) {
+		if(image == null) {
+			return;
+		}
+		final CompletableFuture<BufferedImage[]> chain;
+		synchronized(chains) {
+			if(chains.containsKey(image)) {
+				return;
+			}
+			chain = new CompletableFuture<BufferedImage[]>();
+			chains.put(image, chain);
+		}
+		builder.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				complete(chain, image);
+			}
+
+		});
+	}
+
+	/**
+	 * Builds the chain now, unless it is already built or being built, in
+	 * which case that chain is waited for.
+	 */
+	public static CompletableFuture<BufferedImage[]> build(BufferedImage image) {
+		CompletableFuture<BufferedImage[]> chain;
+		boolean claimed = false;
+		synchronized(chains) {
+			chain = chains.get(image);
+			if(chain == null) {
+				chain = new CompletableFuture<BufferedImage[]>();
+				chains.put(image, chain);
+				claimed = true;
+			}
+		}
+		if(claimed) {
+			complete(chain, image);
+		} else {
+			chain.join();
+		}
+		return chain;
+	}
+
+	private static void complete(CompletableFuture<BufferedImage[]> chain, BufferedImage image) {
+		try {
+			BufferedImage[] levels = new BufferedImage[LEVELS - 1];
+			BufferedImage previous = image;
+			for(int i = 0; i < levels.length; i++) {
+				int w = previous.getWidth() / 2;
+				int h = previous.getHeight() / 2;
+				levels[i] = w < 1 || h < 1 ? previous : ImageUtil.scale(previous, w, h);
+				previous = levels[i];
+			}
+			if(levels[0] == image) {
+				// Too small to shrink, never hold on to the source
+				levels = new BufferedImage[0];
+			}
+			chain.complete(levels);
+		} catch (RuntimeException e) {
+			chains.remove(image);
+			chain.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+package util;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jackson.JacksonUtil;
+
+/**
+ * Prices fetched from Scryfall, kept on disk by card name so opening an
+ * editor doesn't fetch them again. Prices older than {@link #TTL} are fetched
+ * again when they are asked for, but are still used when that fetch fails,
+ * so pricing works offline against the last prices seen. Cards without a
+ * price are kept too, with a price of -1, so they aren't asked for on every
+ * open, but only for {@link #NEGATIVE_TTL} since a price may yet appear.
+ */
+public class PriceCache {
+
+	public static final long TTL = TimeUnit.HOURS.toMillis(24);
+	public static final long NEGATIVE_TTL = TimeUnit.HOURS.toMillis(1);
+
+	public static final class Entry {
+
+		public double price = -1;
+		public String purchaseUrl;
+		public long fetchedAt;
+
+	}
+
+	public static final class PriceCacheJson {
+
+		public Map<String, Entry> prices = new HashMap<String, Entry>();
+
+	}
+
+	private static PriceCache instance = null;
+
+	private final File file;
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	private boolean dirty = false;
+
+	public static synchronized PriceCache getInstance() {
+		if(instance == null) {
+			instance = new PriceCache(FileUtil.getPriceCacheFile());
+		}
+		return instance;
+	}
+
+	public PriceCache(File file) {
+		this.file = file;
+		load();
+	}
+
+	private void load() {
+		if(!file.exists()) {
+			return;
+		}
+		PriceCacheJson json = JacksonUtil.read(PriceCacheJson.class, file);
+		if(json == null || json.prices == null) {
+			System.err.println("Could not read the price cache, starting a new one.");
+			return;
+		}
+		entries.putAll(json.prices);
+	}
+
+	/**
+	 * @return The last price seen for the card, however old, or null.
+	 */
+	public synchronized Entry get(String name) {
+		return entries.get(name);
+	}
+
+	public static boolean isFresh(Entry entry, long now) {
+		return entry != null && now - entry.fetchedAt < (entry.price < 0 ? NEGATIVE_TTL : TTL);
+	}
+
+	public synchronized void put(String name, double price, String purchaseUrl, long now) {
+		Entry entry = new Entry();
+		entry.price = price;
+		entry.purchaseUrl = purchaseUrl;
+		entry.fetchedAt = now;
+		entries.put(name, entry);
+		dirty = true;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Writes the cache if anything changed, to a temporary file first so a
+	 * crash can't leave half a cache behind.
+	 */
+	public synchronized boolean save() {
+		if(!dirty) {
+			return true;
+		}
+		PriceCacheJson json = new PriceCacheJson();
+		json.prices.putAll(entries);
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		if(!JacksonUtil.write(json, tmp)) {
+			return false;
+		}
+		file.delete();
+		if(!tmp.renameTo(file)) {
+			System.err.println("Could not replace " + file);
+			return false;
+		}
+		dirty = false;
+		return true;
+	}
+
+}
@@ -1,12 +1,29 @@
 package util;
 
 import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import deck.Card;
 import deck.Deck;
@@ -99,12 +116,6 @@ public class PriceUtil {
 
 	}
 
-	private static class CollectionResponse {
-
-		public List<CollectionCard> data;
-
-	}
-
 	private static class CollectionCard {
 
 		public String id;
@@ -118,34 +129,133 @@ public class PriceUtil {
 
 	private static class Prices {
 
-		public double usd;
+		// Null when Scryfall has no price for the card
+		public Double usd;
 
 	}
 
+	private static final String COLLECTION_URL = "https://api.scryfall.com/cards/collection";
 	private static final int REQUEST_IDENTIFIER_LIMIT = 75; // Actual is 75
+	private static final int REQUEST_THREADS = 4;
+	private static final long REQUEST_INTERVAL_MS = 100; // Scryfall asks for 50-100ms between requests
 
-	private static void fetchPricesInternal(List<Card> cards, OnPriceFetchComplete onComplete) {
-		String url = "https://api.scryfall.com/cards/collection";
+	private static final AtomicInteger threadCount = new AtomicInteger();
+	private static final ExecutorService requestPool = Executors.newFixedThreadPool(REQUEST_THREADS, new ThreadFactory() {
 
-		List<CollectionRequest> requests = new ArrayList<>();
-		final List<List<Card>> cardChunks = split(cards, REQUEST_IDENTIFIER_LIMIT);
-		for(List<Card> chunk : cardChunks) {
-			requests.add(toCollectionRequest(chunk));
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Price Fetcher " + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
 		}
-		WebUtil.doMultiPost(url, requests, (String responseStr) -> {
 
-			List<CollectionResponse> responses = JacksonUtil.readList(CollectionResponse.class, responseStr);
-			for(int i = 0; i < responses.size(); i++) {
-				CollectionResponse response = responses.get(i);
-				List<Card> chunk = cardChunks.get(i);
-				handleResponse(chunk, response);
-			}
+	});
 
+	private static final Object requestSlotLock = new Object();
+	private static long nextRequestNanos = 0;
+
+	private static void fetchPricesInternal(List<Card> cards, OnPriceFetchComplete onComplete) {
+		TaskUtil.run(() -> {
+			fetchPricesNow(cards);
 			if(onComplete != null) {
 				onComplete.onPriceFetchComplete(cards);
 			}
+		});
+	}
+
+	/**
+	 * Prices the cards from the cache, then fetches whatever is missing or
+	 * stale, one request per chunk of names, several at a time. Cards of the
+	 * same name are only asked for once.
+	 */
+	private static void fetchPricesNow(List<Card> cards) {
+		long now = System.currentTimeMillis();
+		PriceCache cache = PriceCache.getInstance();
+
+		Map<String, List<Card>> cardsByName = new LinkedHashMap<>();
+		for(Card card : cards) {
+			List<Card> named = cardsByName.get(card.getName());
+			if(named == null) {
+				named = new ArrayList<>();
+				cardsByName.put(card.getName(), named);
+			}
+			named.add(card);
+		}
+
+		List<String> namesToFetch = new ArrayList<>();
+		for(Map.Entry<String, List<Card>> entry : cardsByName.entrySet()) {
+			PriceCache.Entry cached = cache.get(entry.getKey());
+			if(cached != null) {
+				// Stale prices still stand in if the fetch fails
+				setPrice(entry.getValue(), cached.price, cached.purchaseUrl);
+			}
+			if(!PriceCache.isFresh(cached, now)) {
+				namesToFetch.add(entry.getKey());
+			}
+		}
 
-		}, null);
+		List<CompletableFuture<Void>> pending = new ArrayList<>();
+		for(List<String> chunk : split(namesToFetch, REQUEST_IDENTIFIER_LIMIT)) {
+			pending.add(CompletableFuture.runAsync(() -> fetchChunk(chunk, cardsByName, cache), requestPool));
+		}
+		CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[pending.size()])).join();
+
+		cache.save();
+	}
+
+	private static void fetchChunk(List<String> names, Map<String, List<Card>> cardsByName, PriceCache cache) {
+		List<Card> chunk = new ArrayList<>();
+		for(String name : names) {
+			chunk.add(cardsByName.get(name).get(0));
+		}
+
+		try {
+			awaitRequestSlot();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		URL url;
+		try {
+			url = new URL(COLLECTION_URL);
+		} catch (MalformedURLException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		boolean fetched = WebUtil.postAndRead(url, toCollectionRequest(chunk), (InputStream in) -> {
+			readResponse(in, cardsByName, cache, System.currentTimeMillis());
+		});
+		if(!fetched) {
+			System.err.println("Could not fetch the prices of " + names.size() + " cards, using the last prices seen.");
+			return;
+		}
+
+		// Cards Scryfall didn't find are marked as fetched, with no price unless one was seen before, so they aren't asked for again right away
+		for(String name : names) {
+			PriceCache.Entry cached = cache.get(name);
+			if(cached == null || cached.fetchedAt < start) {
+				cache.put(name, cached == null ? -1 : cached.price, cached == null ? null : cached.purchaseUrl, start);
+			}
+		}
+	}
+
+	/**
+	 * Spaces requests out across all the fetcher threads.
+	 */
+	private static void awaitRequestSlot() throws InterruptedException {
+		long wait;
+		synchronized(requestSlotLock) {
+			long now = System.nanoTime();
+			long slot = Math.max(now, nextRequestNanos);
+			nextRequestNanos = slot + TimeUnit.MILLISECONDS.toNanos(REQUEST_INTERVAL_MS);
+			wait = slot - now;
+		}
+		if(wait > 0) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
 	}
 
 	private static CollectionRequest toCollectionRequest(List<Card> cards) {
@@ -160,48 +270,69 @@ public class PriceUtil {
 		return request;
 	}
 
-	private static List<List<Card>> split(List<Card> cards, int chunkSize) {
-		List<List<Card>> cardChunks = new ArrayList<>();
-		List<Card> chunk = new ArrayList<>();
-		for(Card card : cards) {
-			if(chunk.size() < chunkSize) {
-				chunk.add(card);
-			} else {
-				cardChunks.add(chunk);
+	private static <T> List<List<T>> split(List<T> items, int chunkSize) {
+		List<List<T>> chunks = new ArrayList<>();
+		List<T> chunk = new ArrayList<>();
+		for(T item : items) {
+			if(chunk.size() == chunkSize) {
+				chunks.add(chunk);
 				chunk = new ArrayList<>();
 			}
+			chunk.add(item);
 		}
 		if(chunk.size() > 0) {
-			cardChunks.add(chunk);
+			chunks.add(chunk);
 		}
-		return cardChunks;
+		return chunks;
 	}
 
-	private static void handleResponse(List<Card> cards, CollectionResponse response) {
-		Map<String, CollectionCard> collectionCardsByName = new HashMap<>();
-		Map<String, Card> cardsByName = new HashMap<>();
-
-		for(CollectionCard c : response.data) {
-			if(c.name.contains(" // ")) {
-				collectionCardsByName.put(c.name.split(" // ")[0], c);
-			} else {
-				collectionCardsByName.put(c.name, c);
+	/**
+	 * Reads the cards out of the response's data array one at a time, as the
+	 * response comes in.
+	 */
+	private static void readResponse(InputStream in, Map<String, List<Card>> cardsByName, PriceCache cache, long now) throws IOException {
+		ObjectMapper mapper = JacksonUtil.createReader();
+		JsonParser parser = mapper.getFactory().createParser(in);
+		if(parser.nextToken() != JsonToken.START_OBJECT) {
+			return;
+		}
+		while(parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if(!"data".equals(field) || value != JsonToken.START_ARRAY) {
+				parser.skipChildren();
+				continue;
+			}
+			while(parser.nextToken() == JsonToken.START_OBJECT) {
+				CollectionCard cc = mapper.readValue(parser, CollectionCard.class);
+				handleCard(cc, cardsByName, cache, now);
 			}
 		}
+	}
 
-		for(Card c : cards) {
-			cardsByName.put(c.getName(), c);
+	private static void handleCard(CollectionCard cc, Map<String, List<Card>> cardsByName, PriceCache cache, long now) {
+		if(cc == null || cc.name == null) {
+			return;
 		}
+		String name = cc.name.contains(" // ") ? cc.name.split(" // ")[0] : cc.name;
+		List<Card> cards = cardsByName.get(name);
+		if(cards == null) {
+			return;
+		}
+		double price = cc.prices == null || cc.prices.usd == null ? -1 : cc.prices.usd;
+		String purchaseUrl = null;
+		if(cc.purchase_uris != null && cc.purchase_uris.containsKey("tcgplayer")) {
+			purchaseUrl = cc.purchase_uris.get("tcgplayer");
+		}
+		setPrice(cards, price, purchaseUrl);
+		cache.put(name, price, purchaseUrl, now);
+	}
 
-		for(String name : cardsByName.keySet()) {
-			if(!collectionCardsByName.containsKey(name)) {
-				continue;
-			}
-			Card c = cardsByName.get(name);
-			CollectionCard cc = collectionCardsByName.get(name);
-			c.getPriceInfo().price = cc.prices.usd;
-			if(cc.purchase_uris != null && cc.purchase_uris.containsKey("tcgplayer")) {
-				c.getPriceInfo().purchaseUrl = cc.purchase_uris.get("tcgplayer");
+	private static void setPrice(List<Card> cards, double price, String purchaseUrl) {
+		for(Card c : cards) {
+			c.getPriceInfo().price = price;
+			if(purchaseUrl != null) {
+				c.getPriceInfo().purchaseUrl = purchaseUrl;
 			}
 		}
 	}
@@ -328,4 +459,31 @@ private static final class PriceResponse {
 
 	});*/
 
+	/**
+	 * Checks that a card Scryfall has no price for is cached as -1, and only
+	 * until {@link PriceCache#NEGATIVE_TTL} has passed.
+	 */
+	public static void main(String[] args) throws IOException {
+		File file = File.createTempFile("prices", ".json");
+		file.delete();
+		PriceCache cache = new PriceCache(file);
+		Map<String, List<Card>> cardsByName = new LinkedHashMap<>();
+		cardsByName.put("Priceless", new ArrayList<Card>());
+		String response = "{\"object\":\"list\",\"data\":[{\"name\":\"Priceless\",\"prices\":{\"usd\":null}}]}";
+		long now = System.currentTimeMillis();
+		readResponse(new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)), cardsByName, cache, now);
+
+		PriceCache.Entry entry = cache.get("Priceless");
+		check(entry != null && entry.price == -1, "a null usd price is cached as -1");
+		check(PriceCache.isFresh(entry, now + PriceCache.NEGATIVE_TTL - 1), "a missing price is fresh within NEGATIVE_TTL");
+		check(!PriceCache.isFresh(entry, now + PriceCache.NEGATIVE_TTL), "a missing price is stale after NEGATIVE_TTL");
+		System.out.println("Missing prices are cached for " + TimeUnit.MILLISECONDS.toMinutes(PriceCache.NEGATIVE_TTL) + " minutes");
+	}
+
+	private static void check(boolean ok, String what) {
+		if(!ok) {
+			throw new IllegalStateException("Expected " + what);
+		}
+	}
+
 }
@@ -0,0 +1,133 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rotated copies of images, so a tapped card is rotated once rather than on
+ * every repaint. Keyed by the source image, which {@link ImageUtil} already
+ * caches per url and scale, and the angle in whole degrees. Sources are only
+ * held weakly, so their copies go once ImageUtil lets them go.
+ * <p>
+ * Right angles, where cards come to rest, hold at most {@link #BUDGET} bytes,
+ * least recently used first out. Every other angle, mostly the steps of a
+ * spin, shares just {@link #TRANSIENT_ENTRIES} entries so a spin can't push
+ * the resting images out.
+ */
+public class RotatedImageCache {
+
+	public static final long BUDGET = 64L << 20;
+	public static final int TRANSIENT_ENTRIES = 32;
+
+	private static final LinkedHashMap<Key, BufferedImage> images = new LinkedHashMap<Key, BufferedImage>(64, 0.75f, true);
+	private static final LinkedHashMap<Key, BufferedImage> transientImages = new LinkedHashMap<Key, BufferedImage>(TRANSIENT_ENTRIES, 0.75f, true);
+	private static final ReferenceQueue<BufferedImage> collected = new ReferenceQueue<BufferedImage>();
+	private static long bytes = 0;
+
+	private RotatedImageCache() {}
+
+	private static class Key extends WeakReference<BufferedImage> {
+
+		private final int hash;
+		private final int angle;
+
+		public Key(BufferedImage source, int angle, ReferenceQueue<BufferedImage> queue) {
+			super(source, queue);
+			this.hash = System.identityHashCode(source) * 31 + angle;
+			this.angle = angle;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(obj == this) {
+				return true;
+			}
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			BufferedImage source = get();
+			return source != null && source == other.get() && angle == other.angle;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+	}
+
+	public static BufferedImage getRotated(BufferedImage source, int angle) {
+		angle = ShapeUtil.toPositiveAngle(angle) % 360;
+		if(source == null || angle == 0) {
+			return source;
+		}
+
+		boolean resting = angle % 90 == 0;
+		Key key = new Key(source, angle, null);
+		synchronized(images) {
+			expungeCollected();
+			BufferedImage rotated = (resting ? images : transientImages).get(key);
+			if(rotated != null) {
+				return rotated;
+			}
+		}
+
+		BufferedImage rotated = ImageUtil.rotate(source, angle);
+		synchronized(images) {
+			key = new Key(source, angle, collected);
+			if(resting) {
+				put(key, rotated);
+			} else {
+				putTransient(key, rotated);
+			}
+		}
+		return rotated;
+	}
+
+	private static void put(Key key, BufferedImage rotated) {
+		BufferedImage old = images.put(key, rotated);
+		bytes += LruImageCache.getBytes(rotated) - LruImageCache.getBytes(old);
+		Iterator<Map.Entry<Key, BufferedImage>> it = images.entrySet().iterator();
+		while(bytes > BUDGET && it.hasNext()) {
+			Map.Entry<Key, BufferedImage> entry = it.next();
+			if(entry.getValue() == rotated) {
+				continue;
+			}
+			bytes -= LruImageCache.getBytes(entry.getValue());
+			it.remove();
+		}
+	}
+
+	private static void putTransient(Key key, BufferedImage rotated) {
+		transientImages.put(key, rotated);
+		Iterator<Key> it = transientImages.keySet().iterator();
+		while(transientImages.size() > TRANSIENT_ENTRIES && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	private static void expungeCollected() {
+		Reference<? extends BufferedImage> ref;
+		while((ref = collected.poll()) != null) {
+			BufferedImage old = images.remove(ref);
+			bytes -= LruImageCache.getBytes(old);
+			transientImages.remove(ref);
+		}
+	}
+
+	public static void clear() {
+		synchronized(images) {
+			images.clear();
+			transientImages.clear();
+			bytes = 0;
+		}
+	}
+
+}
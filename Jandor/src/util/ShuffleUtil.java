@@ -5,6 +5,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
 
 import canvas.IRenderable;
 import deck.Card;
@@ -29,16 +30,34 @@ public class ShuffleUtil {
 		return r.nextBoolean();
 	}
 	
+	/**
+	 * Returns a generator for a single shuffle that doesn't need to be
+	 * reproducible.
+	 */
+	private static SplittableRandom newRandom() {
+		return new SplittableRandom(r.nextLong());
+	}
+	
 	public static void shuffle(ShuffleType shuffleType, CardList deck) {
+		shuffle(shuffleType, deck, null);
+	}
+	
+	/**
+	 * Shuffles or sorts the deck. Shuffles draw from the given random, so
+	 * the same seed gives the same order. Each thread needs its own random,
+	 * split off a seeded one with {@link SplittableRandom#split()}. A null
+	 * random shuffles with a fresh one.
+	 */
+	public static void shuffle(ShuffleType shuffleType, CardList deck, SplittableRandom random) {
 		if(shuffleType == null || deck == null) {
 			return;
 		}
 		switch(shuffleType) {
 			case PLAYER:
-				playerShuffle(deck);
+				playerShuffle(deck, random == null ? newRandom() : random);
 				break;
 			case RANDOM:
-				randomShuffle(deck);
+				randomShuffle(deck, random == null ? newRandom() : random);
 				break;
 			case AZ:
 				sortAZ(deck);
@@ -61,14 +80,23 @@ public class ShuffleUtil {
 		}
  	}
 	
-	private static void randomShuffle(CardList deck) {
+	/**
+	 * Same as {@link Collections#shuffle(List, Random)} with a splittable random.
+	 */
+	public static <T> void shuffle(List<T> list, SplittableRandom random) {
+		for(int i = list.size(); i > 1; i--) {
+			Collections.swap(list, i - 1, random.nextInt(i));
+		}
+	}
+	
+	private static void randomShuffle(CardList deck, SplittableRandom random) {
 		if(deck == null) {
 			return;
 		}
-		Collections.shuffle(deck);
+		shuffle(deck, random);
 	}
 	
-	private static void playerShuffle(CardList deck) { // XXX Needs implementation
+	private static void playerShuffle(CardList deck, SplittableRandom random) { // XXX Needs implementation
 		if(deck == null) {
 			return;
 		}
@@ -82,18 +110,18 @@ public class ShuffleUtil {
 				nonLands.add(card);
 			}
 		}
-		Collections.shuffle(nonLands);
-		Collections.shuffle(lands);
+		shuffle(nonLands, random);
+		shuffle(lands, random);
 		
 		if(lands.size() == 0) {
-			randomShuffle(deck);
+			randomShuffle(deck, random);
 			return;
 		}
 		
 		int landRatio = (int) Math.round(nonLands.size() / (double) lands.size());
 		
 		if(landRatio == 0) {
-			randomShuffle(deck);
+			randomShuffle(deck, random);
 			return;
 		}
 		
@@ -110,7 +138,7 @@ public class ShuffleUtil {
 		// Insert extra lands randomly
 		while(j < lands.size()) {
 			Card land = lands.get(j++);
-			int index = randIndex(cards);
+			int index = randIndex(cards, random);
 			cards.add(index, land);
 		}
 		
@@ -119,13 +147,13 @@ public class ShuffleUtil {
 		int minChunkSize = 6;
 		int maxChunkSize = 10;
 		for(int i = 0; i < numShuffles; i++) {
-			int index = randIndex(cards);
-			int chunkSize = randChunk(cards, index, minChunkSize, maxChunkSize);
+			int index = randIndex(cards, random);
+			int chunkSize = randChunk(cards, index, minChunkSize, maxChunkSize, random);
 			List<Card> chunk = new ArrayList<Card>(cards.subList(index, index + chunkSize));
 			for(int k = 0; k < chunkSize; k++) {
 				cards.remove(index);
 			}
-			int newIndex = randIndex(cards);
+			int newIndex = randIndex(cards, random);
 			for(int k = chunk.size() - 1; k >= 0; k--) {
 				cards.add(newIndex, chunk.get(k));
 			}
@@ -134,15 +162,15 @@ public class ShuffleUtil {
 		deck.set(cards);
 	}
 	
-	private static int randIndex(List cards) {
+	private static int randIndex(List cards, SplittableRandom random) {
 		if(cards.size() < 2) {
 			return 0;
 		}
-		return randInt(0, cards.size() - 1);
+		return random.nextInt(cards.size());
 	}
 	
-	private static int randChunk(List cards, int index, int minSize, int maxSize) {
-		int size = (Math.abs(r.nextInt()) + minSize) % (maxSize + 1);
+	private static int randChunk(List cards, int index, int minSize, int maxSize, SplittableRandom random) {
+		int size = (Math.abs(random.nextInt()) + minSize) % (maxSize + 1);
 		if(index + size > cards.size()) {
 			size = cards.size() - index;
 		}
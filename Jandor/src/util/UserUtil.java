@@ -20,6 +20,13 @@ public class UserUtil {
 
 	private UserUtil() {}
 
+	/**
+	 * Drops the users read so far, so the next lookup reads the sheet again.
+	 */
+	public static void reload() {
+		userSheet = null;
+	}
+
 	public static Map<String, User> getUsersByUsername() {
 		UserSheet sheet = getUserSheet();
 		Map<String, User> usersByUsername = new HashMap<String, User>();
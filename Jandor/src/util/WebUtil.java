@@ -21,9 +21,8 @@ import java.util.regex.Pattern;
 
 import javax.net.ssl.HttpsURLConnection;
 
-import jackson.AllCardsJson;
-import jackson.AllSetsJson;
 import jackson.JacksonUtil;
+import jackson.MtgJsonIngest;
 
 public class WebUtil {
 
@@ -146,11 +145,23 @@ public class WebUtil {
 
 	private static void deriveJsonFiles() throws Exception {
 		System.out.println("Creating \"card\" and \"set\" master files.");
-		AllCardsJson cards = JacksonUtil.readExternal(AllCardsJson.class, FileUtil.RESOURCE_CARDS_JSONS);
-		AllSetsJson sets = JacksonUtil.readExternal(AllSetsJson.class, FileUtil.RESOURCE_SETS_JSONS);
-		cards.init(sets);
-		JacksonUtil.writeExternal(cards, FileUtil.RESOURCE_CARDS_LESS_JSONS);
-		JacksonUtil.writeExternal(sets, FileUtil.RESOURCE_SETS_LESS_JSONS);
+		int cards = MtgJsonIngest.deriveCards(getDownloadedJson(FileUtil.RESOURCE_CARDS_JSONS), FileUtil.RESOURCE_CARDS_JSONS,
+				FileUtil.getExternalResourcesFile(FileUtil.RESOURCE_CARDS_LESS_JSONS));
+		int sets = MtgJsonIngest.deriveSets(getDownloadedJson(FileUtil.RESOURCE_SETS_JSONS), FileUtil.RESOURCE_SETS_JSONS,
+				FileUtil.getExternalResourcesFile(FileUtil.RESOURCE_SETS_LESS_JSONS));
+		System.out.println("Wrote " + cards + " cards and " + sets + " sets.");
+	}
+
+	/**
+	 * @return The downloaded zip, which is read as is, or else an unzipped
+	 *         copy left by an older version.
+	 */
+	private static File getDownloadedJson(String filename) {
+		File zip = FileUtil.getExternalResourcesFile(filename + ".zip");
+		if(zip.exists()) {
+			return zip;
+		}
+		return FileUtil.getExternalResourcesFile(filename);
 	}
 
 	private static void cleanupJsonFiles() {
@@ -208,17 +219,11 @@ public class WebUtil {
 		if(setJsons == null) {
 			error++;
 			System.err.println("Downloading " + URL_MTG_JSON_SETS + " failed.");
-		} else {
-			ZipUtil.unzip(setJsons, FileUtil.getExternalResourcesFolder());
-			//setJsons.delete();
 		}
 
 		if(cardJsons == null) {
 			error++;
 			System.err.println("Downloading " + URL_MTG_JSON_CARDS + " failed.");
-		} else {
-			ZipUtil.unzip(cardJsons, FileUtil.getExternalResourcesFolder());
-			//cardJsons.delete();
 		}
 
 		if(error == 0) {
@@ -251,6 +256,55 @@ public class WebUtil {
 
 	}
 
+	public static interface OnResponseStream {
+
+		public void onResponseStream(InputStream in) throws IOException;
+
+	}
+
+	/**
+	 * Posts on the calling thread and hands the response body to the reader
+	 * as it arrives, rather than collecting it into a string first.
+	 *
+	 * @return True if the post was answered with OK and the body was read.
+	 */
+	public static boolean postAndRead(URL url, Object postDataJson, OnResponseStream onResponse) {
+		String postDataStr = JacksonUtil.toString(postDataJson);
+		HttpsURLConnection postConnection = null;
+		try {
+			postConnection = (HttpsURLConnection) url.openConnection();
+			postConnection.setRequestMethod("POST");
+			postConnection.setRequestProperty("Content-Type", "application/json");
+			postConnection.setRequestProperty("Accept", "application/json");
+			postConnection.setDoOutput(true);
+			OutputStream os = postConnection.getOutputStream();
+			os.write(postDataStr.getBytes("UTF-8"));
+			os.flush();
+			os.close();
+
+			int responseCode = postConnection.getResponseCode();
+			System.out.println("POST " + url + " Response Code : " + responseCode);
+			if(responseCode != HttpsURLConnection.HTTP_OK) {
+				return false;
+			}
+
+			InputStream in = postConnection.getInputStream();
+			try {
+				onResponse.onResponseStream(in);
+			} finally {
+				in.close();
+			}
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			if(postConnection != null) {
+				postConnection.disconnect();
+			}
+		}
+	}
+
 	public static void doPost(String urlStr, Object postDataJson, OnSuccess onSuccess, OnError onError) {
 		try {
 			doPost(new URL(urlStr), postDataJson, onSuccess, onError);
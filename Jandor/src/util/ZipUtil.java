@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -13,6 +14,28 @@ public class ZipUtil {
 
 	private ZipUtil() {}
 
+	/**
+	 * Opens one file in the zip for reading without unzipping anything to
+	 * disk. If no file has the given name, the first one ending with the same
+	 * extension is used.
+	 *
+	 * @return A stream positioned at the file, or null if there isn't one.
+	 */
+	public static InputStream openEntry(File zipFile, String entryName) throws IOException {
+		String ext = entryName.contains(".") ? entryName.substring(entryName.lastIndexOf('.')) : entryName;
+		ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile));
+		ZipEntry ze = zis.getNextEntry();
+		while(ze != null) {
+			String name = new File(ze.getName()).getName();
+			if(!ze.isDirectory() && (name.equals(entryName) || name.endsWith(ext))) {
+				return zis;
+			}
+			ze = zis.getNextEntry();
+		}
+		zis.close();
+		return null;
+	}
+
 	public static List<String> unzip(File zipFile, File outputFolder) {
 		return unzip(zipFile == null ? null : zipFile.getAbsolutePath(), outputFolder == null ? null : outputFolder.getAbsolutePath());
 	}
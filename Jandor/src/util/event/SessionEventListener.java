@@ -1,22 +1,51 @@
 package util.event;
 
+import java.util.List;
 
+/**
+ * Hears about session events some time after they are fired, on the EDT
+ * unless {@link #getDelivery()} says otherwise. Events that arrive in the same
+ * frame are handed over together, in the order they were fired, with repeated
+ * modifications of the same object only given once.
+ */
 public abstract class SessionEventListener {
-	
+
+	public static final int DELIVER_EDT = 0;
+	public static final int DELIVER_WORKER = 1;
+
 	private Object owner;
-	
+	volatile boolean registered = false;
+
 	public SessionEventListener(Object owner) {
 		this.owner = owner;
 	}
-	
+
 	public Object getOwner() {
 		return owner;
 	}
-	
+
 	public void clearOwner() {
 		owner = null;
 	}
-	
+
+	/**
+	 * @return {@link #DELIVER_EDT} to be called on the EDT, or
+	 *         {@link #DELIVER_WORKER} for the session event thread, which must
+	 *         not touch Swing.
+	 */
+	public int getDelivery() {
+		return DELIVER_EDT;
+	}
+
+	/**
+	 * Handles the events of one frame. Override to act once for all of them.
+	 */
+	public void handleEvents(List<SessionEvent> events) {
+		for(SessionEvent event : events) {
+			handleEvent(event);
+		}
+	}
+
 	public abstract void handleEvent(SessionEvent event);
 
 }
@@ -3,9 +3,12 @@ package util.event;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.swing.SwingUtilities;
+
 import accordion.PAccordion;
 import accordion.PAccordionPanel;
 
@@ -13,6 +16,7 @@ import mail.JandorMessage;
 import session.Contact;
 import session.DraftHeader;
 import session.Session;
+import session.SessionData;
 import ui.pwidget.JUtil;
 import ui.pwidget.JandorTabFrame;
 import ui.view.DeckEditorView;
@@ -20,17 +24,105 @@ import ui.view.DraftEditorView;
 import util.DraftUtil;
 import util.IDUtil;
 
+/**
+ * Delivers session events to listeners some time after they are fired,
+ * rather than on the thread that fired them. Events are gathered for a frame,
+ * then each listener is given its events for the frame in the order they
+ * were fired, on the EDT or the session event thread as the listener asks.
+ * A modification of an object that is already waiting to be delivered to a
+ * listener, with nothing else about that object after it, isn't delivered
+ * again, so saving the same thing many times in a row costs one rebuild.
+ */
 public class SessionEventManager {
 	
-	private static Map<String, List<SessionEventListener>> listenersByEventKey = new HashMap<String, List<SessionEventListener>>();
+	public static final int FRAME_MILLIS = 16;
+	private static final long IDLE_MILLIS = 5000;
+	
+	private static final class Key {
+		
+		private final Class sessionDataClass;
+		private final int sessionDataId;
+		private final String type;
+		
+		public Key(Class sessionDataClass, int sessionDataId, String type) {
+			this.sessionDataClass = sessionDataClass == null ? SessionData.class : sessionDataClass;
+			this.sessionDataId = sessionDataId;
+			this.type = type == null ? SessionEvent.TYPE_NONE : type;
+		}
+		
+		@Override
+		public int hashCode() {
+			return (sessionDataClass.hashCode() * 31 + sessionDataId) * 31 + type.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) obj;
+			return sessionDataClass == k.sessionDataClass && sessionDataId == k.sessionDataId && type.equals(k.type);
+		}
+		
+	}
+	
+	private static final class Target {
+		
+		private final SessionEventListener listener;
+		private final Class sessionDataClass;
+		private final int sessionDataId;
+		
+		public Target(SessionEventListener listener, SessionEvent event) {
+			this.listener = listener;
+			this.sessionDataClass = event.getSessionDataClass();
+			this.sessionDataId = event.getSessionDataId();
+		}
+		
+		@Override
+		public int hashCode() {
+			return (System.identityHashCode(listener) * 31 + sessionDataClass.hashCode()) * 31 + sessionDataId;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Target)) {
+				return false;
+			}
+			Target t = (Target) obj;
+			return listener == t.listener && sessionDataClass == t.sessionDataClass && sessionDataId == t.sessionDataId;
+		}
+		
+	}
+	
+	private static final class Pending {
 		
-	private static boolean enableEvents = true;
+		private final SessionEventListener listener;
+		private final SessionEvent event;
+		
+		public Pending(SessionEventListener listener, SessionEvent event) {
+			this.listener = listener;
+			this.event = event;
+		}
+		
+	}
+	
+	private static Map<Key, List<SessionEventListener>> listenersByEventKey = new HashMap<Key, List<SessionEventListener>>();
+	
+	// Listeners for every key an event is looked up under, worked out once per key
+	private static Map<Key, List<SessionEventListener>> listenersByEvent = new HashMap<Key, List<SessionEventListener>>();
+	
+	private static final Object pendingLock = new Object();
+	private static List<Pending> pending = new ArrayList<Pending>();
+	private static Map<Target, SessionEvent> lastPending = new HashMap<Target, SessionEvent>();
+	private static Thread thread = null;
+	
+	private static volatile boolean enableEvents = true;
 	
-	public static synchronized void enableEvents() {
+	public static void enableEvents() {
 		enableEvents = true;
 	}
 	
-	public static synchronized void disableEvents() {
+	public static void disableEvents() {
 		enableEvents = false;
 	}
 	
@@ -39,114 +131,218 @@ public class SessionEventManager {
 	}
 	
 	public static synchronized void addListener(Class sessionDataClass, int sessionDataId, String type, SessionEventListener listener) {
-		String key = SessionEvent.toKey(sessionDataClass, sessionDataId, type);
+		Key key = new Key(sessionDataClass, sessionDataId, type);
 		if(!listenersByEventKey.containsKey(key)) {
 			listenersByEventKey.put(key, new ArrayList<SessionEventListener>());
 		}
 		if(!listenersByEventKey.get(key).contains(listener)) {
 			listenersByEventKey.get(key).add(listener);
 		}
+		listener.registered = true;
+		listenersByEvent.clear();
 	}
 	
 	public static synchronized void removeListeners(Object owner) {
-		for(String key : listenersByEventKey.keySet()) {
-			Iterator<SessionEventListener> it = listenersByEventKey.get(key).iterator();
+		Iterator<List<SessionEventListener>> lists = listenersByEventKey.values().iterator();
+		while(lists.hasNext()) {
+			List<SessionEventListener> listeners = lists.next();
+			Iterator<SessionEventListener> it = listeners.iterator();
 			while(it.hasNext()) {
 				SessionEventListener listener = it.next();
 				if(owner != null && owner.equals(listener.getOwner())) {
 					listener.clearOwner();
+					listener.registered = false;
 					it.remove();
 				}
 			}
+			if(listeners.isEmpty()) {
+				lists.remove();
+			}
 		}
+		listenersByEvent.clear();
 	}
 	
 	public static synchronized void removeListener(SessionEventListener listener) {
 		if(listener == null) {
 			return;
 		}
-		for(String key : listenersByEventKey.keySet()) {
-			Iterator<SessionEventListener> it = listenersByEventKey.get(key).iterator();
+		Iterator<List<SessionEventListener>> lists = listenersByEventKey.values().iterator();
+		while(lists.hasNext()) {
+			List<SessionEventListener> listeners = lists.next();
+			Iterator<SessionEventListener> it = listeners.iterator();
 			while(it.hasNext()) {
 				SessionEventListener l = it.next();
 				if(l.equals(listener)) {
 					l.clearOwner();
+					l.registered = false;
 					it.remove();
 				}
 			}
+			if(listeners.isEmpty()) {
+				lists.remove();
+			}
 		}
+		listenersByEvent.clear();
 	}
 	
-	public static synchronized void fireEvent(Class sessionDataClass, int sessionDataId, String type) {
+	public static void fireEvent(Class sessionDataClass, int sessionDataId, String type) {
 		fireEvent(new SessionEvent<Object>(sessionDataClass, sessionDataId, type));
 	}
 	
-	public static synchronized void fireMessageEvent(Class sessionDataClass, int sessionDataId, String type, List<JandorMessage> messages) {
+	public static void fireMessageEvent(Class sessionDataClass, int sessionDataId, String type, List<JandorMessage> messages) {
 		fireEvent(new MessageEvent(sessionDataClass, sessionDataId, type, messages));
 	}
 	
-	public static synchronized <T> void fireEvent(Class sessionDataClass, int sessionDataId, String type, T data) {
+	public static <T> void fireEvent(Class sessionDataClass, int sessionDataId, String type, T data) {
 		fireEvent(new SessionEvent<T>(sessionDataClass, sessionDataId, type, data));
 	}
 	
-	public static synchronized <T> void fireEvent(SessionEvent<T> event) {
+	public static <T> void fireEvent(SessionEvent<T> event) {
 		if(!enableEvents) {
 			return;
 		}
 		
-		List<String> usedKeys = new ArrayList<String>();
-		
-		// Event as given
-		String key = event.getKey();
-		usedKeys.add(key);
-		handleEvent(key, event);
-		
-		// Any id
-		key = event.getKey(false, true, false);
-		if(!usedKeys.contains(key)) {
-			handleEvent(key, event);
-			usedKeys.add(key);
+		List<SessionEventListener> listeners = getListeners(event);
+		if(listeners.isEmpty()) {
+			return;
 		}
 		
-		// Any type
-		key = event.getKey(false, false, true);
-		if(!usedKeys.contains(key)) {
-			handleEvent(key, event);
-			usedKeys.add(key);
+		boolean coalesce = event.isType(SessionEvent.TYPE_MODIFIED) && !event.hasData();
+		synchronized(pendingLock) {
+			for(SessionEventListener listener : listeners) {
+				Target target = new Target(listener, event);
+				SessionEvent last = lastPending.get(target);
+				if(coalesce && last != null && last.isType(SessionEvent.TYPE_MODIFIED) && !last.hasData()) {
+					continue;
+				}
+				pending.add(new Pending(listener, event));
+				lastPending.put(target, event);
+			}
+			if(thread == null) {
+				thread = new Thread(new Runnable() {
+					
+					@Override
+					public void run() {
+						runFrames();
+					}
+					
+				}, "Session Events");
+				thread.setDaemon(true);
+				thread.start();
+			}
+			pendingLock.notifyAll();
 		}
-		
-		// Any type any id
-		key = event.getKey(false, true, true);
-		if(!usedKeys.contains(key)) {
-			handleEvent(key, event);
-			usedKeys.add(key);
+	}
+	
+	/**
+	 * @return The listeners for the event as given, then for any id, any type,
+	 *         any type and id, any class and id and anything, each only once.
+	 */
+	private static synchronized List<SessionEventListener> getListeners(SessionEvent event) {
+		Key eventKey = new Key(event.getSessionDataClass(), event.getSessionDataId(), event.getType());
+		List<SessionEventListener> listeners = listenersByEvent.get(eventKey);
+		if(listeners != null) {
+			return listeners;
 		}
 		
-		// Any class any id
-		key = event.getKey(true, true, false);
-		if(!usedKeys.contains(key)) {
-			handleEvent(key, event);
-			usedKeys.add(key);
-		}
+		Class klass = event.getSessionDataClass();
+		int id = event.getSessionDataId();
+		String type = event.getType();
+		Key[] keys = new Key[] {
+			eventKey,
+			new Key(klass, IDUtil.NONE, type),
+			new Key(klass, id, SessionEvent.TYPE_ANY),
+			new Key(klass, IDUtil.NONE, SessionEvent.TYPE_ANY),
+			new Key(SessionData.class, IDUtil.NONE, type),
+			new Key(SessionData.class, IDUtil.NONE, SessionEvent.TYPE_ANY)
+		};
 		
-		// Any class any id any type
-		key = event.getKey(true, true, true);
-		if(!usedKeys.contains(key)) {
-			handleEvent(key, event);
-			usedKeys.add(key);
+		listeners = new ArrayList<SessionEventListener>();
+		for(Key key : keys) {
+			List<SessionEventListener> keyListeners = listenersByEventKey.get(key);
+			if(keyListeners == null) {
+				continue;
+			}
+			for(SessionEventListener listener : keyListeners) {
+				if(!listeners.contains(listener)) {
+					listeners.add(listener);
+				}
+			}
 		}
-
+		listenersByEvent.put(eventKey, listeners);
+		return listeners;
 	}
 	
-	private static synchronized <T> void handleEvent(String key, SessionEvent<T> event) {
-		if(!listenersByEventKey.containsKey(key)) {
-			return;
+	private static void runFrames() {
+		while(true) {
+			List<Pending> frame;
+			synchronized(pendingLock) {
+				if(pending.isEmpty()) {
+					try {
+						pendingLock.wait(IDLE_MILLIS);
+					} catch (InterruptedException e) {
+						// Look again
+					}
+					if(pending.isEmpty()) {
+						thread = null;
+						return;
+					}
+				}
+			}
+			
+			// Let the rest of the frame's events arrive
+			try {
+				Thread.sleep(FRAME_MILLIS);
+			} catch (InterruptedException e) {
+				// Deliver what there is
+			}
+			
+			synchronized(pendingLock) {
+				frame = pending;
+				pending = new ArrayList<Pending>();
+				lastPending.clear();
+			}
+			deliver(frame);
+		}
+	}
+	
+	private static void deliver(List<Pending> frame) {
+		final Map<SessionEventListener, List<SessionEvent>> edt = new LinkedHashMap<SessionEventListener, List<SessionEvent>>();
+		Map<SessionEventListener, List<SessionEvent>> worker = new LinkedHashMap<SessionEventListener, List<SessionEvent>>();
+		for(Pending p : frame) {
+			Map<SessionEventListener, List<SessionEvent>> byListener = p.listener.getDelivery() == SessionEventListener.DELIVER_WORKER ? worker : edt;
+			List<SessionEvent> events = byListener.get(p.listener);
+			if(events == null) {
+				events = new ArrayList<SessionEvent>();
+				byListener.put(p.listener, events);
+			}
+			events.add(p.event);
 		}
 		
-		Iterator<SessionEventListener> it = listenersByEventKey.get(key).iterator();
-		while(it.hasNext()) {
-			SessionEventListener listener = it.next();
-			listener.handleEvent(event);
+		if(!edt.isEmpty()) {
+			SwingUtilities.invokeLater(new Runnable() {
+				
+				@Override
+				public void run() {
+					handleEvents(edt);
+				}
+				
+			});
+		}
+		handleEvents(worker);
+	}
+	
+	private static void handleEvents(Map<SessionEventListener, List<SessionEvent>> byListener) {
+		for(Map.Entry<SessionEventListener, List<SessionEvent>> entry : byListener.entrySet()) {
+			SessionEventListener listener = entry.getKey();
+			if(!listener.registered) {
+				continue;
+			}
+			try {
+				listener.handleEvents(entry.getValue());
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
 		}
 	}
 	